@@ -31,9 +31,12 @@ import org.genemania.dto.UploadNetworkEngineResponseDto;
 import org.genemania.dto.UploadNetworkWebRequestDto;
 import org.genemania.engine.IMania;
 import org.genemania.engine.Mania2;
+import org.genemania.engine.cache.ConcurrentObjectCache;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
+import org.genemania.engine.cache.MappedFileObjectCache;
 import org.genemania.engine.cache.MemObjectCache;
+import org.genemania.engine.config.Config;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ApplicationConfig;
 import org.genemania.util.BrokerUtils;
@@ -69,7 +72,14 @@ public class SyncWorker {
 			LOG.error("Worker thread missing required parameter: engine cache dir");
 		}
 
-		engine = new Mania2(new DataCache(new MemObjectCache(new FileSerializedObjectCache(cacheDir))));
+		FileSerializedObjectCache fileCache;
+		if (Config.instance().isMappedCacheEnabled()) {
+			fileCache = new MappedFileObjectCache(cacheDir);
+		}
+		else {
+			fileCache = new FileSerializedObjectCache(cacheDir);
+		}
+		engine = new Mania2(new DataCache(new ConcurrentObjectCache(new MemObjectCache(fileCache))));
 
 		// output startup info
 		LOG.info("GeneMANIA SyncWebWorker ver: " + appVer);
@@ -25,9 +25,12 @@
 package org.genemania.broker;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jms.*;
 
@@ -47,10 +50,14 @@ import org.genemania.dto.UploadNetworkEngineRequestDto;
 import org.genemania.dto.UploadNetworkEngineResponseDto;
 import org.genemania.engine.IMania;
 import org.genemania.engine.Mania2;
+import org.genemania.engine.cache.ConcurrentObjectCache;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
+import org.genemania.engine.cache.MappedFileObjectCache;
 import org.genemania.engine.cache.MemObjectCache;
+import org.genemania.engine.config.Config;
 import org.genemania.exception.ApplicationException;
+import org.genemania.message.BinaryMessageCodec;
 import org.genemania.message.RelatedGenesRequestMessage;
 import org.genemania.message.RelatedGenesResponseMessage;
 import org.genemania.message.UploadNetworkRequestMessage;
@@ -58,26 +65,33 @@ import org.genemania.message.UploadNetworkResponseMessage;
 import org.genemania.util.ApplicationConfig;
 import org.genemania.util.BrokerUtils;
 
-public class Worker implements MessageListener, ExceptionListener, TransportListener {
+/*
+ * requests are consumed on workerThreads sessions, each with its own consumer and
+ * producer, all sharing the one engine and its data cache. jms delivers messages
+ * for a session on a single thread, so this gives up to workerThreads requests in
+ * progress at once. with the queue prefetch set to 1 in the broker url, each session
+ * holds at most one unprocessed message, so anything beyond that stays queued at
+ * the broker for other workers.
+ */
+public class Worker implements ExceptionListener, TransportListener {
 
     private static Logger LOG = Logger.getLogger(Worker.class);
 
     // configure message expiration, why are all app specific config constant names in common?
     // putting this one here.
     private static final String CONFIG_MESSAGE_EXPIRATION_MILLIS = "messageExpirationMillis";
+    private static final String CONFIG_WORKER_THREADS = "workerThreads";
 
     private String appVer;
     private String brokerUrl;
-    private Session session;
-
-    private MessageConsumer requestHandler;
-    private MessageProducer responseHandler;
+    private List<SessionHandler> handlers = new ArrayList<SessionHandler>();
 
     private IMania engine;
     private String cacheDir;
     private String mqRequestsQueueName;
     private long messageExpirationMillis;
-    private int processedMessages = 0;
+    private int workerThreads = 1;
+    private AtomicInteger processedMessages = new AtomicInteger();
 
     private long checkisActivePollingIntervalMillis = 60000;
     private boolean active = true;
@@ -98,7 +112,14 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
                 System.exit(1);
             }
 
-            engine = new Mania2(new DataCache(new MemObjectCache(new FileSerializedObjectCache(cacheDir))));
+            FileSerializedObjectCache fileCache;
+            if (Config.instance().isMappedCacheEnabled()) {
+                fileCache = new MappedFileObjectCache(cacheDir);
+            }
+            else {
+                fileCache = new FileSerializedObjectCache(cacheDir);
+            }
+            engine = new Mania2(new DataCache(new ConcurrentObjectCache(new MemObjectCache(fileCache))));
 
             // output startup info
             LOG.info("GeneMANIA Worker ver: " + appVer);
@@ -107,6 +128,7 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
             LOG.info("broker URL: " + brokerUrl);
             LOG.info("request Queue Name: " + mqRequestsQueueName);
             LOG.info("messageExpirationMillis: " + messageExpirationMillis);
+            LOG.info("workerThreads: " + workerThreads);
 
             startNewConnection();
             waitForExit();
@@ -136,67 +158,134 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
     }
 
     /*
-     * implement MessageListener interface, handling requests
-     * from website
+     * consumes requests on one jms session, replying on the same session.
+     * all per-request state is local to onMessage, the engine is shared
      */
-    @Override
-    public synchronized void onMessage(Message msg) {
-        if (!(msg instanceof TextMessage)) {
-            LOG.warn("Unexpected message instance type: " + msg.getClass().getName());
-            return;
+    class SessionHandler implements MessageListener {
+        private Session session;
+        private MessageConsumer requestHandler;
+        private MessageProducer responseHandler;
+
+        SessionHandler(Connection connection) throws JMSException {
+            // setup Consumer to receive requests and Producer to send results
+            // the response handler will use a temp queue specified in the request
+            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+            responseHandler = session.createProducer(null);
+            responseHandler.setTimeToLive(messageExpirationMillis);
+
+            Queue requestsQueue = session.createQueue(mqRequestsQueueName);
+            requestHandler = session.createConsumer(requestsQueue);
+            requestHandler.setMessageListener(this);
         }
 
-        try {
-            // extract message data
-            Queue queue = (Queue) msg.getJMSDestination();
-            TextMessage requestMessage = (TextMessage) msg;
-
-            LOG.debug("new " + msg.getJMSType() + " message received on queue " + queue.getQueueName() +
-                    "[correlation id: " + msg.getJMSCorrelationID() + "]");
+        /*
+         * implement MessageListener interface, handling requests
+         * from website. requests are xml text, or binary (see
+         * BinaryMessageCodec). the reply is binary if the requester
+         * says it accepts that, xml otherwise.
+         */
+        @Override
+        public void onMessage(Message msg) {
+            if (!(msg instanceof TextMessage) && !(msg instanceof BytesMessage)) {
+                LOG.warn("Unexpected message instance type: " + msg.getClass().getName());
+                return;
+            }
 
-            // invoke engine
-            String responseBody = invokeEngine(requestMessage.getJMSType(), requestMessage.getText());
+            try {
+                // extract message data
+                Queue queue = (Queue) msg.getJMSDestination();
+
+                LOG.debug("new " + msg.getJMSType() + " message received on queue " + queue.getQueueName() +
+                        "[correlation id: " + msg.getJMSCorrelationID() + "]");
+
+                Object requestBody;
+                if (msg instanceof BytesMessage) {
+                    BytesMessage bytesMessage = (BytesMessage) msg;
+                    byte[] data = new byte[(int) bytesMessage.getBodyLength()];
+                    bytesMessage.readBytes(data);
+                    requestBody = data;
+                }
+                else {
+                    requestBody = ((TextMessage) msg).getText();
+                }
+                boolean binaryReply = BinaryMessageCodec.BINARY_FORMAT.equals(msg.getStringProperty(BinaryMessageCodec.ACCEPT_PROPERTY));
+
+                // invoke engine
+                Object responseBody = invokeEngine(msg.getJMSType(), requestBody, binaryReply);
+
+                // send reply
+                Message responseMessage;
+                int responseSize;
+                if (responseBody instanceof byte[]) {
+                    BytesMessage bytesMessage = session.createBytesMessage();
+                    bytesMessage.writeBytes((byte[]) responseBody);
+                    responseMessage = bytesMessage;
+                    responseSize = ((byte[]) responseBody).length;
+                }
+                else {
+                    TextMessage textMessage = session.createTextMessage();
+                    textMessage.setText((String) responseBody);
+                    responseMessage = textMessage;
+                    responseSize = ((String) responseBody).length();
+                }
 
-            // send reply
-            LOG.debug("Responding to " + requestMessage.getJMSDestination() + ", msg id " +
-                    requestMessage.getJMSCorrelationID() + ", response body size " + responseBody.length());
+                LOG.debug("Responding to " + msg.getJMSReplyTo() + ", msg id " +
+                        msg.getJMSCorrelationID() + ", response body size " + responseSize);
 
-            TextMessage responseMessage = session.createTextMessage();
-            responseMessage.setJMSDestination(requestMessage.getJMSReplyTo());
-            responseMessage.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
-            responseMessage.setJMSCorrelationID(msg.getJMSCorrelationID());
-            responseMessage.setText(responseBody);
+                responseMessage.setJMSDestination(msg.getJMSReplyTo());
+                responseMessage.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
+                responseMessage.setJMSCorrelationID(msg.getJMSCorrelationID());
 
-            responseHandler.send(responseMessage.getJMSDestination(), responseMessage);
+                responseHandler.send(responseMessage.getJMSDestination(), responseMessage);
 
-            processedMessages++;
-            LOG.info("successfully processed messages: " + processedMessages);
-        }
-        catch (JMSException e) {
-            LOG.error("JMS Exception: ", e);
+                LOG.info("successfully processed messages: " + processedMessages.incrementAndGet());
+            }
+            catch (JMSException e) {
+                LOG.error("JMS Exception: ", e);
+            }
         }
     }
 
     /*
-     * convert given message text to an engine request, execute, and convert response
-     * back to text.
+     * convert given message body to an engine request, execute, and convert response
+     * back. the body is xml text, or for related genes requests may also be binary.
+     * the response is binary if requested and supported for the message type,
+     * otherwise xml text.
      */
-    String invokeEngine(String msgType, String messageText) {
-        String responseBody;
+    Object invokeEngine(String msgType, Object requestBody, boolean binaryReply) {
+        Object responseBody;
 
-        if (MessageType.RELATED_GENES.equals(MessageType.fromCode(msgType))) {
-            RelatedGenesRequestMessage data = RelatedGenesRequestMessage.fromXml(messageText);
-            RelatedGenesResponseMessage response = getRelatedGenes(data);
-            responseBody = response.toXml();
-        }
-        else if (MessageType.TEXT2NETWORK.equals(MessageType.fromCode(msgType))) {
-            UploadNetworkRequestMessage data = UploadNetworkRequestMessage.fromXml(messageText);
-            UploadNetworkResponseMessage response = uploadNetwork(data);
-            responseBody = response.toXml();
+        try {
+            if (MessageType.RELATED_GENES.equals(MessageType.fromCode(msgType))) {
+                RelatedGenesRequestMessage data;
+                if (requestBody instanceof byte[]) {
+                    data = RelatedGenesRequestMessage.fromBytes((byte[]) requestBody);
+                }
+                else {
+                    data = RelatedGenesRequestMessage.fromXml((String) requestBody);
+                }
+                RelatedGenesResponseMessage response = getRelatedGenes(data);
+                if (binaryReply) {
+                    responseBody = response.toBytes();
+                }
+                else {
+                    responseBody = response.toXml();
+                }
+            }
+            else if (MessageType.TEXT2NETWORK.equals(MessageType.fromCode(msgType)) && requestBody instanceof String) {
+                UploadNetworkRequestMessage data = UploadNetworkRequestMessage.fromXml((String) requestBody);
+                UploadNetworkResponseMessage response = uploadNetwork(data);
+                responseBody = response.toXml();
+            }
+            else {
+                LOG.warn("Unknown message type: " + msgType);
+                responseBody = buildErrorMessage("Unknown message type");
+            }
         }
-        else {
-            LOG.warn("Unknown message type: " + msgType);
-            responseBody = buildErrorMessage("Unknown message type");
+        catch (IOException e) {
+            LOG.error("Failed to decode or encode binary message", e);
+            responseBody = buildErrorMessage("Invalid binary message");
         }
 
         return responseBody;
@@ -224,6 +313,12 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
         cacheDir = config.getProperty(org.genemania.Constants.CONFIG_PROPERTIES.CACHE_DIR);
         messageExpirationMillis = Integer.parseInt(config.getProperty(CONFIG_MESSAGE_EXPIRATION_MILLIS));
 
+        // optional, defaults to a single request at a time
+        String threads = config.getProperty(CONFIG_WORKER_THREADS);
+        if (!StringUtils.isEmpty(threads)) {
+            workerThreads = Math.max(1, Integer.parseInt(threads.trim()));
+        }
+
     }
 
     /*
@@ -240,20 +335,14 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
         // the worker
         ((ActiveMQConnection)((PooledConnection) connection).getConnection()).addTransportListener(this);
 
-        // setup Consumer to receive requests and Producer to send results
-        // the response handler will use a temp queue specified in the request
-        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-
-        responseHandler = session.createProducer(null);
-        responseHandler.setTimeToLive(messageExpirationMillis);
-
-        Queue requestsQueue = session.createQueue(mqRequestsQueueName);
-        requestHandler = session.createConsumer(requestsQueue);
-        requestHandler.setMessageListener(this);
+        // one session per concurrent request
+        for (int i=0; i<workerThreads; i++) {
+            handlers.add(new SessionHandler(connection));
+        }
 
         // everyone is on stage, we can start the dance
         connection.start();
-        LOG.info("Listening to " + requestsQueue.getQueueName());
+        LOG.info("Listening to " + mqRequestsQueueName + " with " + handlers.size() + " sessions");
     }
 
     /*
@@ -22,6 +22,7 @@ package org.genemania.connector;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -123,10 +124,19 @@ public class LuceneConnector {
 		return networkMediator.getNetwork(networkId);
 	}
 
+	public List<InteractionNetwork> findNetworksById(Collection<Long> networkIds)
+			throws DataStoreException {
+		return networkMediator.getNetworks(networkIds);
+	}
+
 	public Node findNodeById(long nodeId, long organismId) {
 		return nodeMediator.getNode(nodeId, organismId);
 	}
 
+	public List<Node> findNodesById(Collection<Long> nodeIds, long organismId) {
+		return nodeMediator.getNodes(nodeIds, organismId);
+	}
+
 	public Statistics getLatestStatistics() {
 		return statsMediator.getLatestStatistics();
 	}
@@ -0,0 +1,118 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.mediator.impl;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+
+import org.genemania.exception.ApplicationException;
+import org.genemania.mediator.InteractionCursor;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+/*
+ * Cursor over interactions read from a stream of tabular text,
+ * in the same record format as FileInteractionCursor, such as
+ * the data of an uploaded network.
+ *
+ * the stream is parsed a record at a time as next() is called,
+ * so nothing beyond the current record is held in memory. since
+ * a stream can only be read once, the total # of interactions isn't
+ * known up front, and getTotalInteractions() returns -1.
+ *
+ * if weightcol < 0, then the input is assumed to be binary (no
+ * weight col), and the weight is always returned as 1
+ */
+public class ReaderInteractionCursor implements InteractionCursor {
+
+    private long networkId;
+    protected int idCol1;
+    protected int idCol2;
+    protected int weightCol;
+
+    CSVReader reader;
+    protected String[] nextLine;
+
+    public ReaderInteractionCursor(long networkId, Reader source, int idCol1, int idCol2, int weightCol, char delim) {
+        this.networkId = networkId;
+        this.idCol1 = idCol1;
+        this.idCol2 = idCol2;
+        this.weightCol = weightCol;
+
+        if (!(source instanceof BufferedReader)) {
+            source = new BufferedReader(source);
+        }
+        reader = new CSVReader(source, delim);
+    }
+
+    public ReaderInteractionCursor(long networkId, Reader source) {
+        this(networkId, source, 0, 1, 2, '\t');
+    }
+
+    public long getId() throws ApplicationException {
+        throw new ApplicationException("'Id' not supported for interaction streams");
+    }
+
+    public long getFromNodeId() throws ApplicationException {
+        return Long.parseLong(nextLine[idCol1]);
+    }
+
+    public long getToNodeId() throws ApplicationException {
+        return Long.parseLong(nextLine[idCol2]);
+    }
+
+    public float getWeight() throws ApplicationException {
+        if (weightCol < 0) {
+            return 1;
+        }
+        else {
+            return Float.parseFloat(nextLine[weightCol]);
+        }
+    }
+
+    public long getTotalInteractions() throws ApplicationException {
+        return -1;
+    }
+
+    public void close() throws ApplicationException {
+        if (reader != null) {
+            try {
+                reader.close();
+                reader = null;
+            } catch (Exception e) {
+                throw new ApplicationException(e);
+            }
+        }
+    }
+
+    public boolean next() throws ApplicationException {
+        try {
+            nextLine = reader.readNext();
+        } catch (Exception e) {
+            throw new ApplicationException(e);
+        }
+
+        return nextLine != null;
+    }
+
+    public long getNetworkId() {
+        return this.networkId;
+    }
+}
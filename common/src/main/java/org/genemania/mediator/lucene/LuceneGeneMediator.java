@@ -20,9 +20,12 @@
 package org.genemania.mediator.lucene;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -35,6 +38,7 @@ import org.genemania.completion.lucene.GeneIndexBuilder;
 import org.genemania.domain.Gene;
 import org.genemania.domain.GeneData;
 import org.genemania.domain.GeneNamingSource;
+import org.genemania.domain.Node;
 import org.genemania.domain.Organism;
 import org.genemania.mediator.GeneMediator;
 
@@ -64,6 +68,18 @@ public class LuceneGeneMediator extends LuceneMediator implements GeneMediator {
 		return createGenes(organismId, geneSymbols);
 	}
 
+	/**
+	 * All genes of each of the given nodes, with their naming sources, keyed
+	 * by node id. Nodes that don't exist are left out.
+	 */
+	public Map<Long, Collection<Gene>> getGenesForNodes(Collection<Long> nodeIds, long organismId) {
+		Map<Long, Collection<Gene>> result = new HashMap<Long, Collection<Gene>>();
+		for (Node node : createNodes(nodeIds, organismId)) {
+			result.put(node.getId(), node.getGenes());
+		}
+		return result;
+	}
+
 	public void updateGeneData(Organism organism, String geneSymbol, GeneData geneData) {
 	}
 
@@ -27,8 +27,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.sf.cglib.proxy.Enhancer;
@@ -206,6 +208,30 @@ public class LuceneMediator {
         }
     }
 
+    protected void search(Query query, Collector results) {
+        try {
+            searcher.search(query, results);
+        } catch (IOException e) {
+            log(e);
+        }
+    }
+
+    /**
+     * Runs one search per batch of ids, matching documents whose field holds
+     * any of them, rather than one search per id.
+     */
+    protected void search(String field, Collection<Long> ids, Collector results) {
+        List<Long> list = new ArrayList<Long>(ids);
+        int batchSize = BooleanQuery.getMaxClauseCount();
+        for (int i = 0; i < list.size(); i += batchSize) {
+            BooleanQuery query = new BooleanQuery();
+            for (Long id : list.subList(i, Math.min(i + batchSize, list.size()))) {
+                query.add(new TermQuery(new Term(field, String.valueOf(id))), Occur.SHOULD);
+            }
+            search(query, results);
+        }
+    }
+
     protected TopDocs search(String queryString, int limit) {
         QueryParser parser = new QueryParser(Version.LUCENE_29, DEFAULT_FIELD, analyzer);
         try {
@@ -225,7 +251,10 @@ public class LuceneMediator {
 
     protected Node createNode(final long id, final long organismId) {
         final Node[] result = new Node[1];
-        search(String.format("+%s:\"%d\" +%s:\"%d\"", LuceneMediator.NODE_ID, id, LuceneMediator.NODE_ORGANISM_ID, organismId), new AbstractCollector() {
+        BooleanQuery query = new BooleanQuery();
+        query.add(new TermQuery(new Term(LuceneMediator.NODE_ID, String.valueOf(id))), Occur.MUST);
+        query.add(new TermQuery(new Term(LuceneMediator.NODE_ORGANISM_ID, String.valueOf(organismId))), Occur.MUST);
+        search(query, new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -263,9 +292,99 @@ public class LuceneMediator {
         return node;
     }
 
+    /**
+     * Loads several of an organism's nodes at once, along with their gene
+     * data, genes and naming sources. Documents are found through the
+     * organism's NodeDocIndex, gene data with one search per batch, and
+     * naming sources with a single search, instead of the searches per node
+     * that the lazily loaded objects from createNode() make. Ids that aren't
+     * nodes of the organism are left out of the result.
+     */
+    protected List<Node> createNodes(Collection<Long> nodeIds, final long organismId) {
+        NodeDocIndex index;
+        try {
+            index = NodeDocIndex.get(searcher, organismId);
+        } catch (IOException e) {
+            log(e);
+            return Collections.emptyList();
+        }
+
+        Organism organism = (Organism) Enhancer.create(Organism.class, new LazyLoader() {
+            public Object loadObject() throws Exception {
+                return createOrganism(organismId);
+            }
+        });
+        final Map<Long, GeneNamingSource> namingSources = createNamingSources();
+
+        List<Node> nodes = new ArrayList<Node>(nodeIds.size());
+        final Map<Long, List<Node>> nodesByGeneData = new HashMap<Long, List<Node>>();
+        try {
+            for (long nodeId : nodeIds) {
+                Integer doc = index.getNodeDoc(nodeId);
+                if (doc == null) {
+                    continue;
+                }
+                Document document = searcher.doc(doc);
+                Node node = new Node();
+                node.setId(nodeId);
+                node.setName(document.get(LuceneMediator.NODE_NAME));
+
+                long geneDataId = Long.parseLong(document.get(LuceneMediator.NODE_GENEDATA_ID));
+                List<Node> geneDataNodes = nodesByGeneData.get(geneDataId);
+                if (geneDataNodes == null) {
+                    geneDataNodes = new ArrayList<Node>(1);
+                    nodesByGeneData.put(geneDataId, geneDataNodes);
+                }
+                geneDataNodes.add(node);
+
+                int[] geneDocs = index.getGeneDocs(nodeId);
+                List<Gene> genes = new ArrayList<Gene>(geneDocs.length);
+                for (int geneDoc : geneDocs) {
+                    Document geneDocument = searcher.doc(geneDoc);
+                    GeneNamingSource namingSource = namingSources.get(Long.parseLong(geneDocument.get(LuceneMediator.GENE_NAMINGSOURCE_ID)));
+                    genes.add(createGene(geneDocument, node, organism, namingSource));
+                }
+                node.setGenes(genes);
+                nodes.add(node);
+            }
+        } catch (CorruptIndexException e) {
+            log(e);
+        } catch (IOException e) {
+            log(e);
+        }
+
+        search(LuceneMediator.GENEDATA_ID, nodesByGeneData.keySet(), new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                try {
+                    Document document = searcher.doc(doc);
+                    GeneData data = createGeneData(document);
+                    String namingSourceId = document.get(LuceneMediator.GENEDATA_NAMINGSOURCE_ID);
+                    if (namingSourceId != null) {
+                        GeneNamingSource source = namingSources.get(Long.parseLong(namingSourceId));
+                        if (source != null) {
+                            data.setLinkoutSource(source);
+                        }
+                    }
+                    List<Node> geneDataNodes = nodesByGeneData.get(data.getId());
+                    if (geneDataNodes != null) {
+                        for (Node node : geneDataNodes) {
+                            node.setGeneData(data);
+                        }
+                    }
+                } catch (CorruptIndexException e) {
+                    log(e);
+                } catch (IOException e) {
+                    log(e);
+                }
+            }
+        });
+        return nodes;
+    }
+
     protected GeneData createGeneData(final long id) {
         final GeneData[] result = new GeneData[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.GENEDATA_ID, id), new AbstractCollector() {
+        search(new TermQuery(new Term(LuceneMediator.GENEDATA_ID, String.valueOf(id))), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -300,7 +419,7 @@ public class LuceneMediator {
 
     private GeneNamingSource createNamingSource(long id) {
         final GeneNamingSource[] result = new GeneNamingSource[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.NAMINGSOURCE_ID, id), new AbstractCollector() {
+        search(new TermQuery(new Term(LuceneMediator.NAMINGSOURCE_ID, String.valueOf(id))), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -316,6 +435,24 @@ public class LuceneMediator {
         return result[0];
     }
 
+    protected Map<Long, GeneNamingSource> createNamingSources() {
+        final Map<Long, GeneNamingSource> result = new HashMap<Long, GeneNamingSource>();
+        search(new TermQuery(new Term(LuceneMediator.TYPE, LuceneMediator.NAMINGSOURCE)), new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                try {
+                    GeneNamingSource source = createNamingSource(searcher.doc(doc));
+                    result.put(source.getId(), source);
+                } catch (CorruptIndexException e) {
+                    log(e);
+                } catch (IOException e) {
+                    log(e);
+                }
+            }
+        });
+        return result;
+    }
+
     protected GeneNamingSource createNamingSource(Document document) {
         GeneNamingSource source = new GeneNamingSource();
         source.setId(Long.parseLong(document.get(LuceneMediator.NAMINGSOURCE_ID)));
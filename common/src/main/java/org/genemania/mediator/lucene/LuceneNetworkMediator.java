@@ -21,6 +21,7 @@ package org.genemania.mediator.lucene;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import net.sf.cglib.proxy.Enhancer;
@@ -72,6 +73,27 @@ public class LuceneNetworkMediator extends LuceneMediator implements
 		return createNetwork(networkId);
 	}
 
+	/**
+	 * Looks up several networks with one search per batch of ids, instead of
+	 * one search each. Ids that aren't in the index are left out of the result.
+	 */
+	public List<InteractionNetwork> getNetworks(Collection<Long> networkIds) {
+        final List<InteractionNetwork> result = new ArrayList<InteractionNetwork>();
+        search(LuceneMediator.NETWORK_ID, networkIds, new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                try {
+                    result.add(createNetwork(searcher.doc(doc)));
+                } catch (CorruptIndexException e) {
+                    log(e);
+                } catch (IOException e) {
+                    log(e);
+                }
+            }
+        });
+        return result;
+	}
+
 	public InteractionNetworkGroup getNetworkGroupByName(String groupName, long organismId) {
 		return createNetworkGroup(organismId, groupName);
 	}
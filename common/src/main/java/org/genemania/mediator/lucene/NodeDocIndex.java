@@ -0,0 +1,139 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.mediator.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Maps an organism's node ids to the numbers of its node document and gene
+ * documents, so batched lookups can load documents directly instead of
+ * running a search per id.
+ *
+ * Built on first use for each organism, and kept for as long as the index
+ * reader (or, for other searchers, the searcher) it was built from is in
+ * use. Doc numbers are only valid for that reader.
+ */
+class NodeDocIndex {
+    private static final int [] NO_DOCS = new int[0];
+
+    private static final Map<Object, Map<Long, NodeDocIndex>> indexes = new WeakHashMap<Object, Map<Long, NodeDocIndex>>();
+
+    private final Map<Long, Integer> nodeDocs;
+    private final Map<Long, int []> geneDocs;
+
+    private NodeDocIndex(Map<Long, Integer> nodeDocs, Map<Long, int []> geneDocs) {
+        this.nodeDocs = nodeDocs;
+        this.geneDocs = geneDocs;
+    }
+
+    static NodeDocIndex get(Searcher searcher, long organismId) throws IOException {
+        Object key = searcher;
+        if (searcher instanceof IndexSearcher) {
+            key = ((IndexSearcher) searcher).getIndexReader();
+        }
+
+        synchronized (indexes) {
+            Map<Long, NodeDocIndex> organisms = indexes.get(key);
+            if (organisms == null) {
+                organisms = new HashMap<Long, NodeDocIndex>();
+                indexes.put(key, organisms);
+            }
+            NodeDocIndex index = organisms.get(organismId);
+            if (index == null) {
+                index = build(searcher, organismId);
+                organisms.put(organismId, index);
+            }
+            return index;
+        }
+    }
+
+    /*
+     * doc number of the node, or null if there's no such node for the organism
+     */
+    Integer getNodeDoc(long nodeId) {
+        return nodeDocs.get(nodeId);
+    }
+
+    int [] getGeneDocs(long nodeId) {
+        int [] docs = geneDocs.get(nodeId);
+        return docs == null ? NO_DOCS : docs;
+    }
+
+    private static NodeDocIndex build(Searcher searcher, long organismId) throws IOException {
+        String organism = String.valueOf(organismId);
+
+        FieldSelector nodeFields = new MapFieldSelector(new String [] {LuceneMediator.NODE_ID});
+        List<Integer> docs = collect(searcher, new TermQuery(new Term(LuceneMediator.NODE_ORGANISM_ID, organism)));
+        Map<Long, Integer> nodeDocs = new HashMap<Long, Integer>(docs.size() * 2);
+        for (int doc: docs) {
+            long nodeId = Long.parseLong(searcher.doc(doc, nodeFields).get(LuceneMediator.NODE_ID));
+            nodeDocs.put(nodeId, doc);
+        }
+
+        FieldSelector geneFields = new MapFieldSelector(new String [] {LuceneMediator.GENE_NODE_ID});
+        docs = collect(searcher, new TermQuery(new Term(LuceneMediator.GENE_ORGANISM_ID, organism)));
+        Map<Long, List<Integer>> genesByNode = new HashMap<Long, List<Integer>>(nodeDocs.size() * 2);
+        for (int doc: docs) {
+            long nodeId = Long.parseLong(searcher.doc(doc, geneFields).get(LuceneMediator.GENE_NODE_ID));
+            List<Integer> nodeGenes = genesByNode.get(nodeId);
+            if (nodeGenes == null) {
+                nodeGenes = new ArrayList<Integer>(4);
+                genesByNode.put(nodeId, nodeGenes);
+            }
+            nodeGenes.add(doc);
+        }
+
+        Map<Long, int []> geneDocs = new HashMap<Long, int []>(genesByNode.size() * 2);
+        for (Map.Entry<Long, List<Integer>> entry: genesByNode.entrySet()) {
+            List<Integer> nodeGenes = entry.getValue();
+            int [] array = new int[nodeGenes.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = nodeGenes.get(i);
+            }
+            geneDocs.put(entry.getKey(), array);
+        }
+
+        return new NodeDocIndex(nodeDocs, geneDocs);
+    }
+
+    private static List<Integer> collect(Searcher searcher, Query query) throws IOException {
+        final List<Integer> docs = new ArrayList<Integer>();
+        searcher.search(query, new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                docs.add(doc);
+            }
+        });
+        return docs;
+    }
+}
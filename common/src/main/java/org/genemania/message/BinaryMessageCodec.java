@@ -0,0 +1,444 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * BinaryMessageCodec: compact binary encoding of related genes messages
+ */
+package org.genemania.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.genemania.dto.AttributeDto;
+import org.genemania.dto.InteractionDto;
+import org.genemania.dto.NetworkDto;
+import org.genemania.dto.NodeDto;
+import org.genemania.dto.OntologyCategoryDto;
+
+/*
+ * alternative to the xstream xml encoding for the related genes request and
+ * response messages, sent as jms BytesMessages. every node object is written
+ * once to a table of ids & scores, and each network's interactions are written
+ * as columns of (from, to) table indices and weights, instead of a verbose xml
+ * element per interaction.
+ *
+ * the encoding starts with a magic number and version, so a reader can reject
+ * data it doesn't understand. requesters that can read binary responses say so
+ * by setting ACCEPT_PROPERTY to BINARY_FORMAT on the request, otherwise they get
+ * xml as before. a new, incompatible version must use a new BINARY_FORMAT value.
+ */
+public class BinaryMessageCodec {
+
+	// __[static]______________________________________________________________
+	public static final String ACCEPT_PROPERTY = "acceptFormat";
+	public static final String BINARY_FORMAT = "binary/1";
+
+	static final int MAGIC = 0x474d4e41; // "GMNA"
+	static final byte VERSION = 1;
+	static final byte REQUEST = 1;
+	static final byte RESPONSE = 2;
+
+	private BinaryMessageCodec() {
+	}
+
+	// __[public helpers]______________________________________________________
+	public static byte[] encode(RelatedGenesRequestMessage msg) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeHeader(out, REQUEST);
+		writeBase(out, msg, new ArrayList<NodeDto>());
+		out.writeInt(msg.getResultSize());
+		writeString(out, msg.getUserDefinedNetworkNamespace());
+		out.writeInt(msg.getAttributesLimit());
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	public static RelatedGenesRequestMessage decodeRequest(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		readHeader(in, REQUEST);
+		RelatedGenesRequestMessage msg = new RelatedGenesRequestMessage();
+		readBase(in, msg);
+		msg.setResultSize(in.readInt());
+		msg.setUserDefinedNetworkNamespace(readString(in));
+		msg.setAttributesLimit(in.readInt());
+		return msg;
+	}
+
+	public static byte[] encode(RelatedGenesResponseMessage msg) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeHeader(out, RESPONSE);
+		writeBase(out, msg, msg.getNodes());
+		writeAnnotations(out, msg.getAnnotations());
+		writeAttributes(out, msg.getAttributes());
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	public static RelatedGenesResponseMessage decodeResponse(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		readHeader(in, RESPONSE);
+		RelatedGenesResponseMessage msg = new RelatedGenesResponseMessage();
+		msg.setNodes(readBase(in, msg));
+		msg.setAnnotations(readAnnotations(in));
+		msg.setAttributes(readAttributes(in));
+		return msg;
+	}
+
+	// __[private helpers]_____________________________________________________
+	private static void writeHeader(DataOutputStream out, byte kind) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(kind);
+	}
+
+	private static void readHeader(DataInputStream in, byte kind) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not a binary genemania message");
+		}
+		byte version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("unsupported binary message version: " + version);
+		}
+		byte actualKind = in.readByte();
+		if (actualKind != kind) {
+			throw new IOException("unexpected binary message kind: " + actualKind);
+		}
+	}
+
+	/*
+	 * fields common to requests and responses. the node table holds the
+	 * given nodes first, so they can be restored as a list, followed by any
+	 * other nodes referenced by interactions.
+	 */
+	private static void writeBase(DataOutputStream out, RelatedGenesMessageBase msg, List<NodeDto> nodes) throws IOException {
+		out.writeInt(msg.getErrorCode());
+		writeString(out, msg.getErrorMessage());
+		out.writeLong(msg.getOrganismId());
+		out.writeLong(msg.getOntologyId());
+		writeString(out, msg.getCombiningMethod());
+		writeLongs(out, msg.getPositiveNodes());
+		writeLongs(out, msg.getAttributeGroups());
+
+		// node table
+		Map<NodeDto, Integer> index = new IdentityHashMap<NodeDto, Integer>();
+		List<NodeDto> table = new ArrayList<NodeDto>();
+		int numListed = nodes == null ? -1 : nodes.size();
+		if (nodes != null) {
+			for (NodeDto node: nodes) {
+				addNode(node, index, table, true);
+			}
+		}
+		if (msg.getNetworks() != null) {
+			for (NetworkDto network: msg.getNetworks()) {
+				if (network.getInteractions() != null) {
+					for (InteractionDto interaction: network.getInteractions()) {
+						addNode(interaction.getNodeVO1(), index, table, false);
+						addNode(interaction.getNodeVO2(), index, table, false);
+					}
+				}
+			}
+		}
+		out.writeInt(numListed);
+		out.writeInt(table.size());
+		for (NodeDto node: table) {
+			out.writeLong(node == null ? 0 : node.getId());
+			out.writeDouble(node == null ? 0d : node.getScore());
+		}
+
+		// networks, interactions as columns of node indices and weights
+		if (msg.getNetworks() == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(msg.getNetworks().size());
+		for (NetworkDto network: msg.getNetworks()) {
+			out.writeLong(network.getId());
+			out.writeDouble(network.getWeight());
+			writeString(out, network.getType());
+			Collection<InteractionDto> interactions = network.getInteractions();
+			if (interactions == null) {
+				out.writeInt(-1);
+				continue;
+			}
+			out.writeInt(interactions.size());
+			for (InteractionDto interaction: interactions) {
+				out.writeInt(nodeIndex(interaction.getNodeVO1(), index));
+			}
+			for (InteractionDto interaction: interactions) {
+				out.writeInt(nodeIndex(interaction.getNodeVO2(), index));
+			}
+			for (InteractionDto interaction: interactions) {
+				out.writeDouble(interaction.getWeight());
+			}
+		}
+	}
+
+	/*
+	 * returns the listed nodes
+	 */
+	private static List<NodeDto> readBase(DataInputStream in, RelatedGenesMessageBase msg) throws IOException {
+		msg.setErrorCode(in.readInt());
+		msg.setErrorMessage(readString(in));
+		msg.setOrganismId(in.readLong());
+		msg.setOntologyId(in.readLong());
+		msg.setCombiningMethod(readString(in));
+		msg.setPositiveNodes(readLongs(in));
+		msg.setAttributeGroups(readLongs(in));
+
+		int numListed = in.readInt();
+		int tableSize = readCount(in, 16);
+		if (tableSize < 0 || numListed < -1 || numListed > tableSize) {
+			throw new IOException("invalid node table size");
+		}
+		NodeDto [] table = new NodeDto[tableSize];
+		for (int i=0; i<tableSize; i++) {
+			long id = in.readLong();
+			double score = in.readDouble();
+			table[i] = new NodeDto(id, score);
+		}
+		List<NodeDto> nodes = null;
+		if (numListed >= 0) {
+			nodes = new ArrayList<NodeDto>(numListed);
+			for (int i=0; i<numListed; i++) {
+				nodes.add(table[i]);
+			}
+		}
+
+		int numNetworks = readCount(in, 20);
+		if (numNetworks < 0) {
+			msg.setNetworks(null);
+			return nodes;
+		}
+		Collection<NetworkDto> networks = new ArrayList<NetworkDto>(numNetworks);
+		for (int i=0; i<numNetworks; i++) {
+			NetworkDto network = new NetworkDto();
+			network.setId(in.readLong());
+			network.setWeight(in.readDouble());
+			network.setType(readString(in));
+
+			int numInteractions = readCount(in, 16);
+			if (numInteractions < 0) {
+				network.setInteractions(null);
+			}
+			else {
+				int [] from = new int[numInteractions];
+				int [] to = new int[numInteractions];
+				for (int j=0; j<numInteractions; j++) {
+					from[j] = in.readInt();
+				}
+				for (int j=0; j<numInteractions; j++) {
+					to[j] = in.readInt();
+				}
+				Collection<InteractionDto> interactions = new ArrayList<InteractionDto>(numInteractions);
+				for (int j=0; j<numInteractions; j++) {
+					interactions.add(new InteractionDto(node(table, from[j]), node(table, to[j]), in.readDouble()));
+				}
+				network.setInteractions(interactions);
+			}
+			networks.add(network);
+		}
+		msg.setNetworks(networks);
+		return nodes;
+	}
+
+	private static void addNode(NodeDto node, Map<NodeDto, Integer> index, List<NodeDto> table, boolean listed) {
+		if (node == null) {
+			if (listed) {
+				table.add(null);
+			}
+			return;
+		}
+		if (!index.containsKey(node)) {
+			index.put(node, table.size());
+			table.add(node);
+		}
+		else if (listed) {
+			// same object listed twice, keep the list intact
+			table.add(node);
+		}
+	}
+
+	private static int nodeIndex(NodeDto node, Map<NodeDto, Integer> index) {
+		if (node == null) {
+			return -1;
+		}
+		return index.get(node);
+	}
+
+	private static NodeDto node(NodeDto [] table, int i) throws IOException {
+		if (i == -1) {
+			return null;
+		}
+		if (i < 0 || i >= table.length) {
+			throw new IOException("invalid node index: " + i);
+		}
+		return table[i];
+	}
+
+	private static void writeAnnotations(DataOutputStream out, Map<Long, Collection<OntologyCategoryDto>> annotations) throws IOException {
+		if (annotations == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(annotations.size());
+		for (Map.Entry<Long, Collection<OntologyCategoryDto>> entry: annotations.entrySet()) {
+			out.writeLong(entry.getKey());
+			Collection<OntologyCategoryDto> categories = entry.getValue();
+			out.writeInt(categories.size());
+			for (OntologyCategoryDto category: categories) {
+				out.writeLong(category.getId());
+				out.writeDouble(category.getpValue());
+				out.writeDouble(category.getqValue());
+				out.writeInt(category.getNumAnnotatedInSample());
+				out.writeInt(category.getNumAnnotatedInTotal());
+			}
+		}
+	}
+
+	private static Map<Long, Collection<OntologyCategoryDto>> readAnnotations(DataInputStream in) throws IOException {
+		int size = readCount(in, 12);
+		if (size < 0) {
+			return null;
+		}
+		Map<Long, Collection<OntologyCategoryDto>> annotations = new Hashtable<Long, Collection<OntologyCategoryDto>>();
+		for (int i=0; i<size; i++) {
+			long nodeId = in.readLong();
+			int numCategories = readCount(in, 32);
+			Collection<OntologyCategoryDto> categories = new ArrayList<OntologyCategoryDto>(Math.max(numCategories, 0));
+			for (int j=0; j<numCategories; j++) {
+				OntologyCategoryDto category = new OntologyCategoryDto();
+				category.setId(in.readLong());
+				category.setpValue(in.readDouble());
+				category.setqValue(in.readDouble());
+				category.setNumAnnotatedInSample(in.readInt());
+				category.setNumAnnotatedInTotal(in.readInt());
+				categories.add(category);
+			}
+			annotations.put(nodeId, categories);
+		}
+		return annotations;
+	}
+
+	private static void writeAttributes(DataOutputStream out, Map<Long, Collection<AttributeDto>> attributes) throws IOException {
+		if (attributes == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(attributes.size());
+		for (Map.Entry<Long, Collection<AttributeDto>> entry: attributes.entrySet()) {
+			out.writeLong(entry.getKey());
+			Collection<AttributeDto> nodeAttributes = entry.getValue();
+			out.writeInt(nodeAttributes.size());
+			for (AttributeDto attribute: nodeAttributes) {
+				out.writeLong(attribute.getId());
+				out.writeLong(attribute.getGroupId());
+				out.writeDouble(attribute.getWeight());
+			}
+		}
+	}
+
+	private static Map<Long, Collection<AttributeDto>> readAttributes(DataInputStream in) throws IOException {
+		int size = readCount(in, 12);
+		if (size < 0) {
+			return null;
+		}
+		Map<Long, Collection<AttributeDto>> attributes = new Hashtable<Long, Collection<AttributeDto>>();
+		for (int i=0; i<size; i++) {
+			long nodeId = in.readLong();
+			int numAttributes = readCount(in, 24);
+			Collection<AttributeDto> nodeAttributes = new ArrayList<AttributeDto>(Math.max(numAttributes, 0));
+			for (int j=0; j<numAttributes; j++) {
+				AttributeDto attribute = new AttributeDto();
+				attribute.setId(in.readLong());
+				attribute.setGroupId(in.readLong());
+				attribute.setWeight(in.readDouble());
+				nodeAttributes.add(attribute);
+			}
+			attributes.put(nodeId, nodeAttributes);
+		}
+		return attributes;
+	}
+
+	private static void writeLongs(DataOutputStream out, Collection<Long> values) throws IOException {
+		if (values == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(values.size());
+		for (Long value: values) {
+			out.writeLong(value);
+		}
+	}
+
+	private static Collection<Long> readLongs(DataInputStream in) throws IOException {
+		int size = readCount(in, 8);
+		if (size < 0) {
+			return null;
+		}
+		Collection<Long> values = new ArrayList<Long>(size);
+		for (int i=0; i<size; i++) {
+			values.add(in.readLong());
+		}
+		return values;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte [] data = value.getBytes("UTF-8");
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readCount(in, 1);
+		if (length < 0) {
+			return null;
+		}
+		byte [] data = new byte[length];
+		in.readFully(data);
+		return new String(data, "UTF-8");
+	}
+
+	/*
+	 * read a collection size, -1 meaning null. checks against the bytes
+	 * left given the min size of an element, so corrupt data fails here
+	 * rather than with a huge allocation
+	 */
+	private static int readCount(DataInputStream in, int minElementBytes) throws IOException {
+		int count = in.readInt();
+		if (count < -1 || (long) count * minElementBytes > in.available()) {
+			throw new IOException("invalid count in binary message: " + count);
+		}
+		return count;
+	}
+}
@@ -24,6 +24,7 @@
  */
 package org.genemania.message;
 
+import java.io.IOException;
 
 public class RelatedGenesRequestMessage extends RelatedGenesMessageBase {
 
@@ -71,6 +72,14 @@ public class RelatedGenesRequestMessage extends RelatedGenesMessageBase {
 		return (RelatedGenesRequestMessage)XS.fromXML(xml);
 	}
 
+	public byte[] toBytes() throws IOException {
+		return BinaryMessageCodec.encode(this);
+	}
+
+	public static RelatedGenesRequestMessage fromBytes(byte[] data) throws IOException {
+		return BinaryMessageCodec.decodeRequest(data);
+	}
+
 	public int getAttributesLimit() {
 		return attributesLimit;
 	}
@@ -24,6 +24,7 @@
  */
 package org.genemania.message;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Hashtable;
@@ -78,4 +79,12 @@ public class RelatedGenesResponseMessage extends RelatedGenesMessageBase {
 		return (RelatedGenesResponseMessage)XS.fromXML(xml);
 	}
 
+	public byte[] toBytes() throws IOException {
+		return BinaryMessageCodec.encode(this);
+	}
+
+	public static RelatedGenesResponseMessage fromBytes(byte[] data) throws IOException {
+		return BinaryMessageCodec.decodeResponse(data);
+	}
+
 }
\ No newline at end of file
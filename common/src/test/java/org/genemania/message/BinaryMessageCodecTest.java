@@ -0,0 +1,211 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * BinaryMessageCodecTest: JUnit test class for BinaryMessageCodec
+ */
+package org.genemania.message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.genemania.AbstractTest;
+import org.genemania.dto.AttributeDto;
+import org.genemania.dto.InteractionDto;
+import org.genemania.dto.NetworkDto;
+import org.genemania.dto.NodeDto;
+import org.genemania.dto.OntologyCategoryDto;
+import org.junit.Test;
+
+public class BinaryMessageCodecTest extends AbstractTest {
+
+	// __[constructors]________________________________________________________
+	public BinaryMessageCodecTest() {
+		super();
+	}
+
+	// __[test cases]__________________________________________________________
+	@Test
+	public void testRequestRoundTrip() throws IOException {
+		RelatedGenesRequestMessage msg = new RelatedGenesRequestMessage();
+		msg.setOrganismId(4);
+		msg.setOntologyId(-1);
+		msg.setCombiningMethod("automatic");
+		List<Long> positiveNodes = new ArrayList<Long>();
+		positiveNodes.add(10L);
+		positiveNodes.add(20L);
+		msg.setPositiveNodes(positiveNodes);
+		msg.setNetworks(getNetworks(new NodeDto(10, 0), new NodeDto(20, 0)));
+		msg.setResultSize(50);
+		msg.setUserDefinedNetworkNamespace("user1");
+		msg.setAttributesLimit(10);
+
+		RelatedGenesRequestMessage copy = RelatedGenesRequestMessage.fromBytes(msg.toBytes());
+		assertEquals("organism", 4, copy.getOrganismId());
+		assertEquals("ontology", -1, copy.getOntologyId());
+		assertEquals("combining method", "automatic", copy.getCombiningMethod());
+		assertEquals("positive nodes", positiveNodes, new ArrayList<Long>(copy.getPositiveNodes()));
+		assertEquals("attribute groups", msg.getAttributeGroups().size(), copy.getAttributeGroups().size());
+		assertEquals("result size", 50, copy.getResultSize());
+		assertEquals("namespace", "user1", copy.getUserDefinedNetworkNamespace());
+		assertEquals("attributes limit", 10, copy.getAttributesLimit());
+		assertNetworksEqual(msg.getNetworks(), copy.getNetworks());
+	}
+
+	@Test
+	public void testResponseRoundTrip() throws IOException {
+		NodeDto node1 = new NodeDto(10, 0.5);
+		NodeDto node2 = new NodeDto(20, 0.25);
+		RelatedGenesResponseMessage msg = new RelatedGenesResponseMessage();
+		msg.setOrganismId(4);
+		List<NodeDto> nodes = new ArrayList<NodeDto>();
+		nodes.add(node1);
+		nodes.add(node2);
+		msg.setNodes(nodes);
+		msg.setNetworks(getNetworks(node1, node2));
+
+		Map<Long, Collection<OntologyCategoryDto>> annotations = new Hashtable<Long, Collection<OntologyCategoryDto>>();
+		OntologyCategoryDto category = new OntologyCategoryDto();
+		category.setId(7);
+		category.setpValue(0.01);
+		category.setqValue(0.02);
+		category.setNumAnnotatedInSample(3);
+		category.setNumAnnotatedInTotal(30);
+		Collection<OntologyCategoryDto> categories = new ArrayList<OntologyCategoryDto>();
+		categories.add(category);
+		annotations.put(10L, categories);
+		msg.setAnnotations(annotations);
+
+		Map<Long, Collection<AttributeDto>> attributes = new Hashtable<Long, Collection<AttributeDto>>();
+		AttributeDto attribute = new AttributeDto();
+		attribute.setId(8);
+		attribute.setGroupId(2);
+		attribute.setWeight(0.75);
+		Collection<AttributeDto> nodeAttributes = new ArrayList<AttributeDto>();
+		nodeAttributes.add(attribute);
+		attributes.put(20L, nodeAttributes);
+		msg.setAttributes(attributes);
+
+		RelatedGenesResponseMessage copy = RelatedGenesResponseMessage.fromBytes(msg.toBytes());
+		assertEquals("error code", 0, copy.getErrorCode());
+		assertEquals("organism", 4, copy.getOrganismId());
+		assertEquals("nodes", 2, copy.getNodes().size());
+		assertEquals("node id", 20, copy.getNodes().get(1).getId());
+		assertEquals("node score", 0.25, copy.getNodes().get(1).getScore(), 0d);
+		assertNetworksEqual(msg.getNetworks(), copy.getNetworks());
+
+		// interactions share the listed node objects, as they do before encoding
+		InteractionDto interaction = copy.getNetworks().iterator().next().getInteractions().iterator().next();
+		assertSame("shared node", copy.getNodes().get(0), interaction.getNodeVO1());
+
+		OntologyCategoryDto categoryCopy = copy.getAnnotations().get(10L).iterator().next();
+		assertEquals("category", 7, categoryCopy.getId());
+		assertEquals("p-value", 0.01, categoryCopy.getpValue(), 0d);
+		assertEquals("q-value", 0.02, categoryCopy.getqValue(), 0d);
+		assertEquals("sample", 3, categoryCopy.getNumAnnotatedInSample());
+		assertEquals("total", 30, categoryCopy.getNumAnnotatedInTotal());
+
+		AttributeDto attributeCopy = copy.getAttributes().get(20L).iterator().next();
+		assertEquals("attribute", 8, attributeCopy.getId());
+		assertEquals("group", 2, attributeCopy.getGroupId());
+		assertEquals("weight", 0.75, attributeCopy.getWeight(), 0d);
+	}
+
+	@Test
+	public void testErrorResponse() throws IOException {
+		RelatedGenesResponseMessage msg = new RelatedGenesResponseMessage();
+		msg.setErrorCode(1);
+		msg.setErrorMessage("no such organism");
+
+		RelatedGenesResponseMessage copy = RelatedGenesResponseMessage.fromBytes(msg.toBytes());
+		assertEquals("error code", 1, copy.getErrorCode());
+		assertEquals("error message", "no such organism", copy.getErrorMessage());
+		assertEquals("networks", msg.getNetworks().size(), copy.getNetworks().size());
+		assertEquals("annotations", msg.getAnnotations().size(), copy.getAnnotations().size());
+	}
+
+	@Test
+	public void testRejectsInvalidData() throws IOException {
+		RelatedGenesRequestMessage msg = new RelatedGenesRequestMessage();
+		byte[] data = msg.toBytes();
+
+		// a request isn't a response
+		try {
+			RelatedGenesResponseMessage.fromBytes(data);
+			fail("expected exception");
+		} catch (IOException e) {
+			// expected
+		}
+
+		// unknown version
+		byte[] badVersion = data.clone();
+		badVersion[4] = 99;
+		try {
+			RelatedGenesRequestMessage.fromBytes(badVersion);
+			fail("expected exception");
+		} catch (IOException e) {
+			// expected
+		}
+
+		// xml, or anything else
+		try {
+			RelatedGenesRequestMessage.fromBytes("<xml/>".getBytes("UTF-8"));
+			fail("expected exception");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	// __[private helpers]_____________________________________________________
+	private Collection<NetworkDto> getNetworks(NodeDto node1, NodeDto node2) {
+		NetworkDto network = new NetworkDto(1, 0.5);
+		network.setType("default");
+		network.addInteraction(new InteractionDto(node1, node2, 0.125));
+		network.addInteraction(new InteractionDto(node2, new NodeDto(30, 0), 1));
+		Collection<NetworkDto> networks = new ArrayList<NetworkDto>();
+		networks.add(network);
+		networks.add(new NetworkDto(2, 0.25));
+		return networks;
+	}
+
+	private void assertNetworksEqual(Collection<NetworkDto> expected, Collection<NetworkDto> actual) {
+		assertEquals("networks", expected.size(), actual.size());
+		Iterator<NetworkDto> actualNetworks = actual.iterator();
+		for (NetworkDto network: expected) {
+			NetworkDto actualNetwork = actualNetworks.next();
+			assertEquals("network id", network.getId(), actualNetwork.getId());
+			assertEquals("network weight", network.getWeight(), actualNetwork.getWeight(), 0d);
+			assertEquals("network type", network.getType(), actualNetwork.getType());
+			assertEquals("interactions", network.getInteractions().size(), actualNetwork.getInteractions().size());
+			Iterator<InteractionDto> actualInteractions = actualNetwork.getInteractions().iterator();
+			for (InteractionDto interaction: network.getInteractions()) {
+				InteractionDto actualInteraction = actualInteractions.next();
+				assertEquals("from", interaction.getNodeVO1().getId(), actualInteraction.getNodeVO1().getId());
+				assertEquals("to", interaction.getNodeVO2().getId(), actualInteraction.getNodeVO2().getId());
+				assertEquals("weight", interaction.getWeight(), actualInteraction.getWeight(), 0d);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.genemania.engine.matricks.MatrixAccumulator;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * combining networks with FloatSymMatrixAccumulator, as
+ * CombineNetworksOnly does for every query that misses the
+ * precombined cache. networks are either in the compressed format
+ * they're stored in, or the flex format they're built in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx6g"})
+public class CombineBenchmarks {
+
+    @Param({"6000", "20000", "40000"})
+    int nodes;
+
+    @Param({"50", "200", "1000"})
+    int networks;
+
+    @Param({"compressed", "flex"})
+    String format;
+
+    SymMatrix [] data;
+    double [] weights;
+
+    @Setup
+    public void setUp() {
+        data = SyntheticData.networks(nodes, networks, "compressed".equals(format), 1);
+        weights = new double[networks];
+        for (int i=0; i<networks; i++) {
+            weights[i] = 1d / (i+1);
+        }
+    }
+
+    @Benchmark
+    public FlexSymFloatMatrix combine() {
+        FlexSymFloatMatrix combined = new FlexSymFloatMatrix(nodes);
+        MatrixAccumulator adder = combined.accumulator();
+        while (adder.nextBlock()) {
+            for (int i=0; i<data.length; i++) {
+                adder.add(weights[i], data[i]);
+            }
+        }
+        return combined;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * sparse symmetric kernels on a single network: the matrix-vector
+ * product at the heart of label propagation, and the element-wise
+ * product sum used to build KtK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class MatrixBenchmarks {
+
+    @Param({"6000", "20000", "40000"})
+    int nodes;
+
+    FlexSymFloatMatrix network;
+    FlexSymFloatMatrix other;
+    double [] x;
+    double [] y;
+
+    @Setup
+    public void setUp() {
+        network = SyntheticData.network(nodes, 1);
+        other = SyntheticData.network(nodes, 2);
+        x = SyntheticData.scores(nodes, 3).getData();
+        y = new double[nodes];
+    }
+
+    @Benchmark
+    public double [] mult() {
+        network.mult(x, y);
+        return y;
+    }
+
+    @Benchmark
+    public double elementMultiplySum() {
+        return network.elementMultiplySum(other);
+    }
+
+    @Benchmark
+    public double elementMultiplySumSelf() {
+        return network.elementMultiplySum(network);
+    }
+}
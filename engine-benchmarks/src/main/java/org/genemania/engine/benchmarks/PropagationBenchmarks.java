@@ -0,0 +1,91 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Vector;
+
+import org.genemania.engine.core.propagation.PropagateLabels;
+import org.genemania.engine.matricks.MatrixAccumulator;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompressedSymFloatMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.exception.ApplicationException;
+import org.genemania.util.NullProgressReporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * label propagation over a combined network, for a query of the
+ * given number of genes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class PropagationBenchmarks {
+
+    // networks summed into the combined network
+    static final int COMBINED_NETWORKS = 10;
+
+    @Param({"6000", "20000", "40000"})
+    int nodes;
+
+    @Param({"20"})
+    int queryGenes;
+
+    SymMatrix combined;
+    DenseVector labels;
+
+    @Setup
+    public void setUp() {
+        SymMatrix [] networks = SyntheticData.networks(nodes, COMBINED_NETWORKS, true, 1);
+        FlexSymFloatMatrix sum = new FlexSymFloatMatrix(nodes);
+        MatrixAccumulator adder = sum.accumulator();
+        while (adder.nextBlock()) {
+            for (SymMatrix network: networks) {
+                adder.add(1d / COMBINED_NETWORKS, network);
+            }
+        }
+        combined = CompressedSymFloatMatrix.compress(sum);
+        labels = SyntheticData.labels(nodes, queryGenes, 2);
+    }
+
+    /*
+     * the labels are biased in place, so each call gets a copy
+     */
+    @Benchmark
+    public Vector propagate() throws ApplicationException {
+        return PropagateLabels.process(combined, labels.copy(), NullProgressReporter.instance());
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+
+import org.genemania.engine.core.integration.FeatureList;
+import org.genemania.engine.core.integration.FeatureWeightMap;
+import org.genemania.engine.core.integration.Solver;
+import org.genemania.exception.ApplicationException;
+import org.genemania.util.NullProgressReporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * solving the automatic weighting regression for the given
+ * number of networks, once KtK and KtT are built
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SolverBenchmarks {
+
+    @Param({"50", "200", "1000"})
+    int networks;
+
+    DenseMatrix KtK;
+    DenseVector KtT;
+    FeatureList features;
+
+    @Setup
+    public void setUp() {
+        int samples = 2*(networks+1);
+        KtK = SyntheticData.gram(networks, samples, 1);
+        KtT = SyntheticData.target(networks, samples, 1);
+        features = SyntheticData.features(networks);
+    }
+
+    @Benchmark
+    public FeatureWeightMap solve() throws ApplicationException {
+        return Solver.solve(KtK, KtT, features, NullProgressReporter.instance());
+    }
+}
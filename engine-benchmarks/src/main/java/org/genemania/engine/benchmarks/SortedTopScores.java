@@ -0,0 +1,105 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import no.uib.cipr.matrix.Vector;
+import no.uib.cipr.matrix.VectorEntry;
+
+/**
+ * the sort based top score selection MatrixUtils used before
+ * switching to a bounded heap, kept as a baseline for
+ * TopScoresBenchmarks.
+ */
+class SortedTopScores {
+
+    // same tolerance as MatrixUtils
+    private static final double DELTA = Math.pow(2, -20);
+
+    private SortedTopScores() {
+    }
+
+    static class IndexedScore implements Comparable<IndexedScore> {
+        int index;
+        double score;
+
+        public int compareTo(IndexedScore o) {
+            return -Double.compare(this.score, o.score); // the minus sign is for descending order
+        }
+    }
+
+    static int[] getIndicesForTopScores(Vector scores, List<Integer> indicesForPositiveNodes, int limitResults, double threshold) {
+
+        // build up the indexed score objects and sort
+        java.util.Vector<IndexedScore> indexedScores = new java.util.Vector<IndexedScore>();
+
+        for (VectorEntry e: scores) {
+            IndexedScore is = new IndexedScore();
+            is.index = e.index();
+            is.score = e.get();
+            indexedScores.add(is);
+        }
+
+        Collections.sort(indexedScores);
+
+        // extract the top limitresult scores not including
+        // the positive nodes, adding those in as well, in order.
+        HashSet<Integer> positiveSet = new HashSet<Integer>();
+        positiveSet.addAll(indicesForPositiveNodes);
+        int numQueryNodes = positiveSet.size();
+
+        int totalResults = limitResults + positiveSet.size();
+        int[] result = new int[totalResults];
+
+        int i = 0; // index into sorted scores
+        int j = 0; // index into results
+        int numQueryNodesAdded = 0;
+        int numNonQueryNodesAdded = 0;
+
+        while (i < scores.size() && (numQueryNodesAdded < numQueryNodes || numNonQueryNodesAdded < limitResults)) {
+            IndexedScore is = indexedScores.get(i);
+
+            if (positiveSet.contains(is.index)) {
+                positiveSet.remove(is.index);
+                numQueryNodesAdded += 1;
+                result[j] = is.index;
+                j += 1;
+            }
+            else if (numNonQueryNodesAdded < limitResults && is.score > (threshold + DELTA)) {
+                numNonQueryNodesAdded += 1;
+                result[j] = is.index;
+                j += 1;
+            }
+
+            i += 1;
+        }
+
+        if (j < totalResults) {
+            int[] tmp = new int[j];
+            System.arraycopy(result, 0, tmp, 0, j);
+            result = tmp;
+        }
+
+        return result;
+    }
+}
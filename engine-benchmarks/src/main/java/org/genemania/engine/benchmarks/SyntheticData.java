@@ -0,0 +1,231 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.Random;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+
+import org.genemania.engine.Constants.NetworkType;
+import org.genemania.engine.core.integration.Feature;
+import org.genemania.engine.core.integration.FeatureList;
+import org.genemania.engine.core.utils.Normalization;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompressedSymFloatMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+
+/**
+ * synthetic inputs for the benchmarks, generated from a fixed seed
+ * so runs are comparable.
+ *
+ * networks have a power-law degree distribution like real interaction
+ * networks, a few hubs and many low degree nodes. we use the Chung-Lu
+ * model: node i gets weight (i+1)^(-1/(gamma-1)), and each edge joins
+ * two nodes picked with probability proportional to their weights.
+ * edge weights are uniform, and networks are normalized as they are
+ * when loaded into the cache.
+ */
+public class SyntheticData {
+
+    // exponent of the degree distribution, typical of biological networks
+    public static final double GAMMA = 2.5;
+
+    // edges per node
+    public static final int AVERAGE_DEGREE = 20;
+
+    // at most this many distinct networks are generated. benchmarks over
+    // more networks than this cycle through them, which costs the same
+    // to compute but keeps memory in check at 40k nodes x 1000 networks
+    public static final int MAX_DISTINCT_NETWORKS = 20;
+
+    private SyntheticData() {
+    }
+
+    /*
+     * a normalized power law network, in the same float format
+     * networks are built in
+     */
+    public static FlexSymFloatMatrix network(int numNodes, long seed) {
+        Random random = new Random(seed);
+        double [] cumulative = chungLuWeights(numNodes);
+        double total = cumulative[numNodes-1];
+
+        FlexSymFloatMatrix network = new FlexSymFloatMatrix(numNodes);
+        long numEdges = (long) numNodes * AVERAGE_DEGREE / 2;
+        for (long e=0; e<numEdges; e++) {
+            int i = pick(cumulative, random.nextDouble() * total);
+            int j = pick(cumulative, random.nextDouble() * total);
+            if (i != j) {
+                network.set(i, j, random.nextDouble());
+            }
+        }
+        network.compact();
+        Normalization.normalizeNetwork(network);
+
+        return network;
+    }
+
+    /*
+     * as above, in the read-only format networks are stored in
+     */
+    public static CompressedSymFloatMatrix compressedNetwork(int numNodes, long seed) {
+        return (CompressedSymFloatMatrix) CompressedSymFloatMatrix.compress(network(numNodes, seed));
+    }
+
+    /*
+     * the given number of networks, sharing at most MAX_DISTINCT_NETWORKS
+     * distinct instances
+     */
+    public static SymMatrix [] networks(int numNodes, int numNetworks, boolean compressed, long seed) {
+        int numDistinct = Math.min(numNetworks, MAX_DISTINCT_NETWORKS);
+        SymMatrix [] distinct = new SymMatrix[numDistinct];
+        for (int i=0; i<numDistinct; i++) {
+            distinct[i] = compressed ? compressedNetwork(numNodes, seed + i) : network(numNodes, seed + i);
+        }
+
+        SymMatrix [] networks = new SymMatrix[numNetworks];
+        for (int i=0; i<numNetworks; i++) {
+            networks[i] = distinct[i % numDistinct];
+        }
+        return networks;
+    }
+
+    /*
+     * +1 for the given number of randomly chosen query nodes, -1 for
+     * the rest, as for a production find related query
+     */
+    public static DenseVector labels(int numNodes, int numPositives, long seed) {
+        Random random = new Random(seed);
+        DenseVector labels = new DenseVector(numNodes);
+        for (int i=0; i<numNodes; i++) {
+            labels.set(i, -1d);
+        }
+        for (int i=0; i<numPositives; i++) {
+            labels.set(random.nextInt(numNodes), 1d);
+        }
+        return labels;
+    }
+
+    public static int [] positives(DenseVector labels) {
+        int count = 0;
+        for (int i=0; i<labels.size(); i++) {
+            if (labels.get(i) > 0) {
+                count++;
+            }
+        }
+        int [] positives = new int[count];
+        int k = 0;
+        for (int i=0; i<labels.size(); i++) {
+            if (labels.get(i) > 0) {
+                positives[k++] = i;
+            }
+        }
+        return positives;
+    }
+
+    /*
+     * scores spread like a discriminant, mostly near the negative
+     * label value with a tail of about 1 in 8 above zero
+     */
+    public static DenseVector scores(int numNodes, long seed) {
+        Random random = new Random(seed);
+        DenseVector scores = new DenseVector(numNodes);
+        for (int i=0; i<numNodes; i++) {
+            scores.set(i, -1d + Math.exp(4*random.nextDouble() - 3.5));
+        }
+        return scores;
+    }
+
+    /*
+     * KtK, KtT and features of the automatic weighting regression for
+     * the given number of networks, with the bias term first. K is
+     * random with a shared component so the networks are correlated,
+     * as they are in practice.
+     */
+    public static DenseMatrix gram(int numNetworks, int numSamples, long seed) {
+        DenseMatrix K = design(numNetworks, numSamples, seed);
+        return (DenseMatrix) K.transAmult(K, new DenseMatrix(numNetworks+1, numNetworks+1));
+    }
+
+    public static DenseVector target(int numNetworks, int numSamples, long seed) {
+        DenseMatrix K = design(numNetworks, numSamples, seed);
+        Random random = new Random(seed + 1);
+        DenseVector t = new DenseVector(numSamples);
+        for (int i=0; i<numSamples; i++) {
+            t.set(i, random.nextGaussian());
+        }
+        return (DenseVector) K.transMult(t, new DenseVector(numNetworks+1));
+    }
+
+    public static FeatureList features(int numNetworks) {
+        FeatureList features = new FeatureList(numNetworks+1);
+        features.add(new Feature(NetworkType.BIAS, 0, 0));
+        for (int i=0; i<numNetworks; i++) {
+            features.add(new Feature(NetworkType.SPARSE_MATRIX, 0, i+1));
+        }
+        return features;
+    }
+
+    private static DenseMatrix design(int numNetworks, int numSamples, long seed) {
+        Random random = new Random(seed);
+        DenseMatrix K = new DenseMatrix(numSamples, numNetworks+1);
+        for (int i=0; i<numSamples; i++) {
+            double shared = random.nextGaussian();
+            K.set(i, 0, 1d);
+            for (int j=1; j<=numNetworks; j++) {
+                K.set(i, j, shared + random.nextGaussian());
+            }
+        }
+        return K;
+    }
+
+    /*
+     * cumulative Chung-Lu node weights
+     */
+    private static double [] chungLuWeights(int numNodes) {
+        double [] cumulative = new double[numNodes];
+        double exponent = -1d / (GAMMA - 1d);
+        double sum = 0;
+        for (int i=0; i<numNodes; i++) {
+            sum += Math.pow(i+1, exponent);
+            cumulative[i] = sum;
+        }
+        return cumulative;
+    }
+
+    /*
+     * first index whose cumulative weight exceeds x
+     */
+    private static int pick(double [] cumulative, double x) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] > x) {
+                high = mid;
+            }
+            else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
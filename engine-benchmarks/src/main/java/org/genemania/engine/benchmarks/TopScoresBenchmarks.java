@@ -0,0 +1,81 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import no.uib.cipr.matrix.DenseVector;
+
+import org.genemania.engine.Constants;
+import org.genemania.engine.core.MatrixUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * selecting the top scoring nodes for the response, with the bounded
+ * heap in MatrixUtils against the full sort it replaced
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TopScoresBenchmarks {
+
+    @Param({"6000", "20000", "40000"})
+    int nodes;
+
+    @Param({"20", "100"})
+    int limitResults;
+
+    DenseVector scores;
+    List<Integer> positives;
+
+    @Setup
+    public void setUp() {
+        scores = SyntheticData.scores(nodes, 1);
+        positives = new ArrayList<Integer>();
+        for (int index: SyntheticData.positives(SyntheticData.labels(nodes, 20, 2))) {
+            positives.add(index);
+        }
+    }
+
+    @Benchmark
+    public int [] boundedHeap() {
+        return MatrixUtils.getIndicesForTopScores(scores, positives, limitResults, Constants.DISCRIMINANT_THRESHOLD);
+    }
+
+    @Benchmark
+    public int [] fullSort() {
+        return SortedTopScores.getIndicesForTopScores(scores, positives, limitResults, Constants.DISCRIMINANT_THRESHOLD);
+    }
+}
@@ -38,6 +38,26 @@ public class Constants {
     public static final int DEFAULT_ATTRIBUTE_ENRICHMENT_MAX_SIZE = 100;
     
     public static final double DISCRIMINANT_THRESHOLD = 0.0d;
+
+    // label propagation solver
+    public static final PreconditionerType DEFAULT_PROPAGATION_PRECONDITIONER = PreconditionerType.JACOBI;
+    public static final double DEFAULT_PROPAGATION_TOLERANCE = 1e-10;
+    public static final int DEFAULT_PROPAGATION_MAX_ITERATIONS = 100000;
+    public static final boolean DEFAULT_PROPAGATION_WARM_START_ENABLED = false;
+    public static final int DEFAULT_PROPAGATION_WARM_START_CACHE_SIZE = 64;
+    public static final int DEFAULT_PROPAGATION_BLOCK_SIZE = 8;
+    public static final int DEFAULT_MATRIX_THREADS = 0;
+    public static final boolean DEFAULT_MAPPED_CACHE_ENABLED = false;
+    public static final long DEFAULT_MEM_CACHE_MAX_BYTES = 0;
+    public static final long DEFAULT_MEM_CACHE_MAX_PINNED_BYTES = 0;
+    public static final int DEFAULT_GRAM_BUILDER_THREADS = 0;
+    public static final int DEFAULT_SOURCE_INTERACTION_THREADS = 0;
+    public static final int DEFAULT_PROFILE_TO_NETWORK_THREADS = 0;
+    public static final long DEFAULT_RESULT_CACHE_MAX_BYTES = 0;
+    public static final int DEFAULT_PRECOMBINE_QUERY_THRESHOLD = 0;
+    public static final long DEFAULT_PRECOMBINE_MAX_BYTES = 1024L*1024*1024;
+    public static final boolean DEFAULT_METRICS_ENABLED = true;
+    public static final long DEFAULT_SLOW_QUERY_MILLIS = 0;
     
     // TODO: lets make this next value property-loadable
     public static final int DEFAULT_AUTO_SELECT_MIN_GENE_THRESHOLD = 5;
@@ -81,6 +101,11 @@ public class Constants {
         }
     }
 
+    // preconditioners available to the label propagation cg solver
+    public enum PreconditionerType {
+        NONE, JACOBI, INCOMPLETE_CHOLESKY
+    }
+
     // define available scoring methods
     public enum ScoringMethod {
         DISCRIMINANT, CONTEXT, ZSCORE
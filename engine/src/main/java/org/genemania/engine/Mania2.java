@@ -95,7 +95,9 @@ public class Mania2 implements IMania {
 
     @Override
     public void clearMemCache() {
-        logger.warn("mem cache clearing not implemented");
+        cache.getResultCache().clear();
+        cache.clearCombinedNetworkIndex();
+        logger.info("cleared result cache and precombined network index");
     }
 
     @Override
@@ -25,7 +25,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import no.uib.cipr.matrix.DenseVector;
-import org.apache.commons.math.special.Gamma;
 import org.apache.log4j.Logger;
 import org.genemania.dto.EnrichmentEngineRequestDto;
 import org.genemania.dto.EnrichmentEngineResponseDto;
@@ -39,9 +38,13 @@ import org.genemania.engine.core.data.GoAnnotations;
 import org.genemania.engine.core.data.GoIds;
 import org.genemania.engine.core.data.NodeDegrees;
 import org.genemania.engine.core.data.NodeIds;
+import org.genemania.engine.core.utils.HyperGeometric;
 import org.genemania.engine.core.utils.Logging;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.metrics.RequestTimings;
+import org.genemania.engine.metrics.RequestTimings.Stage;
 import org.genemania.exception.ApplicationException;
 
 /**
@@ -54,6 +57,7 @@ public class ComputeEnrichment {
 
     private long requestStartTimeMillis;
     private long requestEndTimeMillis;
+    private RequestTimings timings;
 
     public ComputeEnrichment(DataCache cache, EnrichmentEngineRequestDto request) {
         this.cache = cache;
@@ -64,6 +68,7 @@ public class ComputeEnrichment {
      * main request processing logic
      */
     public EnrichmentEngineResponseDto process() throws ApplicationException {
+        timings = RequestTimings.begin("computeEnrichment");
         try {
             requestStartTimeMillis = System.currentTimeMillis();
 
@@ -71,9 +76,12 @@ public class ComputeEnrichment {
             checkQuery();
             logQuery();
 
+            long t1 = System.nanoTime();
             EnrichmentEngineResponseDto response = computeEnrichment();
+            timings.record(Stage.ENRICHMENT, System.nanoTime() - t1);
             
             requestEndTimeMillis = System.currentTimeMillis();
+            timings.finish();
             logEnd();
 
             return response;
@@ -82,6 +90,9 @@ public class ComputeEnrichment {
             logger.info("request was cancelled");
             return null;
         }
+        finally {
+            timings.discard();
+        }
     }
 
     EnrichmentEngineResponseDto computeEnrichment() throws CancellationException, ApplicationException {
@@ -117,8 +128,19 @@ public class ComputeEnrichment {
         DenseVector sampleMask = makeGeneMaskVector(nodeIds, numGenes);
         dotMult(sampleMask, backgroundMask);
         
+        // only walk the annotations of the genes in the sample
         DenseVector sampleCounts = new DenseVector(numCategories);
-        annoData.transMult(sampleMask.getData(), sampleCounts.getData());
+        double [] sampleCountsData = sampleCounts.getData();
+        double [] sampleMaskData = sampleMask.getData();
+        for (int index = 0; index < numGenes; index++) {
+            if (sampleMaskData[index] == 0d) {
+                continue;
+            }
+            MatrixCursor cursor = annoData.rowCursor(index);
+            while (cursor.next()) {
+                sampleCountsData[cursor.col()] += sampleMaskData[index] * cursor.val();
+            }
+        }
 
         // only count number of genes in sample that are in the background
         //long n = request.getNodes().size();
@@ -137,9 +159,15 @@ public class ComputeEnrichment {
                 throw new CancellationException();
             }
 
-            long x = Math.round(sampleCounts.get(category));
-            long k = Math.round(backgroundCounts.get(category));
-            double pval = computeCumulHyperGeo(x, N, n, k);
+            // p(X >= 0) is 1, common enough to be worth skipping
+            int x = (int) Math.round(sampleCounts.get(category));
+            if (x == 0) {
+                pvals.set(category, 1d);
+                continue;
+            }
+
+            int k = (int) Math.round(backgroundCounts.get(category));
+            double pval = HyperGeometric.upperTail(x, N, (int) n, k);
 
             pvals.set(category, pval);
         }
@@ -244,20 +272,18 @@ public class ComputeEnrichment {
             Map<String, OntologyCategoryDto> categoryIdToVO) throws ApplicationException {
 
         Map<Long, Collection<OntologyCategoryDto>> annotations = new HashMap<Long, Collection<OntologyCategoryDto>>();
-        int numCategories = goAnnos.getData().numCols();
         Matrix annoData = goAnnos.getData();
         for (Long nodeId: request.getNodes()) {
             Collection<OntologyCategoryDto> categories = new ArrayList<OntologyCategoryDto>();
 
             int index = nodeIds.getIndexForId(nodeId);
 
-            // this loop doesn't take advantage of the sparsity of the goAnnos matrix,
-            // it tests each category
-            for (int category=0; category<numCategories; category++) {
-                double x = annoData.get(index, category);
-                long longx = Math.round(x);
+            // visit only the categories the node is annotated to
+            MatrixCursor cursor = annoData.rowCursor(index);
+            while (cursor.next()) {
+                long longx = Math.round(cursor.val());
                 if (longx == 1) {
-                    String categoryName = goIds.getIdForIndex(category);
+                    String categoryName = goIds.getIdForIndex(cursor.col());
                     OntologyCategoryDto categoryVO = categoryIdToVO.get(categoryName);
 
                     // only the *enriched* categories are in the map
@@ -282,27 +308,15 @@ public class ComputeEnrichment {
      * compute h(x; N, n, k) = C(k, x) * C(N-k, n-x) / C(N, n)
      */
     public static double computeHyperGeo(double x, double N, double n, double k) {
-        double h = Gamma.logGamma(k+1) - Gamma.logGamma(k-x+1) - Gamma.logGamma(x+1)
-                   + Gamma.logGamma(N-k+1) - Gamma.logGamma(N-k-n+x+1) - Gamma.logGamma(n-x+1)
-                   - Gamma.logGamma(N+1) + Gamma.logGamma(N-n+1) + Gamma.logGamma(n+1);
-        
-        return Math.exp(h);
+        return HyperGeometric.pmf((int) Math.round(x), (int) Math.round(N), (int) Math.round(n), (int) Math.round(k));
     }
 
 
     /*
-     * TODO: special case this for large x, so compute the sum the other way to reduce terms
-     *
-     * p(X > x; N, n, k)
+     * p(X >= x; N, n, k), see HyperGeometric
      */
     public static double computeCumulHyperGeo(double x, double N, double n, double k) {
-        double p = 0;
-        double upperBound = Math.min(n, k);
-        for (double i=x; i<=upperBound; i++) {
-            p += computeHyperGeo(i, N, n, k);
-        }
-
-        return p;
+        return HyperGeometric.upperTail((int) Math.round(x), (int) Math.round(N), (int) Math.round(n), (int) Math.round(k));
     }
 
     public static DenseVector computeFDRqval(int N, DenseVector pvals) {
@@ -402,7 +416,8 @@ public class ComputeEnrichment {
     }
 
     void logEnd() {
-        logger.info("completed processing request, duration = " + Logging.duration(requestStartTimeMillis, requestEndTimeMillis));
+        String stages = timings.toString();
+        logger.info("completed processing request, duration = " + Logging.duration(requestStartTimeMillis, requestEndTimeMillis) + (stages.length() > 0 ? ", " + stages : ""));
     }
 
     void logQuery() {
@@ -23,10 +23,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import no.uib.cipr.matrix.DenseMatrix;
 import no.uib.cipr.matrix.DenseVector;
@@ -43,6 +45,7 @@ import org.genemania.engine.Constants;
 import org.genemania.engine.Constants.NetworkType;
 import org.genemania.engine.Constants.ScoringMethod;
 import org.genemania.engine.cache.DataCache;
+import org.genemania.engine.config.Config;
 import org.genemania.engine.core.MatrixUtils;
 import org.genemania.engine.core.data.AttributeData;
 import org.genemania.engine.core.data.AttributeGroups;
@@ -53,12 +56,18 @@ import org.genemania.engine.core.data.NetworkIds;
 import org.genemania.engine.core.data.NodeIds;
 import org.genemania.engine.core.integration.Feature;
 import org.genemania.engine.core.integration.FeatureWeightMap;
+import org.genemania.engine.core.integration.calculators.AbstractNetworkWeightCalculator;
 import org.genemania.engine.core.mania.CoreMania;
 import org.genemania.engine.core.utils.Logging;
+import org.genemania.engine.core.utils.Parallel;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.labels.LabelVectorGenerator;
 import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.metrics.RequestTimings;
+import org.genemania.engine.metrics.RequestTimings.Count;
+import org.genemania.engine.metrics.RequestTimings.Stage;
 import org.genemania.exception.ApplicationException;
 import org.genemania.type.CombiningMethod;
 
@@ -84,6 +93,7 @@ public class FindRelated {
 
     private long requestStartTimeMillis;
     private long requestEndTimeMillis;
+    private RequestTimings timings;
     
     public FindRelated(DataCache cache, RelatedGenesEngineRequestDto request) {
         this.cache = cache;
@@ -95,39 +105,35 @@ public class FindRelated {
      */
     public RelatedGenesEngineResponseDto process() throws ApplicationException {
         try {
-            requestStartTimeMillis = System.currentTimeMillis();
-
-            logStart();
-            checkQuery();
-            logQuery();
-            
-            ArrayList<Long> negativeNodes = new ArrayList<Long>();
-
-            Vector labels = LabelVectorGenerator.createLabelsFromIds(cache.getNodeIds(request.getOrganismId()),
-                    request.getPositiveNodes(), negativeNodes, posLabelValue, negLabelValue, unLabeledValueProduction);
+            begin(RequestTimings.begin("findRelated"));
+
+            String resultKey = getResultKey();
+            long resultGeneration = cache.getResultCache().getGeneration();
+            if (resultKey != null) {
+                RelatedGenesEngineResponseDto cached = (RelatedGenesEngineResponseDto) cache.getResultCache().get(resultKey);
+                if (cached != null) {
+                    logger.info("found response in result cache");
+                    timings.count(Count.RESULT_CACHE_HITS, 1);
+                    timings.finish();
+                    end();
+                    return cached;
+                }
+                timings.count(Count.RESULT_CACHE_HITS, 0);
+            }
 
-            String goCategory = null;
+            Vector labels = createLabels();
 
             // crunch the numbers
-            org.genemania.engine.Constants.CombiningMethod combiningMethod = Constants.convertCombiningMethod(request.getCombiningMethod(), request.getPositiveNodes().size());
-            org.genemania.engine.Constants.ScoringMethod scoringMethod = Constants.convertScoringMethod(request.getScoringMethod());
-
-            Collection<Collection<Long>> idList = request.getInteractionNetworks();
-
             CoreMania coreMania = new CoreMania(cache, request.getProgressReporter());
-            coreMania.compute(safeGetNamespace(), request.getOrganismId(), labels, combiningMethod, idList, request.getAttributeGroups(), request.getAttributesLimit(), goCategory, "average");
-            SymMatrix partiallyCombinedKernel = coreMania.getPartiallyCombinedKernel();
-            FeatureWeightMap featureWeights = coreMania.getFeatureWeights();
-            Vector discriminant = coreMania.getDiscriminant();
-            Vector score = convertScore(scoringMethod, discriminant, partiallyCombinedKernel, labels, posLabelValue, negLabelValue);
+            coreMania.compute(safeGetNamespace(), request.getOrganismId(), labels, getCombiningMethod(), request.getInteractionNetworks(), request.getAttributeGroups(), request.getAttributesLimit(), null, "average");
+            RelatedGenesEngineResponseDto response = respond(coreMania, labels, coreMania.getDiscriminant());
             
-            double scoreThreshold = selectScoreThreshold(scoringMethod);
-            RelatedGenesEngineResponseDto response = prepareResponse(score, discriminant,
-                    featureWeights, partiallyCombinedKernel, scoreThreshold, scoringMethod, Constants.convertCombiningMethod(combiningMethod));
-            
-            requestEndTimeMillis = System.currentTimeMillis();
+            if (resultKey != null) {
+                cache.getResultCache().put(resultKey, response, resultGeneration);
+            }
 
-            logEnd();
+            timings.finish();
+            end();
 
             return response;
         }
@@ -135,6 +141,64 @@ public class FindRelated {
             logger.info("request was cancelled");
             return null;
         }
+        finally {
+            timings.discard();
+        }
+    }
+
+    /*
+     * validate and log the request, before any computation. stages
+     * are recorded against the given timings, which belong to the caller.
+     */
+    void begin(RequestTimings timings) throws ApplicationException {
+        this.timings = timings;
+        requestStartTimeMillis = System.currentTimeMillis();
+        logStart();
+        checkQuery();
+        logQuery();
+    }
+
+    /*
+     * label vector for the request's query nodes
+     */
+    Vector createLabels() throws ApplicationException {
+        ArrayList<Long> negativeNodes = new ArrayList<Long>();
+
+        long t1 = System.nanoTime();
+        Vector labels = LabelVectorGenerator.createLabelsFromIds(cache.getNodeIds(request.getOrganismId()),
+                request.getPositiveNodes(), negativeNodes, posLabelValue, negLabelValue, unLabeledValueProduction);
+        timings.record(Stage.LABELS, System.nanoTime() - t1);
+        return labels;
+    }
+
+    void end() {
+        requestEndTimeMillis = System.currentTimeMillis();
+        logEnd();
+    }
+
+    org.genemania.engine.Constants.CombiningMethod getCombiningMethod() throws ApplicationException {
+        return Constants.convertCombiningMethod(request.getCombiningMethod(), request.getPositiveNodes().size());
+    }
+
+    /*
+     * build the response from the discriminant propagated from the
+     * given labels, over the network last combined by coreMania
+     */
+    RelatedGenesEngineResponseDto respond(CoreMania coreMania, Vector labels, Vector discriminant) throws ApplicationException {
+        org.genemania.engine.Constants.CombiningMethod combiningMethod = getCombiningMethod();
+        org.genemania.engine.Constants.ScoringMethod scoringMethod = Constants.convertScoringMethod(request.getScoringMethod());
+
+        SymMatrix partiallyCombinedKernel = coreMania.getPartiallyCombinedKernel();
+        FeatureWeightMap featureWeights = coreMania.getFeatureWeights();
+        Vector score = convertScore(scoringMethod, discriminant, partiallyCombinedKernel, labels, posLabelValue, negLabelValue);
+
+        double scoreThreshold = selectScoreThreshold(scoringMethod);
+        return prepareResponse(score, discriminant,
+                featureWeights, partiallyCombinedKernel, scoreThreshold, scoringMethod, Constants.convertCombiningMethod(combiningMethod));
+    }
+
+    RelatedGenesEngineRequestDto getRequest() {
+        return request;
     }
 
     /*
@@ -427,6 +491,7 @@ public class FindRelated {
         // for each of these selected nodes we return the context score. 
         // but for most scoring method (z-score, discriminant) we select and report using 
         // the same scoring system. special case here.
+        long t1 = System.nanoTime();
         int [] indicesForTopScores;
         if (scoringMethod == ScoringMethod.CONTEXT) {
             indicesForTopScores = MatrixUtils.getIndicesForTopScores(discriminant, indicesForPositiveNodes, request.getLimitResults(), scoreThreshold);
@@ -434,6 +499,7 @@ public class FindRelated {
         else {
             indicesForTopScores = MatrixUtils.getIndicesForTopScores(score, indicesForPositiveNodes, request.getLimitResults(), scoreThreshold);            
         }
+        RequestTimings.current().record(Stage.TOP_SCORES, System.nanoTime() - t1);
         
         logger.debug(String.format("number of nodes available for return: %d", indicesForTopScores.length));
 
@@ -444,12 +510,17 @@ public class FindRelated {
         // source interactions connecting the selected nodes. we don't apply the computed network weights
         // so just the raw interaction weights from each network
         logger.debug("extracting source interactions");
+        t1 = System.nanoTime();
         getSourceInteractions(response, indicesForTopScores, score, featureWeights);
+        RequestTimings.current().record(Stage.SOURCE_INTERACTIONS, System.nanoTime() - t1);
+        RequestTimings.current().count(Count.INTERACTIONS, countInteractions(response));
   
         // while attribute are treated in a manner making them equivalent to networks, users
         // consider them to be separate entities, and we report them in a separate structure.
         logger.debug("extracting attributes");
+        t1 = System.nanoTime();
         encodeAttributes(response, indicesForTopScores, featureWeights);
+        RequestTimings.current().record(Stage.ATTRIBUTES, System.nanoTime() - t1);
         
         
         // for e.g. auto-select combining, we chose an specific combining method based
@@ -460,68 +531,71 @@ public class FindRelated {
         return response;
     }
     
+    private static long countInteractions(RelatedGenesEngineResponseDto response) {
+        long count = 0;
+        for (NetworkDto network: response.getNetworks()) {
+            count += network.getInteractions().size();
+        }
+        return count;
+    }
+
     /**
      * return a collection of interaction objects from the network.
      * don't include the symmetric interactions (assume the matrix is
      * symmetric with 0 diagonal and convert only lower triangle)
      *
+     * only the stored interactions of the selected nodes are visited,
+     * rather than looking up every pair of selected nodes.
+     *
      * @param network
      * @return
      */
     public Collection<InteractionDto> matrixToInteractions(SymMatrix network, int[] indicesForTopScores, HashMap<Long, NodeDto> nodeVOs) throws ApplicationException {
-
-        ArrayList<InteractionDto> interactions = new ArrayList<InteractionDto>();
-
-
         NodeIds nodeIds = cache.getNodeIds(request.getOrganismId());
+        return matrixToInteractions(network, indicesForTopScores, nodeIds, nodeVOs);
+    }
 
-        for (int i = 0; i < indicesForTopScores.length; i++) {
-            for (int j = 0; j < i; j++) {
-                int idx = indicesForTopScores[i];
-                int jdx = indicesForTopScores[j];
-                long from = nodeIds.getIdForIndex(idx);
-                long to = nodeIds.getIdForIndex(jdx);
-                double weight = network.get(idx, jdx);
-
-                // we'll be getting 0 from the sparse matrix for
-                // interactions that are not present, filter out
-                if (weight == 0d) {
-                    continue;
-                }
+    Collection<InteractionDto> matrixToInteractions(SymMatrix network, int[] indicesForTopScores, NodeIds nodeIds, Map<Long, NodeDto> nodeVOs) throws ApplicationException {
 
-                NodeDto fromNodeVO = nodeVOs.get(from);
-                NodeDto toNodeVO = nodeVOs.get(to);
+        ArrayList<InteractionDto> interactions = new ArrayList<InteractionDto>();
 
-                if (fromNodeVO == null || toNodeVO == null) {
-                    throw new ApplicationException("mapping error");
-                }
+        MatrixCursor cursor = network.inducedCursor(indicesForTopScores);
+        while (cursor.next()) {
+            long from = nodeIds.getIdForIndex(indicesForTopScores[cursor.row()]);
+            long to = nodeIds.getIdForIndex(indicesForTopScores[cursor.col()]);
+
+            NodeDto fromNodeVO = nodeVOs.get(from);
+            NodeDto toNodeVO = nodeVOs.get(to);
 
-                InteractionDto interaction = new InteractionDto();
-                interaction.setNodeVO1(fromNodeVO);
-                interaction.setNodeVO2(toNodeVO);
-                interaction.setWeight(weight);
-                interactions.add(interaction);
+            if (fromNodeVO == null || toNodeVO == null) {
+                throw new ApplicationException("mapping error");
             }
+
+            InteractionDto interaction = new InteractionDto();
+            interaction.setNodeVO1(fromNodeVO);
+            interaction.setNodeVO2(toNodeVO);
+            interaction.setWeight(cursor.val());
+            interactions.add(interaction);
         }
 
         return interactions;
-
     }
 
     /*
-     * update response with list of network dto's, and node dto's
+     * update response with list of network dto's, and node dto's.
+     * networks are loaded and converted in parallel, the resulting
+     * list is in the same order as for a serial pass.
      */
-    public void getSourceInteractions(RelatedGenesEngineResponseDto response, int[] indicesForTopScores, Vector scores,
+    public void getSourceInteractions(RelatedGenesEngineResponseDto response, final int[] indicesForTopScores, Vector scores,
             FeatureWeightMap featureWeights) throws ApplicationException {
 
-        List<NetworkDto> sourceNetworks = new ArrayList<NetworkDto>();
+        final NodeIds nodeIds = cache.getNodeIds(request.getOrganismId());
 
         // build up NodeVO's which we'll use in our interaction graph
-        HashMap<Long, NodeDto> nodeVOs = new HashMap<Long, NodeDto>();
+        final HashMap<Long, NodeDto> nodeVOs = new HashMap<Long, NodeDto>();
         for (int i = 0; i < indicesForTopScores.length; i++) {
             NodeDto nodeVO = new NodeDto();
 
-            NodeIds nodeIds = cache.getNodeIds(request.getOrganismId());
             long nodeId = nodeIds.getIdForIndex(indicesForTopScores[i]);
 
             double score = scores.get(indicesForTopScores[i]);
@@ -531,17 +605,16 @@ public class FindRelated {
             nodeVOs.put(nodeId, nodeVO);
         }
 
+        final String namespace = safeGetNamespace();
+        List<Callable<NetworkDto>> tasks = new ArrayList<Callable<NetworkDto>>();
+
         for (Feature feature: featureWeights.keySet()) {
             if (feature.getType() != NetworkType.SPARSE_MATRIX) {
                 continue;
             }
 
-            if (request.getProgressReporter().isCanceled()) {
-                throw new CancellationException();
-            }
-
             Double weight = featureWeights.get(feature);
-            long networkId = feature.getId();
+            final long networkId = feature.getId();
             
             // debug logging for network weights
             if (weight == null) {
@@ -555,20 +628,29 @@ public class FindRelated {
                 continue;
             }
 
-            NetworkDto sourceNetwork = new NetworkDto();
+            final NetworkDto sourceNetwork = new NetworkDto();
             sourceNetwork.setWeight(weight);
             sourceNetwork.setId(networkId);
 
-            Network network = cache.getNetwork(safeGetNamespace(), request.getOrganismId(), networkId);
-            Collection<InteractionDto> sourceInteractions = matrixToInteractions(network.getData(), indicesForTopScores, nodeVOs);
-            sourceNetwork.setInteractions(sourceInteractions);
+            tasks.add(new Callable<NetworkDto>() {
+                public NetworkDto call() throws ApplicationException {
+                    if (request.getProgressReporter().isCanceled()) {
+                        throw new CancellationException();
+                    }
+
+                    Network network = cache.getNetwork(namespace, request.getOrganismId(), networkId);
+                    Collection<InteractionDto> sourceInteractions = matrixToInteractions(network.getData(), indicesForTopScores, nodeIds, nodeVOs);
+                    sourceNetwork.setInteractions(sourceInteractions);
 
-            //logger.debug(String.format("network %s has a weight of %s and contains %s interactions", networkId, weight, sourceInteractions.size()));
-            //SimpleModelConverter.logInteractions(networkId, sourceInteractions);
+                    //logger.debug(String.format("network %s has a weight of %s and contains %s interactions", networkId, weight, sourceInteractions.size()));
+                    //SimpleModelConverter.logInteractions(networkId, sourceInteractions);
 
-            sourceNetworks.add(sourceNetwork);
+                    return sourceNetwork;
+                }
+            });
         }
 
+        List<NetworkDto> sourceNetworks = Parallel.invokeAll(tasks, Config.instance().getSourceInteractionThreads());
         response.setNetworks(sourceNetworks);
         
         // add in the list of nodes separately in the result, nodes with attributes but not connected to networks
@@ -601,7 +683,13 @@ public class FindRelated {
     }
 
     private void logEnd() {
-        logger.info("completed processing request, duration = " + Logging.duration(requestStartTimeMillis, requestEndTimeMillis));
+        String stages = timings.toString();
+        logger.info("completed processing request, duration = " + Logging.duration(requestStartTimeMillis, requestEndTimeMillis) + (stages.length() > 0 ? ", " + stages : ""));
+        long slowQueryMillis = Config.instance().getSlowQueryMillis();
+        if (slowQueryMillis > 0 && requestEndTimeMillis - requestStartTimeMillis >= slowQueryMillis) {
+            logger.warn(String.format("slow findRelated query using combining method %s for organism %d with %d nodes, %d networks and %d attribute groups: %s",
+                    request.getCombiningMethod(), request.getOrganismId(), request.getPositiveNodes().size(), numRequestNetworks, numRequestAttributeGroups, timings));
+        }
         request.getProgressReporter().setStatus(Constants.PROGRESS_COMPLETE_MESSAGE);
         request.getProgressReporter().setProgress(Constants.PROGRESS_COMPLETE);
     }
@@ -748,13 +836,46 @@ public class FindRelated {
         return attributeGroups.size();
     }
 
+    /*
+     * key identifying the response to this query in the result cache,
+     * or null if the response shouldn't be cached. everything the
+     * response depends on goes in the key, with the query nodes,
+     * network groups and attribute groups put in a canonical order.
+     *
+     * queries with user networks or attributes aren't cached, user
+     * data sets can be changed by other processes sharing the cache
+     * dir without our result cache hearing about it.
+     */
+    String getResultKey() {
+        if (!cache.getResultCache().isEnabled() || hasUserNetworks || hasUserAttributes) {
+            return null;
+        }
+
+        ArrayList<Long> nodes = new ArrayList<Long>(request.getPositiveNodes());
+        Collections.sort(nodes);
+        ArrayList<Long> attributeGroups = new ArrayList<Long>(request.getAttributeGroups());
+        Collections.sort(attributeGroups);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(safeGetNamespace()).append('|').append(request.getOrganismId());
+        builder.append('|').append(nodes);
+        builder.append('|').append(AbstractNetworkWeightCalculator.formattedNetworkList(request.getInteractionNetworks()));
+        builder.append('|').append(attributeGroups);
+        builder.append('|').append(request.getCombiningMethod());
+        builder.append('|').append(request.getScoringMethod());
+        builder.append('|').append(request.getLimitResults());
+        builder.append('|').append(request.getAttributesLimit());
+
+        return AbstractNetworkWeightCalculator.hashString(builder.toString());
+    }
+
     /*
      * external callers pass null for namespace instead of explicitly specifying
      * CORE namespace. instead of testing everywhere in engine, make namespace explicit
      * here.
      *
      */
-    private String safeGetNamespace() {
+    String safeGetNamespace() {
         String namespace = request.getNamespace();
         if (namespace == null || namespace.equals("")) {
             return Data.CORE;
@@ -0,0 +1,201 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.actions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.uib.cipr.matrix.Vector;
+
+import org.apache.log4j.Logger;
+import org.genemania.dto.RelatedGenesEngineRequestDto;
+import org.genemania.dto.RelatedGenesEngineResponseDto;
+import org.genemania.engine.Constants;
+import org.genemania.engine.Constants.CombiningMethod;
+import org.genemania.engine.cache.DataCache;
+import org.genemania.engine.core.data.Data;
+import org.genemania.engine.core.integration.calculators.AbstractNetworkWeightCalculator;
+import org.genemania.engine.core.mania.CoreMania;
+import org.genemania.engine.core.utils.Logging;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.metrics.RequestTimings;
+import org.genemania.engine.metrics.RequestTimings.Count;
+import org.genemania.exception.ApplicationException;
+
+/**
+ * process several find-related genes requests together. requests that
+ * would get the same combined network (see getGroupKey()) share one
+ * network combination, and their label propagations are solved
+ * together in blocks, see CoreMania.computeDiscriminants(). other
+ * requests are processed one at a time, same as FindRelated.process().
+ *
+ * takes FindRelated instances rather than requests so callers can
+ * customize the response, e.g. with a subclass overriding prepareResponse().
+ */
+public class FindRelatedBatch {
+
+    private static Logger logger = Logger.getLogger(FindRelatedBatch.class);
+    private DataCache cache;
+    private List<? extends FindRelated> finders;
+
+    public FindRelatedBatch(DataCache cache, List<? extends FindRelated> finders) {
+        this.cache = cache;
+        this.finders = finders;
+    }
+
+    /*
+     * responses in the same order as the finders. a request that was
+     * cancelled gets a null response, as does every request not yet
+     * done in the same group. an invalid request throws, as for
+     * FindRelated.process().
+     */
+    public List<RelatedGenesEngineResponseDto> process() throws ApplicationException {
+        RelatedGenesEngineResponseDto [] responses = new RelatedGenesEngineResponseDto[finders.size()];
+
+        Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+        for (int i=0; i<finders.size(); i++) {
+            String key = getGroupKey(finders.get(i).getRequest());
+            if (key == null) {
+                key = "single:" + i;
+            }
+
+            List<Integer> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(key, group);
+            }
+            group.add(i);
+        }
+
+        for (List<Integer> group: groups.values()) {
+            if (group.size() == 1) {
+                int i = group.get(0);
+                responses[i] = finders.get(i).process();
+            }
+            else {
+                processGroup(group, responses);
+            }
+        }
+
+        return Arrays.asList(responses);
+    }
+
+    /*
+     * requests with the same key get the same combined network, so their
+     * propagations can share it. null if the network depends on the query
+     * genes, i.e. for query specific combining methods or when attributes
+     * are requested, since attributes are selected by the query genes.
+     */
+    public static String getGroupKey(RelatedGenesEngineRequestDto request) throws ApplicationException {
+        if (request.getCombiningMethod() == null || request.getPositiveNodes() == null || request.getInteractionNetworks() == null) {
+            return null;
+        }
+
+        CombiningMethod method = Constants.convertCombiningMethod(request.getCombiningMethod(), request.getPositiveNodes().size());
+        if (method.isQuerySpecific()) {
+            return null;
+        }
+
+        String parameterKey = AbstractNetworkWeightCalculator.parameterKey(method, request.getInteractionNetworks(), request.getAttributeGroups());
+        if (parameterKey == null) {
+            return null;
+        }
+
+        String namespace = request.getNamespace() == null ? "" : request.getNamespace();
+        return String.format("%s|%d|%s", namespace, request.getOrganismId(), parameterKey);
+    }
+
+    /*
+     * the given requests all have the same group key. timings are
+     * recorded once for the whole group, and logged with each request.
+     */
+    private void processGroup(List<Integer> group, RelatedGenesEngineResponseDto [] responses) throws ApplicationException {
+        RequestTimings timings = RequestTimings.begin("findRelatedBatch");
+        try {
+            long start = System.currentTimeMillis();
+            long resultGeneration = cache.getResultCache().getGeneration();
+
+            List<Integer> pending = new ArrayList<Integer>();
+            List<String> resultKeys = new ArrayList<String>();
+            List<Vector> labels = new ArrayList<Vector>();
+            int numCached = 0;
+
+            for (int i: group) {
+                FindRelated finder = finders.get(i);
+                finder.begin(timings);
+
+                String resultKey = finder.getResultKey();
+                if (resultKey != null) {
+                    RelatedGenesEngineResponseDto cached = (RelatedGenesEngineResponseDto) cache.getResultCache().get(resultKey);
+                    if (cached != null) {
+                        responses[i] = cached;
+                        numCached++;
+                        continue;
+                    }
+                }
+
+                pending.add(i);
+                resultKeys.add(resultKey);
+                labels.add(finder.createLabels());
+            }
+            timings.count(Count.RESULT_CACHE_HITS, numCached);
+
+            if (!pending.isEmpty()) {
+                // weights don't depend on the labels, so any request will do
+                FindRelated first = finders.get(pending.get(0));
+                RelatedGenesEngineRequestDto request = first.getRequest();
+
+                CoreMania coreMania = new CoreMania(cache, request.getProgressReporter());
+                coreMania.computeWeights(first.safeGetNamespace(), request.getOrganismId(), labels.get(0), first.getCombiningMethod(),
+                        request.getInteractionNetworks(), request.getAttributeGroups(), request.getAttributesLimit());
+
+                // biases the labels in place, same as the single request path
+                coreMania.computeDiscriminants(Data.CORE, request.getOrganismId(), labels, null, "average");
+                List<Vector> discriminants = coreMania.getDiscriminants();
+
+                for (int j=0; j<pending.size(); j++) {
+                    int i = pending.get(j);
+                    RelatedGenesEngineResponseDto response = finders.get(i).respond(coreMania, labels.get(j), discriminants.get(j));
+                    if (resultKeys.get(j) != null) {
+                        cache.getResultCache().put(resultKeys.get(j), response, resultGeneration);
+                    }
+                    responses[i] = response;
+                }
+            }
+
+            timings.finish();
+            for (int i: group) {
+                finders.get(i).end();
+            }
+
+            logger.info(String.format("completed batch of %d findRelated requests, %d from result cache, duration = %s",
+                    group.size(), numCached, Logging.duration(start, System.currentTimeMillis())));
+        }
+        catch (CancellationException e) {
+            logger.info("batch was cancelled");
+        }
+        finally {
+            timings.discard();
+        }
+    }
+}
@@ -19,12 +19,10 @@
 
 package org.genemania.engine.actions.support;
 
-import no.uib.cipr.matrix.DenseMatrix;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants;
 import org.genemania.engine.Constants.DataFileNames;
 import org.genemania.engine.cache.DataCache;
-import org.genemania.engine.core.MatrixUtils;
 import org.genemania.engine.core.data.CoAnnotationSet;
 import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.data.DatasetInfo;
@@ -107,9 +105,9 @@ public class UserDataPrecomputer {
     private boolean loadPrecomputed() {
         boolean exists = false;
         try {
-            userKtK = cache.getKtK(namespace, organismId, DataFileNames.KtK_BASIC.getCode());
+            userKtK = cache.getKtKLayer(namespace, organismId, DataFileNames.KtK_BASIC.getCode());
             for (int branch = 0; branch < Constants.goBranches.length; branch++) {
-                userKtT[branch] = cache.getKtT(namespace, organismId, Constants.goBranches[branch]);
+                userKtT[branch] = cache.getKtTLayer(namespace, organismId, Constants.goBranches[branch]);
             }
             exists = true;
         }
@@ -131,18 +129,19 @@ public class UserDataPrecomputer {
     }
     
     /*
-     * see note with loadPrecomputed(),
+     * see note with loadPrecomputed(). the user KtK and KtT
+     * start out as empty layers over the core data.
      */
     public boolean loadInitPrecomputed() {
 
         boolean exists = false;
         try {
             KtK coreUserKtK = cache.getKtK(Data.CORE, organismId, DataFileNames.KtK_BASIC.getCode());
-            userKtK = coreUserKtK.copy(namespace);
+            userKtK = coreUserKtK.layer(namespace);
 
             for (int branch = 0; branch < Constants.goBranches.length; branch++) {
                 KtT coreUserKtT = cache.getKtT(Data.CORE, organismId, Constants.goBranches[branch]);
-                userKtT[branch] = coreUserKtT.copy(namespace);
+                userKtT[branch] = coreUserKtT.layer(namespace);
             }
             exists = true;            
         }
@@ -172,10 +171,17 @@ public class UserDataPrecomputer {
 
     /*
      * update the user data structures with the given network, allocating
-     * space, performing computations, and saving the results
+     * space, performing computations, and saving the results. the namespace
+     * is locked from loading to saving, see DataCache.getNamespaceLock().
      *
      */
     public void addNetwork(long networkId, SymMatrix m) throws ApplicationException {
+        synchronized (cache.getNamespaceLock(namespace)) {
+            addNetworkLocked(networkId, m);
+        }
+    }
+
+    private void addNetworkLocked(long networkId, SymMatrix m) throws ApplicationException {
 
         progress.setStatus(Constants.PROGRESS_UPLOAD_PRECOMPUTING_MESSAGE);
         progress.setProgress(Constants.PROGRESS_UPLOAD_PRECOMPUTING);
@@ -214,15 +220,15 @@ public class UserDataPrecomputer {
 
 
     /*
-     * reallocate the user KtK adding an extra row/column
+     * reallocate the user KtK adding an extra row/column. for
+     * a layered KtK this only touches the user rows.
      */
     public void reallocKtK() throws ApplicationException {
         if (userKtK == null) {
             throw new ApplicationException("no precomputed user data available");
         }
 
-        DenseMatrix newKtK = MatrixUtils.copyLarger(userKtK.getData(), 1, 1);
-        userKtK.setData(newKtK);
+        userKtK.addNetwork();
     }
 
     /*
@@ -234,10 +240,7 @@ public class UserDataPrecomputer {
         int index = networkIds.getIndexForId(networkId)+1; // +1 because of bias
 
         double networkSum = networkData.elementSum();
-        DenseMatrix userKtKData = userKtK.getData();
-        
-        userKtKData.set(index, 0, networkSum);
-        userKtKData.set(0, index, networkSum);
+        userKtK.set(index, 0, networkSum);
 
         // compute element-wise product of user matrix with all the other,
         // matrices, both core and user
@@ -260,8 +263,7 @@ public class UserDataPrecomputer {
             double val = networkData.elementMultiplySum(otherNetworkData);
             //logger.debug("product was: " + val);
 
-            userKtKData.set(index, otherIndex, val);
-            userKtKData.set(otherIndex, index, val);
+            userKtK.set(index, otherIndex, val);
         }
     }
 
@@ -271,10 +273,7 @@ public class UserDataPrecomputer {
         }
 
         for (int branch = 0; branch < Constants.goBranches.length; branch++) {
-            DenseMatrix userKtTData = userKtT[branch].getData();
-            userKtTData = MatrixUtils.copyLarger(userKtTData, 1, 0);
-            userKtT[branch].setData(userKtTData);
-//            userKtT[branch] = MatrixUtils.copyLarger(userKtT[branch], 1, 0);
+            userKtT[branch].addNetwork();
         }
 
     }
@@ -294,13 +293,12 @@ public class UserDataPrecomputer {
             }
 
             CoAnnotationSet annoSet = cache.getCoAnnotationSet(organismId, Constants.goBranches[branch]);
-            DenseMatrix KtTData = userKtT[branch].getData();
 
             SymMatrix coAnnotationMatrix = annoSet.GetCoAnnotationMatrix();
             int numberOfGenes = annoSet.GetCoAnnotationMatrix().numRows();
             double val = BasicGramBuilder.computeKttElement(numberOfGenes, network, coAnnotationMatrix, annoSet.GetBHalf(), annoSet.GetConstant());
 
-            KtTData.set(index, 0, val);
+            userKtT[branch].set(index, val);
         }
     }
 
@@ -309,6 +307,12 @@ public class UserDataPrecomputer {
      * given network ... this doesn't remove the network binary itself
      */
     public void removeNetwork(int networkId) throws ApplicationException {
+        synchronized (cache.getNamespaceLock(namespace)) {
+            removeNetworkLocked(networkId);
+        }
+    }
+
+    private void removeNetworkLocked(int networkId) throws ApplicationException {
         load();
        
         if (!networkIds.containsId(networkId)) {
@@ -318,6 +322,12 @@ public class UserDataPrecomputer {
         int index = networkIds.getIndexForId(networkId);
 
         if (hasPrecomputedData) { 
+            // only user rows can be dropped from a layer, fall
+            // back to a private copy of the whole thing otherwise
+            if (index+1 < userKtK.getCoreSize()) {
+                flattenPrecomputed();
+            }
+
         	for (int branch = 0; branch < Constants.goBranches.length; branch++) {
         		userKtT[branch].removeNetworkAtIndex(index+1); // TODO: really need to fix the indexing so don't need these error prone +1's to skip around the bias column
         	}
@@ -330,6 +340,16 @@ public class UserDataPrecomputer {
         save();
     }
 
+    /*
+     * replace the layered user KtK and KtT with the whole matrices
+     */
+    private void flattenPrecomputed() throws ApplicationException {
+        userKtK = userKtK.flatten(cache.getKtKLayer(Data.CORE, organismId, DataFileNames.KtK_BASIC.getCode()));
+        for (int branch = 0; branch < Constants.goBranches.length; branch++) {
+            userKtT[branch] = userKtT[branch].flatten(cache.getKtTLayer(Data.CORE, organismId, Constants.goBranches[branch]));
+        }
+    }
+
     /*
      * clean up a users precomputed data structures associated with
      * an organism. 
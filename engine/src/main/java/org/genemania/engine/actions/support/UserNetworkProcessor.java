@@ -20,20 +20,16 @@
 
 package org.genemania.engine.actions.support;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
-import java.io.Writer;
 import org.apache.log4j.Logger;
 import org.genemania.dto.UploadNetworkEngineRequestDto;
 import org.genemania.dto.UploadNetworkEngineResponseDto;
 import org.genemania.engine.Constants;
 import org.genemania.engine.cache.DataCache;
-import org.genemania.engine.converter.sym.FileNetworkSymMatrixProvider;
 import org.genemania.engine.converter.sym.INetworkSymMatrixProvider;
+import org.genemania.engine.converter.sym.StreamNetworkSymMatrixProvider;
 import org.genemania.engine.core.data.Network;
 import org.genemania.engine.core.evaluation.ProfileToNetworkDriver;
 import org.genemania.engine.core.evaluation.correlation.CorrelationFactory.CorrelationType;
@@ -41,6 +37,8 @@ import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.SymMatrix;
 import org.genemania.exception.ApplicationException;
+import org.genemania.mediator.InteractionCursor;
+import org.genemania.mediator.impl.ReaderInteractionCursor;
 import org.genemania.type.DataLayout;
 import org.genemania.type.NetworkProcessingMethod;
 import org.genemania.util.ProgressReporter;
@@ -57,11 +55,9 @@ import org.genemania.util.ProgressReporter;
 public class UserNetworkProcessor {
     private static Logger logger = Logger.getLogger(UserNetworkProcessor.class);
     private DataCache cache;
-    private String tempDirname;
 
-    public UserNetworkProcessor(DataCache cache, String tempDirname) {
+    public UserNetworkProcessor(DataCache cache) {
         this.cache = cache;
-        this.tempDirname = tempDirname;
     }
 
     /*
@@ -145,9 +141,10 @@ public class UserNetworkProcessor {
 
     /*
      * apply p2n etc  to convert the requests data stream
-     * into an interaction matrix
+     * into an interaction matrix. the data is parsed as it is
+     * read and the interactions fed straight into the matrix,
+     * rather than staging them in a temp file.
      * 
-     * TODO: need to fix up to avoid the extra trip of temp user data to the filesystem. 
      * TODO: break up into separate processors per layout/method combo.
      * TODO: get to doing all the todo's!
      */
@@ -159,62 +156,31 @@ public class UserNetworkProcessor {
             ProfileToNetworkDriver p2n = new ProfileToNetworkDriver();
 
             try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                //tempFile.deleteOnExit();
+                p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
+                p2n.setNoHeader(true);
+                p2n.setK(request.getSparsification());
+                p2n.setCorrelationType(CorrelationType.PEARSON);
+                p2n.setProfileType("CONTINUOUS");
 
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
+                // better to use a child progressreporter here instead?
+                p2n.setProgressReporter(request.getProgressReporter());
 
-                try {
-                    p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
-                    p2n.setNoHeader(true);
-                    p2n.setK(request.getSparsification());
-                    p2n.setCorrelationType(CorrelationType.PEARSON);
-                    p2n.setProfileType("CONTINUOUS");
+                p2n.computeNetwork(request.getData());
 
-                    // better to use a child progressreporter here instead?
-                    p2n.setProgressReporter(request.getProgressReporter());
-
-                    p2n.process(request.getData(), result);
-
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), false);
-                
+                matrix = convertToMatrixRepresentation(request.getOrganismId(), p2n.getInteractions(request.getNetworkId()), request.getProgressReporter());
             }
             // wrap ioexeption in application exception, other application exceptions
             // pass on through
             catch (IOException e) {
                 throw new ApplicationException("Failed to convert profile to network", e);
             }
-
-            // TODO: proper resource cleanup (close file in finally)
-            
         }
         // handle a direct weighted network load
         else if (request.getMethod() == NetworkProcessingMethod.DIRECT && request.getLayout() == DataLayout.WEIGHTED_NETWORK) {
 
             try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
-
-                try {
-                    char[] buf = new char[1024];
-                    Reader data = request.getData();
-                    int n;
-                    while ((n = data.read(buf)) > 0) {
-                        result.write(buf, 0, n);
-                    }
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), false);
+                InteractionCursor interactions = new ReaderInteractionCursor(request.getNetworkId(), request.getData(), 0, 1, 2, '\t');
+                matrix = convertToMatrixRepresentation(request.getOrganismId(), interactions, request.getProgressReporter());
             }
             catch (Exception e) {
                 throw new ApplicationException("Failed to load direct network", e);
@@ -224,23 +190,8 @@ public class UserNetworkProcessor {
         else if (request.getMethod() == NetworkProcessingMethod.DIRECT && request.getLayout() == DataLayout.BINARY_NETWORK) {
 
             try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
-
-                try {
-                    char[] buf = new char[1024];
-                    Reader data = request.getData();
-                    int n;
-                    while ((n = data.read(buf)) > 0) {
-                        result.write(buf, 0, n);
-                    }
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), true);
+                InteractionCursor interactions = new ReaderInteractionCursor(request.getNetworkId(), request.getData(), 0, 1, -1, '\t');
+                matrix = convertToMatrixRepresentation(request.getOrganismId(), interactions, request.getProgressReporter());
             }
             catch (Exception e) {
                 throw new ApplicationException("Failed to load binary network", e);
@@ -250,33 +201,20 @@ public class UserNetworkProcessor {
             ProfileToNetworkDriver p2n = new ProfileToNetworkDriver();
 
             try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                //tempFile.deleteOnExit();
-
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
+                p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
+                p2n.setNoHeader(true);
+                p2n.setK(request.getSparsification());
+                p2n.setCorrelationType(CorrelationType.PEARSON_BIN_LOG_NO_NORM);
+                p2n.setProfileType("BINARY");
+                p2n.setKeepAllTies(true);
+                p2n.setLimitTies(true);
 
-                try {
-                    p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
-                    p2n.setNoHeader(true);
-                    p2n.setK(request.getSparsification());
-                    p2n.setCorrelationType(CorrelationType.PEARSON_BIN_LOG_NO_NORM);
-                    p2n.setProfileType("BINARY");
-                    p2n.setKeepAllTies(true);
-                    p2n.setLimitTies(true);
+                // better to use a child progressreporter here instead?
+                p2n.setProgressReporter(request.getProgressReporter());
 
-                    // better to use a child progressreporter here instead?
-                    p2n.setProgressReporter(request.getProgressReporter());
-
-                    p2n.process(request.getData(), result);
-
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), false);
+                p2n.computeNetwork(request.getData());
 
+                matrix = convertToMatrixRepresentation(request.getOrganismId(), p2n.getInteractions(request.getNetworkId()), request.getProgressReporter());
             }
             // wrap ioexeption in application exception, other application exceptions
             // pass on through
@@ -289,33 +227,20 @@ public class UserNetworkProcessor {
             ProfileToNetworkDriver p2n = new ProfileToNetworkDriver();
 
             try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                //tempFile.deleteOnExit();
-
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
-
-                try {
-                    p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
-                    p2n.setNoHeader(true);
-                    p2n.setK(request.getSparsification());
-                    p2n.setCorrelationType(CorrelationType.PEARSON_BIN_LOG_NO_NORM);
-                    p2n.setProfileType("NETWORK");
-                    p2n.setKeepAllTies(true);
-                    p2n.setLimitTies(true);
-
-                    // better to use a child progressreporter here instead?
-                    p2n.setProgressReporter(request.getProgressReporter());
+                p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
+                p2n.setNoHeader(true);
+                p2n.setK(request.getSparsification());
+                p2n.setCorrelationType(CorrelationType.PEARSON_BIN_LOG_NO_NORM);
+                p2n.setProfileType("NETWORK");
+                p2n.setKeepAllTies(true);
+                p2n.setLimitTies(true);
 
-                    p2n.process(request.getData(), result);
+                // better to use a child progressreporter here instead?
+                p2n.setProgressReporter(request.getProgressReporter());
 
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), false);
+                p2n.computeNetwork(request.getData());
 
+                matrix = convertToMatrixRepresentation(request.getOrganismId(), p2n.getInteractions(request.getNetworkId()), request.getProgressReporter());
             }
             // wrap ioexeption in application exception, other application exceptions
             // pass on through
@@ -331,39 +256,18 @@ public class UserNetworkProcessor {
         return matrix;
     }
 
-    private File getTempFile(String namespace, int organismId, int networkId) {
-        String dirName = getUserTempDirname(namespace);
-        File dir = new File(dirName);
-        if (!dir.isDirectory()) {
-            dir.mkdir();
-        }
-
-        String fileName = dirName + File.separator + String.format("%d.%d.txt", organismId, networkId);
-        return new File(fileName);
-    }
-
-    private String getTempDirname() {
-        return tempDirname;
-    }
-
-    private String getUserTempDirname(String namespace) {
-        return getTempDirname() + File.separator + namespace;
-    }
-
     /*
-     * load up interactions from temp user file on disk and convert to matrix form
+     * build the matrix from the given interactions, consuming them
      */
-    SymMatrix convertToMatrixRepresentation(long organismId, long networkId, String namespace, ProgressReporter progress, boolean isBinary) throws ApplicationException {
+    SymMatrix convertToMatrixRepresentation(long organismId, InteractionCursor interactions, ProgressReporter progress) throws ApplicationException {
 
-        INetworkSymMatrixProvider provider = new FileNetworkSymMatrixProvider(organismId, getUserTempDirname(namespace), cache.getNodeIds(organismId), isBinary);
-        SymMatrix matrix = provider.getNetworkMatrix(networkId, progress);
+        INetworkSymMatrixProvider provider = new StreamNetworkSymMatrixProvider(interactions, cache.getNodeIds(organismId));
+        SymMatrix matrix = provider.getNetworkMatrix(interactions.getNetworkId(), progress);
         matrix.compact();
         return matrix;
 
     }
 
-
-
     /*
      * write the given matrix into cache
      */
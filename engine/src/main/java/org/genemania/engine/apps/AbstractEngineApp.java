@@ -41,11 +41,12 @@ import org.apache.lucene.search.Searcher;
 import org.apache.lucene.store.FSDirectory;
 import org.genemania.domain.*;
 import org.genemania.engine.apps.support.DataConnector;
+import org.genemania.engine.cache.ConcurrentObjectCache;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
 import org.genemania.engine.cache.IObjectCache;
+import org.genemania.engine.cache.MappedFileObjectCache;
 import org.genemania.engine.cache.MemObjectCache;
-import org.genemania.engine.cache.SynchronizedObjectCache;
 import org.genemania.engine.config.Config;
 import org.genemania.exception.ApplicationException;
 import org.genemania.exception.DataStoreException;
@@ -312,12 +313,18 @@ public abstract class AbstractEngineApp {
      * create a data cache object
      */
     public void initDataCache(String cacheDir, boolean memCacheEnabled) {
-    	IObjectCache objectCache = new FileSerializedObjectCache(cacheDir);
+    	IObjectCache objectCache;
+    	if (Config.instance().isMappedCacheEnabled()) {
+    	    objectCache = new MappedFileObjectCache(cacheDir);
+    	}
+    	else {
+    	    objectCache = new FileSerializedObjectCache(cacheDir);
+    	}
     	if (memCacheEnabled) {
     		objectCache = new MemObjectCache(objectCache);
     	}
     	
-    	objectCache = new SynchronizedObjectCache(objectCache);
+    	objectCache = new ConcurrentObjectCache(objectCache);
         cache = new DataCache(objectCache);
     }
  
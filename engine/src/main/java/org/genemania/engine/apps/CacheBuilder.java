@@ -38,6 +38,7 @@ import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.data.Network;
 import org.genemania.engine.core.data.NetworkIds;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompressedSymFloatMatrix;
 import org.genemania.exception.ApplicationException;
 import org.genemania.exception.DataStoreException;
 import org.genemania.mediator.NodeCursor;
@@ -195,7 +196,7 @@ public class CacheBuilder extends AbstractEngineApp {
         logger.info("building matrix for network " + network.getId() + " " + network.getName() + " organism " + organism.getId());
         SymMatrix matrix = provider.getNetworkMatrix(network.getId(), progress);
 
-        matrix.compact();
+        matrix = CompressedSymFloatMatrix.compress(matrix);
 
         Network networkObj = new Network(Data.CORE, organism.getId(), network.getId());
         networkObj.setData(matrix);
@@ -33,6 +33,7 @@ import org.genemania.engine.core.integration.INetworkWeightCalculator;
 import org.genemania.engine.core.integration.NetworkWeightCalculatorFactory;
 import org.genemania.engine.core.integration.calculators.AbstractNetworkWeightCalculator;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompressedSymFloatMatrix;
 import org.genemania.exception.ApplicationException;
 import org.genemania.exception.DataStoreException;
 import org.genemania.util.NullProgressReporter;
@@ -155,8 +156,7 @@ public class NetworkPrecombiner extends AbstractEngineApp {
         		null, Config.instance().getAttributeEnrichmentMaxSize(), method, NullProgressReporter.instance());
         calculator.process();
         FeatureWeightMap weights = calculator.getWeights();
-        SymMatrix combinedNetwork = calculator.getCombinedMatrix();
-        combinedNetwork.compact();
+        SymMatrix combinedNetwork = CompressedSymFloatMatrix.compress(calculator.getCombinedMatrix());
 
         double WtW = combinedNetwork.elementMultiplySum(combinedNetwork);
         logger.debug("WtW: " + WtW);
@@ -53,10 +53,10 @@ import org.genemania.domain.NetworkMetadata;
 import org.genemania.domain.Organism;
 import org.genemania.engine.Constants;
 import org.genemania.engine.apps.support.LabelWriter;
+import org.genemania.engine.cache.ConcurrentObjectCache;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
 import org.genemania.engine.cache.MemObjectCache;
-import org.genemania.engine.cache.SynchronizedObjectCache;
 import org.genemania.engine.config.Config;
 import org.genemania.engine.core.MatrixUtils;
 import org.genemania.engine.core.data.GoAnnotations;
@@ -314,7 +314,7 @@ public class VectorCrossValidator extends AbstractEngineApp {
 
         logger.info("initializing...");
 
-        cache = new DataCache(new SynchronizedObjectCache(new MemObjectCache(new FileSerializedObjectCache(getCacheDir()))));
+        cache = new DataCache(new ConcurrentObjectCache(new MemObjectCache(new FileSerializedObjectCache(getCacheDir()))));
 
         organism = getOrganism();
 
@@ -818,6 +818,19 @@ public class VectorCrossValidator extends AbstractEngineApp {
         return results;
     }
 
+    /*
+     * label vector and bookkeeping for a single fold
+     */
+    private static class Fold {
+        int k;
+        Vector label;
+        Collection<Integer> excludedRowIndices = new ArrayList<Integer>();
+        int numPosIncluded;
+        int numNegIncluded;
+        int numPos;
+        int numNeg;
+    }
+
     /*
      * this assumes that the combining method and network list is constant
      * for all invocations, and checks for average combining being used,
@@ -829,10 +842,63 @@ public class VectorCrossValidator extends AbstractEngineApp {
             Constants.CombiningMethod method, String goCategory,
             double[] averageMeasures, int k, int [] allPerm) throws ApplicationException {
 
+        Fold fold = buildFold(initialLabel, k, allPerm);
+
+        // If a weighting method isn't specific to a particular gene list, don't
+        // recompute the weights for each fold.
+        if (!method.isQuerySpecific()) {
+            computeSharedWeights(coreMania, fold.label, method);
+        }
+        else {
+            coreMania = new CoreMania(cache);
+            coreMania.computeWeights(namespace, organism.getId(), fold.label, method, idList, attributeGroupIds, Config.instance().getAttributeEnrichmentMaxSize()); // TODO: make attribute limit configurable by user input);
+        }
+
+        // label propagation
+        coreMania.computeDiscriminant(namespace, organism.getId(), fold.label, goCategory, biasingMethod);
+
+        //coreMania.compute(organism.getId(), label, method, idList, mapping, goCategory, biasingMethod);
+
+        evaluateFold(initialLabel, goCategory, averageMeasures, fold, coreMania.getDiscriminant());
+    }
+
+    /*
+     * all folds at once, for combining methods that aren't query specific.
+     * the folds share the combined network, so their label propagations
+     * are solved together in blocks rather than one after the other.
+     */
+    private void crossValidateFolds(CoreMania coreMania,
+            no.uib.cipr.matrix.Vector initialLabel,
+            Constants.CombiningMethod method, String goCategory,
+            double[] averageMeasures, int [] allPerm) throws ApplicationException {
+
+        List<Fold> folds = new ArrayList<Fold>(numFolds);
+        List<Vector> labels = new ArrayList<Vector>(numFolds);
+        for (int k = 0; k < numFolds; k++) {
+            Fold fold = buildFold(initialLabel, k, allPerm);
+            folds.add(fold);
+            labels.add(fold.label);
+        }
+
+        computeSharedWeights(coreMania, folds.get(0).label, method);
+
+        // label propagation, biases the fold labels in place
+        coreMania.computeDiscriminants(namespace, organism.getId(), labels, goCategory, biasingMethod);
+        List<Vector> discriminants = coreMania.getDiscriminants();
+
+        for (int k = 0; k < numFolds; k++) {
+            evaluateFold(initialLabel, goCategory, averageMeasures, folds.get(k), discriminants.get(k));
+        }
+    }
+
+    private Fold buildFold(Vector initialLabel, int k, int [] allPerm) {
+        Fold fold = new Fold();
+        fold.k = k;
+
         //copy initial vector
         Vector label = new DenseVector(initialLabel);
+        fold.label = label;
 
-        Collection<Integer> excludedRowIndices = new ArrayList<Integer>();
         Collection<Integer> includedRowIndices = new ArrayList<Integer>();
 
         //TODO: need to make different fold size for different negative set
@@ -848,69 +914,57 @@ public class VectorCrossValidator extends AbstractEngineApp {
             includedRowIndices.add(allPerm[i]);
         }
 
-        int numPosIncluded = 0;
-        int numNegIncluded = 0;
         for (int index: includedRowIndices) {
         	double value = initialLabel.get(index);
             if (value == 1) {
-                numPosIncluded++;
+                fold.numPosIncluded++;
             } else if (value == -1) {
-                numNegIncluded++;
+                fold.numNegIncluded++;
             }
         }
 
         // excluded portion
-        int numPos = 0;
-        int numNeg = 0;
         for (int j = firstIndex; j <= lastIndex; j++) {
-            excludedRowIndices.add(allPerm[j]);
+            fold.excludedRowIndices.add(allPerm[j]);
             label.set(allPerm[j], Constants.EXCLUDED_ROW_VALUE);
             double value = initialLabel.get(allPerm[j]);
             if (value == 1) {
-                numPos++;
+                fold.numPos++;
             }
             else if (value == -1) {
-                numNeg++;
+                fold.numNeg++;
             }
         }
 
         logger.info(MatrixUtils.countMatches(label, Constants.EXCLUDED_ROW_VALUE) + " unknowns in label");
 
         checkLabels(label);
+        return fold;
+    }
 
-        // If a weighting method isn't specific to a particular gene list, don't
-        // recompute the weights for each fold.
-        if (!method.isQuerySpecific()) {
-        	synchronized(coreMania) {
-	            if (coreMania.getCombinedKernel(organism.getId(), namespace) == null) {
-	                logger.info("computing weights since none saved");
-	                coreMania.computeWeights(namespace, organism.getId(), label, method, idList, attributeGroupIds, Config.instance().getAttributeEnrichmentMaxSize()); // TODO: make attribute limit configurable by user input
-	            }
-	            else {
-	                logger.info("reusing weights");
-	            }
-        	}
-        }
-        else {
-            coreMania = new CoreMania(cache);
-            coreMania.computeWeights(namespace, organism.getId(), label, method, idList, attributeGroupIds, Config.instance().getAttributeEnrichmentMaxSize()); // TODO: make attribute limit configurable by user input);
-        }
-
-        // label propagation
-        coreMania.computeDiscriminant(namespace, organism.getId(), label, goCategory, biasingMethod);
-
-        //coreMania.compute(organism.getId(), label, method, idList, mapping, goCategory, biasingMethod);
+    private void computeSharedWeights(CoreMania coreMania, Vector label, Constants.CombiningMethod method) throws ApplicationException {
+    	synchronized(coreMania) {
+            if (coreMania.getCombinedKernel(organism.getId(), namespace) == null) {
+                logger.info("computing weights since none saved");
+                coreMania.computeWeights(namespace, organism.getId(), label, method, idList, attributeGroupIds, Config.instance().getAttributeEnrichmentMaxSize()); // TODO: make attribute limit configurable by user input
+            }
+            else {
+                logger.info("reusing weights");
+            }
+    	}
+    }
 
-        double[] measures = getMeasureResults(initialLabel, coreMania.getDiscriminant(), excludedRowIndices);
+    private void evaluateFold(Vector initialLabel, String goCategory, double[] averageMeasures, Fold fold, Vector discriminant) throws ApplicationException {
+        double[] measures = getMeasureResults(initialLabel, discriminant, fold.excludedRowIndices);
         for (int i = 0; i < measures.length; i++) {
             averageMeasures[i] += measures[i];
         }
 
-        writeResult(goCategory, k, numPosIncluded, numNegIncluded, numPos, numNeg, measures);
+        writeResult(goCategory, fold.k, fold.numPosIncluded, fold.numNegIncluded, fold.numPos, fold.numNeg, measures);
         
         if (writeLabels) {
             LabelWriter writer = new LabelWriter(outFilename, nodeMediator, organismId);
-            writer.write(goCategory, k, initialLabel, coreMania.getDiscriminant(), excludedRowIndices, nodeIds);
+            writer.write(goCategory, fold.k, initialLabel, discriminant, fold.excludedRowIndices, nodeIds);
         }
     	queryCounter += 1;
     }
@@ -1210,9 +1264,15 @@ public class VectorCrossValidator extends AbstractEngineApp {
             averageMeasures = new double[measures.size()];
 
             CoreMania coreMania = new CoreMania(cache);
-            for (int k = 0; k < numFolds; k++) {
-                logger.debug(String.format("executing fold %d of %d", k + 1, numFolds));
-                crossValidateVector(coreMania, initialLabel, combiningMethod, goCategory, averageMeasures, k, allPerm);
+            if (!combiningMethod.isQuerySpecific()) {
+                logger.debug(String.format("executing %d folds together", numFolds));
+                crossValidateFolds(coreMania, initialLabel, combiningMethod, goCategory, averageMeasures, allPerm);
+            }
+            else {
+                for (int k = 0; k < numFolds; k++) {
+                    logger.debug(String.format("executing fold %d of %d", k + 1, numFolds));
+                    crossValidateVector(coreMania, initialLabel, combiningMethod, goCategory, averageMeasures, k, allPerm);
+                }
             }
             
             for (int i = 0; i < averageMeasures.length; i++) {
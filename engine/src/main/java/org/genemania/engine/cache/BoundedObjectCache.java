@@ -0,0 +1,238 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.genemania.engine.config.Config;
+
+/**
+ * in-memory object cache with a fixed budget in bytes, as estimated
+ * by an ObjectWeigher. When over budget the least recently used
+ * objects are dropped, so memory use is bounded without depending on
+ * the garbage collector to clear soft references.
+ *
+ * Objects may be pinned, e.g. node ids that nearly every request
+ * needs. Pinned objects count towards the budget but are never
+ * evicted, only removed or replaced explicitly. They have a budget
+ * of their own within the total, so pins can't crowd out everything
+ * else; an object that would take pinned bytes over it is cached
+ * as an ordinary entry instead, and counted as a pin overflow.
+ *
+ * returns null for requests that aren't cache hits
+ */
+public class BoundedObjectCache {
+    private static Logger logger = Logger.getLogger(BoundedObjectCache.class);
+
+    private static BoundedObjectCache instance;
+
+    private final long maxBytes;
+    private final long maxPinnedBytes;
+    private final ObjectWeigher weigher;
+
+    // access ordered, so iteration starts at the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final HashMap<String, Entry> pinnedEntries = new HashMap<String, Entry>();
+
+    private long bytes = 0;
+    private long pinnedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long pinOverflows = 0;
+
+    /*
+     * pinned objects may use the whole budget
+     */
+    public BoundedObjectCache(long maxBytes, ObjectWeigher weigher) {
+        this(maxBytes, maxBytes, weigher);
+    }
+
+    public BoundedObjectCache(long maxBytes, long maxPinnedBytes, ObjectWeigher weigher) {
+        this.maxBytes = maxBytes;
+        this.maxPinnedBytes = Math.min(maxPinnedBytes, maxBytes);
+        this.weigher = weigher;
+    }
+
+    /*
+     * shared instance, sized from the engine config
+     */
+    public static synchronized BoundedObjectCache instance() {
+        if (instance == null) {
+            long maxBytes = Config.instance().getMemCacheMaxBytes();
+            if (maxBytes <= 0) {
+                maxBytes = Runtime.getRuntime().maxMemory()/4;
+            }
+            long maxPinnedBytes = Config.instance().getMemCacheMaxPinnedBytes();
+            if (maxPinnedBytes <= 0) {
+                maxPinnedBytes = maxBytes/2;
+            }
+            logger.info(String.format("memory cache size %d bytes, %d for pinned objects", maxBytes, maxPinnedBytes));
+            instance = new BoundedObjectCache(maxBytes, maxPinnedBytes, new DataWeigher());
+        }
+        return instance;
+    }
+
+    public synchronized Object get(String key) {
+        Entry entry = pinnedEntries.get(key);
+        if (entry == null) {
+            entry = entries.get(key);
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(String key, Object object) {
+        put(key, object, false);
+    }
+
+    public synchronized void put(String key, Object object, boolean pin) {
+        remove(key);
+        if (object == null) {
+            return;
+        }
+
+        long weight = weigher.weigh(object);
+        Entry entry = new Entry(object, weight);
+
+        if (pin && pinnedBytes + weight > maxPinnedBytes) {
+            pinOverflows++;
+            logger.info(String.format("pinned objects would exceed %d bytes, caching %s of size %d unpinned", maxPinnedBytes, key, weight));
+            pin = false;
+        }
+
+        if (pin) {
+            pinnedEntries.put(key, entry);
+            pinnedBytes += weight;
+        }
+        else if (weight > maxBytes) {
+            logger.debug(String.format("not caching %s, size %d exceeds memory cache size", key, weight));
+            return;
+        }
+        else {
+            entries.put(key, entry);
+            bytes += weight;
+        }
+
+        evict();
+    }
+
+    /*
+     * drop least recently used unpinned objects until within budget
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+        while (bytes + pinnedBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<String, Entry> eldest = iter.next();
+            iter.remove();
+            bytes -= eldest.getValue().weight;
+            evictions++;
+            logger.debug(String.format("evicted %s from memory cache", eldest.getKey()));
+        }
+    }
+
+    public synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            bytes -= entry.weight;
+        }
+
+        entry = pinnedEntries.remove(key);
+        if (entry != null) {
+            pinnedBytes -= entry.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        pinnedEntries.clear();
+        bytes = 0;
+        pinnedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size() + pinnedEntries.size();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxPinnedBytes() {
+        return maxPinnedBytes;
+    }
+
+    /*
+     * estimated bytes currently held, including pinned objects
+     */
+    public synchronized long getBytes() {
+        return bytes + pinnedBytes;
+    }
+
+    public synchronized long getPinnedBytes() {
+        return pinnedBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /*
+     * number of objects asked to be pinned that didn't fit
+     * in the pinned budget, so were cached unpinned
+     */
+    public synchronized long getPinOverflows() {
+        return pinOverflows;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("objects: %d, bytes: %d of %d (%d of %d pinned), hits: %d, misses: %d, evictions: %d, pin overflows: %d",
+                size(), getBytes(), maxBytes, pinnedBytes, maxPinnedBytes, hits, misses, evictions, pinOverflows);
+    }
+
+    private static class Entry {
+        final Object value;
+        final long weight;
+
+        Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.genemania.exception.ApplicationException;
+
+/**
+ * thread-safe decorator allowing concurrent reads, unlike
+ * SynchronizedObjectCache which serializes every call.
+ *
+ * Loads of non-volatile objects are single-flight: if several threads
+ * ask for the same key at once, one of them calls the delegate and the
+ * others wait for its result, so e.g. a network is only deserialized
+ * once. Reads of different keys proceed in parallel.
+ *
+ * Writes (put and remove) take an exclusive lock so they never overlap a
+ * load of the same key. Otherwise a load started before a write could
+ * finish after it and leave the old object in a memory cache below us.
+ * Keys share a fixed set of striped locks, so loads and writes of
+ * unrelated keys rarely contend. Removing a whole namespace or organism
+ * can cover any key, and takes every stripe.
+ */
+public class ConcurrentObjectCache implements IObjectCache {
+    private static final int LOCK_STRIPES = 64;
+
+    // keys with fewer parts name a namespace or organism, see Data
+    private static final int MIN_OBJECT_KEY_LENGTH = 3;
+
+    private final IObjectCache delegate;
+    private final ConcurrentHashMap<String, FutureTask<Object>> loads = new ConcurrentHashMap<String, FutureTask<Object>>();
+    private final ReadWriteLock [] locks = new ReadWriteLock[LOCK_STRIPES];
+
+    public ConcurrentObjectCache(IObjectCache delegate) {
+        this.delegate = delegate;
+        for (int i=0; i<locks.length; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public String getCacheDir() throws ApplicationException {
+        return delegate.getCacheDir();
+    }
+
+    public Object get(final String [] key, final boolean isVolatile) throws ApplicationException {
+        String loadKey = makeLoadKey(key);
+        ReadWriteLock lock = getLock(loadKey);
+        lock.readLock().lock();
+        try {
+            if (isVolatile) {
+                return delegate.get(key, isVolatile);
+            }
+
+            FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+                public Object call() throws ApplicationException {
+                    return delegate.get(key, isVolatile);
+                }
+            });
+
+            FutureTask<Object> existing = loads.putIfAbsent(loadKey, task);
+            if (existing == null) {
+                try {
+                    task.run();
+                }
+                finally {
+                    loads.remove(loadKey, task);
+                }
+            }
+            else {
+                task = existing;
+            }
+
+            return getResult(task);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Object getResult(FutureTask<Object> task) throws ApplicationException {
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException("interrupted waiting for cache load", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ApplicationException) {
+                throw (ApplicationException) cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ApplicationException("cache load failed", cause);
+        }
+    }
+
+    public void put(String [] key, Object value, boolean isVolatile) throws ApplicationException {
+        ReadWriteLock lock = getLock(makeLoadKey(key));
+        lock.writeLock().lock();
+        try {
+            delegate.put(key, value, isVolatile);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String [] key) throws ApplicationException {
+        String loadKey = makeLoadKey(key);
+        if (key.length >= MIN_OBJECT_KEY_LENGTH) {
+            ReadWriteLock lock = getLock(loadKey);
+            lock.writeLock().lock();
+            try {
+                delegate.remove(key);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        // always in the same order, so two of these can't deadlock
+        int locked = 0;
+        try {
+            for (; locked<locks.length; locked++) {
+                locks[locked].writeLock().lock();
+            }
+            delegate.remove(key);
+        }
+        finally {
+            for (int i=0; i<locked; i++) {
+                locks[i].writeLock().unlock();
+            }
+        }
+    }
+
+    public boolean exists(String [] key) throws ApplicationException {
+        return delegate.exists(key);
+    }
+
+    public List<String[]> list(String [] key) throws ApplicationException {
+        return delegate.list(key);
+    }
+
+    private ReadWriteLock getLock(String loadKey) {
+        return locks[(loadKey.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    /*
+     * key parts can't contain the separator, since they map
+     * to path components in the file cache
+     */
+    private static String makeLoadKey(String [] key) throws ApplicationException {
+        if (key == null || key.length == 0) {
+            throw new ApplicationException("null or empty object key");
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i=0; i<key.length; i++) {
+            if (i > 0) {
+                builder.append('/');
+            }
+            builder.append(key[i]);
+        }
+        return builder.toString();
+    }
+}
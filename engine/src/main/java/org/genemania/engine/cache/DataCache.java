@@ -21,6 +21,10 @@ package org.genemania.engine.cache;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
 
 import no.uib.cipr.matrix.DenseVector;
@@ -28,6 +32,7 @@ import org.apache.log4j.Logger;
 import org.genemania.engine.Constants;
 import org.genemania.engine.Constants.DataFileNames;
 import org.genemania.engine.Constants.NetworkType;
+import org.genemania.engine.config.Config;
 import org.genemania.engine.core.data.AttributeGroups;
 import org.genemania.engine.core.data.AttributeData;
 import org.genemania.engine.core.data.CategoryIds;
@@ -47,8 +52,10 @@ import org.genemania.engine.core.data.Network;
 import org.genemania.engine.core.data.NetworkIds;
 import org.genemania.engine.core.data.NodeDegrees;
 import org.genemania.engine.core.data.NodeIds;
+import org.genemania.engine.core.data.OnDemandCombinedNetwork;
 import org.genemania.engine.core.integration.Feature;
 import org.genemania.engine.core.integration.FeatureList;
+import org.genemania.engine.core.mania.OnDemandPrecombiner;
 import org.genemania.engine.matricks.Matrix;
 import org.genemania.engine.matricks.SymMatrix;
 import org.genemania.exception.ApplicationException;
@@ -61,7 +68,12 @@ import org.genemania.exception.ApplicationException;
 public class DataCache {
 
     private static Logger logger = Logger.getLogger(DataCache.class);
+    private static final int NAMESPACE_LOCKS = 64;
     private IObjectCache cache;
+    private ResultCache resultCache;
+    private OnDemandPrecombiner onDemandPrecombiner;
+    private Map<String, Set<String>> combinedNetworkIndex = new HashMap<String, Set<String>>();
+    private final Object [] namespaceLocks = new Object[NAMESPACE_LOCKS];
 
     public String getCacheDir() throws ApplicationException {
         return cache.getCacheDir();
@@ -69,6 +81,65 @@ public class DataCache {
 
     public DataCache(IObjectCache cache) {
         this.cache = cache;
+        for (int i=0; i<namespaceLocks.length; i++) {
+            namespaceLocks[i] = new Object();
+        }
+    }
+
+    /*
+     * hold this while reading, updating and writing back a namespace's
+     * data, so concurrent updates to the same namespace don't lose each
+     * other's changes. namespaces share a fixed set of locks rather than
+     * keeping one for every user namespace ever seen.
+     */
+    public Object getNamespaceLock(String namespace) {
+        return namespaceLocks[(namespace.hashCode() & 0x7fffffff) % namespaceLocks.length];
+    }
+
+    /*
+     * memory cache of responses computed from the data in this
+     * cache, sized from the engine config on first use. only
+     * queries against core data are cached, so it is cleared
+     * whenever core data is written or removed through this object.
+     */
+    public synchronized ResultCache getResultCache() {
+        if (resultCache == null) {
+            resultCache = new ResultCache(Config.instance().getResultCacheMaxBytes());
+        }
+        return resultCache;
+    }
+
+    /*
+     * tracks and precombines popular network selections for queries
+     * against this cache, configured on first use
+     */
+    public synchronized OnDemandPrecombiner getOnDemandPrecombiner() {
+        if (onDemandPrecombiner == null) {
+            onDemandPrecombiner = new OnDemandPrecombiner(this, Config.instance().getPrecombineQueryThreshold(),
+                    Config.instance().getPrecombineMaxBytes());
+        }
+        return onDemandPrecombiner;
+    }
+
+    private void put(String [] key, Object value, boolean isVolatile) throws ApplicationException {
+        resultsChanged(key);
+        cache.put(key, value, isVolatile);
+    }
+
+    private void remove(String [] key) throws ApplicationException {
+        resultsChanged(key);
+        clearCombinedNetworkIndex();
+        cache.remove(key);
+    }
+
+    /*
+     * keys start with the namespace, user namespaces don't
+     * affect any cached result
+     */
+    private synchronized void resultsChanged(String [] key) {
+        if (resultCache != null && Data.CORE.equals(key[0])) {
+            resultCache.clear();
+        }
     }
 
     /*
@@ -79,7 +150,7 @@ public class DataCache {
         if (!Data.CORE.equals(network.getNamespace()) && network.getId() >= 0) {
             throw new ApplicationException("can not write core network into user namespace");
         }
-        cache.put(network.getKey(), network.getData(), DataSupport.isVolatile(network));
+        put(network.getKey(), network.getData(), DataSupport.isVolatile(network));
     }
 
     /*
@@ -108,7 +179,7 @@ public class DataCache {
     }
 
     public void putNodeIds(NodeIds nodeIds) throws ApplicationException {
-        cache.put(nodeIds.getKey(), nodeIds.getNodeIds(), DataSupport.isVolatile(nodeIds));
+        put(nodeIds.getKey(), nodeIds.getNodeIds(), DataSupport.isVolatile(nodeIds));
     }
 
     public NetworkIds getNetworkIds(String namespace, long organismId) throws ApplicationException {
@@ -119,7 +190,7 @@ public class DataCache {
     }
 
     public void putNetworkIds(NetworkIds networkIds) throws ApplicationException {
-        cache.put(networkIds.getKey(), networkIds.getNetworkIds(), DataSupport.isVolatile(networkIds));
+        put(networkIds.getKey(), networkIds.getNetworkIds(), DataSupport.isVolatile(networkIds));
     }
 
     public GoIds getGoIds(long organismId, String goBranch) throws ApplicationException {
@@ -130,7 +201,7 @@ public class DataCache {
     }
 
     public void putGoIds(GoIds goIds) throws ApplicationException {
-        cache.put(goIds.getKey(), goIds.getGoIds(), DataSupport.isVolatile(goIds));
+        put(goIds.getKey(), goIds.getGoIds(), DataSupport.isVolatile(goIds));
     }
 
     public CategoryIds getCategoryIds(long organismId, long ontologyId) throws ApplicationException {
@@ -141,7 +212,7 @@ public class DataCache {
     }
 
     public void putCategoryIds(CategoryIds categoryIds) throws ApplicationException {
-        cache.put(categoryIds.getKey(), categoryIds.getCategoryIds(), DataSupport.isVolatile(categoryIds));
+        put(categoryIds.getKey(), categoryIds.getCategoryIds(), DataSupport.isVolatile(categoryIds));
     }
     
     public GoCoAnnotationCounts getGoCoAnnotationCounts(long organismId, String goBranch) throws ApplicationException {
@@ -152,7 +223,7 @@ public class DataCache {
     }
 
     public void putGoCoAnnotationCounts(GoCoAnnotationCounts annoCounts) throws ApplicationException {
-        cache.put(annoCounts.getKey(), annoCounts.getData(), DataSupport.isVolatile(annoCounts));
+        put(annoCounts.getKey(), annoCounts.getData(), DataSupport.isVolatile(annoCounts));
     }
 
     public GoAnnotations getGoAnnotations(long organismId, String goBranch) throws ApplicationException {
@@ -163,7 +234,7 @@ public class DataCache {
     }
 
     public void putGoAnnotations(GoAnnotations annos) throws ApplicationException {
-        cache.put(annos.getKey(), annos.getData(), DataSupport.isVolatile(annos));
+        put(annos.getKey(), annos.getData(), DataSupport.isVolatile(annos));
     }
 
     public void putCoAnnotationSet(CoAnnotationSet annoSet) throws ApplicationException {
@@ -175,8 +246,152 @@ public class DataCache {
         return (CoAnnotationSet) cache.get(annoSet.getKey(), DataSupport.isVolatile(annoSet));
     }
 
+    /*
+     * a precombined network only saves redoing the combination,
+     * results computed with or without it are the same, so the
+     * result cache is left alone
+     */
     public void putCombinedNetwork(CombinedNetwork combined) throws ApplicationException {
-        cache.put(combined.getKey(), combined, DataSupport.isVolatile(combined));
+        String [] key = combined.getKey();
+        cache.put(key, combined, DataSupport.isVolatile(combined));
+        synchronized (combinedNetworkIndex) {
+            Set<String> hashes = combinedNetworkIndex.get(getCombinedIndexKey(combined.getNamespace(), combined.getOrganismId()));
+            if (hashes != null) {
+                hashes.add(key[key.length-1]);
+            }
+        }
+    }
+
+    /*
+     * retire a precombined network. like storing one, this doesn't
+     * change any result, and only the network's own entry in the
+     * index needs to go.
+     */
+    public void removeCombinedNetwork(String namespace, long organismId, String methodParamKey) throws ApplicationException {
+        cache.remove(new CombinedNetwork(namespace, organismId, methodParamKey).getKey());
+        synchronized (combinedNetworkIndex) {
+            Set<String> hashes = combinedNetworkIndex.get(getCombinedIndexKey(namespace, organismId));
+            if (hashes != null) {
+                hashes.remove(methodParamKey);
+            }
+        }
+    }
+
+    /*
+     * mark a stored combined network as precombined on demand. like
+     * the network itself, the marker doesn't change any result.
+     */
+    public void putOnDemandCombinedNetwork(OnDemandCombinedNetwork network) throws ApplicationException {
+        cache.put(network.getKey(), network, DataSupport.isVolatile(network));
+    }
+
+    public void removeOnDemandCombinedNetwork(long organismId, String methodParamKey) throws ApplicationException {
+        cache.remove(new OnDemandCombinedNetwork(organismId, methodParamKey, 0, 0).getKey());
+    }
+
+    /*
+     * all the on demand markers for the organism, as written by any
+     * process sharing the cache, or null if the underlying cache
+     * doesn't support listing. markers removed while we read are
+     * skipped.
+     */
+    public List<OnDemandCombinedNetwork> getOnDemandCombinedNetworks(long organismId) {
+        String [] key = new OnDemandCombinedNetwork(organismId, "", 0, 0).getKey();
+        String [] dirKey = new String[key.length-1];
+        System.arraycopy(key, 0, dirKey, 0, dirKey.length);
+
+        List<String []> entries;
+        try {
+            entries = cache.list(dirKey);
+        }
+        catch (ApplicationException e) {
+            logger.debug("can't list on demand networks: " + e.getMessage());
+            return null;
+        }
+        if (entries == null) {
+            return null;
+        }
+
+        List<OnDemandCombinedNetwork> networks = new ArrayList<OnDemandCombinedNetwork>();
+        for (String [] entry: entries) {
+            OnDemandCombinedNetwork network = new OnDemandCombinedNetwork(organismId, entry[entry.length-1], 0, 0);
+            try {
+                networks.add((OnDemandCombinedNetwork) cache.get(network.getKey(), DataSupport.isVolatile(network)));
+            }
+            catch (ApplicationException e) {
+                logger.debug("on demand network " + network.getMethodParamKey() + " went away: " + e.getMessage());
+            }
+        }
+        return networks;
+    }
+
+    /*
+     * is there a precombined network with the given hash? checked
+     * against an index of the combined networks stored for the organism,
+     * listed once on first use, so misses cost neither a disk access
+     * nor an exception. networks precombined by another process after
+     * the index is loaded aren't seen until clearCombinedNetworkIndex().
+     * 
+     * caches that can't list their contents fall back to checking
+     * for the object each time.
+     */
+    public boolean hasCombinedNetwork(String namespace, long organismId, String methodParamKey) throws ApplicationException {
+        String indexKey = getCombinedIndexKey(namespace, organismId);
+        Set<String> hashes;
+        synchronized (combinedNetworkIndex) {
+            hashes = combinedNetworkIndex.get(indexKey);
+            if (hashes == null) {
+                hashes = loadCombinedNetworkIndex(namespace, organismId);
+                if (hashes != null) {
+                    combinedNetworkIndex.put(indexKey, hashes);
+                }
+            }
+            if (hashes != null) {
+                return hashes.contains(methodParamKey);
+            }
+        }
+
+        return cache.exists(new CombinedNetwork(namespace, organismId, methodParamKey).getKey());
+    }
+
+    public void clearCombinedNetworkIndex() {
+        synchronized (combinedNetworkIndex) {
+            combinedNetworkIndex.clear();
+        }
+    }
+
+    /*
+     * set of hashes of the stored combined networks, or null if
+     * the underlying cache doesn't support listing
+     */
+    private Set<String> loadCombinedNetworkIndex(String namespace, long organismId) {
+        String [] key = new CombinedNetwork(namespace, organismId, "").getKey();
+        String [] dirKey = new String[key.length-1];
+        System.arraycopy(key, 0, dirKey, 0, dirKey.length);
+
+        List<String []> entries;
+        try {
+            entries = cache.list(dirKey);
+        }
+        catch (ApplicationException e) {
+            logger.debug("can't list combined networks: " + e.getMessage());
+            return null;
+        }
+        if (entries == null) {
+            return null;
+        }
+
+        Set<String> hashes = new HashSet<String>();
+        for (String [] entry: entries) {
+            hashes.add(entry[entry.length-1]);
+        }
+
+        logger.info(String.format("found %d precombined networks for namespace %s organism %d", hashes.size(), namespace, organismId));
+        return hashes;
+    }
+
+    private static String getCombinedIndexKey(String namespace, long organismId) {
+        return namespace + "/" + organismId;
     }
 
     public CombinedNetwork getCombinedNetwork(String namespace, long organismId, String methodParamKey) throws ApplicationException {
@@ -190,17 +405,43 @@ public class DataCache {
         putData(ktk);
     }
 
+    /*
+     * the whole KtK for the namespace, combining a user
+     * layer with the core KtK if needed
+     */
     public KtK getKtK(String namespace, long organismId, String goBranch) throws ApplicationException {
+        KtK ktk = getKtKLayer(namespace, organismId, goBranch);
+        if (ktk.isLayered()) {
+            ktk = ktk.flatten(getKtKLayer(Data.CORE, organismId, goBranch));
+        }
+        return ktk;
+    }
+
+    /*
+     * the KtK as stored in the namespace, which for a
+     * user data set may be a layer over the core KtK
+     */
+    public KtK getKtKLayer(String namespace, long organismId, String goBranch) throws ApplicationException {
         KtK ktk = new KtK(namespace, organismId, goBranch);
         return (KtK) cache.get(ktk.getKey(), DataSupport.isVolatile(ktk));
-
     }
 
     public void putKtT(KtT ktt) throws ApplicationException {
         putData(ktt);
     }
 
+    /*
+     * the whole KtT for the namespace, see getKtK()
+     */
     public KtT getKtT(String namespace, long organismId, String goBranch) throws ApplicationException {
+        KtT ktt = getKtTLayer(namespace, organismId, goBranch);
+        if (ktt.isLayered()) {
+            ktt = ktt.flatten(getKtTLayer(Data.CORE, organismId, goBranch));
+        }
+        return ktt;
+    }
+
+    public KtT getKtTLayer(String namespace, long organismId, String goBranch) throws ApplicationException {
         KtT ktt = new KtT(namespace, organismId, goBranch);
         return (KtT) cache.get(ktt.getKey(), DataSupport.isVolatile(ktt));
     }
@@ -215,11 +456,11 @@ public class DataCache {
     }
 
     public void removeOrganism(String namespace, long organismId) throws ApplicationException {
-        cache.remove(Data.getOrganismKey(namespace, organismId));
+        remove(Data.getOrganismKey(namespace, organismId));
     }
 
     public void removeNamespace(String namespace) throws ApplicationException {
-        cache.remove(Data.getNamespaceKey(namespace));
+        remove(Data.getNamespaceKey(namespace));
     }
 
     public NodeDegrees getNodeDegrees(String namespace, long organismId) throws ApplicationException {
@@ -230,7 +471,7 @@ public class DataCache {
     }
 
     public void putNodeDegrees(NodeDegrees nodeDegrees) throws ApplicationException {
-        cache.put(nodeDegrees.getKey(), nodeDegrees.getDegrees(), DataSupport.isVolatile(nodeDegrees));
+        put(nodeDegrees.getKey(), nodeDegrees.getDegrees(), DataSupport.isVolatile(nodeDegrees));
     }
     
     /*
@@ -244,7 +485,7 @@ public class DataCache {
     }
     
     public void putAttributeGroups(AttributeGroups attributeGroups) throws ApplicationException {
-        cache.put(attributeGroups.getKey(), attributeGroups.getAttributeGroups(), DataSupport.isVolatile(attributeGroups));
+        put(attributeGroups.getKey(), attributeGroups.getAttributeGroups(), DataSupport.isVolatile(attributeGroups));
     }
     
     public AttributeData getAttributeData(String namespace, long organismId, long attributeGroupId) throws ApplicationException {
@@ -258,7 +499,7 @@ public class DataCache {
     }
     
     public void putAttributeData(AttributeData attributeData) throws ApplicationException {
-        cache.put(attributeData.getKey(), attributeData.getData(), DataSupport.isVolatile(attributeData));
+        put(attributeData.getKey(), attributeData.getData(), DataSupport.isVolatile(attributeData));
     }
     
     public FeatureTargetCorrelation getFeatureAttributeCorrelation(String namespace, long organismId, long attributeGroupId) throws ApplicationException {
@@ -345,17 +586,17 @@ public class DataCache {
         NetworkIds networkIds = coreNetworkIds.copy(namespace);
         putNetworkIds(networkIds);
         
-        // KtK, KtT
+        // KtK, KtT, as initially empty layers over core
         boolean ok = false;
         KtK userKtK = null;
         KtT[] userKtT = new KtT[Constants.goBranches.length];
         try {
             KtK coreUserKtK = getKtK(Data.CORE, organismId, DataFileNames.KtK_BASIC.getCode());
-            userKtK = coreUserKtK.copy(namespace);
+            userKtK = coreUserKtK.layer(namespace);
           
             for (int branch = 0; branch < Constants.goBranches.length; branch++) {
                 KtT coreUserKtT = getKtT(Data.CORE, organismId, Constants.goBranches[branch]);
-                userKtT[branch] = coreUserKtT.copy(namespace);
+                userKtT[branch] = coreUserKtT.layer(namespace);
             }
             ok = true;
         }
@@ -422,14 +663,14 @@ public class DataCache {
      * generic put
      */
     public void putData(Data object) throws ApplicationException {
-        cache.put(object.getKey(), object, DataSupport.isVolatile(object));
+        put(object.getKey(), object, DataSupport.isVolatile(object));
     }
 
     /*
      * generic remove
      */
     public void removeData(Data object) throws ApplicationException {
-        cache.remove(object.getKey());
+        remove(object.getKey());
     }
 
     /*
@@ -438,6 +679,13 @@ public class DataCache {
     public Data getData(Data object) throws ApplicationException {
         return (Data) cache.get(object.getKey(), DataSupport.isVolatile(object));
     }
+
+    /*
+     * generic exists
+     */
+    public boolean exists(Data object) throws ApplicationException {
+        return cache.exists(object.getKey());
+    }
     
     /*
      * namespaces help split objects *within* a given organism between 'user'
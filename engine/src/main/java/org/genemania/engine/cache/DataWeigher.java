@@ -0,0 +1,88 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+
+import org.genemania.engine.core.data.CombinedNetwork;
+import org.genemania.engine.core.data.KtK;
+import org.genemania.engine.core.data.KtT;
+import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.custom.MatrixSizes;
+
+/**
+ * size estimates for the kinds of objects we keep in the data cache:
+ * networks and attribute matrices by their stored elements, KtK and
+ * KtT by their dense data, and id and byte arrays by length. Anything else
+ * is given a small fixed weight.
+ */
+public class DataWeigher implements ObjectWeigher {
+    public static final long DEFAULT_WEIGHT = 1024;
+
+    public long weigh(Object object) {
+        if (object == null) {
+            return 0;
+        }
+        else if (object instanceof Matrix) {
+            long bytes = MatrixSizes.heapBytes((Matrix) object);
+            if (bytes >= 0) {
+                return bytes;
+            }
+            Matrix m = (Matrix) object;
+            return 8L*m.numRows()*m.numCols();
+        }
+        else if (object instanceof KtK) {
+            return DEFAULT_WEIGHT + weigh(((KtK) object).getData());
+        }
+        else if (object instanceof KtT) {
+            return DEFAULT_WEIGHT + weigh(((KtT) object).getData());
+        }
+        else if (object instanceof CombinedNetwork) {
+            return DEFAULT_WEIGHT + weigh(((CombinedNetwork) object).getData());
+        }
+        else if (object instanceof DenseMatrix) {
+            DenseMatrix m = (DenseMatrix) object;
+            return MatrixSizes.ARRAY_OVERHEAD + 8L*m.numRows()*m.numColumns();
+        }
+        else if (object instanceof DenseVector) {
+            return MatrixSizes.ARRAY_OVERHEAD + 8L*((DenseVector) object).size();
+        }
+        else if (object instanceof long []) {
+            return MatrixSizes.ARRAY_OVERHEAD + 8L*((long []) object).length;
+        }
+        else if (object instanceof byte []) {
+            return MatrixSizes.ARRAY_OVERHEAD + ((byte []) object).length;
+        }
+        else if (object instanceof double []) {
+            return MatrixSizes.ARRAY_OVERHEAD + 8L*((double []) object).length;
+        }
+        else if (object instanceof String []) {
+            long bytes = MatrixSizes.ARRAY_OVERHEAD;
+            for (String s: (String []) object) {
+                bytes += 8 + (s == null ? 0 : 40 + 2L*s.length());
+            }
+            return bytes;
+        }
+        else {
+            return DEFAULT_WEIGHT;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.genemania.engine.matricks.custom.CompressedSymFloatMatrix;
+import org.genemania.engine.matricks.custom.MappedSymFloatMatrix;
+import org.genemania.exception.ApplicationException;
+
+/**
+ * File cache that stores read-only networks and id arrays in a flat
+ * binary format and reads them back through memory mapping, so large
+ * networks are paged in by the OS on demand rather than deserialized
+ * onto the heap, and the pages are shared by all processes on the host
+ * using the same cache dir. Any other object is java serialized as
+ * in FileSerializedObjectCache, and existing .ser files are still read.
+ *
+ * Binary files are named <last key part>.bin, and contain, little-endian:
+ *
+ *   int magic, 0x474d4e42
+ *   int format version, currently 1
+ *   int type, 1 for a sparse symmetric matrix or 2 for a long []
+ *   int reserved, 0
+ *
+ * followed for type 1 by the matrix layout documented in
+ * MappedSymFloatMatrix, and for type 2 by:
+ *
+ *   int length
+ *   int reserved, 0
+ *   long values[length]
+ *
+ * Only CompressedSymFloatMatrix (and mapped) matrices are stored this way,
+ * since mutable matrices can't be modified through a mapped view. Files
+ * are written to a temp name and renamed into place, so readers already
+ * mapping an older version of a file are not affected.
+ */
+public class MappedFileObjectCache extends FileSerializedObjectCache {
+
+    public static final String BINARY_SUFFIX = ".bin";
+    static final int MAGIC = 0x474d4e42;
+    static final int VERSION = 1;
+    static final int TYPE_SYM_MATRIX = 1;
+    static final int TYPE_LONG_ARRAY = 2;
+    static final int HEADER_SIZE = 16;
+
+    public MappedFileObjectCache(String cacheDir, boolean zipEnabled) {
+        super(cacheDir, zipEnabled);
+    }
+
+    public MappedFileObjectCache(String cacheDir) {
+        super(cacheDir);
+    }
+
+    public String getBinaryFilename(String [] key) throws ApplicationException {
+        if (key == null || key.length == 0) {
+            throw new ApplicationException("empty key");
+        }
+
+        return getSubdirname(key, key.length) + BINARY_SUFFIX;
+    }
+
+    /*
+     * true if we store the given object in binary form
+     */
+    static boolean isBinary(Object value) {
+        return value instanceof CompressedSymFloatMatrix || value instanceof MappedSymFloatMatrix
+                || value instanceof long [];
+    }
+
+    @Override
+    public void put(String [] key, Object value, boolean isVolatile) throws ApplicationException {
+        File binFile = new File(getBinaryFilename(key));
+        File serFile = new File(getFilename(key));
+
+        if (isBinary(value)) {
+            File dir = binFile.getParentFile();
+            if (!dir.isDirectory()) {
+                dir.mkdirs();
+            }
+            write(binFile, value);
+            if (serFile.isFile()) {
+                serFile.delete();
+            }
+        }
+        else {
+            super.put(key, value, isVolatile);
+            if (binFile.isFile()) {
+                binFile.delete();
+            }
+        }
+    }
+
+    @Override
+    public Object get(String [] key, boolean isVolatile) throws ApplicationException {
+        File binFile = new File(getBinaryFilename(key));
+        if (binFile.isFile()) {
+            return read(binFile);
+        }
+        else {
+            return super.get(key, isVolatile);
+        }
+    }
+
+    @Override
+    public void remove(String [] key) throws ApplicationException {
+        if (key == null || key.length == 0) {
+            throw new ApplicationException("directory not given");
+        }
+
+        File binFile = new File(getBinaryFilename(key));
+        if (binFile.isFile()) {
+            binFile.delete();
+            return;
+        }
+
+        super.remove(key);
+    }
+
+    @Override
+    public boolean exists(String [] key) throws ApplicationException {
+        if (key == null || key.length == 0) {
+            throw new ApplicationException("null or empty object key");
+        }
+
+        return new File(getBinaryFilename(key)).exists() || super.exists(key);
+    }
+
+    /*
+     * keys of both binary and serialized objects under the given key,
+     * ignoring any other files such as partially written temp files
+     */
+    @Override
+    public List<String[]> list(String [] key) throws ApplicationException {
+        if (key == null || key.length == 0) {
+            throw new ApplicationException("null or empty object key");
+        }
+
+        List<String[]> result = new ArrayList<String[]>();
+
+        File dir = new File(getSubdirname(key, key.length));
+        if (!dir.isDirectory()) {
+            return result;
+        }
+
+        for (File entry: dir.listFiles()) {
+            String name = entry.getName();
+            String last = stripSuffix(name, BINARY_SUFFIX);
+            if (last == null) {
+                last = stripSuffix(name, ".ser");
+            }
+            if (last == null) {
+                last = stripSuffix(name, ".ser.gz");
+            }
+            if (last == null || !entry.isFile()) {
+                continue;
+            }
+
+            String [] entryKey = new String[key.length + 1];
+            System.arraycopy(key, 0, entryKey, 0, key.length);
+            entryKey[key.length] = last;
+            result.add(entryKey);
+        }
+
+        return result;
+    }
+
+    private static String stripSuffix(String name, String suffix) {
+        if (name.endsWith(suffix)) {
+            return name.substring(0, name.length() - suffix.length());
+        }
+        return null;
+    }
+
+    void write(File file, Object value) throws ApplicationException {
+        int type;
+        long size;
+        if (value instanceof long []) {
+            type = TYPE_LONG_ARRAY;
+            size = 8 + 8L*((long []) value).length;
+        }
+        else {
+            if (value instanceof MappedSymFloatMatrix) {
+                value = ((MappedSymFloatMatrix) value).toCompressed();
+            }
+            type = TYPE_SYM_MATRIX;
+            size = MappedSymFloatMatrix.byteSize((CompressedSymFloatMatrix) value);
+        }
+
+        size += HEADER_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new ApplicationException("object too large to map: " + file);
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+            try {
+                raf.setLength(size);
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(type);
+                buffer.putInt(0);
+
+                if (type == TYPE_LONG_ARRAY) {
+                    long [] values = (long []) value;
+                    buffer.putInt(values.length);
+                    buffer.putInt(0);
+                    buffer.asLongBuffer().put(values);
+                }
+                else {
+                    MappedSymFloatMatrix.write((CompressedSymFloatMatrix) value, buffer);
+                }
+
+                buffer.force();
+            }
+            finally {
+                raf.close();
+            }
+
+            if (!tmpFile.renameTo(file)) {
+                // some platforms won't rename over an existing file
+                file.delete();
+                if (!tmpFile.renameTo(file)) {
+                    throw new IOException("failed to rename " + tmpFile + " to " + file);
+                }
+            }
+        }
+        catch (IOException e) {
+            tmpFile.delete();
+            throw new ApplicationException("Failed to save object to: " + file, e);
+        }
+    }
+
+    Object read(File file) throws ApplicationException {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                    throw new ApplicationException("invalid cache file size: " + file);
+                }
+
+                // the mapping stays valid after the channel is closed
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                if (buffer.getInt() != MAGIC) {
+                    throw new ApplicationException("not a binary cache file: " + file);
+                }
+                int version = buffer.getInt();
+                if (version != VERSION) {
+                    throw new ApplicationException("unsupported cache file version " + version + ": " + file);
+                }
+                int type = buffer.getInt();
+                buffer.getInt();
+
+                if (type == TYPE_SYM_MATRIX) {
+                    return MappedSymFloatMatrix.map(buffer);
+                }
+                else if (type == TYPE_LONG_ARRAY) {
+                    int length = buffer.getInt();
+                    buffer.getInt();
+                    long [] values = new long[length];
+                    buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(values);
+                    return values;
+                }
+                else {
+                    throw new ApplicationException("unknown object type " + type + " in cache file: " + file);
+                }
+            }
+            finally {
+                raf.close();
+            }
+        }
+        catch (IOException e) {
+            throw new ApplicationException("Failed to load object from: " + file, e);
+        }
+        catch (RuntimeException e) {
+            // e.g. buffer underflow or invalid matrix data in a truncated file
+            throw new ApplicationException("Failed to load object from: " + file, e);
+        }
+    }
+}
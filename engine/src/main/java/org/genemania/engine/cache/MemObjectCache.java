@@ -23,17 +23,20 @@ import java.io.File;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.genemania.engine.core.data.Data;
 import org.genemania.exception.ApplicationException;
 
 /**
  * wraps an underlying IObjectCache instance, providing
- * mem caching support
+ * mem caching support. core node ids and KtK are pinned in
+ * memory, up to the memory cache's pinned budget, everything
+ * else is subject to LRU eviction
  */
 public class MemObjectCache implements IObjectCache {
     private static Logger logger = Logger.getLogger(MemObjectCache.class);
 
     IObjectCache underlyingCache;
-    SoftRefObjectCache memCache = SoftRefObjectCache.instance();
+    BoundedObjectCache memCache = BoundedObjectCache.instance();
     public static final String CORE = "core"; // core namespace
 
     public MemObjectCache(IObjectCache underlyingCache) {
@@ -63,7 +66,7 @@ public class MemObjectCache implements IObjectCache {
      */
     public void put(String [] key, Object value, boolean isVolatile) throws ApplicationException {
         if (!isVolatile) {
-            memCache.put(makeMemCacheKey(key), value);
+            memCache.put(makeMemCacheKey(key), value, isPinned(key));
         }
         underlyingCache.put(key, value, isVolatile);
     }
@@ -77,16 +80,20 @@ public class MemObjectCache implements IObjectCache {
         // stat the file in the underyling store somehow, or add cache expiry time
         // or something ... (TODO)
         if (isVolatile) {
-            logger.debug(String.format("volatile object %s, skipping memory cache", memCacheKey));
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("volatile object %s, skipping memory cache", memCacheKey));
+            }
             object = underlyingCache.get(key, isVolatile);           
         }
         else {
             object = memCache.get(memCacheKey);
 
             if (object == null) {
-                logger.debug(String.format("memory cache miss for %s", memCacheKey));
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("memory cache miss for %s", memCacheKey));
+                }
                 object = underlyingCache.get(key, isVolatile);
-                memCache.put(memCacheKey, object);
+                memCache.put(memCacheKey, object, isPinned(key));
             }
         }
 
@@ -99,6 +106,23 @@ public class MemObjectCache implements IObjectCache {
     }
 
     
+    /*
+     * objects needed by most requests on an organism, which we
+     * don't want to have to reload after a burst of other traffic
+     */
+    protected boolean isPinned(String [] key) {
+        if (!Data.CORE.equals(key[0])) {
+            return false;
+        }
+
+        String name = key[key.length-1];
+        return name.equals("nodeIds") || name.endsWith(".KtK");
+    }
+
+    public BoundedObjectCache getMemCache() {
+        return memCache;
+    }
+
     public boolean exists(String[] key) throws ApplicationException {
     	return underlyingCache.exists(key);
 	}
@@ -0,0 +1,150 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.apache.log4j.Logger;
+
+/**
+ * memory cache of whole responses, so identical queries reaching
+ * the engine from any client aren't recomputed. keys are supplied
+ * by the caller and should capture everything the response depends
+ * on, see FindRelated.getResultKey(). one of these belongs to each
+ * DataCache, which clears it when the data changes.
+ *
+ * each clear starts a new generation. a response computed while the
+ * cache was cleared may be stale, so callers note the generation
+ * before computing and the response is only stored if it's unchanged.
+ *
+ * responses are held in serialized form. this gives an exact size
+ * to count against the byte budget, and each hit gets its own copy
+ * that the caller is free to modify. least recently used responses
+ * are dropped when over budget.
+ *
+ * a max size of 0 disables the cache.
+ */
+public class ResultCache {
+    private static Logger logger = Logger.getLogger(ResultCache.class);
+
+    private final BoundedObjectCache cache;
+    private long generation;
+
+    public ResultCache(long maxBytes) {
+        if (maxBytes > 0) {
+            cache = new BoundedObjectCache(maxBytes, new DataWeigher());
+        }
+        else {
+            cache = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /*
+     * a copy of the cached response, or null if not found
+     */
+    public Serializable get(String key) {
+        if (cache == null) {
+            return null;
+        }
+
+        byte [] bytes = (byte []) cache.get(key);
+        if (bytes == null) {
+            return null;
+        }
+
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return (Serializable) in.readObject();
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (Exception e) {
+            logger.warn("failed to read cached result " + key, e);
+            cache.remove(key);
+            return null;
+        }
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public void put(String key, Serializable response) {
+        put(key, response, getGeneration());
+    }
+
+    /*
+     * store the response only if the cache hasn't been cleared
+     * since the given generation
+     */
+    public void put(String key, Serializable response, long generation) {
+        if (cache == null || response == null) {
+            return;
+        }
+
+        byte [] bytes;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ObjectOutputStream objects = new ObjectOutputStream(out);
+            objects.writeObject(response);
+            objects.close();
+            bytes = out.toByteArray();
+        }
+        catch (IOException e) {
+            logger.warn("failed to cache result " + key, e);
+            return;
+        }
+
+        synchronized (this) {
+            if (generation != this.generation) {
+                logger.debug("data changed while computing result " + key + ", not cached");
+                return;
+            }
+            cache.put(key, bytes);
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (cache == null) {
+            return "disabled";
+        }
+        return cache.toString();
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants;
+import org.genemania.engine.Constants.PreconditionerType;
 import org.genemania.exception.ApplicationException;
 
 /**
@@ -49,6 +50,24 @@ public class Config {
     static final String IS_NETWORK_WEIGHT_NORMALIZATION_ENABLED = "isNetworkWeightNormalizationEnabled";
     static final String IS_COMBINED_NETWORK_NORMALIZATION_ENABLED = "isCombinedNetworkNormalizationEnabled";
     static final String ATTRIBUTE_ENRICHMENT_MAX_SIZE = "attributeEnrichmentMaxSize";
+    static final String PROPAGATION_PRECONDITIONER = "propagationPreconditioner";
+    static final String PROPAGATION_TOLERANCE = "propagationTolerance";
+    static final String PROPAGATION_MAX_ITERATIONS = "propagationMaxIterations";
+    static final String PROPAGATION_WARM_START_ENABLED = "isPropagationWarmStartEnabled";
+    static final String PROPAGATION_WARM_START_CACHE_SIZE = "propagationWarmStartCacheSize";
+    static final String PROPAGATION_BLOCK_SIZE = "propagationBlockSize";
+    static final String MATRIX_THREADS = "matrixThreads";
+    static final String IS_MAPPED_CACHE_ENABLED = "isMappedCacheEnabled";
+    static final String MEM_CACHE_MAX_BYTES = "memCacheMaxBytes";
+    static final String MEM_CACHE_MAX_PINNED_BYTES = "memCacheMaxPinnedBytes";
+    static final String GRAM_BUILDER_THREADS = "gramBuilderThreads";
+    static final String SOURCE_INTERACTION_THREADS = "sourceInteractionThreads";
+    static final String PROFILE_TO_NETWORK_THREADS = "profileToNetworkThreads";
+    static final String RESULT_CACHE_MAX_BYTES = "resultCacheMaxBytes";
+    static final String PRECOMBINE_QUERY_THRESHOLD = "precombineQueryThreshold";
+    static final String PRECOMBINE_MAX_BYTES = "precombineMaxBytes";
+    static final String IS_METRICS_ENABLED = "isMetricsEnabled";
+    static final String SLOW_QUERY_MILLIS = "slowQueryMillis";
     
     
     private MatrixFactory matrixFactory;
@@ -141,4 +160,83 @@ public class Config {
     public int getAttributeEnrichmentMaxSize() {
     	return configData.getInt(ATTRIBUTE_ENRICHMENT_MAX_SIZE, Constants.DEFAULT_ATTRIBUTE_ENRICHMENT_MAX_SIZE);
     }
+
+    public PreconditionerType getPropagationPreconditioner() {
+        String name = configData.getString(PROPAGATION_PRECONDITIONER, Constants.DEFAULT_PROPAGATION_PRECONDITIONER.name());
+        try {
+            return PreconditionerType.valueOf(name.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            logger.warn("unknown preconditioner type, using default: " + name);
+            return Constants.DEFAULT_PROPAGATION_PRECONDITIONER;
+        }
+    }
+
+    public double getPropagationTolerance() {
+        return configData.getDouble(PROPAGATION_TOLERANCE, Constants.DEFAULT_PROPAGATION_TOLERANCE);
+    }
+
+    public int getPropagationMaxIterations() {
+        return configData.getInt(PROPAGATION_MAX_ITERATIONS, Constants.DEFAULT_PROPAGATION_MAX_ITERATIONS);
+    }
+
+    public boolean isPropagationWarmStartEnabled() {
+        return configData.getBoolean(PROPAGATION_WARM_START_ENABLED, Constants.DEFAULT_PROPAGATION_WARM_START_ENABLED);
+    }
+
+    public int getPropagationWarmStartCacheSize() {
+        return configData.getInt(PROPAGATION_WARM_START_CACHE_SIZE, Constants.DEFAULT_PROPAGATION_WARM_START_CACHE_SIZE);
+    }
+
+    public int getPropagationBlockSize() {
+        return configData.getInt(PROPAGATION_BLOCK_SIZE, Constants.DEFAULT_PROPAGATION_BLOCK_SIZE);
+    }
+
+    public int getMatrixThreads() {
+        return configData.getInt(MATRIX_THREADS, Constants.DEFAULT_MATRIX_THREADS);
+    }
+
+    public boolean isMappedCacheEnabled() {
+        return configData.getBoolean(IS_MAPPED_CACHE_ENABLED, Constants.DEFAULT_MAPPED_CACHE_ENABLED);
+    }
+
+    public long getMemCacheMaxBytes() {
+        return configData.getLong(MEM_CACHE_MAX_BYTES, Constants.DEFAULT_MEM_CACHE_MAX_BYTES);
+    }
+
+    public long getMemCacheMaxPinnedBytes() {
+        return configData.getLong(MEM_CACHE_MAX_PINNED_BYTES, Constants.DEFAULT_MEM_CACHE_MAX_PINNED_BYTES);
+    }
+
+    public int getGramBuilderThreads() {
+        return configData.getInt(GRAM_BUILDER_THREADS, Constants.DEFAULT_GRAM_BUILDER_THREADS);
+    }
+
+    public int getSourceInteractionThreads() {
+        return configData.getInt(SOURCE_INTERACTION_THREADS, Constants.DEFAULT_SOURCE_INTERACTION_THREADS);
+    }
+
+    public int getProfileToNetworkThreads() {
+        return configData.getInt(PROFILE_TO_NETWORK_THREADS, Constants.DEFAULT_PROFILE_TO_NETWORK_THREADS);
+    }
+
+    public long getResultCacheMaxBytes() {
+        return configData.getLong(RESULT_CACHE_MAX_BYTES, Constants.DEFAULT_RESULT_CACHE_MAX_BYTES);
+    }
+
+    public int getPrecombineQueryThreshold() {
+        return configData.getInt(PRECOMBINE_QUERY_THRESHOLD, Constants.DEFAULT_PRECOMBINE_QUERY_THRESHOLD);
+    }
+
+    public long getPrecombineMaxBytes() {
+        return configData.getLong(PRECOMBINE_MAX_BYTES, Constants.DEFAULT_PRECOMBINE_MAX_BYTES);
+    }
+
+    public boolean isMetricsEnabled() {
+        return configData.getBoolean(IS_METRICS_ENABLED, Constants.DEFAULT_METRICS_ENABLED);
+    }
+
+    public long getSlowQueryMillis() {
+        return configData.getLong(SLOW_QUERY_MILLIS, Constants.DEFAULT_SLOW_QUERY_MILLIS);
+    }
 }
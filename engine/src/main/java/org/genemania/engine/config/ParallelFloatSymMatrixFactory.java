@@ -0,0 +1,51 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.config;
+
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.AbstractCompressedSymFloatMatrix;
+import org.genemania.engine.matricks.custom.ParallelFlexSymFloatMatrix;
+
+/**
+ * as FloatSymMatrixFactory, but symmetric sparse matrices
+ * are multiplied using matrixThreads threads. mainly for
+ * label propagation over the combined network. Combined networks
+ * read back from the cache don't come from this factory, see
+ * parallelize().
+ */
+public class ParallelFloatSymMatrixFactory extends FloatSymMatrixFactory {
+
+    @Override
+    public SymMatrix symSparseMatrix(int size) {
+        return new ParallelFlexSymFloatMatrix(size, Config.instance().getMatrixThreads());
+    }
+
+    /*
+     * multiply the given matrix using matrixThreads threads too, if
+     * it's a format that supports it. for cached networks, heap or
+     * mapped, which are shared, but the thread count is the same
+     * for all users.
+     */
+    public void parallelize(SymMatrix m) {
+        if (m instanceof AbstractCompressedSymFloatMatrix) {
+            ((AbstractCompressedSymFloatMatrix) m).setThreads(Config.instance().getMatrixThreads());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.converter.sym;
+
+import org.genemania.engine.core.data.NodeIds;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.exception.ApplicationException;
+import org.genemania.mediator.InteractionCursor;
+import org.genemania.util.ProgressReporter;
+
+/**
+ * build the matrix for a single network directly from a cursor
+ * over its interactions, such as one parsing an uploaded data
+ * stream, without staging the interactions anywhere first.
+ * 
+ * the cursor can only be consumed once, and is closed after
+ * building the matrix.
+ */
+public class StreamNetworkSymMatrixProvider extends CursorNetworkSymMatrixProvider implements INetworkSymMatrixProvider {
+
+    public StreamNetworkSymMatrixProvider(InteractionCursor cursor, NodeIds nodeIds) {
+        this.cursor = cursor;
+        this.nodeIds = nodeIds;
+    }
+
+    public SymMatrix getNetworkMatrix(long networkId, ProgressReporter progress) throws ApplicationException {
+        if (networkId != cursor.getNetworkId()) {
+            throw new ApplicationException(String.format("cursor is over network %d, not %d", cursor.getNetworkId(), networkId));
+        }
+
+        return convertNetworkToMatrix(progress);
+    }
+}
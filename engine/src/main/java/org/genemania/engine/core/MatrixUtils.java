@@ -20,9 +20,9 @@
 package org.genemania.engine.core;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -755,6 +755,13 @@ public class MatrixUtils {
     }
 
     /**
+     * the query nodes and the top limitResults other nodes scoring above
+     * the threshold, all in order of decreasing score. ties are ordered by
+     * node index.
+     *
+     * the query and non-query nodes are each selected with a bounded heap,
+     * then merged, rather than sorting all the scores.
+     *
      * @param scores
      * @param indicesForPositiveNodes
      * @param limitResults
@@ -763,85 +770,66 @@ public class MatrixUtils {
      */
     public static int[] getIndicesForTopScores(Vector scores, List<Integer> indicesForPositiveNodes, int limitResults, double threshold) {
 
-        /**
-         * inner class holds both score and node index, and implements
-         * compareTo by comparing score in descending order. Use this to sort values.
-         *
-         */
-        class IndexedScore implements Comparable {
-
-            int index;
-            double score;
-
-            public int compareTo(Object o) {
-                IndexedScore oo = (IndexedScore) o;
-                return -Double.compare(this.score, oo.score); // the minus sign is for descending order
+        final int n = scores.size();
+        BitSet positiveSet = new BitSet(n);
+        for (int index: indicesForPositiveNodes) {
+            if (index >= 0 && index < n) {
+                positiveSet.set(index);
             }
         }
 
-        // build up the indexed score objects and sort
-        java.util.Vector<IndexedScore> indexedScores = new java.util.Vector<IndexedScore>();
+        TopKSelector queryNodes = new TopKSelector(positiveSet.cardinality());
+        TopKSelector otherNodes = new TopKSelector(limitResults);
+        final double minScore = threshold + DELTA;
 
-        for (VectorEntry e: scores) {
-            int i = e.index();
-            double score = e.get();
-            IndexedScore is = new IndexedScore();
-            is.index = i;
-            is.score = score;
-            indexedScores.add(is);
+        if (scores instanceof DenseVector) {
+            double [] data = ((DenseVector) scores).getData();
+            for (int i = 0; i < n; i++) {
+                offerScore(i, data[i], positiveSet, queryNodes, otherNodes, minScore);
+            }
+        }
+        else {
+            for (VectorEntry e: scores) {
+                offerScore(e.index(), e.get(), positiveSet, queryNodes, otherNodes, minScore);
+            }
         }
 
-        Collections.sort(indexedScores);
-
-        // extract the top limitresult scores not including
-        // the positive nodes, adding those in as well, in order.
-        //
-        // we create a set containing the positive nodes,
-        // and remove from the set as they are encountered
-        HashSet<Integer> positiveSet = new HashSet<Integer>();
-        positiveSet.addAll(indicesForPositiveNodes);
-        int numQueryNodes = positiveSet.size();
-
-        int totalResults = limitResults + positiveSet.size();
-        // TODO: what about totalResults = Math.min(totalResults, scores.size());
-
-        int[] result = new int[totalResults]; // this may be an overallocation of space
-
-        int i = 0; // index into sorted scores
-        int j = 0; // index into results
-        int numQueryNodesAdded = 0;
-        int numNonQueryNodesAdded = 0;
-
-        while (i < scores.size() && (numQueryNodesAdded < numQueryNodes || numNonQueryNodesAdded < limitResults)) {
-            IndexedScore is = indexedScores.get(i);
+        // merge the two ordered lists
+        int [] query = queryNodes.sortedIndices();
+        int [] other = otherNodes.sortedIndices();
+        int [] result = new int[query.length + other.length];
 
-            // query genes
-            if (positiveSet.contains(is.index)) {
-                    positiveSet.remove(is.index);
-                    numQueryNodesAdded += 1;
-                    result[j] = is.index;
-                    j += 1;
+        int i = 0; // index into query nodes
+        int j = 0; // index into other nodes
+        int k = 0; // index into result
+        while (i < query.length && j < other.length) {
+            if (TopKSelector.isBetter(query[i], queryNodes.getScore(i), other[j], otherNodes.getScore(j))) {
+                result[k++] = query[i++];
             }
-            // non-query genes
-            else if (numNonQueryNodesAdded < limitResults && is.score > (threshold + DELTA)) {
-                    numNonQueryNodesAdded += 1;
-                    result[j] = is.index;
-                    j += 1;
+            else {
+                result[k++] = other[j++];
             }
-
-            i += 1;
         }
-
-        // resize
-         if (j < totalResults) {
-            int[] tmp = new int[j];
-            System.arraycopy(result, 0, tmp, 0, j);
-            result = tmp;
+        while (i < query.length) {
+            result[k++] = query[i++];
+        }
+        while (j < other.length) {
+            result[k++] = other[j++];
         }
 
         return result;
     }
 
+    private static void offerScore(int index, double score, BitSet positiveSet, TopKSelector queryNodes,
+            TopKSelector otherNodes, double minScore) {
+        if (positiveSet.get(index)) {
+            queryNodes.offer(index, score);
+        }
+        else if (score > minScore) {
+            otherNodes.offer(index, score);
+        }
+    }
+
     static class IndexedScore implements Comparable {
 
         int index;
@@ -53,6 +53,10 @@ public class ProfileToNetwork {
 	private static Logger logger = Logger.getLogger(ProfileToNetwork.class);
 	static boolean isNaNCheckingEnabled = false;
 
+	// # of genes per tile when computing correlations, so a pair of
+	// tiles of the profile stays in cache
+	static final int TILE_SIZE = 64;
+
 	public static Matrix continuousProfile(Matrix profile, int k) {
 		return continuousProfile(profile, k, 25.0); // TODO: get rid of default and make caller decide?
 	}
@@ -82,25 +86,7 @@ public class ProfileToNetwork {
 		
 		findNaNs(profile);
 		
-		for (int i=0; i<numGenes; i++) {
-			
-			// this gene was filtered out. skipping is just
-			// an optimization, since the values in the profile for this
-			// gene have been set to 0 by this point, letting the calculation
-			// go through would produce 0's.
-			if (goodGenes[i] == false) {
-				continue;
-			}
-			
-			Matrix correlations = computeCorrelations(profile, i);
-			//System.out.println("correlations: " + correlations.numRows() + " " + correlations.numColumns());
-			//for (int z=0; z<correlations.numColumns(); z++) {
-			//	System.out.println("z, corr: " + z + " " + correlations.get(0, z));
-			//}
-			findNaNs(correlations);
-			
-			setTopK(network, correlations, i, k+1);  // the +1 is because we haven't removed the diagonal term yet
-		}
+		setTopK(network, profile, goodGenes, k+1);  // the +1 is because we haven't removed the diagonal term yet
 
 		MatrixUtils.setDiagonalZero(network);
 		MatrixUtils.setToMaxTranspose(network);
@@ -143,41 +129,7 @@ public class ProfileToNetwork {
 		int numGenes = profile.numColumns();
 		Matrix network = new FlexCompColMatrix(numGenes, numGenes);
 
-		for (int i=0; i<numGenes; i++) {
-			
-			// this gene was filtered out. skipping is just
-			// an optimization, since the values in the profile for this
-			// gene have been set to 0 by this point, letting the calculation
-			// go through would produce 0's.
-			if (goodGenes[i] == false) {
-				continue;
-			}
-			
-//			if ( i == 1139 ){
-//				
-//				double[] values = new double[24];
-//				
-//				for ( int l = 0; l < 24; l++ ){
-//					values[l] = profile.get(l, i);
-//				}
-//				System.out.println("here");
-//			}
-			
-			Matrix correlations = computeCorrelations(profile, i);
-			//System.out.println("correlations: " + correlations.numRows() + " " + correlations.numColumns());
-			//for (int z=0; z<correlations.numColumns(); z++) {
-			//	System.out.println("z, corr: " + z + " " + correlations.get(0, z));
-			//}
-			findNaNs(correlations);
-			
-//			if ( names[i].equals("Sc:122400") ){
-//				System.out.println("here...");
-//			}
-//			if ( names[i].equals("Sc:119951") ){
-//				System.out.println("here...");
-//			}
-			setTopK(network, correlations, i, k+1);  // the +1 is because we haven't removed the diagonal term yet
-		}
+		setTopK(network, profile, goodGenes, k+1);  // the +1 is because we haven't removed the diagonal term yet
 
 		MatrixUtils.setDiagonalZero(network);
 		MatrixUtils.setToMaxTranspose(network);
@@ -246,21 +198,6 @@ public class ProfileToNetwork {
 		}
 	}
 	
-	private static Matrix computeCorrelations(Matrix terms, int i) {
-		findNaNs(terms);
-		int numGenes = terms.numColumns();
-		int numFeatures = terms.numRows();
-		
-		int [] all = Matrices.index(0, numFeatures);  
-		Matrix iTerms = Matrices.getSubMatrix(terms, all, new int[] {i}).copy(); // TODO: do we really need this copy?
-		Matrix correlations = new DenseMatrix(1, numGenes); // TODO: how about preallocating this once?
-		
-		iTerms.transAmult(terms, correlations);
-		//correlations.scale(1d/numFeatures);
-		
-		return correlations;
-	}
-	
 	/**
 	 * just for some performance testing ... incomplete
 	 * @param terms
@@ -325,23 +262,89 @@ public class ProfileToNetwork {
 	}
 
 	/**
-	 * skip elements <= minVal
+	 * for each good gene i, set the k largest correlations between i and
+	 * every gene into row i of the network, leaving 0's as sparse. ties
+	 * go to the lower gene index, as with a stable sort of the row.
+	 * 
+	 * the correlations are the dot products of the columns of the 
+	 * normalized terms, computed as Z'Z a tile of genes against a tile of
+	 * genes at a time and offered straight to a per-gene top-k selector,
+	 * so the NxN correlation matrix is never held in memory. since Z'Z is
+	 * symmetric only the lower tiles are computed, each product being
+	 * offered to both genes.
 	 * 
 	 * @param network
-	 * @param correlations
-	 * @param minVal
-	 * @param i
+	 * @param terms normalized profile, with no missing values
+	 * @param goodGenes
 	 * @param k
 	 */
-	private static void setTopK(Matrix network, Matrix correlations, int i, int k) {
-		Vector v = MatrixUtils.extractRowToVector(correlations, 0);
-		int [] indices = MatrixUtils.getIndicesForSortedValues(v);
-		
-		for (int j=0; j<indices.length && j<k; j++) {
-			if (v.get(indices[j]) != 0) {  // leave 0's as sparse
-				network.set(i, indices[j], v.get(indices[j]));
+	private static void setTopK(Matrix network, Matrix terms, boolean [] goodGenes, int k) {
+		int numGenes = terms.numColumns();
+		int numFeatures = terms.numRows();
+		double [] z = columnMajorData(terms);
+
+		TopKSelector [] selectors = new TopKSelector[numGenes];
+		for (int i=0; i<numGenes; i++) {
+			if (goodGenes[i]) {
+				selectors[i] = new TopKSelector(k);
 			}
 		}
+
+		for (int i0=0; i0<numGenes; i0+=TILE_SIZE) {
+			int i1 = Math.min(i0 + TILE_SIZE, numGenes);
+			for (int j0=0; j0<=i0; j0+=TILE_SIZE) {
+				int j1 = Math.min(j0 + TILE_SIZE, numGenes);
+				for (int i=i0; i<i1; i++) {
+					int starti = i * numFeatures;
+					int jEnd = Math.min(j1, i+1);
+					for (int j=j0; j<jEnd; j++) {
+						int startj = j * numFeatures;
+						double prod = 0;
+						for (int f=0; f<numFeatures; f++) {
+							prod += z[starti+f] * z[startj+f];
+						}
+
+						if (selectors[i] != null) {
+							selectors[i].offer(j, prod);
+						}
+						if (j != i && selectors[j] != null) {
+							selectors[j].offer(i, prod);
+						}
+					}
+				}
+			}
+		}
+
+		for (int i=0; i<numGenes; i++) {
+			if (selectors[i] == null) {
+				continue;
+			}
+			int [] indices = selectors[i].sortedIndices();
+			for (int j=0; j<indices.length; j++) {
+				double val = selectors[i].getScore(j);
+				if (val != 0) {  // leave 0's as sparse
+					network.set(i, indices[j], val);
+				}
+			}
+			selectors[i] = null;
+		}
+	}
+
+	/*
+	 * the profile as a contiguous column-major array, so each gene's
+	 * terms are adjacent. shares the backing array of a dense matrix.
+	 */
+	private static double [] columnMajorData(Matrix m) {
+		if (m instanceof DenseMatrix) {
+			return ((DenseMatrix) m).getData();
+		}
+
+		int numRows = m.numRows();
+		double [] data = new double[numRows * m.numColumns()];
+		for (MatrixEntry e: m) {
+			data[e.column() * numRows + e.row()] = e.get();
+		}
+		return data;
 	}
 	
 	public static void setHiLow(Matrix network, Matrix correlations, int i, double hi, double low) {
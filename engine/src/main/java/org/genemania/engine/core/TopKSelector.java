@@ -0,0 +1,134 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core;
+
+/**
+ * keeps the k best (index, score) pairs offered, in primitive arrays
+ * so nothing is allocated per offer. pairs are ordered by score
+ * descending as by Double.compare, so NaN ranks above everything,
+ * with ties going to the lower index. this is the same order a stable
+ * descending sort of all the scores by index would give.
+ *
+ * the heap keeps the worst of the retained pairs at the top, so each
+ * offer is O(1) for the common case of a pair that doesn't make the
+ * cut, and O(log k) otherwise.
+ */
+public class TopKSelector {
+    private final int k;
+    private final int [] indices;
+    private final double [] scores;
+    private int size;
+
+    public TopKSelector(int k) {
+        this.k = Math.max(k, 0);
+        indices = new int[this.k];
+        scores = new double[this.k];
+    }
+
+    /*
+     * true if (index1, score1) ranks ahead of (index2, score2)
+     */
+    public static boolean isBetter(int index1, double score1, int index2, double score2) {
+        int c = Double.compare(score1, score2);
+        return c > 0 || (c == 0 && index1 < index2);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void offer(final int index, final double score) {
+        if (size < k) {
+            indices[size] = index;
+            scores[size] = score;
+            siftUp(size);
+            size++;
+        }
+        else if (k > 0 && isBetter(index, score, indices[0], scores[0])) {
+            indices[0] = index;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /*
+     * the retained indices, best first. sorts in place,
+     * so no more pairs can be offered afterwards.
+     */
+    public int [] sortedIndices() {
+        // heap sort, moving the worst remaining to the end each time
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+
+        int [] result = new int[size];
+        System.arraycopy(indices, 0, result, 0, size);
+        return result;
+    }
+
+    /*
+     * scores matching sortedIndices(), only valid after calling it
+     */
+    public double getScore(int i) {
+        return scores[i];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (isBetter(indices[parent], scores[parent], indices[i], scores[i])) {
+                swap(parent, i);
+                i = parent;
+            }
+            else {
+                return;
+            }
+        }
+    }
+
+    private void siftDown(int i, final int end) {
+        while (true) {
+            int worst = i;
+            int left = 2*i + 1;
+            int right = left + 1;
+            if (left < end && isBetter(indices[worst], scores[worst], indices[left], scores[left])) {
+                worst = left;
+            }
+            if (right < end && isBetter(indices[worst], scores[worst], indices[right], scores[right])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        int index = indices[i];
+        indices[i] = indices[j];
+        indices[j] = index;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
@@ -44,6 +44,10 @@ public class DataSupport {
 
             return true;
         }        
+        // shared with other processes, which update them
+        else if (data instanceof OnDemandCombinedNetwork) {
+            return true;
+        }
         // remaining objects non-volatile
         else {
             return false;
@@ -21,6 +21,9 @@ package org.genemania.engine.core.data;
 
 import no.uib.cipr.matrix.DenseMatrix;
 
+import org.genemania.engine.core.MatrixUtils;
+import org.genemania.exception.ApplicationException;
+
 
 /**
  * Store's KtK.
@@ -32,11 +35,18 @@ import no.uib.cipr.matrix.DenseMatrix;
  * KtK is constructed with a dense network of 1's in the first column of K, so
  * KtK(0,0) = n*(n-1) and KtK(0,i) = KtK(i,0) = sum(sum(network_i)) for each network i
  * from 1 to d=# of networks, and each network is n-by-n with no self-interactions.
+ *
+ * A user data set's KtK can be layered over the core KtK, to avoid a
+ * private copy of the core block in every namespace. The leading
+ * coreSize rows and columns then belong to the core KtK, and data holds
+ * only the remaining rows, each over all the columns. Use flatten()
+ * to get the whole matrix. coreSize is 0 when data is the whole matrix.
  */
 public class KtK extends Data {
     private static final long serialVersionUID = -513356220806789800L;
     private String goBranch;
     private DenseMatrix data;
+    private int coreSize;
 
     public KtK(String namespace, long organismId, String goBranch) {
         super(namespace, organismId);
@@ -48,10 +58,100 @@ public class KtK extends Data {
         KtK copy = new KtK(newNamespace, getOrganismId(), getGoBranch());
         DenseMatrix newData = data.copy();
         copy.setData(newData);
+        copy.setCoreSize(coreSize);
 
         return copy;
     }
 
+    /*
+     * an initially empty layer over this core KtK, for the given namespace
+     */
+    public KtK layer(String newNamespace) {
+        KtK layer = new KtK(newNamespace, getOrganismId(), getGoBranch());
+        layer.setData(new DenseMatrix(0, data.numColumns()));
+        layer.setCoreSize(data.numRows());
+
+        return layer;
+    }
+
+    public boolean isLayered() {
+        return coreSize > 0;
+    }
+
+    /*
+     * the whole matrix for a layered KtK, combining the
+     * given core KtK with the rows stored here
+     */
+    public KtK flatten(KtK core) throws ApplicationException {
+        if (!isLayered()) {
+            return this;
+        }
+
+        DenseMatrix coreData = core.getData();
+        if (coreData.numRows() != coreSize) {
+            throw new ApplicationException(String.format("core KtK has size %d, but was %d when user data was layered over it", coreData.numRows(), coreSize));
+        }
+
+        // both column-major, copy core a column at a time
+        int n = size();
+        DenseMatrix full = new DenseMatrix(n, n);
+        double [] coreValues = coreData.getData();
+        double [] fullValues = full.getData();
+        for (int j=0; j<coreSize; j++) {
+            System.arraycopy(coreValues, j*coreSize, fullValues, j*n, coreSize);
+        }
+        for (int i=0; i<data.numRows(); i++) {
+            for (int j=0; j<n; j++) {
+                double val = data.get(i, j);
+                full.set(coreSize + i, j, val);
+                full.set(j, coreSize + i, val);
+            }
+        }
+
+        KtK flat = new KtK(getNamespace(), getOrganismId(), getGoBranch());
+        flat.setData(full);
+        return flat;
+    }
+
+    /*
+     * # of rows and columns in the whole matrix
+     */
+    public int size() {
+        return coreSize + data.numRows();
+    }
+
+    /*
+     * add a row and column of 0's at the end
+     */
+    public void addNetwork() {
+        // for a layered KtK this is a new row in data, and
+        // a new column in each of the other stored rows
+        data = MatrixUtils.copyLarger(data, 1, 1);
+    }
+
+    /*
+     * set the symmetric pair of elements (i, j) and (j, i).
+     * for a layered KtK at least one of them must be
+     * outside the core block.
+     */
+    public void set(int i, int j, double val) {
+        if (isLayered()) {
+            if (i < coreSize && j < coreSize) {
+                throw new IllegalArgumentException("can't modify the core block of a layered KtK");
+            }
+            if (i >= coreSize) {
+                data.set(i - coreSize, j, val);
+            }
+            if (j >= coreSize) {
+                data.set(j - coreSize, i, val);
+            }
+        }
+        else {
+            data.set(i, j, val);
+            data.set(j, i, val);
+        }
+    }
+
     /**
      * @return the data
      */
@@ -66,6 +166,20 @@ public class KtK extends Data {
         this.data = data;
     }
 
+    /**
+     * @return the # of leading rows and columns held by the core KtK
+     */
+    public int getCoreSize() {
+        return coreSize;
+    }
+
+    /**
+     * @param coreSize the coreSize to set
+     */
+    public void setCoreSize(int coreSize) {
+        this.coreSize = coreSize;
+    }
+
     /**
      * @return the branch
      */
@@ -85,16 +199,31 @@ public class KtK extends Data {
         return new String [] {getNamespace(), "" + getOrganismId(), getGoBranch() + ".KtK"};
     }
 
+    /*
+     * for a layered KtK, the index must be outside the core block
+     */
     public void removeNetworkAtIndex(int index) {
+        if (isLayered()) {
+            if (index < coreSize) {
+                throw new IllegalArgumentException("can't remove from the core block of a layered KtK");
+            }
+            data = removeRowAndColumn(data, index - coreSize, index);
+        }
+        else {
+            data = removeRowAndColumn(data, index, index);
+        }
+    }
+
+    private static DenseMatrix removeRowAndColumn(DenseMatrix data, int row, int column) {
         DenseMatrix newData = new DenseMatrix(data.numRows()-1, data.numColumns()-1);
 
         int k=0;
 
         for (int i=0; i<data.numRows(); i++) {
             int l=0;
-            if (i != index) {
+            if (i != row) {
                 for (int j=0; j<data.numColumns(); j++) {
-                    if (j != index) {
+                    if (j != column) {
                         newData.set(k, l, data.get(i, j));
                         l += 1;
                     }
@@ -103,6 +232,6 @@ public class KtK extends Data {
             }
         }
 
-        data = newData;
+        return newData;
     }
 }
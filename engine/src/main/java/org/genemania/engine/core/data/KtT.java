@@ -21,18 +21,25 @@ package org.genemania.engine.core.data;
 
 import no.uib.cipr.matrix.DenseMatrix;
 
+import org.genemania.engine.core.MatrixUtils;
+import org.genemania.exception.ApplicationException;
+
 /**
  * Store's KtT, for a given go Branch.
  *
  * While the data is stored as a matrix, its just one-column.
  *
  * The indexing of KtT should be consistent with the NetworkIds data structure.
+ *
+ * As with KtK, a user data set's KtT can be layered over the core KtT,
+ * in which case data holds only the rows after the leading coreSize rows.
  */
 public class KtT extends Data {
     private static final long serialVersionUID = -2709140842827973884L;
 
     private String goBranch;
     private DenseMatrix data;
+    private int coreSize;
 
     public KtT(String namespace, long organismId, String goBranch) {
         super(namespace, organismId);
@@ -43,10 +50,73 @@ public class KtT extends Data {
         KtT copy = new KtT(newNamespace, getOrganismId(), getGoBranch());
         DenseMatrix newData = data.copy();
         copy.setData(newData);
+        copy.setCoreSize(coreSize);
 
         return copy;
     }
 
+    /*
+     * an initially empty layer over this core KtT, for the given namespace
+     */
+    public KtT layer(String newNamespace) {
+        KtT layer = new KtT(newNamespace, getOrganismId(), getGoBranch());
+        layer.setData(new DenseMatrix(0, 1));
+        layer.setCoreSize(data.numRows());
+
+        return layer;
+    }
+
+    public boolean isLayered() {
+        return coreSize > 0;
+    }
+
+    /*
+     * the whole vector for a layered KtT, combining the
+     * given core KtT with the rows stored here
+     */
+    public KtT flatten(KtT core) throws ApplicationException {
+        if (!isLayered()) {
+            return this;
+        }
+
+        DenseMatrix coreData = core.getData();
+        if (coreData.numRows() != coreSize) {
+            throw new ApplicationException(String.format("core KtT has size %d, but was %d when user data was layered over it", coreData.numRows(), coreSize));
+        }
+
+        DenseMatrix full = new DenseMatrix(size(), 1);
+        System.arraycopy(coreData.getData(), 0, full.getData(), 0, coreSize);
+        System.arraycopy(data.getData(), 0, full.getData(), coreSize, data.numRows());
+
+        KtT flat = new KtT(getNamespace(), getOrganismId(), getGoBranch());
+        flat.setData(full);
+        return flat;
+    }
+
+    /*
+     * # of rows in the whole vector
+     */
+    public int size() {
+        return coreSize + data.numRows();
+    }
+
+    /*
+     * add a row of 0's at the end
+     */
+    public void addNetwork() {
+        data = MatrixUtils.copyLarger(data, 1, 0);
+    }
+
+    /*
+     * for a layered KtT the index must be outside the core block
+     */
+    public void set(int index, double val) {
+        if (index < coreSize) {
+            throw new IllegalArgumentException("can't modify the core block of a layered KtT");
+        }
+        data.set(index - coreSize, 0, val);
+    }
+
     /**
      * @return the data
      */
@@ -61,6 +131,20 @@ public class KtT extends Data {
         this.data = data;
     }
 
+    /**
+     * @return the # of leading rows held by the core KtT
+     */
+    public int getCoreSize() {
+        return coreSize;
+    }
+
+    /**
+     * @param coreSize the coreSize to set
+     */
+    public void setCoreSize(int coreSize) {
+        this.coreSize = coreSize;
+    }
+
     /**
      * @return the goBranch
      */
@@ -80,7 +164,15 @@ public class KtT extends Data {
         return new String [] {getNamespace(), "" + getOrganismId(), getGoBranch() + ".KtT"};
     }
 
+    /*
+     * for a layered KtT, the index must be outside the core block
+     */
     public void removeNetworkAtIndex(int index) {
+        if (index < coreSize) {
+            throw new IllegalArgumentException("can't remove from the core block of a layered KtT");
+        }
+        index -= coreSize;
+
         DenseMatrix newData = new DenseMatrix(data.numRows()-1, 1);
 
         int j=0;
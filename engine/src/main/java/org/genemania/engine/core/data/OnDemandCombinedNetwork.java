@@ -0,0 +1,65 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.data;
+
+/**
+ * marks a combined network as precombined on demand, as opposed to
+ * those built ahead of time by NetworkPrecombiner, so any engine
+ * process sharing the cache can count it against the space allowed
+ * for on demand networks and retire it. records the network's size
+ * and when a query last used it.
+ */
+public class OnDemandCombinedNetwork extends Data {
+    private static final long serialVersionUID = 6129578391736042316L;
+    private String methodParamKey;
+    private long bytes;
+    private long lastUsed;
+
+    public OnDemandCombinedNetwork(long organismId, String methodParamKey, long bytes, long lastUsed) {
+        super(Data.CORE, organismId);
+        this.methodParamKey = methodParamKey;
+        this.bytes = bytes;
+        this.lastUsed = lastUsed;
+    }
+
+    /*
+     * a copy last used at the given time
+     */
+    public OnDemandCombinedNetwork withLastUsed(long lastUsed) {
+        return new OnDemandCombinedNetwork(getOrganismId(), methodParamKey, bytes, lastUsed);
+    }
+
+    public String getMethodParamKey() {
+        return methodParamKey;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    @Override
+    public String [] getKey() {
+        return new String [] {getNamespace(), "" + getOrganismId(), "ONDEMAND", methodParamKey};
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * an engine process's view of the combined networks precombined on
+ * demand for an organism, built from the OnDemandCombinedNetwork
+ * markers in the cache. kept least recently used first, so we know
+ * which to retire when over the space allowed for them.
+ *
+ * uses by queries are noted here as they happen, and written back
+ * to the markers when we next merge with what's in the cache.
+ *
+ * only kept in memory, it isn't written to the cache, so has no key.
+ */
+public class OnDemandCombinedNetworks extends Data {
+    private static final long serialVersionUID = -3170412368402267651L;
+    private LinkedHashMap<String, OnDemandCombinedNetwork> networks = new LinkedHashMap<String, OnDemandCombinedNetwork>();
+    private Map<String, Long> used = new HashMap<String, Long>();
+    private long totalBytes;
+
+    public OnDemandCombinedNetworks(long organismId) {
+        super(Data.CORE, organismId);
+    }
+
+    public boolean contains(String hash) {
+        return networks.containsKey(hash);
+    }
+
+    /*
+     * mark as most recently used. the hash needn't be one we know
+     * yet, it may be in the cache from another process.
+     */
+    public void touch(String hash, long time) {
+        used.put(hash, time);
+        OnDemandCombinedNetwork network = networks.remove(hash);
+        if (network != null) {
+            networks.put(hash, network.withLastUsed(Math.max(time, network.getLastUsed())));
+        }
+    }
+
+    public void add(OnDemandCombinedNetwork network) {
+        remove(network.getMethodParamKey());
+        networks.put(network.getMethodParamKey(), network);
+        totalBytes += network.getBytes();
+    }
+
+    public void remove(String hash) {
+        OnDemandCombinedNetwork network = networks.remove(hash);
+        if (network != null) {
+            totalBytes -= network.getBytes();
+        }
+    }
+
+    /*
+     * replace our networks with the given ones read from the cache,
+     * keeping any later uses noted here. returns the networks whose
+     * markers in the cache are missing those uses.
+     */
+    public List<OnDemandCombinedNetwork> merge(Collection<OnDemandCombinedNetwork> cached) {
+        Map<String, OnDemandCombinedNetwork> byHash = new HashMap<String, OnDemandCombinedNetwork>();
+        for (OnDemandCombinedNetwork network: cached) {
+            byHash.put(network.getMethodParamKey(), network);
+        }
+
+        // networks we already know keep their order among equal use times
+        List<OnDemandCombinedNetwork> merged = new ArrayList<OnDemandCombinedNetwork>();
+        for (String hash: networks.keySet()) {
+            OnDemandCombinedNetwork network = byHash.remove(hash);
+            if (network != null) {
+                merged.add(network);
+            }
+        }
+        merged.addAll(byHash.values());
+
+        List<OnDemandCombinedNetwork> stale = new ArrayList<OnDemandCombinedNetwork>();
+        for (int i=0; i<merged.size(); i++) {
+            OnDemandCombinedNetwork network = merged.get(i);
+            Long time = used.get(network.getMethodParamKey());
+            if (time != null && time > network.getLastUsed()) {
+                network = network.withLastUsed(time);
+                merged.set(i, network);
+                stale.add(network);
+            }
+        }
+        used.clear();
+
+        Collections.sort(merged, new Comparator<OnDemandCombinedNetwork>() {
+            public int compare(OnDemandCombinedNetwork a, OnDemandCombinedNetwork b) {
+                return a.getLastUsed() < b.getLastUsed() ? -1 : a.getLastUsed() > b.getLastUsed() ? 1 : 0;
+            }
+        });
+
+        networks.clear();
+        totalBytes = 0;
+        for (OnDemandCombinedNetwork network: merged) {
+            add(network);
+        }
+
+        return stale;
+    }
+
+    /*
+     * the least recently used network, or null if empty
+     */
+    public OnDemandCombinedNetwork getOldest() {
+        if (networks.isEmpty()) {
+            return null;
+        }
+        return networks.values().iterator().next();
+    }
+
+    public int size() {
+        return networks.size();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+}
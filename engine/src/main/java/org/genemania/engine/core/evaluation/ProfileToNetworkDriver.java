@@ -33,10 +33,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.MatrixEntry;
@@ -49,6 +51,7 @@ import org.apache.log4j.FileAppender;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.SimpleLayout;
+import org.genemania.engine.config.Config;
 import org.genemania.engine.core.KHeap;
 import org.genemania.engine.core.MatrixUtils;
 import org.genemania.engine.core.evaluation.correlation.Correlation;
@@ -57,6 +60,7 @@ import org.genemania.engine.core.evaluation.correlation.MutualInformationData;
 import org.genemania.engine.core.evaluation.correlation.MutualInformationData.SizeType;
 import org.genemania.engine.core.evaluation.correlation.CorrelationFactory.CorrelationType;
 import org.genemania.exception.ApplicationException;
+import org.genemania.mediator.InteractionCursor;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
@@ -65,6 +69,7 @@ import au.com.bytecode.opencsv.CSVReader;
 import java.io.StringReader;
 import java.util.HashSet;
 import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.core.utils.Parallel;
 import org.genemania.engine.utils.FileUtils;
 import org.genemania.util.NullProgressReporter;
 import org.genemania.util.ProgressReporter;
@@ -74,6 +79,8 @@ public class ProfileToNetworkDriver {
     private static Logger logger = Logger.getLogger(ProfileToNetworkDriver.class);
     // defined so that we can construct lists with a default size
     private static final int MIN_NUMBER_OF_GENES = 1000; 
+    // max # of correlations buffered between computing and recording them
+    static final int MAX_BAND_VALUES = 1 << 20;
 
     private ProfileData profile;
     private Matrix network;
@@ -147,6 +154,9 @@ public class ProfileToNetworkDriver {
 
     @Option(name="-limitTies") 
     private boolean limitTies = false;
+
+    @Option(name="-threads", usage="# of threads used to compute correlations, 0 for all available processors")
+    private int threads = Config.instance().getProfileToNetworkThreads();
     
     public static void main(String [] args) throws Exception {
 
@@ -183,6 +193,25 @@ public class ProfileToNetworkDriver {
      * @throws Exception
      */
     public void process(Reader in, Writer out) throws IOException, ApplicationException {
+        computeNetwork(in);
+
+        PrintWriter writer = new PrintWriter(out);
+        int totalInteractions = dump(writer);
+        logger.info("Total #interactions in network (including symmetric interactions): " + totalInteractions);
+        logger.info(String.format("network sparsity: %.2f%%", (totalInteractions*100d)/(network.numRows()*network.numColumns())));
+        logger.info("done");
+    }
+
+    /**
+     * load the profile and compute its network as in process(), without
+     * writing it out. the result can then be read through dump() or 
+     * getInteractions().
+     * 
+     * @param in
+     * @throws IOException
+     * @throws ApplicationException
+     */
+    public void computeNetwork(Reader in) throws IOException, ApplicationException {
         if ( synonyms.size() == 0 ) {
             if ( synFilename == null ){
                 throw new ApplicationException("Please pass in the location of the identifier" +
@@ -219,12 +248,6 @@ public class ProfileToNetworkDriver {
         if (progress.isCanceled()) {
             throw new CancellationException();
         }
-
-        PrintWriter writer = new PrintWriter(out);
-        int totalInteractions = dump(writer);
-        logger.info("Total #interactions in network (including symmetric interactions): " + totalInteractions);
-        logger.info(String.format("network sparsity: %.2f%%", (totalInteractions*100d)/(network.numRows()*network.numColumns())));
-        logger.info("done");
     }
 
     /**
@@ -480,7 +503,7 @@ public class ProfileToNetworkDriver {
      * 
      * @return a Matrix of top k interactions for each gene
      */
-    private Matrix convertProfileToNetwork() throws CancellationException {
+    private Matrix convertProfileToNetwork() throws ApplicationException {
         int numGene = profile.getGeneExpression().size();
         Matrix network = new FlexCompColMatrix( numGene, numGene );
 
@@ -519,35 +542,68 @@ public class ProfileToNetworkDriver {
         t1 = System.currentTimeMillis();
 
         Collection<List<Integer>> indices = identifiers.values();
-        List<Integer>[] indices_arr = indices.toArray(new ArrayList[0]);
-        for ( int i = 0; i < indices_arr.length; i++ ){
-            List<Integer> i_indices = indices_arr[i];
-            for ( int j = i + 1; j < indices_arr.length; j++ ){
-                double totalCorrelation = 0;
-                List<Integer> j_indices = indices_arr[j];
-
-                for ( int i1 : i_indices ){
+        final List<Integer>[] indices_arr = indices.toArray(new ArrayList[0]);
+        final int numGroups = indices_arr.length;
+        final Correlation fcor = cor;
+
+        // the correlations for a band of rows of the upper triangle are
+        // computed in parallel, then offered to the heaps in the same order
+        // as a single loop over all pairs would. ties in the heaps are
+        // sensitive to offer order, so this gives the same network
+        // regardless of the number of threads.
+        final int bandSize = Math.max(1, Math.min(numGroups, MAX_BAND_VALUES / Math.max(1, numGroups)));
+        final double [][] band = new double[bandSize][numGroups];
+
+        for (int bandStart = 0; bandStart < numGroups; bandStart += bandSize) {
+            final int bandEnd = Math.min(bandStart + bandSize, numGroups);
+
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for (int i = bandStart; i < bandEnd; i++) {
+                final int ii = i;
+                final double [] row = band[i - bandStart];
+                tasks.add(new Callable<Object>() {
+                    public Object call() throws CancellationException {
+                        List<Integer> i_indices = indices_arr[ii];
+                        for ( int j = ii + 1; j < numGroups; j++ ){
+                            double totalCorrelation = 0;
+                            List<Integer> j_indices = indices_arr[j];
+
+                            for ( int i1 : i_indices ){
+
+                                if (progress.isCanceled()) {
+                                    throw new CancellationException();
+                                }
+
+                                for ( int j1 : j_indices ){
+                                    double correlation = fcor.computeCorrelations(i1, j1);
+                                    totalCorrelation += correlation;
+                                }
+                            }
 
-                    if (progress.isCanceled()) {
-                        throw new CancellationException();
+                            // average it
+                            row[j] = totalCorrelation / (i_indices.size() * j_indices.size());
+                        }
+                        return null;
                     }
-
-                    for ( int j1 : j_indices ){
-                        double correlation = cor.computeCorrelations(i1, j1);
-                        totalCorrelation += correlation;
+                });
+            }
+            Parallel.invokeAll(tasks, threads);
+
+            for ( int i = bandStart; i < bandEnd; i++ ){
+                List<Integer> i_indices = indices_arr[i];
+                double [] row = band[i - bandStart];
+                for ( int j = i + 1; j < numGroups; j++ ){
+                    double totalCorrelation = row[j];
+                    List<Integer> j_indices = indices_arr[j];
+
+                    // record only if correlation is greater than threshold
+                    if (isThresholdEnabled && totalCorrelation <= thresholdValue) {
+                        // don't need these, log?
+                    }
+                    else {
+                        topInteractions[i_indices.get(0)].offer(j_indices.get(0), totalCorrelation);
+                        topInteractions[j_indices.get(0)].offer(i_indices.get(0), totalCorrelation);
                     }
-                }
-
-                // average it
-                totalCorrelation = totalCorrelation / (i_indices.size() * j_indices.size());
-
-                // record only if correlation is greater than threshold
-                if (isThresholdEnabled && totalCorrelation <= thresholdValue) {
-                    // don't need these, log?
-                }
-                else {
-                    topInteractions[i_indices.get(0)].offer(j_indices.get(0), totalCorrelation);
-                    topInteractions[j_indices.get(0)].offer(i_indices.get(0), totalCorrelation);
                 }
             }
         }
@@ -643,6 +699,86 @@ public class ProfileToNetworkDriver {
         return n;
     }
 
+    /**
+     * cursor over the interactions of the computed network, the same
+     * ones written by dump(), for callers building their own representation
+     * of the network without a round trip through text. the gene names
+     * must be node ids, as when using an id to id mapping. unlike dump(),
+     * weights are not rounded.
+     * 
+     * @param networkId id to report for the network
+     */
+    public InteractionCursor getInteractions(long networkId) {
+        return new NetworkInteractionCursor(networkId, network, profile.getGeneName());
+    }
+
+    static class NetworkInteractionCursor implements InteractionCursor {
+        private long networkId;
+        private List<String> names;
+        private Iterator<MatrixEntry> entries;
+        private long fromNodeId;
+        private long toNodeId;
+        private float weight;
+
+        NetworkInteractionCursor(long networkId, Matrix network, List<String> names) {
+            this.networkId = networkId;
+            this.names = names;
+            this.entries = network.iterator();
+        }
+
+        public long getNetworkId() {
+            return networkId;
+        }
+
+        public boolean next() throws ApplicationException {
+            while (entries.hasNext()) {
+                MatrixEntry e = entries.next();
+                if (e.get() != 0d && e.row() != e.column()) {
+                    fromNodeId = parseId(names.get(e.row()));
+                    toNodeId = parseId(names.get(e.column()));
+                    weight = (float) e.get();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void close() {
+        }
+
+        public long getId() throws ApplicationException {
+            throw new ApplicationException("'Id' not supported for computed networks");
+        }
+
+        public long getFromNodeId() {
+            return fromNodeId;
+        }
+
+        public long getToNodeId() {
+            return toNodeId;
+        }
+
+        public float getWeight() {
+            return weight;
+        }
+
+        /*
+         * not known without a pass over the network
+         */
+        public long getTotalInteractions() {
+            return -1;
+        }
+
+        private static long parseId(String name) throws ApplicationException {
+            try {
+                return Long.parseLong(name);
+            }
+            catch (NumberFormatException e) {
+                throw new ApplicationException("gene name is not a node id: " + name, e);
+            }
+        }
+    }
+
     private boolean getCommandLineArgs(String [] args) {
         CmdLineParser parser = new CmdLineParser(this);
         try {
@@ -752,6 +888,14 @@ public class ProfileToNetworkDriver {
         this.keepAllTies = keepAllTies;
     }
     
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     public boolean isLimitTies() {
         return limitTies;
     }
@@ -771,4 +915,4 @@ public class ProfileToNetworkDriver {
         //                logger.debug(String.format("   field %d: >%s<", i, line[i]));
         //            }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
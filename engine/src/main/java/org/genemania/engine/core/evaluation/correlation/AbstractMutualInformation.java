@@ -60,18 +60,29 @@ public abstract class AbstractMutualInformation implements Correlation {
 	protected List<Vector> geneExpressions;
 	
 	private double[] individualEntropies;   // array storing entropies for each gene
-	private boolean[] calculated;           // array keep track of which gene has its entropy stored
-	                                        // initialized to false;
 	
+	/**
+	 * computes the individual entropy of every gene up front, so that
+	 * computeCorrelations() only reads shared state and may be called
+	 * from several threads.
+	 */
 	public void init(ProfileData data){
 		geneExpressions = data.getGeneExpression();
 		numGenes = geneExpressions.size();
 		numFeatures = geneExpressions.get(0).size();
 		
 		individualEntropies = new double[numGenes];
-		calculated = new boolean[numGenes];
 		
 		init();
+		
+		for ( int i = 0; i < numGenes; i++ ){
+			Vector values_i = geneExpressions.get(i);
+			int[] indCounts_i = new int[numBins];
+			for ( int k = 0; k < numFeatures; k++ ){
+				indCounts_i[getBinNumber(i, values_i, k)] += 1;
+			}
+			individualEntropies[i] = computeEntropy(indCounts_i, numFeatures);
+		}
 	}
 	
 	/**
@@ -82,10 +93,9 @@ public abstract class AbstractMutualInformation implements Correlation {
 	/**
 	 * Computes mutual information between gene i and gene j.
 	 * 
-	 * If the individual entropy for gene i or gene j has not been calculated and stored yet, the
-	 * entropy will be calculated and stored in the individualEntropies array. If the entropy is 
-	 * calculated already, the values will be loaded from the individualEntropies array. Then the
-	 * joint entropy for the two genes will be calculated.
+	 * The individual entropies for gene i and gene j are loaded from the
+	 * individualEntropies array computed at init. Then the joint entropy
+	 * for the two genes will be calculated.
 	 * 
 	 */
 	public double computeCorrelations(int i, int j) {
@@ -95,43 +105,22 @@ public abstract class AbstractMutualInformation implements Correlation {
 		
 		Vector values_i = geneExpressions.get(i);
 		Vector values_j = geneExpressions.get(j);
-		int[] indCounts_i = new int[numBins];
-		int[] indCounts_j = new int[numBins];
 		int[] jointCounts = new int[numBins*numBins];
 		
 		/*
-		 * look through the values for the ith and jth vector to calculate:
-		 * 1) the individual entropy for the i-th vector 
-		 * 2) the individual entropy for the j-th vector
-		 * 3) the joint entropy for the i-th and j-th vector
+		 * look through the values for the ith and jth vector to calculate
+		 * the joint entropy for the i-th and j-th vector
 		 */
 		for ( int k = 0; k < numFeatures; k++ ){
 			int binNumber_i = getBinNumber(i, values_i, k);
 			int binNumber_j = getBinNumber(j, values_j, k);
 			
-			// increment the count for i and j;
-			if ( !calculated[i] ){
-				indCounts_i[binNumber_i] += 1;
-			}
-			if ( !calculated[j] ){
-				indCounts_j[binNumber_j] += 1;
-			}
-			
 			// increment the count for i-j
 			int index = binNumber_i * numBins + binNumber_j;
 			jointCounts[index] += 1;
 		}
 		
-		if ( !calculated[i] ){
-			individualEntropies[i] = computeEntropy(indCounts_i, numFeatures);
-			calculated[i] = true;
-		} 
 		indEntropy_i = individualEntropies[i];
-		
-		if ( !calculated[j] ){
-			individualEntropies[j] = computeEntropy(indCounts_j, numFeatures);
-			calculated[j] = true;
-		} 
 		indEntropy_j = individualEntropies[j];
 		
 		jointEntropy = computeEntropy(jointCounts, numFeatures);
@@ -27,6 +27,8 @@ import org.genemania.engine.core.data.Network;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.MatrixAccumulator;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.metrics.RequestTimings;
+import org.genemania.engine.metrics.RequestTimings.Stage;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
 
@@ -48,7 +50,10 @@ public class CombineNetworksOnly {
      */
     public static SymMatrix combine(FeatureWeightMap weightMap, String namespace, long organismId, DataCache cache, ProgressReporter progress) throws ApplicationException {
 //        return basicCombine(weightMap, namespace, organismId, cache,progress);
-        return combineWithAdder(weightMap, namespace, organismId, cache,progress);
+        long t1 = System.nanoTime();
+        SymMatrix combined = combineWithAdder(weightMap, namespace, organismId, cache,progress);
+        RequestTimings.current().record(Stage.COMBINE, System.nanoTime() - t1);
+        return combined;
     }
     
 
@@ -19,6 +19,7 @@
 
 package org.genemania.engine.core.integration;
 
+import org.genemania.engine.core.integration.calculators.AbstractNetworkWeightCalculator;
 import org.genemania.engine.core.integration.calculators.AutomaticCalculator;
 import org.genemania.engine.core.integration.calculators.AverageByCategoryCalculator;
 import org.genemania.engine.core.integration.calculators.BranchSpecificCalculator;
@@ -67,4 +68,20 @@ public class NetworkWeightCalculatorFactory {
             throw new ApplicationException("don't know how to calculate combining method: " + method);
         }
     }
+
+    /*
+     * the parameter key getCalculator() would give for the same
+     * arguments, or null if the method isn't cacheable. cheap enough
+     * to check for precombined networks before building a calculator.
+     */
+    public static String getParameterKey(CombiningMethod method, Collection<Collection<Long>> networkIds, Collection<Long> attributeGroupIds) {
+        if (method == CombiningMethod.AVERAGE || method == CombiningMethod.AVERAGE_CATEGORY ||
+                method == CombiningMethod.BP || method == CombiningMethod.CC ||
+                method == CombiningMethod.MF) {
+            return AbstractNetworkWeightCalculator.parameterKey(method, networkIds, attributeGroupIds);
+        }
+        else {
+            return null;
+        }
+    }
 }
@@ -33,6 +33,8 @@ import org.genemania.engine.config.Config;
 import org.genemania.engine.core.utils.Normalization;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.exception.WeightingFailedException;
+import org.genemania.engine.metrics.RequestTimings;
+import org.genemania.engine.metrics.RequestTimings.Stage;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
 
@@ -56,6 +58,16 @@ public class Solver {
     public static double DELTA = 1E-16; // for comparisons: TODO: rethink
 
     public static FeatureWeightMap solve(Matrix KtK, Vector KtT, FeatureList featureList, ProgressReporter progress) throws ApplicationException {
+        long t1 = System.nanoTime();
+        try {
+            return doSolve(KtK, KtT, featureList, progress);
+        }
+        finally {
+            RequestTimings.current().record(Stage.SOLVE, System.nanoTime() - t1);
+        }
+    }
+
+    private static FeatureWeightMap doSolve(Matrix KtK, Vector KtT, FeatureList featureList, ProgressReporter progress) throws ApplicationException {
         check(KtK, KtT, featureList);
         
         Vector ss = MatrixUtils.absRowSums(KtK);
@@ -35,6 +35,7 @@ import no.uib.cipr.matrix.DenseMatrix;
 import no.uib.cipr.matrix.Vector;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants;
+import org.genemania.engine.Constants.CombiningMethod;
 import org.genemania.engine.Constants.DataFileNames;
 import org.genemania.engine.Constants.NetworkType;
 import org.genemania.engine.cache.DataCache;
@@ -114,6 +115,36 @@ public abstract class AbstractNetworkWeightCalculator implements INetworkWeightC
         throw new ApplicationException("not cacheable");
     }
 
+    public static final String PARAM_KEY_FORMAT = "%s-%s"; // method-networks
+
+    /*
+     * key for the query independent methods, where the method and
+     * sorted list of network ids uniquely defines the weight calculation.
+     * if attributes are present we don't cache, since attributes are
+     * pre-selected by query genes.
+     *
+     * returns null if not cacheable, so callers can check for a
+     * precombined network without building a calculator.
+     */
+    public static String parameterKey(CombiningMethod method, Collection<Collection<Long>> networkIds, Collection<Long> attributeGroupIds) {
+        if (attributeGroupIds != null && attributeGroupIds.size()>0) {
+            return null;
+        }
+        String networks = formattedNetworkList(networkIds);
+        return String.format(PARAM_KEY_FORMAT, method.toString(), networks);
+    }
+
+    /*
+     * parameterKey() for use in getParameterKey() implementations
+     */
+    static String cacheableParameterKey(CombiningMethod method, Collection<Collection<Long>> networkIds, Collection<Long> attributeGroupIds) throws ApplicationException {
+        String key = parameterKey(method, networkIds, attributeGroupIds);
+        if (key == null) {
+            throw new ApplicationException("not cacheable");
+        }
+        return key;
+    }
+
     /*
      * indirection for retrieving user or core KtK. TODO: move this directly into the cache layer?
      *
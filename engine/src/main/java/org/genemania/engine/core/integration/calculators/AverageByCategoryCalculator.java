@@ -85,8 +85,6 @@ public class AverageByCategoryCalculator extends
         return weightMap;
     }
 
-    public static final String PARAM_KEY_FORMAT = "%s-%s"; // method-networks
-
     /*
      * the method and sorted list of network ids uniquely defines the weight
      * calculation. if attributes are present, don't cache since we pre-select
@@ -94,11 +92,6 @@ public class AverageByCategoryCalculator extends
      */
     @Override
     public String getParameterKey() throws ApplicationException {
-        if (this.attributeGroupIds != null && this.attributeGroupIds.size()>0) {
-            throw new ApplicationException("not cacheable");
-        }
-        String networks = formattedNetworkList(this.networkIds);
-        return String.format(PARAM_KEY_FORMAT,
-                Constants.CombiningMethod.AVERAGE_CATEGORY, networks);
+        return cacheableParameterKey(Constants.CombiningMethod.AVERAGE_CATEGORY, networkIds, attributeGroupIds);
     }
 }
@@ -106,8 +106,6 @@ public class AverageByNetworkCalculator extends AbstractNetworkWeightCalculator
         return matrixToWeightMap;
     }
 
-    public static final String PARAM_KEY_FORMAT = "%s-%s"; // method-networks
-
     /*
      * the method and sorted list of network ids uniquely defines the weight
      * calculation. if attributes are present, don't cache since we pre-select
@@ -115,10 +113,6 @@ public class AverageByNetworkCalculator extends AbstractNetworkWeightCalculator
      */
     @Override
     public String getParameterKey() throws ApplicationException {
-        if (this.attributeGroupIds != null && this.attributeGroupIds.size()>0) {
-            throw new ApplicationException("not cacheable");
-        }
-        String networks = formattedNetworkList(this.networkIds);
-        return String.format(PARAM_KEY_FORMAT, Constants.CombiningMethod.AVERAGE, networks);
+        return cacheableParameterKey(Constants.CombiningMethod.AVERAGE, networkIds, attributeGroupIds);
     }    
 }
@@ -155,8 +155,6 @@ public class BranchSpecificCalculator extends AbstractNetworkWeightCalculator {
         return features;      
     }
     
-    public static final String PARAM_KEY_FORMAT = "%s-%s"; // method-networks
-
     /*
      * if there are no attributes in the query, then the weight calc is
      * independent of the genes list and can be precomputed. the key
@@ -170,10 +168,6 @@ public class BranchSpecificCalculator extends AbstractNetworkWeightCalculator {
      */
     @Override
     public String getParameterKey() throws ApplicationException {
-        if (this.attributeGroupIds != null && this.attributeGroupIds.size()>0) {
-            throw new ApplicationException("not cacheable");
-        }
-        String networks = formattedNetworkList(this.networkIds);
-        return String.format(PARAM_KEY_FORMAT, method.toString(), networks);
+        return cacheableParameterKey(method, networkIds, attributeGroupIds);
     }
 }
@@ -18,6 +18,10 @@
  */
 package org.genemania.engine.core.integration.gram;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import no.uib.cipr.matrix.DenseMatrix;
 import no.uib.cipr.matrix.DenseVector;
 import no.uib.cipr.matrix.Vector;
@@ -35,12 +39,15 @@ import org.genemania.engine.core.integration.FeatureLoader;
 import org.genemania.engine.core.integration.Solver;
 import org.genemania.engine.core.integration.FeatureWeightMap;
 import org.genemania.engine.core.utils.Normalization;
+import org.genemania.engine.core.utils.Parallel;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.Matrix;
 import org.genemania.engine.matricks.SymMatrix;
 import org.genemania.engine.matricks.custom.Outer1View;
 import org.genemania.engine.matricks.custom.Outer2View;
+import org.genemania.engine.metrics.RequestTimings;
+import org.genemania.engine.metrics.RequestTimings.Stage;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
 
@@ -103,6 +110,9 @@ import org.genemania.util.ProgressReporter;
 public class AutomaticGramBuilder {
     private static Logger logger = Logger.getLogger(AutomaticGramBuilder.class);
 
+    // features per side of the square blocks of KtK computed by each task
+    static final int TILE_SIZE = 16;
+
     DataCache cache;
     String namespace;
     long organismId;
@@ -125,6 +135,7 @@ public class AutomaticGramBuilder {
      */
     public FeatureWeightMap build(ProgressReporter reporter) throws ApplicationException {
         
+        long t1 = System.nanoTime();
         featureList.validate(); // TODO: probably safe to remove this, we control construction of featurelist not user
         
         // setup constants used for the remainder of the calculation.
@@ -163,42 +174,83 @@ public class AutomaticGramBuilder {
         double sumOfTargets = posPosTarget * numPosPos + posNegTarget * numPosNeg;
         KtT.set(0, biasVal * sumOfTargets);
 
-        SymMatrix[] Wpp = new SymMatrix[numFeatures];
-        Matrix[] Wpn = new Matrix[numFeatures];
+        final SymMatrix[] Wpp = new SymMatrix[numFeatures];
+        final Matrix[] Wpn = new Matrix[numFeatures];
 
         boolean oldMode = false;  // comparison testing, TODO: remove, want to keep new mode
         boolean scaled = true;
-        FeatureLoader featureLoader = new FeatureLoader(cache, namespace, organismId, oldMode, scaled);
-
-        for (int ii = 1; ii<numFeatures; ii++) {
-            Feature feature_ii = featureList.get(ii);
-            
-            Wpp[ii] = featureLoader.load(feature_ii, ixPos);
-            Wpn[ii] = featureLoader.load(feature_ii, ixPos, ixNeg);            
-            
-            double ssWpp = Wpp[ii].elementSum();
-            double ssWpn = Wpn[ii].elementSum();
-            
-            KtT.set(ii, posPosTarget * ssWpp + 2d * posNegTarget * ssWpn);
-            KtK.set(ii, 0, biasVal * (ssWpp + 2 * ssWpn));
-            KtK.set(0, ii, KtK.get(ii, 0));
-
-            for (int jj = 1; jj <= ii; jj++) {
-
-                if (progress.isCanceled()) {
-                    throw new CancellationException();
+        final FeatureLoader featureLoader = new FeatureLoader(cache, namespace, organismId, oldMode, scaled);
+        final DenseMatrix fKtK = KtK;
+        final DenseVector fKtT = KtT;
+        final int [] fIxPos = ixPos;
+        final int [] fIxNeg = ixNeg;
+        int threads = Config.instance().getGramBuilderThreads();
+
+        // load features and fill in KtT and the bias row & column. each
+        // task writes only its own feature's elements
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i = 1; i<numFeatures; i++) {
+            final int ii = i;
+            tasks.add(new Callable<Object>() {
+                public Object call() throws ApplicationException {
+                    if (progress.isCanceled()) {
+                        throw new CancellationException();
+                    }
+
+                    Feature feature_ii = featureList.get(ii);
+
+                    Wpp[ii] = featureLoader.load(feature_ii, fIxPos);
+                    Wpn[ii] = featureLoader.load(feature_ii, fIxPos, fIxNeg);
+
+                    double ssWpp = Wpp[ii].elementSum();
+                    double ssWpn = Wpn[ii].elementSum();
+
+                    fKtT.set(ii, posPosTarget * ssWpp + 2d * posNegTarget * ssWpn);
+                    fKtK.set(ii, 0, biasVal * (ssWpp + 2 * ssWpn));
+                    fKtK.set(0, ii, fKtK.get(ii, 0));
+                    return null;
                 }
-                
-                double sumOfProds = 0;
-                
-                sumOfProds += Wpp[ii].elementMultiplySum(Wpp[jj]);
-                sumOfProds += 2 * Wpn[ii].elementMultiplySum(Wpn[jj]);
-                
-                KtK.set(ii, jj, sumOfProds);
-                KtK.set(jj, ii, sumOfProds);                
+            });
+        }
+        Parallel.invokeAll(tasks, threads);
+
+        // lower triangle of the feature block of KtK, split into square
+        // tiles. each element is computed exactly as in a serial loop, so
+        // results don't depend on the number of threads
+        tasks.clear();
+        for (int ti = 1; ti<numFeatures; ti += TILE_SIZE) {
+            for (int tj = 1; tj <= ti; tj += TILE_SIZE) {
+                final int iStart = ti;
+                final int iEnd = Math.min(ti + TILE_SIZE, numFeatures);
+                final int jStart = tj;
+                tasks.add(new Callable<Object>() {
+                    public Object call() throws ApplicationException {
+                        for (int ii = iStart; ii < iEnd; ii++) {
+                            int jEnd = Math.min(jStart + TILE_SIZE - 1, ii);
+                            for (int jj = jStart; jj <= jEnd; jj++) {
+
+                                if (progress.isCanceled()) {
+                                    throw new CancellationException();
+                                }
+
+                                double sumOfProds = 0;
+
+                                sumOfProds += Wpp[ii].elementMultiplySum(Wpp[jj]);
+                                sumOfProds += 2 * Wpn[ii].elementMultiplySum(Wpn[jj]);
+
+                                fKtK.set(ii, jj, sumOfProds);
+                                fKtK.set(jj, ii, sumOfProds);
+                            }
+                        }
+                        return null;
+                    }
+                });
             }
         }
-        
+        Parallel.invokeAll(tasks, threads);
+
+        RequestTimings.current().record(Stage.GRAM, System.nanoTime() - t1);
+
         logger.debug("solving system of size " + featureList.size());
         return Solver.solve(KtK, KtT, featureList, progress);
     }  
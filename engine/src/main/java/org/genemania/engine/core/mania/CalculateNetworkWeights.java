@@ -56,12 +56,18 @@ import no.uib.cipr.matrix.Vector;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants.CombiningMethod;
 import org.genemania.engine.cache.DataCache;
+import org.genemania.engine.config.Config;
+import org.genemania.engine.config.MatrixFactory;
+import org.genemania.engine.config.ParallelFloatSymMatrixFactory;
 import org.genemania.engine.core.data.CombinedNetwork;
+import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.integration.FeatureWeightMap;
 import org.genemania.engine.core.integration.INetworkWeightCalculator;
 import org.genemania.engine.core.integration.NetworkWeightCalculatorFactory;
 import org.genemania.engine.core.integration.calculators.AbstractNetworkWeightCalculator;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.metrics.RequestTimings;
+import org.genemania.engine.metrics.RequestTimings.Count;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
 
@@ -99,27 +105,59 @@ public class CalculateNetworkWeights {
         this.progress = progress;        
     }
 
+    /*
+     * use a precombined network if there is one for these parameters.
+     * the lookup only needs the parameter key, so on a hit we don't
+     * build a calculator or load any of the data it would need.
+     *
+     * the index of precombined networks can be out of date, eg if
+     * another process retired one, so if the load fails we forget
+     * the index and compute the weights directly.
+     */
     public void process() throws ApplicationException {
+        String key = NetworkWeightCalculatorFactory.getParameterKey(method, networkIds, attributeGroupIds);
+        if (key != null) {
+            String hash = AbstractNetworkWeightCalculator.hashString(key);
+            if (cache.hasCombinedNetwork(namespace, organismId, hash) && getFromCache(organismId, key, hash)) {
+                RequestTimings.current().count(Count.COMBINED_CACHE_HITS, 1);
+                if (Data.CORE.equals(namespace)) {
+                    cache.getOnDemandPrecombiner().used(organismId, hash);
+                }
+                return;
+            }
+
+            RequestTimings.current().count(Count.COMBINED_CACHE_HITS, 0);
+            if (Data.CORE.equals(namespace)) {
+                cache.getOnDemandPrecombiner().requested(organismId, method, networkIds, hash);
+            }
+        }
+
         INetworkWeightCalculator calculator = NetworkWeightCalculatorFactory.getCalculator(namespace, cache, networkIds, attributeGroupIds, organismId, label, attributesLimit, method, progress);
+        recompute(calculator);
+    }
 
+    /*
+     * false if the precombined network couldn't be loaded
+     */
+    private boolean getFromCache(long organismId, String key, String hash) {
+        CombinedNetwork combined;
         try {
-            getFromCache(organismId, calculator);
-            return;
+            combined = cache.getCombinedNetwork(namespace, organismId, hash);
         }
         catch (ApplicationException e) {
-            // either wasn't cacheable, or wasn't in the cache
-            recompute(calculator);
+            logger.warn(String.format("failed to load pre-combined network for namespace %s organism %s with hash %s, recomputing: %s", namespace, organismId, hash, e.getMessage()));
+            cache.clearCombinedNetworkIndex();
+            return false;
         }
-    }
-
-    private void getFromCache(long organismId, INetworkWeightCalculator calculator) throws ApplicationException {
-        String key = calculator.getParameterKey();
-        String hash = AbstractNetworkWeightCalculator.hashString(key);
-
-        CombinedNetwork combined = cache.getCombinedNetwork(namespace, organismId, hash);
         logger.debug(String.format("found pre-combined network in cache for namespace %s organism %s with hash %s for key %s", namespace, organismId, hash, key));
         weights = combined.getFeatureWeightMap();
         combinedMatrix = combined.getData();
+
+        MatrixFactory factory = Config.instance().getMatrixFactory();
+        if (factory instanceof ParallelFloatSymMatrixFactory) {
+            ((ParallelFloatSymMatrixFactory) factory).parallelize(combinedMatrix);
+        }
+        return true;
     }
     
     /*
@@ -21,6 +21,8 @@ package org.genemania.engine.core.mania;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import no.uib.cipr.matrix.DenseVector;
 import no.uib.cipr.matrix.Vector;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants.CombiningMethod;
@@ -31,8 +33,15 @@ import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.integration.CombinedKernelBuilder;
 import org.genemania.engine.core.integration.Feature;
 import org.genemania.engine.core.integration.FeatureWeightMap;
+import org.genemania.engine.core.propagation.BlockPropagateLabels;
+import org.genemania.engine.core.propagation.ConjugateGradientSolver;
+import org.genemania.engine.core.propagation.DiscriminantCache;
 import org.genemania.engine.core.propagation.PropagateLabels;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.MatrixSizes;
+import org.genemania.engine.metrics.RequestTimings;
+import org.genemania.engine.metrics.RequestTimings.Count;
+import org.genemania.engine.metrics.RequestTimings.Stage;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.NullProgressReporter;
 import org.genemania.util.ProgressReporter;
@@ -57,10 +66,13 @@ public class CoreMania {
     private static Logger logger = Logger.getLogger(CoreMania.class);
     private DataCache cache;
     private Vector discriminant;
+    private List<Vector> discriminants;
     private SymMatrix partiallyCombinedKernel;
     private SymMatrix combinedKernel;
     private FeatureWeightMap featureWeights;
     private ProgressReporter progress;
+    private int propagationIterations;
+    private String weightsNamespace;
 
     public CoreMania(DataCache cache, ProgressReporter progress) {
         this.cache = cache;
@@ -150,9 +162,18 @@ public class CoreMania {
 
         this.partiallyCombinedKernel = combinedKernel;
         this.featureWeights = featureWeights;
+        this.weightsNamespace = namespace;
 
         long t2 = System.nanoTime();
         logger.info("time for computeWeights: " + (t2-t1));
+
+        RequestTimings timings = RequestTimings.current();
+        timings.record(Stage.WEIGHTS, t2-t1);
+        timings.count(Count.FEATURES, featureWeights.size());
+        long combinedBytes = MatrixSizes.heapBytes(combinedKernel);
+        if (combinedBytes >= 0) {
+            timings.count(Count.COMBINED_BYTES, combinedBytes);
+        }
     }
 
     /*
@@ -173,8 +194,16 @@ public class CoreMania {
         }
         else if (biasingMethod.equalsIgnoreCase("average")) {            
             logger.info("using average label bias method");
-            discriminant = PropagateLabels.process(
-                    getCombinedKernel(organismId, namespace), labels, progress);
+            ConjugateGradientSolver solver = new ConjugateGradientSolver();
+            SymMatrix kernel = getCombinedKernel(organismId, namespace);
+
+            if (Config.instance().isPropagationWarmStartEnabled() && featureWeights != null) {
+                discriminant = computeWarmStarted(organismId, kernel, labels, solver);
+            }
+            else {
+                discriminant = PropagateLabels.process(kernel, labels, solver, progress);
+            }
+            this.propagationIterations = solver.getIterations();
         }
         else {
             throw new ApplicationException("illegal biasing method name");
@@ -185,6 +214,67 @@ public class CoreMania {
         long t2 = System.nanoTime();
         logger.info("time for computeDiscriminant: " + (t2-t1));
 
+        RequestTimings.current().record(Stage.PROPAGATE, t2-t1);
+        RequestTimings.current().count(Count.CG_ITERATIONS, propagationIterations);
+
+    }
+
+    /*
+     * Compute discriminant scores for several label vectors at once,
+     * using the combined kernel from the last call to computeWeights().
+     * The propagations share the kernel and are solved together in blocks,
+     * see BlockPropagateLabels. The label vectors are biased in place.
+     *
+     * The resulting discriminants are available from getDiscriminants(),
+     * in the same order as the given labels.
+     */
+    public void computeDiscriminants(String namespace, long organismId, List<Vector> labels, String goCategory, String biasingMethod) throws ApplicationException {
+        logger.info("computing scores for " + labels.size() + " label vectors");
+
+        long t1 = System.nanoTime();
+
+        List<Vector> discriminants = null;
+        if (biasingMethod.equalsIgnoreCase("hierarchy")) {
+            logger.info("using GO hierarchy label bias method");
+            throw new ApplicationException("hierarchical biasing not implemented");
+        }
+        else if (biasingMethod.equalsIgnoreCase("average")) {
+            logger.info("using average label bias method");
+            ConjugateGradientSolver solver = new ConjugateGradientSolver();
+            SymMatrix kernel = getCombinedKernel(organismId, namespace);
+
+            discriminants = BlockPropagateLabels.process(kernel, labels, Config.instance().getPropagationBlockSize(), solver, progress);
+            this.propagationIterations = solver.getIterations();
+        }
+        else {
+            throw new ApplicationException("illegal biasing method name");
+        }
+
+        this.discriminants = discriminants;
+
+        long t2 = System.nanoTime();
+        logger.info("time for computeDiscriminants: " + (t2-t1));
+
+        RequestTimings.current().record(Stage.PROPAGATE, t2-t1);
+        RequestTimings.current().count(Count.CG_ITERATIONS, propagationIterations);
+    }
+
+    /*
+     * seed propagation with the closest cached discriminant for the same
+     * combined network, and cache the new result. The labels are copied
+     * before propagation since biasing modifies them in place.
+     */
+    private Vector computeWarmStarted(long organismId, SymMatrix kernel, Vector labels, ConjugateGradientSolver solver) throws ApplicationException {
+        DiscriminantCache discriminantCache = DiscriminantCache.instance();
+        String networkHash = DiscriminantCache.networkHash(weightsNamespace, organismId, featureWeights);
+        Vector unbiasedLabels = labels.copy();
+
+        double [] initial = discriminantCache.findClosest(networkHash, unbiasedLabels);
+        Vector discriminant = PropagateLabels.process(kernel, labels, initial, solver, progress);
+        discriminantCache.put(networkHash, unbiasedLabels, ((DenseVector) discriminant).getData());
+
+        logger.info(String.format("%s propagation took %d iterations", initial == null ? "cold-start" : "warm-start", solver.getIterations()));
+        return discriminant;
     }
 
     /**
@@ -194,6 +284,21 @@ public class CoreMania {
         return discriminant;
     }
 
+    /**
+     * @return the discriminants from the last call to computeDiscriminants()
+     */
+    public List<Vector> getDiscriminants() {
+        return discriminants;
+    }
+
+    /**
+     * @return the number of CG iterations taken by the last
+     * call to computeDiscriminant()
+     */
+    public int getPropagationIterations() {
+        return propagationIterations;
+    }
+
     /**
      * @return the part of the combined network computed by
      * adding up weighted interaction networks. doesn't include
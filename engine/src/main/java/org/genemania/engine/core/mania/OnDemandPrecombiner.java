@@ -0,0 +1,343 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.mania;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.genemania.engine.Constants.CombiningMethod;
+import org.genemania.engine.cache.DataCache;
+import org.genemania.engine.config.Config;
+import org.genemania.engine.core.data.CombinedNetwork;
+import org.genemania.engine.core.data.Data;
+import org.genemania.engine.core.data.OnDemandCombinedNetwork;
+import org.genemania.engine.core.data.OnDemandCombinedNetworks;
+import org.genemania.engine.core.integration.INetworkWeightCalculator;
+import org.genemania.engine.core.integration.NetworkWeightCalculatorFactory;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompressedSymFloatMatrix;
+import org.genemania.engine.matricks.custom.MatrixSizes;
+import org.genemania.exception.ApplicationException;
+import org.genemania.util.NullProgressReporter;
+
+/**
+ * precombine networks for the selections users actually ask for,
+ * beyond the defaults NetworkPrecombiner builds ahead of time.
+ *
+ * we count requests for each cacheable combination that missed the
+ * precombined cache. once a combination has been asked for threshold
+ * times, it is combined on a background thread and stored like any
+ * other precombined network, so later queries pick it up. networks
+ * stored this way are retired least recently used first when their
+ * total size goes over the limit.
+ *
+ * each network stored this way gets an OnDemandCombinedNetwork marker
+ * in the cache, so the limit applies to the total from every process
+ * sharing the cache dir, including earlier runs. we build our view from
+ * the markers on first use, and bring it up to date whenever we store a
+ * network or at most every SYNC_INTERVAL_MILLIS after a query used one,
+ * writing our uses back so retirement goes by the latest use anywhere.
+ * processes retiring at the same moment may retire a little more than
+ * needed. queries that find a network gone after it was retired compute
+ * the combination directly, see CalculateNetworkWeights.
+ *
+ * disk reads and writes happen outside our lock, only the bookkeeping
+ * is done under it, so used() and requested() never wait on them.
+ *
+ * a threshold of 0 disables on demand precombining.
+ */
+public class OnDemandPrecombiner {
+    private static Logger logger = Logger.getLogger(OnDemandPrecombiner.class);
+
+    // bound on the number of distinct combinations we keep counts for
+    static final int MAX_TRACKED = 1000;
+
+    static final long SYNC_INTERVAL_MILLIS = 60000;
+
+    private static ExecutorService executor;
+
+    private final DataCache cache;
+    private final int threshold;
+    private final long maxBytes;
+
+    private final Map<String, Integer> counts = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_TRACKED;
+        }
+    };
+    private final Set<String> pending = new HashSet<String>();
+    private final Map<Long, OnDemandCombinedNetworks> stored = new HashMap<Long, OnDemandCombinedNetworks>();
+    private final Map<Long, Long> lastSync = new HashMap<Long, Long>();
+
+    public OnDemandPrecombiner(DataCache cache, int threshold, long maxBytes) {
+        this.cache = cache;
+        this.threshold = threshold;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return threshold > 0 && maxBytes > 0;
+    }
+
+    /*
+     * a query for a cacheable combination of core networks missed
+     * the precombined cache. returns true if this request caused the
+     * combination to be scheduled for precombining.
+     */
+    public boolean requested(long organismId, CombiningMethod method, Collection<Collection<Long>> networkIds, String hash) {
+        if (!isEnabled()) {
+            return false;
+        }
+
+        syncIfDue(organismId);
+
+        final String countKey = organismId + "/" + hash;
+        synchronized (this) {
+            if (pending.contains(countKey)) {
+                return false;
+            }
+
+            Integer count = counts.get(countKey);
+            count = count == null ? 1 : count + 1;
+            if (count < threshold) {
+                counts.put(countKey, count);
+                return false;
+            }
+
+            counts.remove(countKey);
+            pending.add(countKey);
+        }
+
+        // the request's collections aren't ours to hold on to
+        final Collection<Collection<Long>> networks = new ArrayList<Collection<Long>>();
+        for (Collection<Long> group: networkIds) {
+            networks.add(new ArrayList<Long>(group));
+        }
+
+        final long organism = organismId;
+        final CombiningMethod combiningMethod = method;
+        final String combinedHash = hash;
+        getExecutor().execute(new Runnable() {
+            public void run() {
+                try {
+                    precombine(organism, combiningMethod, networks, combinedHash);
+                }
+                catch (Exception e) {
+                    logger.error("failed to precombine networks with hash " + combinedHash, e);
+                }
+                finally {
+                    synchronized (OnDemandPrecombiner.this) {
+                        pending.remove(countKey);
+                    }
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /*
+     * a query was answered from a precombined network, keep it from
+     * being retired if it was precombined on demand. the use is written
+     * to the network's marker on our next sync.
+     */
+    public void used(long organismId, String hash) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            getStored(organismId).touch(hash, System.currentTimeMillis());
+        }
+        syncIfDue(organismId);
+    }
+
+    /*
+     * schedule a sync on the background thread if we haven't synced
+     * the organism recently, or ever
+     */
+    private void syncIfDue(long organismId) {
+        final String syncKey = "sync/" + organismId;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Long last = lastSync.get(organismId);
+            if ((last != null && now - last < SYNC_INTERVAL_MILLIS) || pending.contains(syncKey)) {
+                return;
+            }
+            lastSync.put(organismId, now);
+            pending.add(syncKey);
+        }
+
+        final long organism = organismId;
+        getExecutor().execute(new Runnable() {
+            public void run() {
+                try {
+                    sync(organism);
+                }
+                catch (Exception e) {
+                    logger.error("failed to sync on demand networks for organism " + organism, e);
+                }
+                finally {
+                    synchronized (OnDemandPrecombiner.this) {
+                        pending.remove(syncKey);
+                    }
+                }
+            }
+        });
+    }
+
+    /*
+     * combine and store, then retire old networks to get back under the limit
+     */
+    void precombine(long organismId, CombiningMethod method, Collection<Collection<Long>> networkIds, String hash) throws ApplicationException {
+        long startTime = System.currentTimeMillis();
+
+        INetworkWeightCalculator calculator = NetworkWeightCalculatorFactory.getCalculator(Data.CORE, cache, networkIds, new ArrayList<Long>(), organismId,
+                null, Config.instance().getAttributeEnrichmentMaxSize(), method, NullProgressReporter.instance());
+        calculator.process();
+        SymMatrix combinedNetwork = CompressedSymFloatMatrix.compress(calculator.getCombinedMatrix());
+
+        long bytes = MatrixSizes.heapBytes(combinedNetwork);
+        if (bytes > maxBytes) {
+            logger.info(String.format("not storing precombined network with hash %s, size %d is over the limit of %d bytes", hash, bytes, maxBytes));
+            return;
+        }
+
+        CombinedNetwork combined = new CombinedNetwork(Data.CORE, organismId, hash);
+        combined.setFeatureWeightMap(calculator.getWeights());
+        combined.setWtW(combinedNetwork.elementMultiplySum(combinedNetwork));
+        combined.setData(combinedNetwork);
+
+        // marker first, if we fail part way there's a marker for a
+        // missing network rather than a network nobody will retire
+        OnDemandCombinedNetwork network = new OnDemandCombinedNetwork(organismId, hash, bytes, System.currentTimeMillis());
+        cache.putOnDemandCombinedNetwork(network);
+        cache.putCombinedNetwork(combined);
+        synchronized (this) {
+            getStored(organismId).add(network);
+        }
+
+        sync(organismId);
+
+        OnDemandCombinedNetworks networks = getStored(organismId);
+        synchronized (this) {
+            logger.info(String.format("precombined %s networks with hash %s on demand in %dms, %d on demand networks use %d bytes",
+                    method, hash, System.currentTimeMillis() - startTime, networks.size(), networks.getTotalBytes()));
+        }
+    }
+
+    /*
+     * bring our view of the organism's on demand networks up to date
+     * with the markers in the cache, write back uses noted since last
+     * time, and retire least recently used networks until the total
+     * is under the limit
+     */
+    void sync(long organismId) throws ApplicationException {
+        List<OnDemandCombinedNetwork> cached = cache.getOnDemandCombinedNetworks(organismId);
+
+        List<OnDemandCombinedNetwork> used = new ArrayList<OnDemandCombinedNetwork>();
+        List<OnDemandCombinedNetwork> retired = new ArrayList<OnDemandCombinedNetwork>();
+        synchronized (this) {
+            OnDemandCombinedNetworks networks = getStored(organismId);
+            if (cached != null) {
+                used.addAll(networks.merge(cached));
+            }
+
+            while (networks.getTotalBytes() > maxBytes) {
+                OnDemandCombinedNetwork oldest = networks.getOldest();
+                networks.remove(oldest.getMethodParamKey());
+                retired.add(oldest);
+            }
+
+            for (int i=used.size()-1; i>=0; i--) {
+                if (!networks.contains(used.get(i).getMethodParamKey())) {
+                    used.remove(i);
+                }
+            }
+            lastSync.put(organismId, System.currentTimeMillis());
+        }
+
+        for (OnDemandCombinedNetwork network: retired) {
+            logger.info("retiring precombined network with hash " + network.getMethodParamKey());
+            cache.removeCombinedNetwork(Data.CORE, organismId, network.getMethodParamKey());
+            cache.removeOnDemandCombinedNetwork(organismId, network.getMethodParamKey());
+        }
+        for (OnDemandCombinedNetwork network: used) {
+            cache.putOnDemandCombinedNetwork(network);
+        }
+    }
+
+    /*
+     * our view of the on demand networks for the organism, empty
+     * until first synced
+     */
+    synchronized OnDemandCombinedNetworks getStored(long organismId) {
+        OnDemandCombinedNetworks networks = stored.get(organismId);
+        if (networks == null) {
+            networks = new OnDemandCombinedNetworks(organismId);
+            stored.put(organismId, networks);
+        }
+        return networks;
+    }
+
+    /*
+     * wait for any combinations already scheduled, for testing
+     */
+    public void waitForPending() throws InterruptedException {
+        while (true) {
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /*
+     * combining is done one network at a time on a single background
+     * thread, so it doesn't compete too much with queries
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "engine-precombine");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
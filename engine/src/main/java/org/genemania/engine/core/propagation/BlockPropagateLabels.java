@@ -0,0 +1,104 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import java.util.ArrayList;
+import java.util.List;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Vector;
+import org.apache.log4j.Logger;
+import org.genemania.engine.Constants;
+import org.genemania.engine.config.Config;
+import org.genemania.engine.matricks.Preconditioner;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.EyePlusLaplacianMatrix;
+import org.genemania.exception.ApplicationException;
+import org.genemania.util.ProgressReporter;
+
+/**
+ * Label propagation for several label vectors over the same network,
+ * e.g. the folds of a cross-validation or a batch of queries sharing
+ * the same combined network.
+ *
+ * Each label vector is biased as in PropagateLabels, and the resulting
+ * systems are solved in blocks of up to propagationBlockSize columns
+ * with ConjugateGradientSolver.solveBlock(), so the network is traversed
+ * once per iteration for the whole block instead of once per column.
+ */
+public class BlockPropagateLabels {
+
+    private static Logger logger = Logger.getLogger(BlockPropagateLabels.class);
+
+    public static List<Vector> process(SymMatrix network, List<Vector> labels, ProgressReporter progress) throws ApplicationException {
+        return process(network, labels, Config.instance().getPropagationBlockSize(), new ConjugateGradientSolver(), progress);
+    }
+
+    /*
+     * propagate each of the given label vectors, which are biased in place.
+     * returns a discriminant vector for each, in the same order.
+     */
+    public static List<Vector> process(SymMatrix network, List<Vector> labels, int blockSize, ConjugateGradientSolver solver, ProgressReporter progress) throws ApplicationException {
+        progress.setStatus(Constants.PROGRESS_SCORING_MESSAGE);
+        progress.setProgress(Constants.PROGRESS_SCORING);
+
+        if (blockSize < 1) {
+            blockSize = 1;
+        }
+
+        final int n = network.numCols();
+        SymMatrix laplacian = new EyePlusLaplacianMatrix(network);
+        Preconditioner preconditioner = solver.createPreconditioner(laplacian);
+
+        List<Vector> discriminants = new ArrayList<Vector>(labels.size());
+        int maxIterations = 0;
+
+        for (int start=0; start<labels.size(); start+=blockSize) {
+            final int k = Math.min(blockSize, labels.size() - start);
+
+            double [] b = new double[n*k];
+            double [] x = new double[n*k];
+
+            for (int j=0; j<k; j++) {
+                Vector columnLabels = labels.get(start + j);
+                PropagateLabels.setLabelBiases(columnLabels);
+                double [] column = PropagateLabels.getData(columnLabels);
+                for (int i=0; i<n; i++) {
+                    b[i*k+j] = column[i];
+                }
+            }
+
+            solver.solveBlock(laplacian, preconditioner, k, b, x, progress);
+            maxIterations = Math.max(maxIterations, solver.getIterations());
+
+            for (int j=0; j<k; j++) {
+                double [] score = new double[n];
+                for (int i=0; i<n; i++) {
+                    score[i] = x[i*k+j];
+                }
+                discriminants.add(new DenseVector(score, false));
+            }
+        }
+
+        logger.info(String.format("block label propagation of %d vectors converged in at most %d iterations using %s preconditioner",
+                labels.size(), maxIterations, solver.getPreconditionerType()));
+
+        return discriminants;
+    }
+}
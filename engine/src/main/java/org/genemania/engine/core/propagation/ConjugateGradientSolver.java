@@ -0,0 +1,424 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import org.apache.log4j.Logger;
+import org.genemania.engine.Constants.PreconditionerType;
+import org.genemania.engine.config.Config;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.exception.PropagationFailedException;
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.Preconditioner;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.Utils;
+import org.genemania.engine.matricks.custom.EyePlusLaplacianMatrix;
+import org.genemania.engine.matricks.custom.IncompleteCholeskyPreconditioner;
+import org.genemania.engine.matricks.custom.JacobiPreconditioner;
+import org.genemania.exception.ApplicationException;
+import org.genemania.util.ProgressReporter;
+
+/**
+ * preconditioned conjugate gradient solver for symmetric positive
+ * definite systems, needing only SymMatrix.mult(double[], double[]).
+ *
+ * Replaces the use of mtj's CG for label propagation, so that we can
+ * precondition, check for cancellation between iterations, reuse work
+ * arrays across queries and report iteration counts.
+ *
+ * Convergence follows mtj's DefaultIterationMonitor, except that the
+ * relative tolerance is always taken against |b| rather than the initial
+ * residual, so a warm-started solve stops at the same accuracy as a cold
+ * one. For a zero initial guess the two are identical.
+ *
+ * Not thread-safe, use one instance per concurrent solve. 
+ */
+public class ConjugateGradientSolver {
+
+    private static Logger logger = Logger.getLogger(ConjugateGradientSolver.class);
+
+    static final double ABSOLUTE_TOLERANCE = 1e-50;
+    static final double DIVERGENCE_TOLERANCE = 1e+5;
+
+    private PreconditionerType preconditionerType;
+    private double tolerance;
+    private int maxIterations;
+    private WorkArrayPool pool = WorkArrayPool.instance();
+
+    // stats from the last solve
+    private int iterations;
+    private double residual;
+
+    /*
+     * solver params from engine config
+     */
+    public ConjugateGradientSolver() {
+        this(Config.instance().getPropagationPreconditioner(), Config.instance().getPropagationTolerance(),
+                Config.instance().getPropagationMaxIterations());
+    }
+
+    public ConjugateGradientSolver(PreconditionerType preconditionerType, double tolerance, int maxIterations) {
+        this.preconditionerType = preconditionerType;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    /*
+     * build the configured preconditioner for the given matrix. Returns null
+     * for no preconditioning. Incomplete cholesky falls back to jacobi
+     * when the matrix type isn't supported or the factorization breaks down.
+     */
+    public Preconditioner createPreconditioner(SymMatrix A) {
+        if (preconditionerType == PreconditionerType.NONE) {
+            return null;
+        }
+        else if (preconditionerType == PreconditionerType.INCOMPLETE_CHOLESKY) {
+            if (A instanceof EyePlusLaplacianMatrix) {
+                try {
+                    return new IncompleteCholeskyPreconditioner((EyePlusLaplacianMatrix) A);
+                }
+                catch (MatricksException e) {
+                    logger.warn("incomplete cholesky preconditioner unavailable, using jacobi: " + e.getMessage());
+                }
+            }
+            else {
+                logger.warn("incomplete cholesky preconditioner requires I+L matrix, using jacobi");
+            }
+        }
+
+        return new JacobiPreconditioner(A);
+    }
+
+    /*
+     * solve A*x = b. x holds the initial guess on input,
+     * and the solution on output. returns the # of iterations.
+     */
+    public int solve(SymMatrix A, double [] b, double [] x, ProgressReporter progress) throws ApplicationException {
+        return solve(A, createPreconditioner(A), b, x, progress);
+    }
+
+    public int solve(SymMatrix A, Preconditioner M, double [] b, double [] x, ProgressReporter progress) throws ApplicationException {
+        final int n = A.numRows();
+        if (b.length != n || x.length != n) {
+            throw new PropagationFailedException("inconsistent data sizes");
+        }
+
+        iterations = 0;
+        residual = 0d;
+
+        double [] r = pool.take(n);
+        double [] z = pool.take(n);
+        double [] p = pool.take(n);
+        double [] q = pool.take(n);
+
+        try {
+            // r = b - A*x
+            A.mult(x, r);
+            for (int i=0; i<n; i++) {
+                r[i] = b[i] - r[i];
+            }
+
+            double bnorm = norm(b);
+            double threshold = Math.max(tolerance*bnorm, ABSOLUTE_TOLERANCE);
+            residual = norm(r);
+            
+            double rho = 0d, rho_1 = 0d;
+
+            while (residual >= threshold) {
+                if (progress.isCanceled()) {
+                    throw new CancellationException();
+                }
+
+                if (Double.isNaN(residual) || residual > DIVERGENCE_TOLERANCE*bnorm) {
+                    throw new PropagationFailedException("Label propagation diverged after " + iterations + " iterations");
+                }
+
+                if (iterations >= maxIterations) {
+                    throw new PropagationFailedException("Label propagation did not converge in " + iterations + " iterations");
+                }
+
+                if (M == null) {
+                    System.arraycopy(r, 0, z, 0, n);
+                }
+                else {
+                    M.apply(r, z);
+                }
+
+                rho = dot(r, z);
+
+                if (iterations == 0) {
+                    System.arraycopy(z, 0, p, 0, n);
+                }
+                else {
+                    final double beta = rho/rho_1;
+                    for (int i=0; i<n; i++) {
+                        p[i] = z[i] + beta*p[i];
+                    }
+                }
+
+                A.mult(p, q);
+                final double alpha = rho/dot(p, q);
+
+                for (int i=0; i<n; i++) {
+                    x[i] += alpha*p[i];
+                    r[i] -= alpha*q[i];
+                }
+
+                rho_1 = rho;
+                residual = norm(r);
+                iterations++;
+            }
+        }
+        finally {
+            pool.give(q);
+            pool.give(p);
+            pool.give(z);
+            pool.give(r);
+        }
+
+        logger.debug(String.format("cg converged in %d iterations, residual %s", iterations, residual));
+        return iterations;
+    }
+
+    /*
+     * solve A*X = B for k right-hand sides at once. X and B hold k
+     * interleaved vectors (element i of column j at i*k+j), see BlockMult.
+     * 
+     * This runs k independent CG recurrences in lockstep, so results are
+     * the same as k separate solves, but each iteration does one fused 
+     * pass over the matrix for all the still unconverged columns. Returns 
+     * the # of iterations taken for each column.
+     */
+    public int [] solveBlock(SymMatrix A, Preconditioner M, int k, double [] b, double [] x, ProgressReporter progress) throws ApplicationException {
+        final int n = A.numRows();
+        final int nk = n*k;
+        if (b.length != nk || x.length != nk) {
+            throw new PropagationFailedException("inconsistent data sizes");
+        }
+
+        int [] colIterations = new int[k];
+        double [] threshold = new double[k];
+        double [] bnorm = new double[k];
+        double [] resid = new double[k];
+        double [] rho = new double[k];
+        double [] rho_1 = new double[k];
+        double [] pq = new double[k];
+        boolean [] done = new boolean[k];
+
+        double [] r = pool.take(nk);
+        double [] z = pool.take(nk);
+        double [] p = pool.take(nk);
+        double [] q = pool.take(nk);
+        double [] colR = pool.take(n);
+        double [] colZ = pool.take(n);
+
+        iterations = 0;
+        residual = 0d;
+
+        try {
+            // R = B - A*X
+            Utils.multBlock(A, k, x, r);
+            for (int i=0; i<nk; i++) {
+                r[i] = b[i] - r[i];
+            }
+
+            columnDots(k, b, b, bnorm);
+            columnDots(k, r, r, resid);
+            for (int j=0; j<k; j++) {
+                bnorm[j] = Math.sqrt(bnorm[j]);
+                resid[j] = Math.sqrt(resid[j]);
+                threshold[j] = Math.max(tolerance*bnorm[j], ABSOLUTE_TOLERANCE);
+            }
+
+            while (true) {
+                int active = 0;
+                for (int j=0; j<k; j++) {
+                    if (done[j]) {
+                        continue;
+                    }
+
+                    if (resid[j] < threshold[j]) {
+                        done[j] = true;
+                        continue;
+                    }
+
+                    if (Double.isNaN(resid[j]) || resid[j] > DIVERGENCE_TOLERANCE*bnorm[j]) {
+                        throw new PropagationFailedException("Label propagation diverged after " + colIterations[j] + " iterations");
+                    }
+
+                    if (colIterations[j] >= maxIterations) {
+                        throw new PropagationFailedException("Label propagation did not converge in " + colIterations[j] + " iterations");
+                    }
+
+                    active++;
+                }
+
+                if (active == 0) {
+                    break;
+                }
+
+                if (progress.isCanceled()) {
+                    throw new CancellationException();
+                }
+
+                // Z = inv(M)*R, a column at a time
+                for (int j=0; j<k; j++) {
+                    if (done[j]) {
+                        continue;
+                    }
+
+                    if (M == null) {
+                        for (int i=0; i<n; i++) {
+                            z[i*k+j] = r[i*k+j];
+                        }
+                    }
+                    else {
+                        for (int i=0; i<n; i++) {
+                            colR[i] = r[i*k+j];
+                        }
+                        M.apply(colR, colZ);
+                        for (int i=0; i<n; i++) {
+                            z[i*k+j] = colZ[i];
+                        }
+                    }
+                }
+
+                columnDots(k, r, z, rho);
+
+                // new search directions, converged columns get zero
+                for (int j=0; j<k; j++) {
+                    final boolean first = colIterations[j] == 0;
+                    final double beta = (done[j] || first) ? 0d : rho[j]/rho_1[j];
+                    for (int i=0; i<n; i++) {
+                        final int ij = i*k+j;
+                        if (done[j]) {
+                            p[ij] = 0d;
+                        }
+                        else if (first) {
+                            p[ij] = z[ij];
+                        }
+                        else {
+                            p[ij] = z[ij] + beta*p[ij];
+                        }
+                    }
+                }
+
+                Utils.multBlock(A, k, p, q);
+                columnDots(k, p, q, pq);
+
+                for (int j=0; j<k; j++) {
+                    if (done[j]) {
+                        continue;
+                    }
+
+                    final double alpha = rho[j]/pq[j];
+                    for (int i=0; i<n; i++) {
+                        final int ij = i*k+j;
+                        x[ij] += alpha*p[ij];
+                        r[ij] -= alpha*q[ij];
+                    }
+
+                    rho_1[j] = rho[j];
+                    colIterations[j]++;
+                }
+
+                columnDots(k, r, r, resid);
+                for (int j=0; j<k; j++) {
+                    resid[j] = Math.sqrt(resid[j]);
+                }
+                iterations++;
+            }
+        }
+        finally {
+            pool.give(colZ);
+            pool.give(colR);
+            pool.give(q);
+            pool.give(p);
+            pool.give(z);
+            pool.give(r);
+        }
+
+        for (int j=0; j<k; j++) {
+            residual = Math.max(residual, resid[j]);
+        }
+
+        logger.debug(String.format("block cg with %d columns converged in %d iterations, max residual %s", k, iterations, residual));
+        return colIterations;
+    }
+
+    /*
+     * result[j] = x(:,j)'*y(:,j) for k interleaved columns
+     */
+    static void columnDots(int k, double [] x, double [] y, double [] result) {
+        for (int j=0; j<k; j++) {
+            result[j] = 0d;
+        }
+
+        final int nk = x.length;
+        for (int o=0; o<nk; o+=k) {
+            for (int j=0; j<k; j++) {
+                result[j] += x[o+j]*y[o+j];
+            }
+        }
+    }
+
+    static double dot(double [] x, double [] y) {
+        double s = 0d;
+        for (int i=0; i<x.length; i++) {
+            s += x[i]*y[i];
+        }
+        return s;
+    }
+
+    static double norm(double [] x) {
+        return Math.sqrt(dot(x, x));
+    }
+
+    /*
+     * # of iterations taken by the last call to solve(), or the
+     * max over all columns for solveBlock()
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /*
+     * final residual norm of the last call to solve(), or the
+     * max over all columns for solveBlock()
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    public PreconditionerType getPreconditionerType() {
+        return preconditionerType;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setPool(WorkArrayPool pool) {
+        this.pool = pool;
+    }
+}
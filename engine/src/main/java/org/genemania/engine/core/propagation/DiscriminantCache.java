@@ -0,0 +1,228 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import no.uib.cipr.matrix.Vector;
+import org.apache.log4j.Logger;
+import org.genemania.engine.config.Config;
+import org.genemania.engine.core.MatrixUtils;
+import org.genemania.engine.core.integration.Feature;
+import org.genemania.engine.core.integration.FeatureWeightMap;
+import org.genemania.engine.core.integration.calculators.AbstractNetworkWeightCalculator;
+
+/**
+ * small in-memory cache of recently computed discriminant vectors,
+ * used to warm-start label propagation.
+ *
+ * Entries are keyed by a hash of the combined network together with
+ * the labeled genes of the query. On lookup, the entry for the same combined
+ * network whose labels overlap the most with the new query (jaccard over
+ * the signed labeled sets) is returned as the initial guess for CG. For
+ * "add a gene and rerun" sessions that's usually very close to the answer.
+ *
+ * A stale entry (e.g. a user network re-uploaded under the same id) only
+ * costs iterations, never accuracy, since CG still solves to tolerance
+ * from whatever starting point it is given.
+ *
+ * Least recently used entries are dropped once capacity is reached.
+ */
+public class DiscriminantCache {
+
+    private static Logger logger = Logger.getLogger(DiscriminantCache.class);
+    private static DiscriminantCache instance;
+
+    static final double POSITIVE_LABEL = 1d;
+    static final double NEGATIVE_LABEL = -1d;
+
+    private final int capacity;
+
+    // most recently used first
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+    private long hits;
+    private long misses;
+
+    public DiscriminantCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized static DiscriminantCache instance() {
+        if (instance == null) {
+            instance = new DiscriminantCache(Config.instance().getPropagationWarmStartCacheSize());
+        }
+        return instance;
+    }
+
+    /*
+     * identify a combined network by the features and weights it was built
+     * from. equal hashes mean equal combined networks.
+     */
+    public static String networkHash(String namespace, long organismId, FeatureWeightMap featureWeights) {
+        List<Feature> features = new ArrayList<Feature>(featureWeights.keySet());
+        Collections.sort(features);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(namespace).append('|').append(organismId);
+        for (Feature feature: features) {
+            builder.append('|').append(feature.key(false)).append('=').append(featureWeights.get(feature));
+        }
+
+        return AbstractNetworkWeightCalculator.hashString(builder.toString());
+    }
+
+    /*
+     * return a copy of the cached solution closest to the given
+     * labels on the same network, or null if none overlaps.
+     * labels must not yet have had biases applied.
+     */
+    public synchronized double [] findClosest(String networkHash, Vector labels) {
+        int [] positives = MatrixUtils.find(labels, POSITIVE_LABEL);
+        int [] negatives = MatrixUtils.find(labels, NEGATIVE_LABEL);
+
+        Entry best = null;
+        double bestScore = 0d;
+        for (Entry entry: entries) {
+            if (!entry.networkHash.equals(networkHash) || entry.solution.length != labels.size()) {
+                continue;
+            }
+
+            double score = entry.similarity(positives, negatives);
+            if (score > bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+
+        if (best == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        logger.debug(String.format("warm-starting from cached discriminant with label overlap %.3f", bestScore));
+
+        // move to front
+        entries.remove(best);
+        entries.addFirst(best);
+        return best.solution.clone();
+    }
+
+    /*
+     * cache a copy of the solution for the given (unbiased) labels,
+     * replacing any existing entry for exactly the same query
+     */
+    public synchronized void put(String networkHash, Vector labels, double [] solution) {
+        if (capacity <= 0) {
+            return;
+        }
+
+        Entry entry = new Entry(networkHash, MatrixUtils.find(labels, POSITIVE_LABEL), 
+                MatrixUtils.find(labels, NEGATIVE_LABEL), solution.clone());
+
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+            Entry other = it.next();
+            if (other.sameQuery(entry)) {
+                it.remove();
+            }
+        }
+
+        entries.addFirst(entry);
+        while (entries.size() > capacity) {
+            entries.removeLast();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    static class Entry {
+        final String networkHash;
+        final int [] positives;
+        final int [] negatives;
+        final double [] solution;
+
+        Entry(String networkHash, int [] positives, int [] negatives, double [] solution) {
+            this.networkHash = networkHash;
+            this.positives = positives;
+            this.negatives = negatives;
+            this.solution = solution;
+        }
+
+        boolean sameQuery(Entry other) {
+            return networkHash.equals(other.networkHash) && Arrays.equals(positives, other.positives)
+                    && Arrays.equals(negatives, other.negatives);
+        }
+
+        /*
+         * jaccard similarity of the labeled sets, counting
+         * a gene as shared only if its label sign agrees
+         */
+        double similarity(int [] otherPositives, int [] otherNegatives) {
+            int shared = intersectionSize(positives, otherPositives) + intersectionSize(negatives, otherNegatives);
+            int total = positives.length + otherPositives.length + negatives.length + otherNegatives.length - shared;
+
+            if (total == 0) {
+                return 0d;
+            }
+            return shared * 1d / total;
+        }
+
+        /*
+         * both arrays sorted ascending
+         */
+        static int intersectionSize(int [] a, int [] b) {
+            int i = 0, j = 0, n = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                }
+                else if (a[i] > b[j]) {
+                    j++;
+                }
+                else {
+                    n++;
+                    i++;
+                    j++;
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -21,29 +21,21 @@ package org.genemania.engine.core.propagation;
 
 import no.uib.cipr.matrix.DenseVector;
 import no.uib.cipr.matrix.Vector;
-import no.uib.cipr.matrix.sparse.CG;
-import no.uib.cipr.matrix.sparse.DefaultIterationMonitor;
-import no.uib.cipr.matrix.sparse.IterativeSolverNotConvergedException;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants;
 import org.genemania.engine.core.MatrixUtils;
 
-import org.genemania.engine.matricks.Matrix;
-//import org.genemania.engine.matricks.Vector;
-import org.genemania.engine.exception.PropagationFailedException;
-import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.SymMatrix;
 import org.genemania.engine.matricks.custom.EyePlusLaplacianMatrix;
-import org.genemania.engine.matricks.mtj.SymWrap;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
 
 /**
  * This class performs labeling biasing and label propagation.
  *
- * if we want to make this interruptable (via the progress reporter),
- * we'll need to implement our own CG code. since this doesn't seem to
- * be timeconsuming step at this time, we won't try that yet.
+ * The (I+L)x = y system is solved with our own preconditioned
+ * CG code, see ConjugateGradientSolver, which checks the progress
+ * reporter for cancellation on every iteration.
  */
 public class PropagateLabels {
 
@@ -56,31 +48,53 @@ public class PropagateLabels {
      */
 
     public static Vector process(SymMatrix network, Vector labels, ProgressReporter progress) throws ApplicationException {
+        return process(network, labels, new ConjugateGradientSolver(), progress);
+    }
+
+    /*
+     * as above, but with the given solver instance, which can be queried
+     * for the number of iterations taken after the call.
+     */
+    public static Vector process(SymMatrix network, Vector labels, ConjugateGradientSolver solver, ProgressReporter progress) throws ApplicationException {
+        return process(network, labels, null, solver, progress);
+    }
+
+    /*
+     * as above, starting CG from the given initial guess (e.g. the discriminant
+     * of a similar query), or from zero if null. 
+     */
+    public static Vector process(SymMatrix network, Vector labels, double [] initial, ConjugateGradientSolver solver, ProgressReporter progress) throws ApplicationException {
         progress.setStatus(Constants.PROGRESS_SCORING_MESSAGE);
         progress.setProgress(Constants.PROGRESS_SCORING);
         int n = network.numCols();
         // TODO: verify input sizes match
 
-        DenseVector score = new DenseVector(n);
+        double [] score = new double[n];
+        if (initial != null && initial.length == n) {
+            System.arraycopy(initial, 0, score, 0, n);
+        }
 
         setLabelBiases(labels);
 
         SymMatrix laplacian = new EyePlusLaplacianMatrix(network);
-        try {
-            SymWrap w = new SymWrap(laplacian);
-            CG cg = new CG(new DenseVector(labels.size()));
-            
-            // tighten relative tolerance but leave other convergence params defaulted
-            cg.setIterationMonitor(new DefaultIterationMonitor(100000, 1e-10, 1e-50, 1e+5));
-            cg.solve(w, labels, score);
-        }
-        catch (IterativeSolverNotConvergedException e) {
-            throw new PropagationFailedException("Label propagation failed", e);
-        }
+        int iterations = solver.solve(laplacian, getData(labels), score, progress);
+        logger.info(String.format("label propagation converged in %d iterations using %s preconditioner", iterations, solver.getPreconditionerType()));
 
-        return score;
+        return new DenseVector(score, false);
     }
 
+    /*
+     * dense backing array of the given vector, copying only if
+     * its not already a dense vector
+     */
+    static double [] getData(Vector v) {
+        if (v instanceof DenseVector) {
+            return ((DenseVector) v).getData();
+        }
+        else {
+            return new DenseVector(v).getData();
+        }
+    }
 
     static void setLabelBiases(Vector labels) {
         //System.out.println("labels: " + labels);
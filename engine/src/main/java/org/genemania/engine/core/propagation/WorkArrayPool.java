@@ -0,0 +1,87 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * small shared pool of double [] work arrays, so repeated solves
+ * over the same network size don't keep allocating (and garbage
+ * collecting) a handful of node-sized vectors per query.
+ *
+ * arrays are handed out dirty, callers must not assume they are
+ * zeroed. Only a bounded number of arrays are retained, extra arrays
+ * given back are just dropped for the gc.
+ */
+public class WorkArrayPool {
+
+    public static final int DEFAULT_MAX_POOLED = 32;
+
+    private static WorkArrayPool instance = new WorkArrayPool(DEFAULT_MAX_POOLED);
+
+    private final int maxPooled;
+    private final LinkedList<double []> pool = new LinkedList<double []>();
+
+    public WorkArrayPool(int maxPooled) {
+        this.maxPooled = maxPooled;
+    }
+
+    public static WorkArrayPool instance() {
+        return instance;
+    }
+
+    /*
+     * return an array of exactly the given length,
+     * reusing a pooled one if available
+     */
+    public double [] take(int length) {
+        synchronized (pool) {
+            for (Iterator<double []> it = pool.iterator(); it.hasNext();) {
+                double [] a = it.next();
+                if (a.length == length) {
+                    it.remove();
+                    return a;
+                }
+            }
+        }
+
+        return new double[length];
+    }
+
+    public void give(double [] a) {
+        if (a == null) {
+            return;
+        }
+
+        synchronized (pool) {
+            if (pool.size() >= maxPooled) {
+                pool.removeLast();
+            }
+            pool.addFirst(a);
+        }
+    }
+
+    public void clear() {
+        synchronized (pool) {
+            pool.clear();
+        }
+    }
+}
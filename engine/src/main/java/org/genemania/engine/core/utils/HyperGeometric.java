@@ -0,0 +1,130 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.utils;
+
+/**
+ * hypergeometric probabilities from a table of log factorials.
+ *
+ * the table is shared, and grown as needed to the largest population
+ * size seen, so after the first request for an organism all factorials
+ * are lookups. the tail sum is evaluated with the ratio of successive
+ * terms rather than computing each term from scratch.
+ *
+ * parameters follow ComputeEnrichment:
+ *
+ * N = population size
+ * k = # true in population
+ * n = sample size
+ * x = # true in sample
+ */
+public class HyperGeometric {
+
+    private static volatile double [] logFactorials = {0d};
+
+    private HyperGeometric() {
+    }
+
+    /*
+     * table of log(i!) for i = 0 .. at least n
+     */
+    static double [] logFactorials(int n) {
+        double [] table = logFactorials;
+        if (table.length > n) {
+            return table;
+        }
+
+        synchronized (HyperGeometric.class) {
+            table = logFactorials;
+            if (table.length > n) {
+                return table;
+            }
+
+            double [] grown = new double[n+1];
+            System.arraycopy(table, 0, grown, 0, table.length);
+            for (int i=table.length; i<=n; i++) {
+                grown[i] = grown[i-1] + Math.log(i);
+            }
+
+            logFactorials = grown;
+            return grown;
+        }
+    }
+
+    /*
+     * log of h(x; N, n, k) = C(k, x) * C(N-k, n-x) / C(N, n), x must be in the support
+     */
+    static double logPmf(double [] lf, int x, int N, int n, int k) {
+        return lf[k] - lf[k-x] - lf[x]
+               + lf[N-k] - lf[N-k-n+x] - lf[n-x]
+               - lf[N] + lf[N-n] + lf[n];
+    }
+
+    /*
+     * h(x; N, n, k), 0 outside the support
+     */
+    public static double pmf(int x, int N, int n, int k) {
+        if (x < Math.max(0, n+k-N) || x > Math.min(n, k)) {
+            return 0d;
+        }
+
+        return Math.exp(logPmf(logFactorials(N), x, N, n, k));
+    }
+
+    /*
+     * p(X >= x; N, n, k)
+     */
+    public static double upperTail(int x, int N, int n, int k) {
+        final int lower = Math.max(0, n+k-N);
+        final int upper = Math.min(n, k);
+
+        if (x > upper) {
+            return 0d;
+        }
+        // whole support, e.g. x = 0
+        if (x <= lower) {
+            return 1d;
+        }
+
+        double [] lf = logFactorials(N);
+
+        // terms increase up to the mode and decrease after
+        final long mode = ((long) (n+1) * (k+1)) / (N+2);
+
+        double p = 0;
+        double term = Math.exp(logPmf(lf, x, N, n, k));
+        for (int i=x; i<=upper; i++) {
+
+            // underflow (or subnormal, where we'd lose precision). either
+            // we're far below the mode and the terms will grow, or past it
+            // and they'll only get smaller
+            if (term < Double.MIN_NORMAL) {
+                if (i > mode) {
+                    break;
+                }
+                term = Math.exp(logPmf(lf, i, N, n, k));
+            }
+
+            p += term;
+            term *= ((double) (k-i) * (n-i)) / ((double) (i+1) * (N-k-n+i+1));
+        }
+
+        return p;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.exception.ApplicationException;
+
+/*
+ * runs independent pieces of a computation on thread pools
+ * shared by the whole engine, one per number of threads asked
+ * for. pools are never shut down since another caller may be
+ * using them, and their threads are daemons so they don't hold
+ * up shutdown.
+ *
+ * tasks must not themselves wait on other tasks in the pool.
+ */
+public class Parallel {
+
+    private static final Map<Integer, ExecutorService> executors = new HashMap<Integer, ExecutorService>();
+
+    private Parallel() {
+    }
+
+    /*
+     * 0 or less means use all available processors
+     */
+    public static int numThreads(int threads) {
+        if (threads <= 0) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return threads;
+    }
+
+    /*
+     * run the given tasks, returning their results in order. with a
+     * single thread they are simply run one after the other in the
+     * calling thread. a task failing with an ApplicationException
+     * (including cancellation) has that exception rethrown here
+     * once all tasks have finished.
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int threads) throws ApplicationException {
+        threads = numThreads(threads);
+        List<T> results = new ArrayList<T>(tasks.size());
+
+        if (threads <= 1 || tasks.size() <= 1) {
+            for (Callable<T> task: tasks) {
+                try {
+                    results.add(task.call());
+                }
+                catch (ApplicationException e) {
+                    throw e;
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new ApplicationException(e);
+                }
+            }
+            return results;
+        }
+
+        List<Future<T>> futures;
+        try {
+            futures = getExecutor(threads).invokeAll(tasks);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted", e);
+        }
+
+        for (Future<T> future: futures) {
+            try {
+                results.add(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("interrupted", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof ApplicationException) {
+                    throw (ApplicationException) cause;
+                }
+                else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new ApplicationException(cause);
+            }
+        }
+
+        return results;
+    }
+
+    private static synchronized ExecutorService getExecutor(int threads) {
+        ExecutorService executor = executors.get(threads);
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "engine-parallel");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executors.put(threads, executor);
+        }
+        return executor;
+    }
+}
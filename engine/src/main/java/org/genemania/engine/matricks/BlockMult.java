@@ -0,0 +1,36 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks;
+
+/**
+ * optional capability of a matrix, multiplying several vectors
+ * in a single pass over the matrix data. This amortizes the cost
+ * of walking sparse storage over many right-hand sides.
+ *
+ * The k vectors are stored interleaved in one array, so element i
+ * of vector j is at x[i*k+j].
+ */
+public interface BlockMult {
+
+    /*
+     * Y = A*X
+     */
+    public void multBlock(int k, double [] x, double [] y);
+}
@@ -49,6 +49,11 @@ public interface Matrix extends Serializable {
 
     public MatrixCursor cursor();
 
+    /*
+     * non-zero elements of the given row, in increasing column order
+     */
+    public MatrixCursor rowCursor(int rowIndex);
+
     public void add(Matrix B) throws MatricksException;
     public void add(double a, Matrix B) throws MatricksException;
 
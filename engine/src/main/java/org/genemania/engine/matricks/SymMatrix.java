@@ -27,6 +27,13 @@ public interface SymMatrix extends Matrix {
     public void mult(double [] x, double [] y);
     public void multAdd(double [] x, double [] y);
     public SymMatrix subMatrix(int [] rowcols);
+
+    /*
+     * cursor over the non-zero elements below the diagonal of the
+     * submatrix A(rowcols, rowcols), without copying it. row() and
+     * col() return positions in rowcols, with row() > col().
+     */
+    public MatrixCursor inducedCursor(int [] rowcols);
     public void setDiag(double alpha);
     /*
      * A = A ./ (x*x')
@@ -94,4 +94,31 @@ public class Utils {
             return -mid-1;
         }
     }
+
+    /*
+     * Y = A*X for k interleaved vectors, using the matrix's block 
+     * multiply if it has one, otherwise one column at a time
+     */
+    public static void multBlock(SymMatrix A, int k, double [] x, double [] y) {
+        if (A instanceof BlockMult) {
+            ((BlockMult) A).multBlock(k, x, y);
+            return;
+        }
+
+        final int n = A.numRows();
+        double [] xj = new double[n];
+        double [] yj = new double[n];
+
+        for (int j=0; j<k; j++) {
+            for (int i=0; i<n; i++) {
+                xj[i] = x[i*k+j];
+            }
+
+            A.mult(xj, yj);
+
+            for (int i=0; i<n; i++) {
+                y[i*k+j] = yj[i];
+            }
+        }
+    }
 }
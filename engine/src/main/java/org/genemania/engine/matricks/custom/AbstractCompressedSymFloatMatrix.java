@@ -0,0 +1,770 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+
+package org.genemania.engine.matricks.custom;
+
+import org.genemania.engine.matricks.BlockMult;
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.MatrixAccumulator;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.Vector;
+
+/**
+ * operations shared by the read-only symmetric matrices in compressed
+ * row format, CompressedSymFloatMatrix on the heap and MappedSymFloatMatrix
+ * over a buffer. Subclasses only say where the arrays are: the strictly
+ * lower triangle stored by row, the entries of row i at positions
+ * rowStart(i) up to rowStart(i+1) with column indices ascending, and
+ * the diagonal kept separately.
+ *
+ * Any operation that would modify the matrix throws.
+ *
+ * Multiplies are serial unless setThreads() is called, then split
+ * over threads as for ParallelFlexSymFloatMatrix. The thread count
+ * isn't serialized, since it depends on the machine reading the matrix.
+ * No fields are serialized here, so the stored form of subclasses
+ * is the same as before this class was split out.
+ */
+public abstract class AbstractCompressedSymFloatMatrix extends AbstractMatrix implements SymMatrix, BlockMult {
+    private static final long serialVersionUID = 2419586316530424437L;
+
+    private transient int threads;
+    private transient ParallelSymMult.Rows rows;
+
+    /*
+     * position of the first stored element of the given row,
+     * or the # of stored elements for row numRows()
+     */
+    abstract int rowStart(int row);
+
+    abstract int colAt(int pos);
+
+    abstract float valAt(int pos);
+
+    abstract float diagAt(int row);
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /*
+     * 0 means use all available processors, 1 multiplies serially
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        this.threads = threads;
+    }
+
+    public int numCols() {
+        return numRows();
+    }
+
+    public double get(int row, int col) {
+        checkIdx(row, col);
+
+        if (row < col) {
+            int tmp = row;
+            row = col;
+            col = tmp;
+        }
+        else if (row == col) {
+            return diagAt(row);
+        }
+
+        int pos = search(col, rowStart(row), rowStart(row+1));
+        if (pos >= 0) {
+            return valAt(pos);
+        }
+        else {
+            return 0d;
+        }
+    }
+
+    /*
+     * position of key among the column indices from lo up to hi,
+     * or -(insertion point)-1 if not stored
+     */
+    private int search(final int key, int lo, int hi) {
+        hi = hi - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int c = colAt(mid);
+            if (c < key) {
+                lo = mid + 1;
+            }
+            else if (c > key) {
+                hi = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -lo-1;
+    }
+
+    private void checkIdx(final int row, final int col) {
+        final int size = numRows();
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("invalid row index: %d, max size is %d", row, size));
+        }
+        if (col < 0 || col >= size) {
+            throw new IndexOutOfBoundsException(String.format("invalid column index: %d", col));
+        }
+    }
+
+    private static MatricksException readOnly() {
+        return new MatricksException("read-only matrix");
+    }
+
+    public void set(int row, int col, double val) throws MatricksException {
+        throw readOnly();
+    }
+
+    @Override
+    public void scale(double a) throws MatricksException {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAll(double a) throws MatricksException {
+        throw readOnly();
+    }
+
+    @Override
+    public void add(Matrix B) throws MatricksException {
+        throw readOnly();
+    }
+
+    @Override
+    public void add(double a, Matrix B) throws MatricksException {
+        throw readOnly();
+    }
+
+    @Override
+    public void add(int i, int j, double alpha) {
+        throw readOnly();
+    }
+
+    public void setDiag(double alpha) {
+        throw readOnly();
+    }
+
+    @Override
+    public void dotDivOuterProd(Vector x) {
+        throw readOnly();
+    }
+
+    public void addOuterProd(double [] x) {
+        throw readOnly();
+    }
+
+    @Override
+    public MatrixAccumulator accumulator() {
+        throw readOnly();
+    }
+
+    /*
+     * already compact
+     */
+    @Override
+    public void compact() {
+        return;
+    }
+
+    @Override
+    public void setToMaxTranspose() throws MatricksException {
+        return; // no-op since symmetric
+    }
+
+    /*
+     * as in FlexSymFloatMatrix, visits each stored off-diagonal
+     * element twice, as (row, col) and (col, row), then the diagonal
+     */
+    public MatrixCursor cursor() {
+        return new CompressedCursor();
+    }
+
+    private class CompressedCursor implements MatrixCursor {
+        final int size = numRows();
+        final int stored = rowStart(size);
+        int row = 0;
+        int pos = -1;
+        boolean transposed = true;
+        boolean onDiag = false;
+
+        public boolean next() {
+            if (onDiag) {
+                row += 1;
+                return row < size;
+            }
+
+            if (!transposed) {
+                transposed = true;
+                return true;
+            }
+
+            pos += 1;
+            transposed = false;
+            if (pos < stored) {
+                while (pos >= rowStart(row+1)) {
+                    row += 1;
+                }
+                return true;
+            }
+
+            onDiag = true;
+            row = 0;
+            return size > 0;
+        }
+
+        public int row() {
+            if (onDiag || !transposed) {
+                return row;
+            }
+            return colAt(pos);
+        }
+
+        public int col() {
+            if (onDiag) {
+                return row;
+            }
+            if (!transposed) {
+                return colAt(pos);
+            }
+            return row;
+        }
+
+        public double val() {
+            if (onDiag) {
+                return diagAt(row);
+            }
+            return valAt(pos);
+        }
+
+        public void set(double val) {
+            throw readOnly();
+        }
+    }
+
+    @Override
+    protected int nnz() {
+        return 2*rowStart(numRows()) + numRows();
+    }
+
+    /*
+     * twice the lower triangle, plus the diag
+     */
+    @Override
+    public double elementSum() {
+        final int size = numRows();
+        final int stored = rowStart(size);
+
+        double sum = 0d;
+        for (int pos=0; pos<stored; pos++) {
+            sum += valAt(pos);
+        }
+        sum = 2*sum;
+
+        for (int row=0; row<size; row++) {
+            sum += diagAt(row);
+        }
+
+        return sum;
+    }
+
+    @Override
+    public double elementMultiplySum(Matrix m) throws MatricksException {
+        if (m instanceof AbstractCompressedSymFloatMatrix) {
+            return elementMultiplySum((AbstractCompressedSymFloatMatrix) m);
+        }
+        else if (m instanceof FlexSymFloatMatrix) {
+            return elementMultiplySum((FlexSymFloatMatrix) m);
+        }
+        else if (m instanceof Outer1View) {
+            return elementMultiplySum((Outer1View) m);
+        }
+        else {
+            return super.elementMultiplySum(m);
+        }
+    }
+
+    /*
+     * twice the row dots, plus diag dot. covers heap and
+     * mapped matrices in either order.
+     */
+    public double elementMultiplySum(AbstractCompressedSymFloatMatrix m) throws MatricksException {
+        final int size = numRows();
+
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            sum += 2*rowDot(row, m);
+            sum += diagAt(row)*m.diagAt(row);
+        }
+
+        return sum;
+    }
+
+    public double elementMultiplySum(FlexSymFloatMatrix m) throws MatricksException {
+        final int size = numRows();
+
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            FlexFloatArray d = m.data[row];
+            sum += 2*rowDot(row, d.indices, d.data, d.used);
+            sum += diagAt(row)*m.diag[row];
+        }
+
+        return sum;
+    }
+
+    /*
+     * as FlexSymFloatMatrix.elementMultiplySumOpt2(), only
+     * visiting rows that are non-zero in the outer product
+     */
+    public double elementMultiplySum(Outer1View m) throws MatricksException {
+        double sum = 0d;
+
+        final FlexFloatArray newData = m.newData;
+        final int used = newData.used;
+        float [] denseArray = newData.toDense();
+
+        for (int i=0; i<used; i++) {
+            double iv = newData.data[i];
+            if (iv != 0) {
+                int irow = newData.indices[i];
+                double rowDot = 0d;
+                final int end = rowStart(irow+1);
+                for (int pos=rowStart(irow); pos<end; pos++) {
+                    rowDot += valAt(pos)*denseArray[colAt(pos)];
+                }
+                sum += 2*rowDot*iv;
+
+                sum += diagAt(irow)*iv;
+            }
+        }
+
+        sum = m.scale*sum;
+        return sum;
+    }
+
+    /*
+     * dot of our given row with the same row of another
+     * compressed matrix, by merging indices
+     */
+    private double rowDot(final int row, final AbstractCompressedSymFloatMatrix m) {
+        double dot = 0d;
+        int pos = rowStart(row);
+        final int end = rowStart(row+1);
+        int otherPos = m.rowStart(row);
+        final int otherEnd = m.rowStart(row+1);
+
+        while (pos < end && otherPos < otherEnd) {
+            final int c = colAt(pos);
+            final int oc = m.colAt(otherPos);
+            if (c == oc) {
+                dot += valAt(pos)*m.valAt(otherPos);
+                pos++;
+                otherPos++;
+            }
+            else if (c < oc) {
+                pos++;
+            }
+            else {
+                otherPos++;
+            }
+        }
+
+        return dot;
+    }
+
+    /*
+     * dot of our given row with a sorted sparse row
+     */
+    private double rowDot(final int row, final int [] otherCols, final float [] otherVals, final int otherEnd) {
+        double dot = 0d;
+        int pos = rowStart(row);
+        final int end = rowStart(row+1);
+        int otherPos = 0;
+
+        while (pos < end && otherPos < otherEnd) {
+            final int c = colAt(pos);
+            final int oc = otherCols[otherPos];
+            if (c == oc) {
+                dot += valAt(pos)*otherVals[otherPos];
+                pos++;
+                otherPos++;
+            }
+            else if (c < oc) {
+                pos++;
+            }
+            else {
+                otherPos++;
+            }
+        }
+
+        return dot;
+    }
+
+    @Override
+    public Vector rowSums() throws MatricksException {
+        double [] y = new double[numRows()];
+        rowSums(y);
+        return new DenseDoubleVector(y);
+    }
+
+    @Override
+    public Vector columnSums() throws MatricksException {
+        return rowSums(); // since symmetric
+    }
+
+    @Override
+    public void rowSums(double [] result) {
+        final int size = numRows();
+
+        int pos = 0;
+        for (int row=0; row<size; row++) {
+            final int end = rowStart(row+1);
+            double s = 0d;
+            for (; pos<end; pos++) {
+                final double w = valAt(pos);
+                s += w;
+                result[colAt(pos)] += w;
+            }
+            result[row] += s + diagAt(row);
+        }
+    }
+
+    @Override
+    public void columnSums(double [] result) {
+        rowSums(result);
+    }
+
+    /*
+     * y = alpha*A*x + y
+     */
+    @Override
+    public void multAdd(double alpha, Vector x, Vector y) {
+        if (x instanceof DenseDoubleVector && y instanceof DenseDoubleVector) {
+            multAdd(alpha, ((DenseDoubleVector) x).data, ((DenseDoubleVector) y).data);
+        }
+        else {
+            throw new MatricksException("not implemented");
+        }
+    }
+
+    /*
+     * y = A*x
+     */
+    @Override
+    public void mult(Vector x, Vector y) {
+        if (x instanceof DenseDoubleVector && y instanceof DenseDoubleVector) {
+            mult(((DenseDoubleVector) x).data, ((DenseDoubleVector) y).data);
+        }
+        else {
+            throw new MatricksException("not implemented");
+        }
+    }
+
+    public void mult(double [] x, double [] y) {
+        if (isParallel()) {
+            ParallelSymMult.mult(rows(), threads, 1, x, y, true);
+            return;
+        }
+
+        FlexSymFloatMatrix.clear(y);
+        multAdd(1d, x, y);
+    }
+
+    @Override
+    public void multAdd(double [] x, double [] y) {
+        if (isParallel()) {
+            ParallelSymMult.mult(rows(), threads, 1, x, y, false);
+            return;
+        }
+
+        multAdd(1d, x, y);
+    }
+
+    public void multAdd(final double alpha, double [] x, double [] y) {
+        final int size = numRows();
+
+        int pos = 0;
+        for (int row=0; row<size; row++) {
+            final int end = rowStart(row+1);
+            final double z = alpha*x[row];
+            double s = 0d;
+            for (; pos<end; pos++) {
+                final int col = colAt(pos);
+                final double w = valAt(pos);
+                s += w*x[col];
+                y[col] += w*z;
+            }
+            y[row] += alpha*s + diagAt(row)*z;
+        }
+    }
+
+    /*
+     * Y = A*X for k interleaved vectors, one pass over the rows
+     */
+    public void multBlock(final int k, double [] x, double [] y) {
+        if (isParallel()) {
+            ParallelSymMult.mult(rows(), threads, k, x, y, true);
+            return;
+        }
+
+        FlexSymFloatMatrix.clear(y);
+
+        final int size = numRows();
+        int pos = 0;
+        for (int row=0; row<size; row++) {
+            final int end = rowStart(row+1);
+            final int ro = row*k;
+            for (; pos<end; pos++) {
+                final int co = colAt(pos)*k;
+                final double w = valAt(pos);
+                for (int j=0; j<k; j++) {
+                    y[ro+j] += w*x[co+j];
+                    y[co+j] += w*x[ro+j];
+                }
+            }
+
+            final double dv = diagAt(row);
+            for (int j=0; j<k; j++) {
+                y[ro+j] += dv*x[ro+j];
+            }
+        }
+    }
+
+    /*
+     * symmetric, so same as mult
+     */
+    @Override
+    public void transMult(double [] x, double [] y) {
+        mult(x, y);
+    }
+
+    public double sumDotMultOuterProd(double [] x) {
+        final int size = numRows();
+
+        double sum = 0d;
+        int pos = 0;
+        for (int row=0; row<size; row++) {
+            final int end = rowStart(row+1);
+            double s = 0d;
+            for (; pos<end; pos++) {
+                s += valAt(pos)*x[colAt(pos)];
+            }
+            sum += s*x[row];
+        }
+
+        // by symmetry, double the result
+        sum = 2*sum;
+
+        for (int row=0; row<size; row++) {
+            sum += diagAt(row)*(x[row]*x[row]);
+        }
+
+        return sum;
+    }
+
+    /*
+     * add weight times our lower triangle rows firstRow..lastRow
+     * into a packed buffer where row i takes up i elements
+     */
+    void addLowerTo(final double weight, float [] buffer, final int firstRow, final int lastRow) {
+        int offset = 0;
+        for (int row=firstRow; row<=lastRow; row++) {
+            final int end = rowStart(row+1);
+            for (int pos=rowStart(row); pos<end; pos++) {
+                buffer[offset + colAt(pos)] += weight*valAt(pos);
+            }
+            offset = offset + row;
+        }
+    }
+
+    /*
+     * returns a regular modifiable matrix, as for FlexSymFloatMatrix
+     */
+    public SymMatrix subMatrix(int [] rowcols) {
+        FlexSymFloatMatrix subMatrix = new FlexSymFloatMatrix(rowcols.length);
+
+        for (int i=0; i<rowcols.length; i++) {
+            int idx = rowcols[i];
+
+            for (int j=0; j<i; j++) {
+                double v = get(idx, rowcols[j]);
+                if (v != 0d) {
+                    subMatrix.set(i, j, v);
+                }
+            }
+
+            double v = diagAt(idx);
+            if (v != 0d) {
+                subMatrix.set(i, i, v);
+            }
+        }
+
+        return subMatrix;
+    }
+
+    @Override
+    public MatrixCursor inducedCursor(int [] rowcols) {
+        return new InducedSubMatrixCursor(rowcols) {
+            int pos;
+            int end;
+
+            void startRow(int rowIndex) {
+                pos = rowStart(rowIndex) - 1;
+                end = rowStart(rowIndex+1);
+            }
+
+            boolean nextInRow() {
+                pos += 1;
+                return pos < end;
+            }
+
+            int storedCol() {
+                return colAt(pos);
+            }
+
+            double storedVal() {
+                return valAt(pos);
+            }
+        };
+    }
+
+    @Override
+    public Matrix subMatrix(int [] rows, int [] cols) {
+        FlexDoubleMatrix subMatrix = new FlexDoubleMatrix(rows.length, cols.length);
+
+        for (int i=0; i<rows.length; i++) {
+            int idx = rows[i];
+
+            for (int j=0; j<cols.length; j++) {
+                double v = get(idx, cols[j]);
+                if (v != 0d) {
+                    subMatrix.set(i, j, v);
+                }
+            }
+        }
+
+        return subMatrix;
+    }
+
+    private boolean isParallel() {
+        return ParallelSymMult.isParallel(threads, numRows());
+    }
+
+    /*
+     * not kept across serialization, so created on first use
+     */
+    private ParallelSymMult.Rows rows() {
+        if (rows == null) {
+            rows = new CompressedRows();
+        }
+        return rows;
+    }
+
+    /*
+     * as multAdd and multBlock, with contributions to rows below lo
+     * going to acc
+     */
+    private class CompressedRows implements ParallelSymMult.Rows {
+        public int numRows() {
+            return AbstractCompressedSymFloatMatrix.this.numRows();
+        }
+
+        public int storedInRow(int row) {
+            return rowStart(row+1) - rowStart(row);
+        }
+
+        public void multRows(final int k, double [] x, double [] y, double [] acc, final int lo, final int hi) {
+            if (k == 1) {
+                for (int row=lo; row<hi; row++) {
+                    final double z = x[row];
+                    final int split = splitPos(row, lo);
+                    final int end = rowStart(row+1);
+                    double s = 0d;
+                    for (int pos=rowStart(row); pos<split; pos++) {
+                        final int col = colAt(pos);
+                        final double w = valAt(pos);
+                        s += w*x[col];
+                        acc[col] += w*z;
+                    }
+                    for (int pos=split; pos<end; pos++) {
+                        final int col = colAt(pos);
+                        final double w = valAt(pos);
+                        s += w*x[col];
+                        y[col] += w*z;
+                    }
+                    y[row] += s + diagAt(row)*z;
+                }
+            }
+            else {
+                for (int row=lo; row<hi; row++) {
+                    final int ro = row*k;
+                    final int split = splitPos(row, lo);
+                    final int end = rowStart(row+1);
+                    for (int pos=rowStart(row); pos<split; pos++) {
+                        final int co = colAt(pos)*k;
+                        final double w = valAt(pos);
+                        for (int j=0; j<k; j++) {
+                            y[ro+j] += w*x[co+j];
+                            acc[co+j] += w*x[ro+j];
+                        }
+                    }
+                    for (int pos=split; pos<end; pos++) {
+                        final int co = colAt(pos)*k;
+                        final double w = valAt(pos);
+                        for (int j=0; j<k; j++) {
+                            y[ro+j] += w*x[co+j];
+                            y[co+j] += w*x[ro+j];
+                        }
+                    }
+
+                    final double dv = diagAt(row);
+                    for (int j=0; j<k; j++) {
+                        y[ro+j] += dv*x[ro+j];
+                    }
+                }
+            }
+        }
+
+        /*
+         * position of the first entry in the row with column >= lo
+         */
+        private int splitPos(final int row, final int lo) {
+            final int start = rowStart(row);
+            if (lo == 0) {
+                return start;
+            }
+
+            int pos = search(lo, start, rowStart(row+1));
+            if (pos < 0) {
+                pos = -pos-1;
+            }
+            return pos;
+        }
+    }
+}
@@ -193,12 +193,65 @@ public abstract class AbstractMatrix implements Matrix {
         throw new RuntimeException("not implemented");        
     }
 
+    /*
+     * tests every pair, sparse symmetric matrices override with
+     * something that only visits their stored elements
+     */
+    public MatrixCursor inducedCursor(int [] rowcols) {
+        return new InducedSubMatrixCursor.Pairwise(this, rowcols);
+    }
+
     public MatrixCursor columnCursor(int colIndex) {
         throw new RuntimeException("not implemented");        
     }
 
+    /*
+     * tests every column of the row, matrices with
+     * row-wise storage override
+     */
     public MatrixCursor rowCursor(int rowIndex) {
-        throw new RuntimeException("not implemented");        
+        return new RowScanCursor(this, rowIndex);
+    }
+
+    public static class RowScanCursor implements MatrixCursor {
+        final Matrix m;
+        final int row;
+        final int numCols;
+        int col = -1;
+        double val;
+
+        public RowScanCursor(Matrix m, int row) {
+            this.m = m;
+            this.row = row;
+            numCols = m.numCols();
+        }
+
+        public boolean next() {
+            while (++col < numCols) {
+                val = m.get(row, col);
+                if (val != 0d) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public int col() {
+            return col;
+        }
+
+        public double val() {
+            return val;
+        }
+
+        public void set(double val) {
+            m.set(row, col, val);
+            this.val = val;
+        }
     }
     
     public void add(int i, int j, double alpha) {
@@ -0,0 +1,108 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import org.genemania.engine.matricks.SymMatrix;
+
+/**
+ * read-only symmetric sparse matrix in compressed row format.
+ *
+ * Same layout as FlexSymFloatMatrix, the strictly lower triangle
+ * stored by row with the diagonal kept separately, but in three flat
+ * arrays instead of an object per row: the entries of row i are at
+ * positions rowPtr[i] up to rowPtr[i+1] of cols and vals, with
+ * column indices ascending.
+ *
+ * Meant for networks that are built once and then only read, e.g.
+ * in the data cache. Conversion is done with compress(). Less heap
+ * overhead than the growable format, and much faster to serialize.
+ * The operations themselves are in AbstractCompressedSymFloatMatrix.
+ */
+public class CompressedSymFloatMatrix extends AbstractCompressedSymFloatMatrix {
+    private static final long serialVersionUID = 6406152219741418346L;
+
+    final int size;
+    final int [] rowPtr;
+    final int [] cols;
+    final float [] vals;
+    final float [] diag;
+
+    public CompressedSymFloatMatrix(FlexSymFloatMatrix m) {
+        size = m.size;
+
+        rowPtr = new int[size+1];
+        for (int row=0; row<size; row++) {
+            rowPtr[row+1] = rowPtr[row] + m.data[row].used;
+        }
+
+        int nnz = rowPtr[size];
+        cols = new int[nnz];
+        vals = new float[nnz];
+        for (int row=0; row<size; row++) {
+            FlexFloatArray d = m.data[row];
+            System.arraycopy(d.indices, 0, cols, rowPtr[row], d.used);
+            System.arraycopy(d.data, 0, vals, rowPtr[row], d.used);
+        }
+
+        diag = new float[size];
+        System.arraycopy(m.diag, 0, diag, 0, size);
+    }
+
+    CompressedSymFloatMatrix(int size, int [] rowPtr, int [] cols, float [] vals, float [] diag) {
+        this.size = size;
+        this.rowPtr = rowPtr;
+        this.cols = cols;
+        this.vals = vals;
+        this.diag = diag;
+    }
+
+    /*
+     * read-only copy of the given matrix if we know how
+     * to convert it, otherwise the matrix itself
+     */
+    public static SymMatrix compress(SymMatrix m) {
+        if (m instanceof FlexSymFloatMatrix) {
+            return new CompressedSymFloatMatrix((FlexSymFloatMatrix) m);
+        }
+        else {
+            return m;
+        }
+    }
+
+    public int numRows() {
+        return size;
+    }
+
+    int rowStart(int row) {
+        return rowPtr[row];
+    }
+
+    int colAt(int pos) {
+        return cols[pos];
+    }
+
+    float valAt(int pos) {
+        return vals[pos];
+    }
+
+    float diagAt(int row) {
+        return diag[row];
+    }
+}
@@ -21,9 +21,11 @@ package org.genemania.engine.matricks.custom;
 import no.uib.cipr.matrix.DenseVector;
 
 import org.genemania.engine.core.MatrixUtils;
+import org.genemania.engine.matricks.BlockMult;
 import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.Utils;
 import org.genemania.engine.matricks.Vector;
 
 /*
@@ -40,7 +42,7 @@ import org.genemania.engine.matricks.Vector;
  * W is not modified and needs only itself implement matrix-vector 
  * multiplication. The main use-case for this is in a CG-solver.
  */
-public class EyePlusLaplacianMatrix extends AbstractMatrix implements SymMatrix {
+public class EyePlusLaplacianMatrix extends AbstractMatrix implements SymMatrix, BlockMult {
     private static final long serialVersionUID = 4350267948942777088L;
     
     SymMatrix backing;
@@ -142,6 +144,23 @@ public class EyePlusLaplacianMatrix extends AbstractMatrix implements SymMatrix
         }
     }
 
+    /*
+     * Y = (I + D - W)*X for k interleaved vectors. Fused
+     * if the backing matrix supports it.
+     */
+    public void multBlock(int k, double[] x, double[] y) {
+        Utils.multBlock(backing, k, x, y);
+
+        int l = backing.numRows();
+        for (int i=0; i<l; i++) {
+            final double d = diag.get(i);
+            final int io = i*k;
+            for (int j=0; j<k; j++) {
+                y[io+j] = d*x[io+j] - y[io+j];
+            }
+        }
+    }
+
     @Override
     public SymMatrix subMatrix(int[] rowcols) {
         throw new MatricksException("Not implemented");    
@@ -317,6 +317,91 @@ public class FlexFloatArray implements Serializable {
         y[k] += s;
     }
 
+    /*
+     * as partialMult, for nb interleaved vectors, see BlockMult
+     */
+    protected void partialMultBlock(final int nb, double [] x, double [] y, final int k) {
+        final int ko = k*nb;
+
+        for (int index=0; index<used; index++) {
+            final int ro = indices[index]*nb;
+            final double w = data[index];
+            for (int j=0; j<nb; j++) {
+                y[ko+j] += w*x[ro+j];
+                y[ro+j] += w*x[ko+j];
+            }
+        }
+    }
+
+    /*
+     * as partialMult, but the symmetric contributions to elements
+     * below lo go to acc instead of y, so threads owning different
+     * row ranges of y don't write to each other's elements.
+     * relies on indices being sorted.
+     */
+    protected void partialMult(double [] x, double [] y, double [] acc, final int k, final int lo) {
+        final double z = x[k];
+        double s = 0d;
+
+        final int split = splitIndex(lo);
+        for (int index=0; index<split; index++) {
+            int row = indices[index];
+            double w = data[index];
+            s += w*x[row];
+            acc[row] += w*z;
+        }
+
+        for (int index=split; index<used; index++) {
+            int row = indices[index];
+            double w = data[index];
+            s += w*x[row];
+            y[row] += w*z;
+        }
+
+        y[k] += s;
+    }
+
+    /*
+     * as partialMultBlock, with contributions below lo going to acc
+     */
+    protected void partialMultBlock(final int nb, double [] x, double [] y, double [] acc, final int k, final int lo) {
+        final int ko = k*nb;
+
+        final int split = splitIndex(lo);
+        for (int index=0; index<split; index++) {
+            final int ro = indices[index]*nb;
+            final double w = data[index];
+            for (int j=0; j<nb; j++) {
+                y[ko+j] += w*x[ro+j];
+                acc[ro+j] += w*x[ko+j];
+            }
+        }
+
+        for (int index=split; index<used; index++) {
+            final int ro = indices[index]*nb;
+            final double w = data[index];
+            for (int j=0; j<nb; j++) {
+                y[ko+j] += w*x[ro+j];
+                y[ro+j] += w*x[ko+j];
+            }
+        }
+    }
+
+    /*
+     * position of the first stored index >= lo
+     */
+    private int splitIndex(final int lo) {
+        if (lo == 0) {
+            return 0;
+        }
+
+        int pos = Utils.myBinarySearch(indices, lo, 0, used);
+        if (pos < 0) {
+            pos = -pos-1;
+        }
+        return pos;
+    }
+
     protected void partialMult(final double alpha, double [] x, double [] y, final int k) {
         final double z = x[k];
         double s = 0d;
@@ -137,6 +137,33 @@ public class FlexFloatMatrix extends AbstractMatrix {
         }
     }
 
+    @Override
+    public MatrixCursor rowCursor(final int rowIndex) {
+        final MatrixCursor cursor = data[rowIndex].cursor();
+        return new MatrixCursor() {
+            public boolean next() {
+                return cursor.next();
+            }
+
+            public int row() {
+                return rowIndex;
+            }
+
+            public int col() {
+                // the row array is a 1-col matrix, so its row pos is our col
+                return cursor.row();
+            }
+
+            public double val() {
+                return cursor.val();
+            }
+
+            public void set(double val) {
+                cursor.set(val);
+            }
+        };
+    }
+
     public double elementMultiplySum(Matrix m) {
         if (m instanceof FlexFloatMatrix) {
             return elementMultiplySum((FlexFloatMatrix) m);
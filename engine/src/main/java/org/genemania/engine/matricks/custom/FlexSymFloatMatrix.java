@@ -19,6 +19,7 @@
 
 package org.genemania.engine.matricks.custom;
 
+import org.genemania.engine.matricks.BlockMult;
 import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.Matrix;
 import org.genemania.engine.matricks.MatrixAccumulator;
@@ -29,7 +30,7 @@ import org.genemania.engine.matricks.Vector;
 /**
  *
  */
-public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
+public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix, BlockMult  {
     private static final long serialVersionUID = -888711473897241737L;
     
     int size; // rows == cols
@@ -236,6 +237,10 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
             OuterProductComboSymMatrix BB = (OuterProductComboSymMatrix) B;
             add(a, BB);
         }
+        else if (B instanceof AbstractCompressedSymFloatMatrix) {
+            AbstractCompressedSymFloatMatrix BB = (AbstractCompressedSymFloatMatrix) B;
+            add(a, BB);
+        }
 //      don't need this yet, but maybe soon?
 //      else if (B instanceof MultiOPCSymMatrix) {
 //            throw new RuntimeException("not implemented");
@@ -273,6 +278,23 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
         }
     }
     
+    /*
+     * heap or mapped, read in place
+     */
+    public void add(final double alpha, AbstractCompressedSymFloatMatrix B) throws MatricksException {
+        final int n = B.numRows();
+        for (int row=0; row<n; row++) {
+            final int end = B.rowStart(row+1);
+            for (int pos=B.rowStart(row); pos<end; pos++) {
+                data[row].add(B.colAt(pos), (float) (alpha*B.valAt(pos)));
+            }
+        }
+
+        for (int row=0; row<n; row++) {
+            diag[row] = (float) (diag[row] + alpha*B.diagAt(row));
+        }
+    }
+
     /*
      * original add matrix implementation, does one element at a time
      */
@@ -326,6 +348,9 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
         else if (m instanceof Outer1View) {   
             return elementMultiplySumOpt2((Outer1View) m);
         }
+        else if (m instanceof AbstractCompressedSymFloatMatrix) {
+            return m.elementMultiplySum(this);
+        }
         else {
             return super.elementMultiplySum(m);
         }
@@ -602,6 +627,26 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
         addDiag(x, y);
     }
 
+    /*
+     * Y = A*X for k interleaved vectors, one pass over the rows
+     */
+    public void multBlock(final int k, double [] x, double [] y) {
+        clear(y);
+
+        for (int row=0; row<size; row++) {
+            FlexFloatArray d = data[row];
+            d.partialMultBlock(k, x, y, row);
+        }
+
+        for (int row=0; row<size; row++) {
+            final double dv = diag[row];
+            final int ro = row*k;
+            for (int j=0; j<k; j++) {
+                y[ro+j] += dv*x[ro+j];
+            }
+        }
+    }
+
     protected static void clear(double [] y) {
         for (int i=0; i<y.length; i++) {
             y[i] = 0d;
@@ -734,6 +779,32 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
         return subMatrix;
     }
 
+    @Override
+    public MatrixCursor inducedCursor(int [] rowcols) {
+        return new InducedSubMatrixCursor(rowcols) {
+            FlexFloatArray d;
+            int pos;
+
+            void startRow(int rowIndex) {
+                d = data[rowIndex];
+                pos = -1;
+            }
+
+            boolean nextInRow() {
+                pos += 1;
+                return pos < d.used;
+            }
+
+            int storedCol() {
+                return d.indices[pos];
+            }
+
+            double storedVal() {
+                return d.data[pos];
+            }
+        };
+    }
+
     public Matrix subMatrix(int [] rows, int [] cols) {
         FlexDoubleMatrix subMatrix = new FlexDoubleMatrix(rows.length, cols.length);
 
@@ -77,6 +77,9 @@ public class FloatSymMatrixAccumulator implements MatrixAccumulator {
         if (m instanceof FlexSymFloatMatrix) {
             add(weight, (FlexSymFloatMatrix) m);
         }
+        else if (m instanceof AbstractCompressedSymFloatMatrix) {
+            ((AbstractCompressedSymFloatMatrix) m).addLowerTo(weight, buffer, blockStart, blockStart+blockLength);
+        }
         else {
             throw new MatricksException("not implemented for given matrix type");
         }
@@ -0,0 +1,154 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.Preconditioner;
+import org.genemania.engine.matricks.SymMatrix;
+
+/*
+ * zero fill-in incomplete cholesky factorization, M ~= L*L', of
+ * an I+L matrix. The factor L has the same sparsity pattern as the
+ * lower triangle of the weight matrix backing the I+L matrix, and
+ * is stored compressed by row.
+ * 
+ * When the backing matrix also has attribute outer-products 
+ * (MultiOPCSymMatrix), only the sparse part is factored, using
+ * the diagonal of the full matrix. This is still an SPD approximation
+ * and so a valid preconditioner, just not as sharp.
+ * 
+ * Building the factor costs roughly sum(nnz(row)^2), so it pays off
+ * for sparse combined networks solved many times, less so for very dense
+ * ones where jacobi is usually the better trade. 
+ */
+public class IncompleteCholeskyPreconditioner implements Preconditioner {
+
+    private int size;
+    private int [] rowPtr;
+    private int [] cols;
+    private float [] vals;
+    private double [] lDiag;
+
+    public IncompleteCholeskyPreconditioner(EyePlusLaplacianMatrix m) {
+        this.size = m.numRows();
+        CompressedSymFloatMatrix w = getSparseBacking(m.backing);
+        factor(m, w);
+    }
+
+    /*
+     * return the sparse weight matrix we know how to factor in
+     * compressed form, or throw if the backing type isn't supported
+     */
+    static CompressedSymFloatMatrix getSparseBacking(SymMatrix backing) {
+        if (backing instanceof CompressedSymFloatMatrix) {
+            return (CompressedSymFloatMatrix) backing;
+        }
+        else if (backing instanceof FlexSymFloatMatrix) {
+            return new CompressedSymFloatMatrix((FlexSymFloatMatrix) backing);
+        }
+        else if (backing instanceof MappedSymFloatMatrix) {
+            return ((MappedSymFloatMatrix) backing).toCompressed();
+        }
+        else if (backing instanceof MultiOPCSymMatrix) {
+            return getSparseBacking(((MultiOPCSymMatrix) backing).getMatrix());
+        }
+        else {
+            throw new MatricksException("incomplete cholesky not supported for: " + backing.getClass().getName());
+        }
+    }
+
+    private void factor(EyePlusLaplacianMatrix m, CompressedSymFloatMatrix w) {
+
+        // L has the same structure as the lower triangle of the
+        // weights, which is read-only so we can share it
+        rowPtr = w.rowPtr;
+        cols = w.cols;
+
+        int nnz = rowPtr[size];
+        vals = new float[nnz];
+        lDiag = new double[size];
+
+        // work holds the row of L being computed, mark flags
+        // which of its entries are structurally nonzero
+        double [] work = new double[size];
+        int [] mark = new int[size];
+        for (int i=0; i<size; i++) {
+            mark[i] = -1;
+        }
+
+        for (int i=0; i<size; i++) {
+            final int start = rowPtr[i];
+            final int end = rowPtr[i+1];
+
+            for (int p=start; p<end; p++) {
+                mark[cols[p]] = i;
+                work[cols[p]] = -w.vals[p];
+            }
+
+            double d = m.diag.get(i) - w.diag[i];
+
+            for (int p=start; p<end; p++) {
+                final int k = cols[p];
+                double s = work[k];
+
+                for (int q=rowPtr[k]; q<rowPtr[k+1]; q++) {
+                    final int j = cols[q];
+                    if (mark[j] == i) {
+                        s -= vals[q]*work[j];
+                    }
+                }
+
+                double lik = s/lDiag[k];
+                work[k] = lik;
+                vals[p] = (float) lik;
+                d -= lik*lik;
+            }
+
+            if (!(d > 0d)) {
+                throw new MatricksException("incomplete cholesky breakdown at row " + i);
+            }
+            lDiag[i] = Math.sqrt(d);
+        }
+    }
+
+    /*
+     * solve L*L'*z = r by forward then backward substitution 
+     */
+    public void apply(double [] r, double [] z) {
+
+        // L*y = r, y stored in z
+        for (int i=0; i<size; i++) {
+            double s = r[i];
+            for (int p=rowPtr[i]; p<rowPtr[i+1]; p++) {
+                s -= vals[p]*z[cols[p]];
+            }
+            z[i] = s/lDiag[i];
+        }
+
+        // L'*z = y, using the rows of L as the columns of L'
+        for (int i=size-1; i>=0; i--) {
+            final double zi = z[i]/lDiag[i];
+            z[i] = zi;
+            for (int p=rowPtr[i]; p<rowPtr[i+1]; p++) {
+                z[cols[p]] -= vals[p]*zi;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.MatrixCursor;
+
+/**
+ * cursor over the non-zero elements below the diagonal of the submatrix
+ * of a symmetric matrix induced by a set of row/col indices, A(rowcols, rowcols).
+ *
+ * row() and col() are positions in rowcols rather than matrix indices,
+ * with row() > col(), so each off-diagonal pair is visited once.
+ *
+ * subclasses for sparse matrices storing rows of their lower triangle
+ * walk only the stored elements of the selected rows, testing the column
+ * of each for membership in the subset with a bitset. cost is then
+ * proportional to the number of stored elements in those rows, instead
+ * of the square of the number of selected indices.
+ */
+public abstract class InducedSubMatrixCursor implements MatrixCursor {
+
+    final int [] rowcols;
+    final BitSet members;
+
+    // matrix indices in increasing order, and their positions in rowcols
+    final int [] sortedIndices;
+    final int [] sortedPositions;
+
+    int position = -1; // of the row being scanned, in rowcols
+    int row;
+    int col;
+    double val;
+
+    public InducedSubMatrixCursor(int [] rowcols) {
+        this.rowcols = rowcols;
+        members = new BitSet();
+
+        long [] pairs = new long[rowcols.length];
+        for (int i=0; i<rowcols.length; i++) {
+            members.set(rowcols[i]);
+            pairs[i] = ((long) rowcols[i] << 32) | i;
+        }
+        Arrays.sort(pairs);
+
+        sortedIndices = new int[rowcols.length];
+        sortedPositions = new int[rowcols.length];
+        for (int i=0; i<pairs.length; i++) {
+            sortedIndices[i] = (int) (pairs[i] >>> 32);
+            sortedPositions[i] = (int) pairs[i];
+        }
+    }
+
+    /*
+     * position of the given matrix index in rowcols, or -1 if not a member
+     */
+    int positionOf(int index) {
+        if (!members.get(index)) {
+            return -1;
+        }
+        int pos = Arrays.binarySearch(sortedIndices, index);
+        return sortedPositions[pos];
+    }
+
+    /*
+     * move to the next stored element below the diagonal in the row
+     * being scanned, returning false at the end of the row.
+     */
+    abstract boolean nextInRow();
+
+    /*
+     * matrix column index of the current stored element
+     */
+    abstract int storedCol();
+
+    /*
+     * value of the current stored element
+     */
+    abstract double storedVal();
+
+    /*
+     * start scanning the stored lower triangle elements of the given row
+     */
+    abstract void startRow(int rowIndex);
+
+    public boolean next() {
+        while (true) {
+            if (position >= 0) {
+                while (nextInRow()) {
+                    double v = storedVal();
+                    if (v == 0d) {
+                        continue;
+                    }
+                    int other = positionOf(storedCol());
+                    if (other < 0 || other == position) {
+                        continue;
+                    }
+                    row = Math.max(position, other);
+                    col = Math.min(position, other);
+                    val = v;
+                    return true;
+                }
+            }
+
+            position += 1;
+            if (position >= rowcols.length) {
+                return false;
+            }
+            startRow(rowcols[position]);
+        }
+    }
+
+    public int row() {
+        return row;
+    }
+
+    public int col() {
+        return col;
+    }
+
+    public double val() {
+        return val;
+    }
+
+    public void set(double val) {
+        throw new MatricksException("read-only cursor");
+    }
+
+    /*
+     * for matrices without a sparse row structure we can walk, tests
+     * each pair of selected indices with get().
+     */
+    public static class Pairwise implements MatrixCursor {
+        final Matrix m;
+        final int [] rowcols;
+        int row = 0;
+        int col = -1;
+        double val;
+
+        public Pairwise(Matrix m, int [] rowcols) {
+            this.m = m;
+            this.rowcols = rowcols;
+        }
+
+        public boolean next() {
+            while (true) {
+                col += 1;
+                if (col >= row) {
+                    row += 1;
+                    col = 0;
+                    if (row >= rowcols.length) {
+                        return false;
+                    }
+                }
+
+                val = m.get(rowcols[row], rowcols[col]);
+                if (val != 0d) {
+                    return true;
+                }
+            }
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public int col() {
+            return col;
+        }
+
+        public double val() {
+            return val;
+        }
+
+        public void set(double val) {
+            throw new MatricksException("read-only cursor");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.Preconditioner;
+import org.genemania.engine.matricks.SymMatrix;
+
+/*
+ * diagonal scaling, z = r ./ diag(M). Cheap to build and
+ * apply, and a good fit for the diagonally dominant I+L
+ * systems we solve during label propagation.
+ */
+public class JacobiPreconditioner implements Preconditioner {
+
+    private double [] invDiag;
+
+    public JacobiPreconditioner(SymMatrix m) {
+        int n = m.numRows();
+        invDiag = new double[n];
+
+        for (int i=0; i<n; i++) {
+            double d = m.get(i, i);
+            if (d == 0d) {
+                throw new MatricksException("zero diagonal element at row " + i);
+            }
+            invDiag[i] = 1d/d;
+        }
+    }
+
+    public void apply(double [] r, double [] z) {
+        final int n = invDiag.length;
+        for (int i=0; i<n; i++) {
+            z[i] = r[i]*invDiag[i];
+        }
+    }
+}
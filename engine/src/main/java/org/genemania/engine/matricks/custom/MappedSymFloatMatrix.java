@@ -0,0 +1,170 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.genemania.engine.matricks.MatricksException;
+
+/**
+ * read-only view of a CompressedSymFloatMatrix stored in a byte buffer,
+ * typically a memory-mapped file, so the data is paged in by the OS as
+ * needed instead of being read onto the heap, and can be shared between
+ * processes mapping the same file.
+ *
+ * The buffer holds, little-endian, starting at its position:
+ *
+ *   int size
+ *   int nnz
+ *   int rowPtr[size+1]
+ *   int cols[nnz]
+ *   float vals[nnz]
+ *   float diag[size]
+ *
+ * with the same meaning as the arrays of CompressedSymFloatMatrix. Use
+ * write() to produce this layout and map() to view it. The operations
+ * themselves are in AbstractCompressedSymFloatMatrix, shared with the
+ * heap format.
+ *
+ * When serialized, a heap copy is written instead.
+ */
+public class MappedSymFloatMatrix extends AbstractCompressedSymFloatMatrix {
+    private static final long serialVersionUID = -1740466360374183226L;
+
+    final int size;
+    final int nnz;
+    final transient IntBuffer rowPtr;
+    final transient IntBuffer cols;
+    final transient FloatBuffer vals;
+    final transient FloatBuffer diag;
+
+    private MappedSymFloatMatrix(ByteBuffer buffer) {
+        ByteBuffer b = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        size = b.getInt(0);
+        nnz = b.getInt(4);
+        if (size < 0 || nnz < 0 || b.capacity() < byteSize(size, nnz)) {
+            throw new MatricksException("invalid or truncated matrix data");
+        }
+
+        int offset = 8;
+        rowPtr = section(b, offset, size+1).asIntBuffer();
+        offset += 4*(size+1);
+        cols = section(b, offset, nnz).asIntBuffer();
+        offset += 4*nnz;
+        vals = section(b, offset, nnz).asFloatBuffer();
+        offset += 4*nnz;
+        diag = section(b, offset, size).asFloatBuffer();
+    }
+
+    private static ByteBuffer section(ByteBuffer b, int offset, int count) {
+        ByteBuffer d = b.duplicate();
+        d.position(offset);
+        d.limit(offset + 4*count);
+        return d.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * view the matrix stored in the given buffer from its current
+     * position. the buffer's position is left after the matrix data.
+     */
+    public static MappedSymFloatMatrix map(ByteBuffer buffer) {
+        MappedSymFloatMatrix m = new MappedSymFloatMatrix(buffer);
+        buffer.position(buffer.position() + (int) byteSize(m.size, m.nnz));
+        return m;
+    }
+
+    /*
+     * # of bytes write() will need for the given matrix
+     */
+    public static long byteSize(CompressedSymFloatMatrix m) {
+        return byteSize(m.size, m.cols.length);
+    }
+
+    static long byteSize(int size, int nnz) {
+        return 4L*(2 + (size+1) + 2L*nnz + size);
+    }
+
+    /*
+     * write the matrix at the buffer's current position, which
+     * is advanced past the written data
+     */
+    public static void write(CompressedSymFloatMatrix m, ByteBuffer buffer) {
+        ByteBuffer b = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(m.size);
+        b.putInt(m.cols.length);
+        b.asIntBuffer().put(m.rowPtr);
+        b.position(b.position() + 4*m.rowPtr.length);
+        b.asIntBuffer().put(m.cols);
+        b.position(b.position() + 4*m.cols.length);
+        b.asFloatBuffer().put(m.vals);
+        b.position(b.position() + 4*m.vals.length);
+        b.asFloatBuffer().put(m.diag);
+        b.position(b.position() + 4*m.diag.length);
+
+        buffer.position(buffer.position() + b.position());
+    }
+
+    /*
+     * copy onto the heap
+     */
+    public CompressedSymFloatMatrix toCompressed() {
+        int [] r = new int[size+1];
+        int [] c = new int[nnz];
+        float [] v = new float[nnz];
+        float [] d = new float[size];
+
+        rowPtr.duplicate().get(r);
+        cols.duplicate().get(c);
+        vals.duplicate().get(v);
+        diag.duplicate().get(d);
+
+        return new CompressedSymFloatMatrix(size, r, c, v, d);
+    }
+
+    /*
+     * buffers aren't serializable, write the data instead
+     */
+    private Object writeReplace() {
+        return toCompressed();
+    }
+
+    public int numRows() {
+        return size;
+    }
+
+    int rowStart(int row) {
+        return rowPtr.get(row);
+    }
+
+    int colAt(int pos) {
+        return cols.get(pos);
+    }
+
+    float valAt(int pos) {
+        return vals.get(pos);
+    }
+
+    float diagAt(int row) {
+        return diag.get(row);
+    }
+}
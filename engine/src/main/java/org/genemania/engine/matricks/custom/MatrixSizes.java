@@ -0,0 +1,92 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import org.genemania.engine.matricks.Matrix;
+
+/**
+ * rough heap footprint of our matrix types, for sizing memory caches.
+ * counts the backing arrays plus a fixed per-object overhead, not
+ * exact JVM layout.
+ */
+public class MatrixSizes {
+    public static final long OBJECT_OVERHEAD = 16;
+    public static final long ARRAY_OVERHEAD = 16;
+
+    private MatrixSizes() {
+    }
+
+    /*
+     * estimated # of bytes on the heap, or -1 if we don't know the type
+     */
+    public static long heapBytes(Matrix m) {
+        if (m instanceof CompressedSymFloatMatrix) {
+            CompressedSymFloatMatrix c = (CompressedSymFloatMatrix) m;
+            return OBJECT_OVERHEAD + intArray(c.rowPtr.length) + intArray(c.cols.length)
+                    + floatArray(c.vals.length) + floatArray(c.diag.length);
+        }
+        else if (m instanceof MappedSymFloatMatrix) {
+            // data lives in the mapped file, not on the heap
+            return OBJECT_OVERHEAD + 4*OBJECT_OVERHEAD;
+        }
+        else if (m instanceof FlexSymFloatMatrix) {
+            FlexSymFloatMatrix f = (FlexSymFloatMatrix) m;
+            return OBJECT_OVERHEAD + floatArray(f.diag.length) + rows(f.data);
+        }
+        else if (m instanceof FlexFloatColMatrix) {
+            return OBJECT_OVERHEAD + rows(((FlexFloatColMatrix) m).data);
+        }
+        else if (m instanceof FlexDoubleMatrix) {
+            FlexDoubleArray [] data = ((FlexDoubleMatrix) m).data;
+            long bytes = OBJECT_OVERHEAD + ARRAY_OVERHEAD + 8L*data.length;
+            for (FlexDoubleArray a: data) {
+                if (a != null) {
+                    bytes += OBJECT_OVERHEAD + doubleArray(a.data.length) + intArray(a.indices.length);
+                }
+            }
+            return bytes;
+        }
+        else {
+            return -1;
+        }
+    }
+
+    private static long rows(FlexFloatArray [] data) {
+        long bytes = ARRAY_OVERHEAD + 8L*data.length;
+        for (FlexFloatArray a: data) {
+            if (a != null) {
+                bytes += OBJECT_OVERHEAD + floatArray(a.data.length) + intArray(a.indices.length);
+            }
+        }
+        return bytes;
+    }
+
+    private static long intArray(int length) {
+        return ARRAY_OVERHEAD + 4L*length;
+    }
+
+    private static long floatArray(int length) {
+        return ARRAY_OVERHEAD + 4L*length;
+    }
+
+    private static long doubleArray(int length) {
+        return ARRAY_OVERHEAD + 8L*length;
+    }
+}
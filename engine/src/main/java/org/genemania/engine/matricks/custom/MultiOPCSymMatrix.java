@@ -18,10 +18,12 @@
  */
 package org.genemania.engine.matricks.custom;
 
+import org.genemania.engine.matricks.BlockMult;
 import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.Matrix;
 import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.Utils;
 import org.genemania.engine.matricks.Vector;
 
 /*
@@ -37,7 +39,7 @@ import org.genemania.engine.matricks.Vector;
  * Main use is implementing matrix-vector multiplication without
  * materializing all the outer-products. 
  */
-public class MultiOPCSymMatrix extends AbstractMatrix implements SymMatrix {
+public class MultiOPCSymMatrix extends AbstractMatrix implements SymMatrix, BlockMult {
     private static final long serialVersionUID = 4356797702972735183L;
     
     private int size;
@@ -194,6 +196,35 @@ public class MultiOPCSymMatrix extends AbstractMatrix implements SymMatrix {
         }
     }
 
+    /*
+     * fused over the backing sparse matrix if supported, the
+     * outer-products are cheap and applied a column at a time
+     */
+    public void multBlock(int k, double[] x, double[] y) {
+        Utils.multBlock(matrix, k, x, y);
+
+        if (combos.length == 0) {
+            return;
+        }
+
+        double [] xj = new double[size];
+        double [] yj = new double[size];
+        for (int j=0; j<k; j++) {
+            for (int i=0; i<size; i++) {
+                xj[i] = x[i*k+j];
+                yj[i] = 0d;
+            }
+
+            for (OuterProductComboSymMatrix combo: this.combos) {
+                combo.multAdd(xj, yj);
+            }
+
+            for (int i=0; i<size; i++) {
+                y[i*k+j] += yj[i];
+            }
+        }
+    }
+
     public void multAdd(double[] x, double[] y) {
         matrix.multAdd(x, y);
         for (OuterProductComboSymMatrix combo: this.combos) {
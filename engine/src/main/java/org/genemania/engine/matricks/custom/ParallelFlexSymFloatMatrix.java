@@ -0,0 +1,132 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+
+package org.genemania.engine.matricks.custom;
+
+/**
+ * FlexSymFloatMatrix with matrix-vector multiplication split
+ * over several threads, see ParallelSymMult. Small matrices
+ * are multiplied serially.
+ */
+public class ParallelFlexSymFloatMatrix extends FlexSymFloatMatrix {
+    private static final long serialVersionUID = -3016467436436436953L;
+
+    public static final int MIN_PARALLEL_SIZE = ParallelSymMult.MIN_PARALLEL_SIZE;
+
+    private int threads;
+    private transient ParallelSymMult.Rows rows;
+
+    public ParallelFlexSymFloatMatrix(int size, int threads) {
+        super(size);
+        setThreads(threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /*
+     * 0 means use all available processors
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        this.threads = threads;
+    }
+
+    @Override
+    public void mult(double [] x, double [] y) {
+        if (!isParallel()) {
+            super.mult(x, y);
+            return;
+        }
+
+        ParallelSymMult.mult(rows(), threads, 1, x, y, true);
+    }
+
+    @Override
+    public void multAdd(double [] x, double [] y) {
+        if (!isParallel()) {
+            super.multAdd(x, y);
+            return;
+        }
+
+        ParallelSymMult.mult(rows(), threads, 1, x, y, false);
+    }
+
+    @Override
+    public void multBlock(final int k, double [] x, double [] y) {
+        if (!isParallel()) {
+            super.multBlock(k, x, y);
+            return;
+        }
+
+        ParallelSymMult.mult(rows(), threads, k, x, y, true);
+    }
+
+    private boolean isParallel() {
+        return ParallelSymMult.isParallel(threads, size);
+    }
+
+    int [] partition(int n) {
+        return ParallelSymMult.partition(rows(), n);
+    }
+
+    /*
+     * not kept across serialization, so created on first use
+     */
+    private ParallelSymMult.Rows rows() {
+        if (rows == null) {
+            rows = new FlexRows();
+        }
+        return rows;
+    }
+
+    private class FlexRows implements ParallelSymMult.Rows {
+        public int numRows() {
+            return size;
+        }
+
+        public int storedInRow(int row) {
+            return data[row].used;
+        }
+
+        public void multRows(final int k, double [] x, double [] y, double [] acc, final int lo, final int hi) {
+            if (k == 1) {
+                for (int row=lo; row<hi; row++) {
+                    data[row].partialMult(x, y, acc, row, lo);
+                    y[row] += x[row]*diag[row];
+                }
+            }
+            else {
+                for (int row=lo; row<hi; row++) {
+                    data[row].partialMultBlock(k, x, y, acc, row, lo);
+
+                    final double dv = diag[row];
+                    final int ro = row*k;
+                    for (int j=0; j<k; j++) {
+                        y[ro+j] += dv*x[ro+j];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.genemania.engine.matricks.MatricksException;
+
+/**
+ * matrix-vector multiplication split over several threads, for
+ * symmetric sparse matrices storing the strictly lower triangle by row.
+ * Used by ParallelFlexSymFloatMatrix and CompressedSymFloatMatrix.
+ *
+ * Rows are partitioned into contiguous blocks of roughly equal
+ * numbers of non-zeros, one block per thread. Since only the lower
+ * triangle is stored, the multiply for row r also scatters into
+ * elements of y below r. A thread writes directly to the elements
+ * of y in its own block, and accumulates the contributions to
+ * elements owned by earlier blocks in a private array, which are
+ * summed into y in a second pass. So threads never write the same
+ * memory, and results are the same as the serial multiply
+ * up to rounding.
+ *
+ * The accumulator arrays belong to the thread calling the multiply,
+ * which waits for the workers until both passes are done, and are
+ * reused by its later multiplies. So a solver loop doesn't allocate
+ * on every iteration, and concurrent multiplies, even on the same
+ * matrix, never share them. They only grow, to at most about
+ * (threads-1)/2 times the size of y for the largest multiply
+ * the calling thread has done.
+ *
+ * The worker threads are shared by all matrices with the same number
+ * of threads.
+ */
+final class ParallelSymMult {
+    public static final int MIN_PARALLEL_SIZE = 1000;
+
+    private static final Map<Integer, ExecutorService> executors = new HashMap<Integer, ExecutorService>();
+
+    private static final ThreadLocal<double [][]> scratch = new ThreadLocal<double [][]>();
+
+    /*
+     * the matrix being multiplied
+     */
+    interface Rows {
+        int numRows();
+
+        /*
+         * number of stored elements in the given row
+         */
+        int storedInRow(int row);
+
+        /*
+         * add the product of rows lo up to hi for k interleaved
+         * vectors into y, including the diagonal. contributions to
+         * elements of rows below lo go into acc instead.
+         */
+        void multRows(int k, double [] x, double [] y, double [] acc, int lo, int hi);
+    }
+
+    private ParallelSymMult() {
+    }
+
+    /*
+     * no point in splitting up small matrices
+     */
+    static boolean isParallel(int threads, int size) {
+        return threads > 1 && size >= MIN_PARALLEL_SIZE;
+    }
+
+    /*
+     * Y = A*X, or Y = A*X + Y if not clearing, for k interleaved vectors
+     */
+    static void mult(final Rows rows, final int threads, final int k, final double [] x, final double [] y, final boolean clear) {
+        final int [] bounds = partition(rows, threads);
+        final int numBlocks = bounds.length - 1;
+        final double [][] acc = getScratch(bounds, k);
+
+        // multiply, each block writing only to its own rows of y
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(numBlocks);
+        for (int b=0; b<numBlocks; b++) {
+            final int block = b;
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    final int lo = bounds[block];
+                    final int hi = bounds[block+1];
+                    if (clear) {
+                        Arrays.fill(y, lo*k, hi*k, 0d);
+                    }
+                    Arrays.fill(acc[block], 0, lo*k, 0d);
+                    rows.multRows(k, x, y, acc[block], lo, hi);
+                    return null;
+                }
+            });
+        }
+        invokeAll(threads, tasks);
+
+        // add in contributions accumulated by later blocks
+        tasks.clear();
+        for (int b=0; b<numBlocks-1; b++) {
+            final int block = b;
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    final int lo = bounds[block]*k;
+                    final int hi = bounds[block+1]*k;
+                    for (int other=block+1; other<numBlocks; other++) {
+                        double [] a = acc[other];
+                        for (int i=lo; i<hi; i++) {
+                            y[i] += a[i];
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(threads, tasks);
+    }
+
+    /*
+     * split rows into at most n contiguous blocks with about the same
+     * number of stored elements. returns the n+1 block boundaries,
+     * block i is rows bounds[i] up to but not including bounds[i+1].
+     */
+    static int [] partition(Rows rows, int n) {
+        final int size = rows.numRows();
+
+        long total = 0;
+        for (int row=0; row<size; row++) {
+            total += rows.storedInRow(row) + 1;
+        }
+
+        int [] bounds = new int[n+1];
+        int block = 1;
+        long sum = 0;
+        for (int row=0; row<size && block<n; row++) {
+            sum += rows.storedInRow(row) + 1;
+            if (sum*n >= total*block) {
+                bounds[block] = row + 1;
+                block++;
+            }
+        }
+
+        for (; block<=n; block++) {
+            bounds[block] = size;
+        }
+
+        return bounds;
+    }
+
+    /*
+     * the calling thread's accumulators, at least long enough to
+     * hold the rows before each block. contents are left over from
+     * the previous multiply, each task clears its own.
+     */
+    private static double [][] getScratch(int [] bounds, int k) {
+        final int numBlocks = bounds.length - 1;
+
+        double [][] acc = scratch.get();
+        if (acc == null || acc.length < numBlocks) {
+            double [][] grown = new double[numBlocks][];
+            if (acc != null) {
+                System.arraycopy(acc, 0, grown, 0, acc.length);
+            }
+            acc = grown;
+            scratch.set(acc);
+        }
+
+        for (int b=0; b<numBlocks; b++) {
+            final int needed = bounds[b]*k;
+            if (acc[b] == null || acc[b].length < needed) {
+                acc[b] = new double[needed];
+            }
+        }
+
+        return acc;
+    }
+
+    private static void invokeAll(int threads, List<Callable<Object>> tasks) {
+        try {
+            for (Future<Object> future: getExecutor(threads).invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MatricksException(e);
+        }
+        catch (ExecutionException e) {
+            throw new MatricksException(e.getCause());
+        }
+    }
+
+    /*
+     * one pool per thread count, so a multiply always gets the parallelism
+     * it was built for. pools are never shut down, since another multiply
+     * may be about to submit to one, and there are only ever a few of them
+     * since thread counts come from configuration.
+     */
+    private static synchronized ExecutorService getExecutor(int threads) {
+        ExecutorService executor = executors.get(threads);
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "matricks-mult");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executors.put(threads, executor);
+        }
+        return executor;
+    }
+}
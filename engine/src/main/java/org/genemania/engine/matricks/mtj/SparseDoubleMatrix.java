@@ -33,6 +33,7 @@ import org.genemania.engine.matricks.Matrix;
 import org.genemania.engine.matricks.MatrixAccumulator;
 import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.Vector;
+import org.genemania.engine.matricks.custom.AbstractMatrix;
 import org.genemania.engine.matricks.custom.SimpleMatrixAccumulator;
 
 /**
@@ -92,6 +93,10 @@ public class SparseDoubleMatrix implements Matrix {
         m.add(a, B.m);
     }
 
+    public MatrixCursor rowCursor(int rowIndex) {
+        return new AbstractMatrix.RowScanCursor(this, rowIndex);
+    }
+
     public MatrixCursor cursor() {
         return new SparseDoubleMatrixCursor();
     }
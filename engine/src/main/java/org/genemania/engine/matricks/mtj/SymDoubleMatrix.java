@@ -34,6 +34,8 @@ import org.genemania.engine.matricks.MatrixAccumulator;
 import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.SymMatrix;
 import org.genemania.engine.matricks.Vector;
+import org.genemania.engine.matricks.custom.AbstractMatrix;
+import org.genemania.engine.matricks.custom.InducedSubMatrixCursor;
 import org.genemania.engine.matricks.custom.SimpleMatrixAccumulator;
 
 /**
@@ -95,6 +97,10 @@ public class SymDoubleMatrix implements SymMatrix {
         m.add(a, B.m);
     }
 
+    public MatrixCursor rowCursor(int rowIndex) {
+        return new AbstractMatrix.RowScanCursor(this, rowIndex);
+    }
+
     public MatrixCursor cursor() {
         return new SparseDoubleMatrixCursor();
     }
@@ -329,6 +335,10 @@ public class SymDoubleMatrix implements SymMatrix {
         return new SymDoubleMatrix(subMatrixCopy);
     }
 
+    public MatrixCursor inducedCursor(int [] rowcols) {
+        return new InducedSubMatrixCursor.Pairwise(this, rowcols);
+    }
+
     public void setDiag(double alpha) {
         for (int i=0; i<m.numRows(); i++) {
             m.set(i, i, alpha);
@@ -0,0 +1,206 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.genemania.engine.config.Config;
+import org.genemania.engine.metrics.RequestTimings.Count;
+import org.genemania.engine.metrics.RequestTimings.Stage;
+
+/**
+ * stage latencies and work counts aggregated over all requests since
+ * startup (or the last reset), as histograms. the shared instance is
+ * registered with the platform MBean server under OBJECT_NAME so it
+ * can be watched from jconsole or any JMX collector, without needing
+ * debug logging on the workers.
+ */
+public class EngineMetrics implements EngineMetricsMXBean {
+
+    private static Logger logger = Logger.getLogger(EngineMetrics.class);
+    private static EngineMetrics instance;
+
+    public static final String OBJECT_NAME = "org.genemania.engine:type=EngineMetrics";
+    static final String NAME_FORMAT = "%s.%s"; // requestType.stage
+
+    // stage times in microseconds, and counts
+    private final Map<String, Histogram> stages = new TreeMap<String, Histogram>();
+    private final Map<String, Histogram> counts = new TreeMap<String, Histogram>();
+
+    public synchronized static EngineMetrics instance() {
+        if (instance == null) {
+            instance = new EngineMetrics();
+            register(instance);
+        }
+        return instance;
+    }
+
+    private static void register(EngineMetrics metrics) {
+        if (!Config.instance().isMetricsEnabled()) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        }
+        catch (Exception e) {
+            // e.g. another copy of the engine in the same jvm got there first
+            logger.warn("failed to register engine metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    public void record(RequestTimings timings) {
+        for (Stage stage: Stage.values()) {
+            if (timings.isTimed(stage)) {
+                histogram(stages, timings.getRequestType(), stage.getCode()).record(timings.getNanos(stage) / 1000);
+            }
+        }
+        for (Count count: Count.values()) {
+            if (timings.isCounted(count)) {
+                histogram(counts, timings.getRequestType(), count.getCode()).record(timings.getCount(count));
+            }
+        }
+    }
+
+    private synchronized Histogram histogram(Map<String, Histogram> histograms, String requestType, String name) {
+        String key = String.format(NAME_FORMAT, requestType, name);
+        Histogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = new Histogram();
+            histograms.put(key, histogram);
+        }
+        return histogram;
+    }
+
+    /*
+     * histogram for the given metric name, or null if nothing was
+     * recorded for it. stage values are in microseconds
+     */
+    public synchronized Histogram getHistogram(String name) {
+        Histogram histogram = stages.get(name);
+        if (histogram == null) {
+            histogram = counts.get(name);
+        }
+        return histogram;
+    }
+
+    public synchronized Map<String, Long> getSamples() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Histogram> entry: stages.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getCount());
+        }
+        for (Map.Entry<String, Histogram> entry: counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getCount());
+        }
+        return result;
+    }
+
+    public Map<String, Double> getMeanMillis() {
+        return stageMillis(-1d);
+    }
+
+    public Map<String, Double> getP50Millis() {
+        return stageMillis(0.5d);
+    }
+
+    public Map<String, Double> getP95Millis() {
+        return stageMillis(0.95d);
+    }
+
+    public Map<String, Double> getP99Millis() {
+        return stageMillis(0.99d);
+    }
+
+    public Map<String, Double> getMaxMillis() {
+        return stageMillis(1d);
+    }
+
+    /*
+     * given percentile of each stage in millis, mean if fraction is negative
+     */
+    private synchronized Map<String, Double> stageMillis(double fraction) {
+        Map<String, Double> result = new TreeMap<String, Double>();
+        for (Map.Entry<String, Histogram> entry: stages.entrySet()) {
+            Histogram histogram = entry.getValue();
+            double micros;
+            if (fraction < 0) {
+                micros = histogram.getMean();
+            }
+            else if (fraction >= 1) {
+                micros = histogram.getMax();
+            }
+            else {
+                micros = histogram.getPercentile(fraction);
+            }
+            result.put(entry.getKey(), micros / 1000d);
+        }
+        return result;
+    }
+
+    public synchronized Map<String, Double> getCountMeans() {
+        Map<String, Double> result = new TreeMap<String, Double>();
+        for (Map.Entry<String, Histogram> entry: counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getMean());
+        }
+        return result;
+    }
+
+    public synchronized Map<String, Long> getCountMaxes() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Histogram> entry: counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getMax());
+        }
+        return result;
+    }
+
+    public synchronized Map<String, Long> getCountTotals() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Histogram> entry: counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getTotal());
+        }
+        return result;
+    }
+
+    public synchronized String [] getSummary() {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, Histogram> entry: stages.entrySet()) {
+            Histogram h = entry.getValue();
+            lines.add(String.format("%s: n=%d mean=%.1fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms", entry.getKey(), h.getCount(),
+                    h.getMean() / 1000d, h.getPercentile(0.5d) / 1000d, h.getPercentile(0.95d) / 1000d, h.getPercentile(0.99d) / 1000d, h.getMax() / 1000d));
+        }
+        for (Map.Entry<String, Histogram> entry: counts.entrySet()) {
+            Histogram h = entry.getValue();
+            lines.add(String.format("%s: n=%d mean=%.1f p50=%.1f p95=%.1f max=%d", entry.getKey(), h.getCount(),
+                    h.getMean(), h.getPercentile(0.5d), h.getPercentile(0.95d), h.getMax()));
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    public synchronized void reset() {
+        stages.clear();
+        counts.clear();
+    }
+}
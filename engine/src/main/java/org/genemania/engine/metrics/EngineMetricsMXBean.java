@@ -0,0 +1,49 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.metrics;
+
+import java.util.Map;
+
+/**
+ * management interface of EngineMetrics. metric names are the request
+ * type followed by the stage or count name, e.g. "findRelated.solve"
+ * or "findRelated.cgIterations". stage values are in milliseconds,
+ * counts in their own units.
+ */
+public interface EngineMetricsMXBean {
+
+    // # of values recorded for each stage and count
+    public Map<String, Long> getSamples();
+
+    public Map<String, Double> getMeanMillis();
+    public Map<String, Double> getP50Millis();
+    public Map<String, Double> getP95Millis();
+    public Map<String, Double> getP99Millis();
+    public Map<String, Double> getMaxMillis();
+
+    public Map<String, Double> getCountMeans();
+    public Map<String, Long> getCountMaxes();
+    public Map<String, Long> getCountTotals();
+
+    // one line per stage and count, for a quick look from jconsole
+    public String [] getSummary();
+
+    public void reset();
+}
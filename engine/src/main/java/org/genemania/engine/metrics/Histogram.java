@@ -0,0 +1,116 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.metrics;
+
+/**
+ * approximate distribution of non-negative values, e.g. durations in
+ * microseconds. values are counted in power of two buckets, so
+ * percentiles are interpolated within a bucket and are accurate to
+ * about a factor of two at worst, which is plenty for spotting slow
+ * stages. count, total and max are exact.
+ */
+public class Histogram {
+
+    // bucket i holds values v with 2^(i-1) <= v < 2^i, bucket 0 holds 0
+    static final int NUM_BUCKETS = 64;
+
+    private final long [] buckets = new long[NUM_BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets[bucket(value)] += 1;
+        count += 1;
+        total += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        if (count == 0) {
+            return 0d;
+        }
+        return ((double) total) / count;
+    }
+
+    /*
+     * estimated value below which the given fraction of
+     * the recorded values fall, 0 if nothing recorded
+     */
+    public synchronized double getPercentile(double fraction) {
+        if (count == 0) {
+            return 0d;
+        }
+
+        double rank = fraction * count;
+        long seen = 0;
+        for (int i=0; i<NUM_BUCKETS; i++) {
+            if (buckets[i] == 0) {
+                continue;
+            }
+            if (seen + buckets[i] >= rank) {
+                double low = lowerBound(i);
+                double high = Math.min(upperBound(i), max);
+                double estimate = low + (high - low) * (rank - seen) / buckets[i];
+                return Math.min(estimate, max);
+            }
+            seen += buckets[i];
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        for (int i=0; i<NUM_BUCKETS; i++) {
+            buckets[i] = 0;
+        }
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    static int bucket(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    static double lowerBound(int bucket) {
+        return bucket == 0 ? 0d : Math.pow(2, bucket-1);
+    }
+
+    static double upperBound(int bucket) {
+        return bucket == 0 ? 0d : Math.pow(2, bucket);
+    }
+}
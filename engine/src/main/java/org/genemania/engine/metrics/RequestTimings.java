@@ -0,0 +1,233 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.metrics;
+
+import org.genemania.engine.config.Config;
+
+/**
+ * time spent in each stage of a single request, plus a few counts
+ * describing the work done (solver iterations, # of features etc).
+ *
+ * the request's timings are attached to the thread processing it
+ * between begin() and finish(), so the engine code computing a stage
+ * can record into current() without the object being passed down
+ * through every call. stages running outside of a request, e.g. in
+ * background precombining, record into a no-op instance. stages
+ * split over worker threads should be timed on the calling thread.
+ *
+ * on finish() the timings are added to the aggregate EngineMetrics.
+ */
+public class RequestTimings {
+
+    public enum Stage {
+        LABELS("labels"),
+        WEIGHTS("weights"),
+        GRAM("gram"),
+        SOLVE("solve"),
+        COMBINE("combine"),
+        PROPAGATE("propagate"),
+        TOP_SCORES("topScores"),
+        SOURCE_INTERACTIONS("sourceInteractions"),
+        ATTRIBUTES("attributes"),
+        ENRICHMENT("enrichment"),
+        TOTAL("total");
+
+        private String code;
+        private Stage(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    public enum Count {
+        FEATURES("features"),
+        CG_ITERATIONS("cgIterations"),
+        COMBINED_BYTES("combinedBytes"),
+        INTERACTIONS("interactions"),
+        RESULT_CACHE_HITS("resultCacheHits"),
+        COMBINED_CACHE_HITS("combinedCacheHits");
+
+        private String code;
+        private Count(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    private static final ThreadLocal<RequestTimings> current = new ThreadLocal<RequestTimings>();
+    private static final RequestTimings NONE = new RequestTimings(null, null);
+
+    private final String requestType;
+    private final RequestTimings previous;
+    private final long startNanos;
+    private final long [] stageNanos = new long[Stage.values().length];
+    private final boolean [] timed = new boolean[Stage.values().length];
+    private final long [] counts = new long[Count.values().length];
+    private final boolean [] counted = new boolean[Count.values().length];
+    private boolean done;
+
+    RequestTimings(String requestType, RequestTimings previous) {
+        this.requestType = requestType;
+        this.previous = previous;
+        this.startNanos = System.nanoTime();
+        this.done = requestType == null;
+    }
+
+    /*
+     * start timing a request of the given type on this thread,
+     * e.g. "findRelated"
+     */
+    public static RequestTimings begin(String requestType) {
+        if (!Config.instance().isMetricsEnabled()) {
+            return NONE;
+        }
+        RequestTimings timings = new RequestTimings(requestType, current.get());
+        current.set(timings);
+        return timings;
+    }
+
+    /*
+     * timings of the request being processed by this thread,
+     * or a no-op instance if none
+     */
+    public static RequestTimings current() {
+        RequestTimings timings = current.get();
+        if (timings == null) {
+            return NONE;
+        }
+        return timings;
+    }
+
+    /*
+     * add time spent in a stage. a stage may be recorded more than
+     * once, e.g. for several propagations, and the times are summed
+     */
+    public void record(Stage stage, long nanos) {
+        if (done) {
+            return;
+        }
+        stageNanos[stage.ordinal()] += nanos;
+        timed[stage.ordinal()] = true;
+    }
+
+    public void count(Count count, long value) {
+        if (done) {
+            return;
+        }
+        counts[count.ordinal()] += value;
+        counted[count.ordinal()] = true;
+    }
+
+    /*
+     * end of a successfully processed request. records the total time,
+     * detaches from the thread and adds to the aggregate metrics
+     */
+    public void finish() {
+        if (done) {
+            return;
+        }
+        record(Stage.TOTAL, System.nanoTime() - startNanos);
+        detach();
+        EngineMetrics.instance().record(this);
+    }
+
+    /*
+     * end of a failed or cancelled request, detaches without recording.
+     * does nothing if already finished, so can be called from a finally
+     * block.
+     */
+    public void discard() {
+        if (done) {
+            return;
+        }
+        detach();
+    }
+
+    private void detach() {
+        done = true;
+        if (previous == null) {
+            current.remove();
+        }
+        else {
+            current.set(previous);
+        }
+    }
+
+    public String getRequestType() {
+        return requestType;
+    }
+
+    public boolean isTimed(Stage stage) {
+        return timed[stage.ordinal()];
+    }
+
+    public long getNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public long getMillis(Stage stage) {
+        return stageNanos[stage.ordinal()] / 1000000;
+    }
+
+    public boolean isCounted(Count count) {
+        return counted[count.ordinal()];
+    }
+
+    public long getCount(Count count) {
+        return counts[count.ordinal()];
+    }
+
+    /*
+     * one line summary for the logs, eg
+     *
+     *   total=812ms labels=1ms weights=640ms ... features=31 cgIterations=23
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        if (isTimed(Stage.TOTAL)) {
+            append(builder, Stage.TOTAL.getCode(), getMillis(Stage.TOTAL) + "ms");
+        }
+        for (Stage stage: Stage.values()) {
+            if (stage != Stage.TOTAL && isTimed(stage)) {
+                append(builder, stage.getCode(), getMillis(stage) + "ms");
+            }
+        }
+        for (Count count: Count.values()) {
+            if (isCounted(count)) {
+                append(builder, count.getCode(), "" + getCount(count));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, String name, String value) {
+        if (builder.length() > 0) {
+            builder.append(' ');
+        }
+        builder.append(name).append('=').append(value);
+    }
+}
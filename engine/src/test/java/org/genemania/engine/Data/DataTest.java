@@ -19,6 +19,8 @@
 
 package org.genemania.engine.Data;
 
+import no.uib.cipr.matrix.DenseMatrix;
+
 import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.data.DataSupport;
 import org.genemania.engine.core.data.KtK;
@@ -75,4 +77,74 @@ public class DataTest {
         assertTrue(DataSupport.isVolatile(data));
     }
 
-}
\ No newline at end of file
+    /*
+     * adding networks to a layer over core KtK/KtT should give the same
+     * matrices as adding them to a private copy
+     */
+    @Test
+    public void testLayeredKtK() throws Exception {
+        KtK core = new KtK(Data.CORE, 1, "some_branch");
+        core.setData(new DenseMatrix(new double [][] {{6, 1, 2}, {1, 3, 4}, {2, 4, 5}}));
+        KtT coreKtT = new KtT(Data.CORE, 1, "some_branch");
+        coreKtT.setData(new DenseMatrix(new double [][] {{7}, {8}, {9}}));
+
+        KtK copy = core.copy("user1");
+        KtK layer = core.layer("user1");
+        KtT copyKtT = coreKtT.copy("user1");
+        KtT layerKtT = coreKtT.layer("user1");
+        assertTrue(layer.isLayered());
+        assertFalse(copy.isLayered());
+        assertEquals(0, layer.getData().numRows());
+
+        for (int n=0; n<2; n++) {
+            copy.addNetwork();
+            layer.addNetwork();
+            copyKtT.addNetwork();
+            layerKtT.addNetwork();
+
+            int index = 3 + n;
+            for (int j=0; j<=index; j++) {
+                copy.set(index, j, 10*index + j);
+                layer.set(index, j, 10*index + j);
+            }
+            copyKtT.set(index, 100 + index);
+            layerKtT.set(index, 100 + index);
+        }
+
+        assertEquals(5, layer.size());
+        assertEquals(2, layer.getData().numRows());
+        assertEquals(2, layerKtT.getData().numRows());
+        compare(copy.getData(), layer.flatten(core).getData());
+        compare(copyKtT.getData(), layerKtT.flatten(coreKtT).getData());
+
+        copy.removeNetworkAtIndex(3);
+        layer.removeNetworkAtIndex(3);
+        copyKtT.removeNetworkAtIndex(3);
+        layerKtT.removeNetworkAtIndex(3);
+        compare(copy.getData(), layer.flatten(core).getData());
+        compare(copyKtT.getData(), layerKtT.flatten(coreKtT).getData());
+
+        // the core block is read-only through the layer
+        try {
+            layer.set(1, 2, 0d);
+            fail("expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // the core shouldn't have been touched
+        assertEquals(3, core.getData().numRows());
+        assertEquals(4d, core.getData().get(2, 1), 0d);
+    }
+
+    private static void compare(DenseMatrix expected, DenseMatrix actual) {
+        assertEquals(expected.numRows(), actual.numRows());
+        assertEquals(expected.numColumns(), actual.numColumns());
+        for (int i=0; i<expected.numRows(); i++) {
+            for (int j=0; j<expected.numColumns(); j++) {
+                assertEquals(expected.get(i, j), actual.get(i, j), 0d);
+            }
+        }
+    }
+}
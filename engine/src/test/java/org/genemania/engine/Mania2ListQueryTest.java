@@ -159,7 +159,7 @@ public class Mania2ListQueryTest {
     public void addUserNetworkHelper(String user, int organismId, int networkId) throws ApplicationException {
 
 //        INetworkMatrixProvider provider = new CacheNetworkMatrixProvider(user, 1, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
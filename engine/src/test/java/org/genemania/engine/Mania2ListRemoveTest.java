@@ -306,7 +306,7 @@ public class Mania2ListRemoveTest {
      */
     public void addUserNetworkHelper(String user, int organismId, int networkId) throws ApplicationException {
 
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
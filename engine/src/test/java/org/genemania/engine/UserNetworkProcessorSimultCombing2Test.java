@@ -148,7 +148,7 @@ public class UserNetworkProcessorSimultCombing2Test {
         // add a user network
 
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(userName, orgId, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         UploadNetworkEngineRequestDto uploadRequest = new UploadNetworkEngineRequestDto();
         uploadRequest.setLayout(DataLayout.PROFILE);
@@ -220,7 +220,7 @@ public class UserNetworkProcessorSimultCombing2Test {
         // add a user network
 
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(userName, orgId, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         UploadNetworkEngineRequestDto uploadRequest = new UploadNetworkEngineRequestDto();
         uploadRequest.setLayout(DataLayout.PROFILE);
@@ -0,0 +1,158 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.genemania.dto.NodeDto;
+import org.genemania.dto.RelatedGenesEngineRequestDto;
+import org.genemania.dto.RelatedGenesEngineResponseDto;
+import org.genemania.engine.cache.RandomDataCacheBuilder;
+import org.genemania.engine.config.Config;
+import org.genemania.type.CombiningMethod;
+import org.genemania.type.ScoringMethod;
+import org.genemania.util.NullProgressReporter;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FindRelatedBatchTest {
+
+    private static RandomDataCacheBuilder randomDataCacheBuilder = new RandomDataCacheBuilder(7132);
+    private long [] networkIds;
+    private long [] nodeIds;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Config.reload("default_test_config.properties");
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Config.reload();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        randomDataCacheBuilder.setUp();
+        networkIds = randomDataCacheBuilder.addOrganism(1, 60, 4, 0.3);
+        nodeIds = randomDataCacheBuilder.getCache().getNodeIds(1).getNodeIds();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        randomDataCacheBuilder.tearDown();
+    }
+
+    @Test
+    public void testGroupKey() throws Exception {
+        RelatedGenesEngineRequestDto average1 = createRequest(0, 3, CombiningMethod.AVERAGE);
+        RelatedGenesEngineRequestDto average2 = createRequest(10, 5, CombiningMethod.AVERAGE);
+        RelatedGenesEngineRequestDto automatic = createRequest(0, 3, CombiningMethod.AUTOMATIC);
+
+        assertNotNull(FindRelatedBatch.getGroupKey(average1));
+        assertEquals(FindRelatedBatch.getGroupKey(average1), FindRelatedBatch.getGroupKey(average2));
+        assertNull(FindRelatedBatch.getGroupKey(automatic));
+
+        RelatedGenesEngineRequestDto attributes = createRequest(0, 3, CombiningMethod.AVERAGE);
+        List<Long> attributeGroups = new ArrayList<Long>();
+        attributeGroups.add(1L);
+        attributes.setAttributeGroups(attributeGroups);
+        assertNull(FindRelatedBatch.getGroupKey(attributes));
+    }
+
+    /*
+     * batched responses should match those of the same
+     * requests processed one at a time
+     */
+    @Test
+    public void testMatchesSingleRequests() throws Exception {
+        List<RelatedGenesEngineRequestDto> requests = new ArrayList<RelatedGenesEngineRequestDto>();
+        requests.add(createRequest(0, 3, CombiningMethod.AVERAGE));
+        requests.add(createRequest(20, 5, CombiningMethod.AUTOMATIC));
+        requests.add(createRequest(10, 4, CombiningMethod.AVERAGE));
+        requests.add(createRequest(30, 2, CombiningMethod.AVERAGE));
+
+        List<FindRelated> finders = new ArrayList<FindRelated>();
+        for (RelatedGenesEngineRequestDto request: requests) {
+            finders.add(new FindRelated(randomDataCacheBuilder.getCache(), request));
+        }
+        List<RelatedGenesEngineResponseDto> responses = new FindRelatedBatch(randomDataCacheBuilder.getCache(), finders).process();
+        assertEquals(requests.size(), responses.size());
+
+        for (int i=0; i<requests.size(); i++) {
+            RelatedGenesEngineResponseDto expected = new FindRelated(randomDataCacheBuilder.getCache(), requests.get(i)).process();
+            RelatedGenesEngineResponseDto actual = responses.get(i);
+            assertNotNull(actual);
+            assertEquals(expected.getCombiningMethodApplied(), actual.getCombiningMethodApplied());
+            assertEquals(expected.getNetworks().size(), actual.getNetworks().size());
+
+            Map<Long, Double> expectedScores = getScores(expected);
+            Map<Long, Double> actualScores = getScores(actual);
+            assertEquals(expectedScores.keySet(), actualScores.keySet());
+            for (Long id: expectedScores.keySet()) {
+                assertEquals(expectedScores.get(id), actualScores.get(id), 1e-4);
+            }
+        }
+    }
+
+    private Map<Long, Double> getScores(RelatedGenesEngineResponseDto response) {
+        Map<Long, Double> scores = new HashMap<Long, Double>();
+        for (NodeDto node: response.getNodes()) {
+            scores.put(node.getId(), node.getScore());
+        }
+        return scores;
+    }
+
+    private RelatedGenesEngineRequestDto createRequest(int firstNode, int numNodes, CombiningMethod method) {
+        RelatedGenesEngineRequestDto request = new RelatedGenesEngineRequestDto();
+        request.setOrganismId(1);
+        request.setCombiningMethod(method);
+        request.setScoringMethod(ScoringMethod.DISCRIMINANT);
+
+        List<Long> positiveNodes = new ArrayList<Long>();
+        for (int i=firstNode; i<firstNode+numNodes; i++) {
+            positiveNodes.add(nodeIds[i]);
+        }
+        request.setPositiveNodes(positiveNodes);
+
+        Collection<Collection<Long>> requestNetworks = new ArrayList<Collection<Long>>();
+        Collection<Long> group = new ArrayList<Long>();
+        for (long id: networkIds) {
+            group.add(id);
+        }
+        requestNetworks.add(group);
+        request.setInteractionNetworks(requestNetworks);
+        request.setAttributeGroups(new ArrayList<Long>());
+        request.setLimitResults(20);
+        request.setProgressReporter(NullProgressReporter.instance());
+        return request;
+    }
+}
@@ -90,7 +90,7 @@ public class UserNetworkProcessorTest {
         System.out.println("processProfile");
         String user = "user1";
 
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
@@ -122,7 +122,7 @@ public class UserNetworkProcessorTest {
         String user = "user1";
 
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(user, 1, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
@@ -168,7 +168,7 @@ public class UserNetworkProcessorTest {
         String user = "user1";
 
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(user, 1, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
@@ -205,7 +205,7 @@ public class UserNetworkProcessorTest {
         String user = "user1";
 
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(user, 1, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
@@ -243,7 +243,7 @@ public class UserNetworkProcessorTest {
         String user = "user1";
 
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(user, 1, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
@@ -276,7 +276,7 @@ public class UserNetworkProcessorTest {
         String user = "user1";
 
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(user, 1, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
@@ -310,7 +310,7 @@ public class UserNetworkProcessorTest {
         String user = "user1";
 
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(user, 1, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
@@ -346,7 +346,7 @@ public class UserNetworkProcessorTest {
         System.out.println("convertNetwork");
         
 //        INetworkSymMatrixProvider provider = new CacheNetworkSymMatrixProvider(1, randomCacheBuilder.getCache());
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         // populate a request
         UploadNetworkEngineRequestDto request = new UploadNetworkEngineRequestDto();
@@ -400,7 +400,7 @@ public class UserNetworkProcessorTest {
         String userName = "user1";
         
         // add a user network
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         UploadNetworkEngineRequestDto uploadRequest = new UploadNetworkEngineRequestDto();
         uploadRequest.setLayout(DataLayout.PROFILE);
@@ -488,7 +488,7 @@ public class UserNetworkProcessorTest {
         String userName = "user1";
         
         // add a user network
-        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache(), randomCacheBuilder.getCacheDir());
+        UserNetworkProcessor instance = new UserNetworkProcessor(randomCacheBuilder.getCache());
 
         UploadNetworkEngineRequestDto uploadRequest = new UploadNetworkEngineRequestDto();
         uploadRequest.setLayout(DataLayout.PROFILE);
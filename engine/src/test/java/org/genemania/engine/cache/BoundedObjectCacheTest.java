@@ -0,0 +1,119 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BoundedObjectCacheTest {
+
+    BoundedObjectCache cache;
+
+    /*
+     * weigh strings by their length, so sizes are easy to follow
+     */
+    @Before
+    public void setUp() {
+        cache = new BoundedObjectCache(10, new ObjectWeigher() {
+            public long weigh(Object object) {
+                return ((String) object).length();
+            }
+        });
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+
+        // touch a, so b is the least recently used
+        assertEquals("aaaa", cache.get("a"));
+
+        cache.put("c", "cccc");
+        assertNull(cache.get("b"));
+        assertEquals("aaaa", cache.get("a"));
+        assertEquals("cccc", cache.get("c"));
+
+        assertEquals(8, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testPinned() {
+        cache.put("p", "pppppp", true);
+        cache.put("a", "aaa");
+        cache.put("b", "bbb");
+
+        // only room for one of the unpinned objects
+        assertEquals("pppppp", cache.get("p"));
+        assertNull(cache.get("a"));
+        assertEquals("bbb", cache.get("b"));
+        assertEquals(9, cache.getBytes());
+        assertEquals(6, cache.getPinnedBytes());
+
+        cache.remove("p");
+        assertNull(cache.get("p"));
+        assertEquals(3, cache.getBytes());
+    }
+
+    @Test
+    public void testPinnedBudget() {
+        cache = new BoundedObjectCache(10, 5, new ObjectWeigher() {
+            public long weigh(Object object) {
+                return ((String) object).length();
+            }
+        });
+
+        cache.put("p", "ppp", true);
+        cache.put("q", "qqq", true);
+        assertEquals(3, cache.getPinnedBytes());
+        assertEquals(1, cache.getPinOverflows());
+
+        // q didn't fit in the pinned budget, so is evicted like any other
+        cache.put("a", "aaaaaa");
+        assertEquals("ppp", cache.get("p"));
+        assertNull(cache.get("q"));
+        assertEquals("aaaaaa", cache.get("a"));
+        assertEquals(9, cache.getBytes());
+    }
+
+    @Test
+    public void testReplaceAndOversize() {
+        cache.put("a", "aaaa");
+        cache.put("a", "aaaaaa");
+        assertEquals(6, cache.getBytes());
+        assertEquals("aaaaaa", cache.get("a"));
+
+        // too large to ever fit, not cached and nothing evicted for it
+        cache.put("big", "bbbbbbbbbbbb");
+        assertNull(cache.get("big"));
+        assertEquals("aaaaaa", cache.get("a"));
+        assertEquals(0, cache.getEvictions());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.genemania.exception.ApplicationException;
+import org.junit.Test;
+
+public class ConcurrentObjectCacheTest {
+
+    /*
+     * counts loads, and holds each one until released so
+     * concurrent requests pile up behind it
+     */
+    static class SlowCache implements IObjectCache {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        public String getCacheDir() {
+            return null;
+        }
+
+        public void put(String [] key, Object value, boolean isVolatile) {
+        }
+
+        public Object get(String [] key, boolean isVolatile) throws ApplicationException {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                throw new ApplicationException(e);
+            }
+            if (key[0].equals("missing")) {
+                throw new ApplicationException("no such object");
+            }
+            return new String(key[0]);
+        }
+
+        public void remove(String [] key) {
+        }
+
+        public boolean exists(String [] key) {
+            return true;
+        }
+
+        public List<String[]> list(String [] key) {
+            return null;
+        }
+    }
+
+    private List<Future<Object>> submitGets(ExecutorService executor, final IObjectCache cache, final String name, int n) {
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int i=0; i<n; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return cache.get(new String [] {name}, false);
+                }
+            }));
+        }
+        return results;
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        SlowCache slow = new SlowCache();
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(slow);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = submitGets(executor, cache, "a", 8);
+
+            // wait for the first load to start, give the rest time to queue up
+            while (slow.loads.get() == 0) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(100);
+            slow.release.countDown();
+
+            Object first = results.get(0).get();
+            assertEquals("a", first);
+            for (Future<Object> result: results) {
+                assertSame(first, result.get());
+            }
+            assertEquals(1, slow.loads.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWriteDoesntWaitForUnrelatedLoad() throws Exception {
+        final SlowCache slow = new SlowCache();
+        final ConcurrentObjectCache cache = new ConcurrentObjectCache(slow);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> load = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return cache.get(new String [] {"CORE", "1", "a"}, false);
+                }
+            });
+            while (slow.loads.get() == 0) {
+                Thread.sleep(1);
+            }
+
+            // different key, shouldn't block behind the load
+            final CountDownLatch written = new CountDownLatch(1);
+            executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    cache.put(new String [] {"CORE", "1", "b"}, "b", false);
+                    written.countDown();
+                    return null;
+                }
+            });
+            assertTrue(written.await(5, TimeUnit.SECONDS));
+
+            slow.release.countDown();
+            assertEquals("CORE", load.get());
+        }
+        finally {
+            slow.release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVolatileNotShared() throws Exception {
+        SlowCache slow = new SlowCache();
+        slow.release.countDown();
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(slow);
+
+        cache.get(new String [] {"a"}, true);
+        cache.get(new String [] {"a"}, true);
+        assertEquals(2, slow.loads.get());
+    }
+
+    @Test
+    public void testLoadFailure() throws Exception {
+        SlowCache slow = new SlowCache();
+        slow.release.countDown();
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(slow);
+
+        try {
+            cache.get(new String [] {"missing"}, false);
+            fail("expected exception");
+        }
+        catch (ApplicationException e) {
+            assertEquals("no such object", e.getMessage());
+        }
+
+        // failed loads aren't remembered
+        try {
+            cache.get(new String [] {"missing"}, false);
+            fail("expected exception");
+        }
+        catch (ApplicationException e) {
+            // expected
+        }
+        assertEquals(2, slow.loads.get());
+    }
+}
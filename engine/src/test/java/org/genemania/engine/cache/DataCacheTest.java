@@ -24,6 +24,7 @@
 
 package org.genemania.engine.cache;
 
+import org.genemania.engine.core.data.CombinedNetwork;
 import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.data.Network;
 import org.genemania.engine.matricks.custom.FlexSymDoubleMatrix;
@@ -76,4 +77,32 @@ public class DataCacheTest {
         assertEquals(5, network2.getData().numRows());
         assertEquals(5, network2.getData().numCols());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCombinedNetworkIndex() throws Exception {
+        TempDirManager tempDir = new TempDirManager();
+        tempDir.setUp();
+        try {
+            IObjectCache objectCache = new FileSerializedObjectCache(tempDir.getTempDir());
+            DataCache cache = new DataCache(objectCache);
+            objectCache.put(new CombinedNetwork(Data.CORE, 1, "abc").getKey(), "stored before index", false);
+
+            assertTrue(cache.hasCombinedNetwork(Data.CORE, 1, "abc"));
+            assertFalse(cache.hasCombinedNetwork(Data.CORE, 1, "def"));
+            assertFalse(cache.hasCombinedNetwork(Data.CORE, 2, "abc"));
+
+            // writes through the data cache update the index
+            CombinedNetwork combined = new CombinedNetwork(Data.CORE, 1, "def");
+            combined.setData(new FlexSymDoubleMatrix(5));
+            cache.putCombinedNetwork(combined);
+            assertTrue(cache.hasCombinedNetwork(Data.CORE, 1, "def"));
+
+            cache.removeOrganism(Data.CORE, 1);
+            assertFalse(cache.hasCombinedNetwork(Data.CORE, 1, "abc"));
+            assertFalse(cache.hasCombinedNetwork(Data.CORE, 1, "def"));
+        }
+        finally {
+            tempDir.tearDown();
+        }
+    }
+}
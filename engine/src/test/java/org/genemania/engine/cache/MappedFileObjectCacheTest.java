@@ -0,0 +1,308 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompressedSymFloatMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.engine.matricks.custom.FloatSymMatrixAccumulator;
+import org.genemania.engine.matricks.custom.MappedSymFloatMatrix;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedFileObjectCacheTest {
+
+    static final int SIZE = 100;
+
+    public static TempDirManager tempDir = new TempDirManager();
+
+    FlexSymFloatMatrix flex;
+    CompressedSymFloatMatrix csr;
+
+    @Before
+    public void setUp() {
+        tempDir.setUp();
+
+        Random random = new Random(3141);
+        flex = new FlexSymFloatMatrix(SIZE);
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<i; j++) {
+                if (random.nextDouble() < 0.1) {
+                    flex.set(i, j, random.nextDouble());
+                }
+            }
+            if (i % 5 == 0) {
+                flex.set(i, i, random.nextDouble());
+            }
+        }
+        flex.compact();
+        csr = (CompressedSymFloatMatrix) CompressedSymFloatMatrix.compress(flex);
+    }
+
+    @After
+    public void tearDown() {
+        tempDir.tearDown();
+    }
+
+    @Test
+    public void testMatrixRoundTrip() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        String [] key = {"CORE", "1", "10"};
+        cache.put(key, csr, false);
+
+        assertTrue(new File(tempDir.getTempDir() + "/CORE/1/10.bin").isFile());
+        assertTrue(cache.exists(key));
+
+        SymMatrix m = (SymMatrix) cache.get(key, false);
+        assertTrue(m instanceof MappedSymFloatMatrix);
+        assertEquals(SIZE, m.numRows());
+
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<SIZE; j++) {
+                assertEquals(flex.get(i, j), m.get(i, j), 0d);
+            }
+        }
+
+        double [] x = new double[SIZE];
+        for (int i=0; i<SIZE; i++) {
+            x[i] = Math.sin(i);
+        }
+        double [] expected = new double[SIZE];
+        double [] y = new double[SIZE];
+        flex.mult(x, expected);
+        m.mult(x, y);
+        for (int i=0; i<SIZE; i++) {
+            assertEquals(expected[i], y[i], 1e-10);
+        }
+
+        assertEquals(flex.elementSum(), m.elementSum(), 1e-6);
+        assertEquals(flex.sumDotMultOuterProd(x), m.sumDotMultOuterProd(x), 1e-10);
+        assertEquals(flex.elementMultiplySum(flex), m.elementMultiplySum(flex), 1e-6);
+        assertEquals(flex.elementMultiplySum(flex), csr.elementMultiplySum(m), 1e-6);
+    }
+
+    /*
+     * heap and mapped matrices in any combination
+     */
+    @Test
+    public void testElementMultiplySum() throws Exception {
+        Random random = new Random(2718);
+        FlexSymFloatMatrix flex2 = new FlexSymFloatMatrix(SIZE);
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<=i; j++) {
+                if (random.nextDouble() < 0.2) {
+                    flex2.set(i, j, random.nextDouble());
+                }
+            }
+        }
+        flex2.compact();
+        CompressedSymFloatMatrix csr2 = (CompressedSymFloatMatrix) CompressedSymFloatMatrix.compress(flex2);
+
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        cache.put(new String[] {"A", "B"}, csr, false);
+        cache.put(new String[] {"A", "C"}, csr2, false);
+        SymMatrix m = (SymMatrix) cache.get(new String[] {"A", "B"}, false);
+        SymMatrix m2 = (SymMatrix) cache.get(new String[] {"A", "C"}, false);
+
+        double expected = flex.elementMultiplySum(flex2);
+        assertEquals(expected, m.elementMultiplySum(m2), 1e-6);
+        assertEquals(expected, m.elementMultiplySum(csr2), 1e-6);
+        assertEquals(expected, csr.elementMultiplySum(m2), 1e-6);
+        assertEquals(expected, flex.elementMultiplySum(m2), 1e-6);
+    }
+
+    @Test
+    public void testAddToFlex() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        String [] key = {"A", "B"};
+        cache.put(key, csr, false);
+        SymMatrix m = (SymMatrix) cache.get(key, false);
+
+        FlexSymFloatMatrix result = new FlexSymFloatMatrix(SIZE);
+        result.add(2d, m);
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<=i; j++) {
+                assertEquals(2*flex.get(i, j), result.get(i, j), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        String [] key = {"A", "B"};
+        cache.put(key, csr, false);
+        SymMatrix m = (SymMatrix) cache.get(key, false);
+
+        MatrixCursor expected = csr.cursor();
+        MatrixCursor cursor = m.cursor();
+        while (expected.next()) {
+            assertTrue(cursor.next());
+            assertEquals(expected.row(), cursor.row());
+            assertEquals(expected.col(), cursor.col());
+            assertEquals(expected.val(), cursor.val(), 0d);
+        }
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testAccumulate() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        String [] key = {"A", "B"};
+        cache.put(key, csr, false);
+        SymMatrix m = (SymMatrix) cache.get(key, false);
+
+        FlexSymFloatMatrix expected = new FlexSymFloatMatrix(SIZE);
+        FloatSymMatrixAccumulator accumulator = new FloatSymMatrixAccumulator(expected, 1000);
+        while (accumulator.nextBlock()) {
+            accumulator.add(2d, csr);
+        }
+
+        FlexSymFloatMatrix result = new FlexSymFloatMatrix(SIZE);
+        accumulator = new FloatSymMatrixAccumulator(result, 1000);
+        while (accumulator.nextBlock()) {
+            accumulator.add(2d, m);
+        }
+
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<i; j++) {
+                assertEquals(2*flex.get(i, j), result.get(i, j), 1e-6);
+                assertEquals(expected.get(i, j), result.get(i, j), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void testReadOnly() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        String [] key = {"A", "B"};
+        cache.put(key, csr, false);
+        SymMatrix m = (SymMatrix) cache.get(key, false);
+
+        try {
+            m.set(1, 0, 1d);
+            fail("expected exception");
+        }
+        catch (MatricksException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSerializesAsHeapCopy() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        String [] key = {"A", "B"};
+        cache.put(key, csr, false);
+        SymMatrix m = (SymMatrix) cache.get(key, false);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(m);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        SymMatrix copy = (SymMatrix) in.readObject();
+
+        assertTrue(copy instanceof CompressedSymFloatMatrix);
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<SIZE; j++) {
+                assertEquals(m.get(i, j), copy.get(i, j), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void testLongArrayRoundTrip() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        String [] key = {"CORE", "1", "NodeIds"};
+        long [] ids = {7, 3, Long.MAX_VALUE, -1, 0};
+        cache.put(key, ids, false);
+
+        assertArrayEquals(ids, (long []) cache.get(key, false));
+
+        long [] empty = new long[0];
+        cache.put(key, empty, false);
+        assertArrayEquals(empty, (long []) cache.get(key, false));
+    }
+
+    /*
+     * other objects are still serialized, and replacing an object
+     * of one kind with the other doesn't leave a stale file behind
+     */
+    @Test
+    public void testMixedFormats() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        String [] key = {"A", "B"};
+
+        cache.put(key, "hello", false);
+        assertEquals("hello", cache.get(key, false));
+        assertTrue(new File(tempDir.getTempDir() + "/A/B.ser").isFile());
+
+        cache.put(key, csr, false);
+        assertFalse(new File(tempDir.getTempDir() + "/A/B.ser").exists());
+        assertTrue(cache.get(key, false) instanceof MappedSymFloatMatrix);
+
+        cache.put(key, "world", false);
+        assertFalse(new File(tempDir.getTempDir() + "/A/B.bin").exists());
+        assertEquals("world", cache.get(key, false));
+
+        // a plain serialized cache is readable too
+        new FileSerializedObjectCache(tempDir.getTempDir()).put(new String[] {"A", "C"}, "old", false);
+        assertEquals("old", cache.get(new String[] {"A", "C"}, false));
+    }
+
+    @Test
+    public void testListAndRemove() throws Exception {
+        IObjectCache cache = new MappedFileObjectCache(tempDir.getTempDir());
+        cache.put(new String[] {"A", "B"}, csr, false);
+        cache.put(new String[] {"A", "C"}, "hello", false);
+
+        List<String[]> result = cache.list(new String[] {"A"});
+        assertEquals(2, result.size());
+        for (String [] key: result) {
+            assertEquals(2, key.length);
+            assertEquals("A", key[0]);
+            assertTrue(key[1].equals("B") || key[1].equals("C"));
+        }
+
+        cache.remove(new String[] {"A", "B"});
+        assertFalse(cache.exists(new String[] {"A", "B"}));
+        assertTrue(cache.exists(new String[] {"A", "C"}));
+
+        cache.remove(new String[] {"A"});
+        assertFalse(cache.exists(new String[] {"A", "C"}));
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+    @Test
+    public void testCopies() {
+        ResultCache cache = new ResultCache(1024*1024);
+        assertTrue(cache.isEnabled());
+
+        ArrayList<String> response = new ArrayList<String>();
+        response.add("a");
+        cache.put("key", response);
+
+        // changes to the stored or returned responses don't leak into the cache
+        response.add("b");
+        ArrayList<?> first = (ArrayList<?>) cache.get("key");
+        assertEquals(1, first.size());
+        first.clear();
+
+        ArrayList<?> second = (ArrayList<?>) cache.get("key");
+        assertNotSame(first, second);
+        assertEquals("a", second.get(0));
+
+        assertNull(cache.get("other"));
+        cache.clear();
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testGeneration() {
+        ResultCache cache = new ResultCache(1024*1024);
+        long generation = cache.getGeneration();
+        cache.put("before", "x", generation);
+        assertEquals("x", cache.get("before"));
+
+        // computed across a clear, may be stale so not kept
+        cache.clear();
+        cache.put("during", "y", generation);
+        assertNull(cache.get("during"));
+
+        cache.put("after", "z", cache.getGeneration());
+        assertEquals("z", cache.get("after"));
+    }
+
+    @Test
+    public void testBudget() {
+        ResultCache cache = new ResultCache(200);
+        cache.put("small", "x");
+        assertEquals("x", cache.get("small"));
+
+        // bigger than the whole budget, not kept
+        cache.put("big", new byte[1000]);
+        assertNull(cache.get("big"));
+    }
+
+    @Test
+    public void testDisabled() {
+        ResultCache cache = new ResultCache(0);
+        assertFalse(cache.isEnabled());
+        cache.put("key", "value");
+        assertNull(cache.get("key"));
+    }
+}
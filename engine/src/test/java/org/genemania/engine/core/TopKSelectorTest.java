@@ -0,0 +1,122 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Vector;
+
+import org.junit.Test;
+
+public class TopKSelectorTest {
+
+    @Test
+    public void testOrderAndTies() {
+        TopKSelector selector = new TopKSelector(4);
+        double [] scores = {0.5, 0.9, 0.5, 0.1, 0.9, Double.NaN, 0.5};
+        for (int i=0; i<scores.length; i++) {
+            selector.offer(i, scores[i]);
+        }
+
+        assertEquals(4, selector.size());
+        assertArrayEquals(new int[] {5, 1, 4, 0}, selector.sortedIndices());
+    }
+
+    @Test
+    public void testEmpty() {
+        TopKSelector selector = new TopKSelector(0);
+        selector.offer(1, 1d);
+        assertEquals(0, selector.sortedIndices().length);
+
+        selector = new TopKSelector(3);
+        selector.offer(1, 1d);
+        assertArrayEquals(new int[] {1}, selector.sortedIndices());
+    }
+
+    /*
+     * compare with selection from a full stable sort, on scores with many ties
+     */
+    @Test
+    public void testMatchesFullSort() {
+        Random random = new Random(1618);
+
+        for (int trial=0; trial<50; trial++) {
+            int n = 1 + random.nextInt(2000);
+            double [] x = new double[n];
+            for (int i=0; i<n; i++) {
+                x[i] = random.nextInt(50) / 10d - 1d;
+            }
+
+            List<Integer> positives = new ArrayList<Integer>();
+            for (int i=0; i<random.nextInt(10); i++) {
+                positives.add(random.nextInt(n));
+            }
+            int limit = random.nextInt(100);
+            double threshold = random.nextDouble() - 0.5;
+
+            Vector scores = new DenseVector(x);
+            int [] expected = fullSortTopScores(x, positives, limit, threshold);
+            int [] result = MatrixUtils.getIndicesForTopScores(scores, positives, limit, threshold);
+            assertArrayEquals(expected, result);
+        }
+    }
+
+    /*
+     * selection by sorting all the scores, as originally implemented
+     */
+    static int [] fullSortTopScores(final double [] x, List<Integer> positives, int limit, double threshold) {
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i=0; i<x.length; i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new java.util.Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return -Double.compare(x[a], x[b]);
+            }
+        });
+
+        HashSet<Integer> positiveSet = new HashSet<Integer>(positives);
+        List<Integer> result = new ArrayList<Integer>();
+        int numOthers = 0;
+        for (int index: order) {
+            if (positiveSet.contains(index)) {
+                result.add(index);
+            }
+            else if (numOthers < limit && x[index] > threshold + Math.pow(2, -20)) {
+                result.add(index);
+                numOthers++;
+            }
+        }
+
+        int [] a = new int[result.size()];
+        for (int i=0; i<a.length; i++) {
+            a[i] = result.get(i);
+        }
+        return a;
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.mania;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.genemania.engine.Constants.CombiningMethod;
+import org.genemania.engine.cache.DataCache;
+import org.genemania.engine.cache.FileSerializedObjectCache;
+import org.genemania.engine.cache.RandomDataCacheBuilder;
+import org.genemania.engine.core.data.CombinedNetwork;
+import org.genemania.engine.core.data.Data;
+import org.genemania.engine.core.integration.INetworkWeightCalculator;
+import org.genemania.engine.core.integration.NetworkWeightCalculatorFactory;
+import org.genemania.engine.core.integration.calculators.AbstractNetworkWeightCalculator;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.util.NullProgressReporter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OnDemandPrecombinerTest {
+
+    RandomDataCacheBuilder rcb;
+    long [] networkIds;
+
+    @Before
+    public void setUp() throws Exception {
+        rcb = new RandomDataCacheBuilder(2112);
+        rcb.setUp();
+        networkIds = rcb.addOrganism(1, 50, 5, 0.5);
+    }
+
+    @After
+    public void tearDown() {
+        rcb.tearDown();
+    }
+
+    @Test
+    public void testPrecombinesAtThreshold() throws Exception {
+        DataCache cache = rcb.getCache();
+        OnDemandPrecombiner precombiner = new OnDemandPrecombiner(cache, 2, Long.MAX_VALUE);
+
+        Collection<Collection<Long>> networks = select(0, 3);
+        String hash = hash(CombiningMethod.AVERAGE, networks);
+
+        // combine directly to compare with, before there's a precombined network
+        INetworkWeightCalculator direct = NetworkWeightCalculatorFactory.getCalculator(Data.CORE, cache, select(0, 3), new ArrayList<Long>(),
+                1, null, 0, CombiningMethod.AVERAGE, NullProgressReporter.instance());
+        direct.process();
+        SymMatrix expected = direct.getCombinedMatrix();
+
+        assertFalse(precombiner.requested(1, CombiningMethod.AVERAGE, networks, hash));
+        assertTrue(precombiner.requested(1, CombiningMethod.AVERAGE, networks, hash));
+        precombiner.waitForPending();
+
+        assertTrue(cache.hasCombinedNetwork(Data.CORE, 1, hash));
+        CombinedNetwork combined = cache.getCombinedNetwork(Data.CORE, 1, hash);
+        assertEquals(3, combined.getFeatureWeightMap().size());
+        for (int i=0; i<expected.numRows(); i++) {
+            for (int j=0; j<expected.numCols(); j++) {
+                assertEquals(expected.get(i, j), combined.getData().get(i, j), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testRetiresLeastRecentlyUsed() throws Exception {
+        DataCache cache = rcb.getCache();
+
+        // find out how big one combined network is, and allow room for two
+        OnDemandPrecombiner sizer = new OnDemandPrecombiner(cache, 1, Long.MAX_VALUE);
+        Collection<Collection<Long>> first = select(0, 2);
+        String firstHash = hash(CombiningMethod.AVERAGE, first);
+        sizer.requested(1, CombiningMethod.AVERAGE, first, firstHash);
+        sizer.waitForPending();
+        long bytes = sizer.getStored(1).getTotalBytes();
+
+        // picks up the first network from the cache
+        OnDemandPrecombiner precombiner = new OnDemandPrecombiner(cache, 1, 2*bytes + bytes/2);
+        Collection<Collection<Long>> second = select(1, 3);
+        String secondHash = hash(CombiningMethod.AVERAGE, second);
+        precombiner.requested(1, CombiningMethod.AVERAGE, second, secondHash);
+        precombiner.waitForPending();
+        assertEquals(2, precombiner.getStored(1).size());
+
+        // first is used more recently than second, so second goes
+        precombiner.used(1, firstHash);
+        Collection<Collection<Long>> third = select(2, 4);
+        String thirdHash = hash(CombiningMethod.AVERAGE, third);
+        precombiner.requested(1, CombiningMethod.AVERAGE, third, thirdHash);
+        precombiner.waitForPending();
+
+        assertTrue(cache.hasCombinedNetwork(Data.CORE, 1, firstHash));
+        assertFalse(cache.hasCombinedNetwork(Data.CORE, 1, secondHash));
+        assertTrue(cache.hasCombinedNetwork(Data.CORE, 1, thirdHash));
+        assertEquals(2, precombiner.getStored(1).size());
+
+        // a restarted process rebuilds the same view from the cache
+        OnDemandPrecombiner restarted = new OnDemandPrecombiner(cache, 1, 2*bytes + bytes/2);
+        restarted.sync(1);
+        assertEquals(2, restarted.getStored(1).size());
+        assertEquals(firstHash, restarted.getStored(1).getOldest().getMethodParamKey());
+    }
+
+    @Test
+    public void testLimitCoversOtherProcesses() throws Exception {
+        DataCache cache = rcb.getCache();
+
+        // one process stores two networks with no limit to speak of
+        OnDemandPrecombiner unlimited = new OnDemandPrecombiner(cache, 1, Long.MAX_VALUE);
+        Collection<Collection<Long>> first = select(0, 2);
+        String firstHash = hash(CombiningMethod.AVERAGE, first);
+        unlimited.requested(1, CombiningMethod.AVERAGE, first, firstHash);
+        unlimited.waitForPending();
+        Collection<Collection<Long>> second = select(1, 3);
+        String secondHash = hash(CombiningMethod.AVERAGE, second);
+        unlimited.requested(1, CombiningMethod.AVERAGE, second, secondHash);
+        unlimited.waitForPending();
+        long bytes = unlimited.getStored(1).getTotalBytes();
+
+        // another with room for one retires the older of them
+        OnDemandPrecombiner limited = new OnDemandPrecombiner(cache, 1, bytes/2 + bytes/4);
+        limited.sync(1);
+        assertFalse(cache.hasCombinedNetwork(Data.CORE, 1, firstHash));
+        assertTrue(cache.hasCombinedNetwork(Data.CORE, 1, secondHash));
+        assertEquals(1, limited.getStored(1).size());
+
+        unlimited.sync(1);
+        assertEquals(1, unlimited.getStored(1).size());
+    }
+
+    @Test
+    public void testFallsBackWhenPrecombinedNetworkGone() throws Exception {
+        DataCache cache = rcb.getCache();
+        OnDemandPrecombiner precombiner = new OnDemandPrecombiner(cache, 1, Long.MAX_VALUE);
+        Collection<Collection<Long>> networks = select(0, 3);
+        String hash = hash(CombiningMethod.AVERAGE, networks);
+        precombiner.requested(1, CombiningMethod.AVERAGE, networks, hash);
+        precombiner.waitForPending();
+        assertTrue(cache.hasCombinedNetwork(Data.CORE, 1, hash));
+
+        // another process sharing the cache dir retires it
+        DataCache other = new DataCache(new FileSerializedObjectCache(rcb.getCacheDir()));
+        other.removeData(new CombinedNetwork(Data.CORE, 1, hash));
+
+        CalculateNetworkWeights weights = new CalculateNetworkWeights(Data.CORE, cache, networks, new ArrayList<Long>(),
+                1, null, 0, CombiningMethod.AVERAGE, NullProgressReporter.instance());
+        weights.process();
+        assertEquals(3, weights.getWeights().size());
+        assertFalse(cache.hasCombinedNetwork(Data.CORE, 1, hash));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        OnDemandPrecombiner precombiner = new OnDemandPrecombiner(rcb.getCache(), 0, Long.MAX_VALUE);
+        Collection<Collection<Long>> networks = select(0, 3);
+        String hash = hash(CombiningMethod.AVERAGE, networks);
+        for (int i=0; i<10; i++) {
+            assertFalse(precombiner.requested(1, CombiningMethod.AVERAGE, networks, hash));
+        }
+        assertFalse(rcb.getCache().hasCombinedNetwork(Data.CORE, 1, hash));
+    }
+
+    /*
+     * networks [from, to) in one group
+     */
+    private Collection<Collection<Long>> select(int from, int to) {
+        Collection<Long> group = new ArrayList<Long>();
+        for (int i=from; i<to; i++) {
+            group.add(networkIds[i]);
+        }
+        Collection<Collection<Long>> networks = new ArrayList<Collection<Long>>();
+        networks.add(group);
+        return networks;
+    }
+
+    private static String hash(CombiningMethod method, Collection<Collection<Long>> networks) {
+        return AbstractNetworkWeightCalculator.hashString(NetworkWeightCalculatorFactory.getParameterKey(method, networks, null));
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.genemania.engine.Constants.PreconditionerType;
+import org.genemania.engine.SimpleProgressReporter;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.EyePlusLaplacianMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.util.NullProgressReporter;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConjugateGradientSolverTest {
+
+    static final int SIZE = 200;
+    FlexSymFloatMatrix w;
+    double [] b;
+
+    /*
+     * random sparse non-negative weights, zero diag
+     */
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(2112);
+        w = new FlexSymFloatMatrix(SIZE);
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<i; j++) {
+                if (random.nextDouble() < 0.05) {
+                    w.set(i, j, random.nextDouble());
+                }
+            }
+        }
+        w.compact();
+
+        b = new double[SIZE];
+        for (int i=0; i<SIZE; i++) {
+            b[i] = random.nextBoolean() ? 1d : -1d;
+        }
+    }
+
+    private double [] solve(PreconditionerType type, SymMatrix A) throws Exception {
+        ConjugateGradientSolver solver = new ConjugateGradientSolver(type, 1e-10, 1000);
+        double [] x = new double[SIZE];
+        solver.solve(A, b, x, NullProgressReporter.instance());
+        assertTrue(solver.getIterations() > 0);
+        return x;
+    }
+
+    @Test
+    public void testPreconditionersAgree() throws Exception {
+        SymMatrix A = new EyePlusLaplacianMatrix(w);
+
+        double [] x0 = solve(PreconditionerType.NONE, A);
+        double [] x1 = solve(PreconditionerType.JACOBI, A);
+        double [] x2 = solve(PreconditionerType.INCOMPLETE_CHOLESKY, A);
+
+        // check we actually solved the system
+        double [] y = new double[SIZE];
+        A.mult(x0, y);
+        for (int i=0; i<SIZE; i++) {
+            assertEquals(b[i], y[i], 1e-8);
+            assertEquals(x0[i], x1[i], 1e-8);
+            assertEquals(x0[i], x2[i], 1e-8);
+        }
+    }
+
+    @Test
+    public void testIncompleteCholeskyReducesIterations() throws Exception {
+        SymMatrix A = new EyePlusLaplacianMatrix(w);
+
+        ConjugateGradientSolver plain = new ConjugateGradientSolver(PreconditionerType.NONE, 1e-10, 1000);
+        plain.solve(A, b, new double[SIZE], NullProgressReporter.instance());
+
+        ConjugateGradientSolver ic = new ConjugateGradientSolver(PreconditionerType.INCOMPLETE_CHOLESKY, 1e-10, 1000);
+        ic.solve(A, b, new double[SIZE], NullProgressReporter.instance());
+
+        assertTrue(ic.getIterations() < plain.getIterations());
+    }
+
+    @Test
+    public void testWarmStartFromSolution() throws Exception {
+        SymMatrix A = new EyePlusLaplacianMatrix(w);
+        double [] x = solve(PreconditionerType.JACOBI, A);
+
+        ConjugateGradientSolver solver = new ConjugateGradientSolver(PreconditionerType.JACOBI, 1e-10, 1000);
+        solver.solve(A, b, x, NullProgressReporter.instance());
+        assertEquals(0, solver.getIterations());
+    }
+
+    /*
+     * block solve of b, -b and 2b should match separate solves
+     */
+    @Test
+    public void testSolveBlock() throws Exception {
+        SymMatrix A = new EyePlusLaplacianMatrix(w);
+        double [] x0 = solve(PreconditionerType.JACOBI, A);
+
+        final int k = 3;
+        double [] bb = new double[SIZE*k];
+        for (int i=0; i<SIZE; i++) {
+            bb[i*k] = b[i];
+            bb[i*k+1] = -b[i];
+            bb[i*k+2] = 2*b[i];
+        }
+
+        ConjugateGradientSolver solver = new ConjugateGradientSolver(PreconditionerType.JACOBI, 1e-10, 1000);
+        double [] xx = new double[SIZE*k];
+        int [] iterations = solver.solveBlock(A, solver.createPreconditioner(A), k, bb, xx, NullProgressReporter.instance());
+
+        assertEquals(k, iterations.length);
+        for (int i=0; i<SIZE; i++) {
+            assertEquals(x0[i], xx[i*k], 1e-8);
+            assertEquals(-x0[i], xx[i*k+1], 1e-8);
+            assertEquals(2*x0[i], xx[i*k+2], 1e-8);
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        SymMatrix A = new EyePlusLaplacianMatrix(w);
+        SimpleProgressReporter progress = new SimpleProgressReporter();
+        progress.cancel();
+
+        ConjugateGradientSolver solver = new ConjugateGradientSolver(PreconditionerType.JACOBI, 1e-10, 1000);
+        try {
+            solver.solve(A, b, new double[SIZE], progress);
+            fail("expected cancellation");
+        }
+        catch (CancellationException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Vector;
+import org.genemania.engine.Constants;
+import org.genemania.engine.Constants.NetworkType;
+import org.genemania.engine.core.integration.Feature;
+import org.genemania.engine.core.integration.FeatureWeightMap;
+import org.junit.Test;
+
+public class DiscriminantCacheTest {
+
+    static final int SIZE = 10;
+
+    /*
+     * label vector with the given +ve indices, all others unlabeled
+     */
+    private Vector labels(int... positives) {
+        Vector labels = new DenseVector(SIZE);
+        for (int i=0; i<SIZE; i++) {
+            labels.set(i, Constants.EXCLUDED_ROW_VALUE);
+        }
+        for (int i: positives) {
+            labels.set(i, 1d);
+        }
+        return labels;
+    }
+
+    private double [] solution(double val) {
+        double [] x = new double[SIZE];
+        x[0] = val;
+        return x;
+    }
+
+    @Test
+    public void testFindClosest() {
+        DiscriminantCache cache = new DiscriminantCache(10);
+
+        cache.put("net1", labels(1, 2, 3), solution(1));
+        cache.put("net1", labels(5, 6, 7), solution(2));
+        cache.put("net2", labels(1, 2, 3, 4), solution(3));
+
+        // closest by overlap on the same network
+        double [] x = cache.findClosest("net1", labels(1, 2, 3, 4));
+        assertNotNull(x);
+        assertEquals(1d, x[0], 0d);
+
+        x = cache.findClosest("net1", labels(6, 7, 8));
+        assertNotNull(x);
+        assertEquals(2d, x[0], 0d);
+
+        // no overlap, or unknown network
+        assertNull(cache.findClosest("net1", labels(8, 9)));
+        assertNull(cache.findClosest("net3", labels(1, 2, 3)));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testReturnsCopies() {
+        DiscriminantCache cache = new DiscriminantCache(10);
+        double [] x = solution(1);
+        cache.put("net1", labels(1), x);
+        x[0] = 5;
+
+        double [] y = cache.findClosest("net1", labels(1));
+        assertEquals(1d, y[0], 0d);
+        y[0] = 5;
+        assertEquals(1d, cache.findClosest("net1", labels(1))[0], 0d);
+    }
+
+    @Test
+    public void testEviction() {
+        DiscriminantCache cache = new DiscriminantCache(2);
+        cache.put("net1", labels(1), solution(1));
+        cache.put("net1", labels(2), solution(2));
+
+        // touch the oldest so it is kept
+        assertNotNull(cache.findClosest("net1", labels(1)));
+        cache.put("net1", labels(3), solution(3));
+        assertEquals(2, cache.size());
+
+        assertNull(cache.findClosest("net1", labels(2)));
+        assertNotNull(cache.findClosest("net1", labels(1)));
+
+        // same query replaces its entry
+        cache.put("net1", labels(3), solution(4));
+        assertEquals(2, cache.size());
+        assertEquals(4d, cache.findClosest("net1", labels(3))[0], 0d);
+    }
+
+    @Test
+    public void testNetworkHash() {
+        FeatureWeightMap weights1 = new FeatureWeightMap();
+        weights1.put(new Feature(NetworkType.SPARSE_MATRIX, 1, 10), 0.5);
+        weights1.put(new Feature(NetworkType.SPARSE_MATRIX, 1, 11), 0.5);
+
+        FeatureWeightMap weights2 = new FeatureWeightMap();
+        weights2.put(new Feature(NetworkType.SPARSE_MATRIX, 1, 11), 0.5);
+        weights2.put(new Feature(NetworkType.SPARSE_MATRIX, 1, 10), 0.5);
+
+        assertEquals(DiscriminantCache.networkHash("core", 1, weights1), DiscriminantCache.networkHash("core", 1, weights2));
+
+        weights2.put(new Feature(NetworkType.SPARSE_MATRIX, 1, 10), 0.25);
+        assertFalse(DiscriminantCache.networkHash("core", 1, weights1).equals(DiscriminantCache.networkHash("core", 1, weights2)));
+        assertFalse(DiscriminantCache.networkHash("core", 1, weights1).equals(DiscriminantCache.networkHash("user1", 1, weights1)));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HyperGeometricTest {
+
+    static final int MAX_N = 50;
+
+    /*
+     * binomial coefficients from pascal's triangle, exact in a double
+     * for these sizes
+     */
+    static double [][] choose() {
+        double [][] c = new double[MAX_N+1][MAX_N+1];
+        for (int i=0; i<=MAX_N; i++) {
+            c[i][0] = 1;
+            for (int j=1; j<=i; j++) {
+                c[i][j] = c[i-1][j-1] + c[i-1][j];
+            }
+        }
+        return c;
+    }
+
+    @Test
+    public void testKnownValues() {
+        assertEquals(7.04334e-2, HyperGeometric.pmf(4, 20, 7, 6), 1e-6);
+        assertEquals(7.76573e-2, HyperGeometric.upperTail(4, 20, 7, 6), 1e-6);
+    }
+
+    @Test
+    public void testAgainstExact() {
+        double [][] c = choose();
+
+        for (int N=1; N<=MAX_N; N += 7) {
+            for (int k=0; k<=N; k++) {
+                for (int n=0; n<=N; n += 3) {
+                    int lower = Math.max(0, n+k-N);
+                    int upper = Math.min(n, k);
+
+                    double tail = 0;
+                    for (int x=upper; x>=0; x--) {
+                        double expected = 0;
+                        if (x >= lower) {
+                            expected = c[k][x] * c[N-k][n-x] / c[N][n];
+                        }
+                        tail += expected;
+
+                        assertEquals(expected, HyperGeometric.pmf(x, N, n, k), 1e-12);
+                        assertEquals(tail, HyperGeometric.upperTail(x, N, n, k), 1e-12);
+                    }
+                    assertEquals(0d, HyperGeometric.upperTail(upper+1, N, n, k), 0d);
+                }
+            }
+        }
+    }
+
+    /*
+     * tiny p-values deep in the tail, where terms would
+     * underflow if we started from the wrong end
+     */
+    @Test
+    public void testSmallTail() {
+        double p = HyperGeometric.upperTail(100, 20000, 100, 200);
+        assertEquals(Math.exp(HyperGeometric.logPmf(HyperGeometric.logFactorials(20000), 100, 20000, 100, 200)), p, 0d);
+        assertEquals(1d, HyperGeometric.upperTail(0, 20000, 100, 200), 0d);
+
+        // sum of the tail below the mode is close to 1
+        assertEquals(1d, HyperGeometric.upperTail(1, 20000, 5000, 5000), 1e-9);
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.SymMatrix;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompressedSymFloatMatrixTest {
+
+    static final int SIZE = 100;
+
+    FlexSymFloatMatrix flex;
+    CompressedSymFloatMatrix csr;
+    double [] x;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(4242);
+        flex = new FlexSymFloatMatrix(SIZE);
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<i; j++) {
+                if (random.nextDouble() < 0.1) {
+                    flex.set(i, j, random.nextDouble());
+                }
+            }
+            if (i % 7 == 0) {
+                flex.set(i, i, random.nextDouble());
+            }
+        }
+        flex.compact();
+
+        csr = (CompressedSymFloatMatrix) CompressedSymFloatMatrix.compress(flex);
+
+        x = new double[SIZE];
+        for (int i=0; i<SIZE; i++) {
+            x[i] = random.nextDouble() - 0.5;
+        }
+    }
+
+    @Test
+    public void testGet() {
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<SIZE; j++) {
+                assertEquals(flex.get(i, j), csr.get(i, j), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void testMult() {
+        double [] expected = new double[SIZE];
+        double [] result = new double[SIZE];
+        flex.mult(x, expected);
+        csr.mult(x, result);
+        assertClose(expected, result);
+
+        for (int i=0; i<SIZE; i++) {
+            expected[i] = i;
+            result[i] = i;
+        }
+        flex.multAdd(0.5, x, expected);
+        csr.multAdd(0.5, x, result);
+        assertClose(expected, result);
+
+        final int k = 2;
+        double [] xx = new double[SIZE*k];
+        for (int i=0; i<SIZE; i++) {
+            xx[i*k] = x[i];
+            xx[i*k+1] = -2*x[i];
+        }
+        double [] expectedBlock = new double[SIZE*k];
+        double [] resultBlock = new double[SIZE*k];
+        flex.multBlock(k, xx, expectedBlock);
+        csr.multBlock(k, xx, resultBlock);
+        assertClose(expectedBlock, resultBlock);
+    }
+
+    @Test
+    public void testSums() {
+        assertEquals(flex.elementSum(), csr.elementSum(), 1e-10);
+        assertEquals(flex.sumDotMultOuterProd(x), csr.sumDotMultOuterProd(x), 1e-10);
+
+        double [] expected = new double[SIZE];
+        double [] result = new double[SIZE];
+        flex.rowSums(expected);
+        csr.rowSums(result);
+        assertClose(expected, result);
+    }
+
+    @Test
+    public void testElementMultiplySum() {
+        double expected = flex.elementMultiplySum(flex);
+        assertEquals(expected, csr.elementMultiplySum(csr), 1e-6);
+        assertEquals(expected, csr.elementMultiplySum(flex), 1e-6);
+        assertEquals(expected, flex.elementMultiplySum(csr), 1e-6);
+
+        FlexFloatArray column = new FlexFloatArray(SIZE);
+        for (int i=0; i<SIZE; i+=3) {
+            column.set(i, 1f);
+        }
+        Outer1View view = new Outer1View(column, 0.5d, true);
+        assertEquals(flex.elementMultiplySum(view), csr.elementMultiplySum(view), 1e-6);
+        assertEquals(flex.elementMultiplySum(view), view.elementMultiplySum(csr), 1e-6);
+    }
+
+    @Test
+    public void testCursor() {
+        FlexSymFloatMatrix copy = new FlexSymFloatMatrix(SIZE);
+        MatrixCursor cursor = csr.cursor();
+        while (cursor.next()) {
+            assertEquals(flex.get(cursor.row(), cursor.col()), cursor.val(), 0d);
+            copy.set(cursor.row(), cursor.col(), cursor.val());
+        }
+        assertEquals(flex.elementMultiplySum(flex), copy.elementMultiplySum(flex), 1e-10);
+    }
+
+    @Test
+    public void testSubMatrix() {
+        int [] rowcols = {3, 14, 15, 92, 65};
+        SymMatrix expected = flex.subMatrix(rowcols);
+        SymMatrix result = csr.subMatrix(rowcols);
+        for (int i=0; i<rowcols.length; i++) {
+            for (int j=0; j<rowcols.length; j++) {
+                assertEquals(expected.get(i, j), result.get(i, j), 0d);
+            }
+        }
+    }
+
+    /*
+     * small buffer so the accumulator takes several blocks
+     */
+    @Test
+    public void testAccumulate() {
+        FlexSymFloatMatrix sum = new FlexSymFloatMatrix(SIZE);
+        FloatSymMatrixAccumulator adder = new FloatSymMatrixAccumulator(sum, 200*4);
+        while (adder.nextBlock()) {
+            adder.add(2d, csr);
+            adder.add(1d, flex);
+        }
+
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<i; j++) {
+                assertEquals(3*flex.get(i, j), sum.get(i, j), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(csr);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        CompressedSymFloatMatrix copy = (CompressedSymFloatMatrix) in.readObject();
+        assertEquals(csr.elementMultiplySum(csr), copy.elementMultiplySum(csr), 0d);
+    }
+
+    @Test
+    public void testReadOnly() {
+        try {
+            csr.set(1, 0, 1d);
+            fail("expected exception");
+        }
+        catch (MatricksException e) {
+            // expected
+        }
+    }
+
+    private static void assertClose(double [] expected, double [] result) {
+        assertEquals(expected.length, result.length);
+        for (int i=0; i<expected.length; i++) {
+            assertEquals(expected[i], result[i], 1e-10);
+        }
+    }
+}
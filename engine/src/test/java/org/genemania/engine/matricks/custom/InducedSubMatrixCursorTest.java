@@ -0,0 +1,117 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.genemania.engine.matricks.MatrixCursor;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InducedSubMatrixCursorTest {
+
+    static final int SIZE = 200;
+
+    FlexSymFloatMatrix flex;
+    CompressedSymFloatMatrix csr;
+    int [] rowcols;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(2718);
+        flex = new FlexSymFloatMatrix(SIZE);
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<i; j++) {
+                if (random.nextDouble() < 0.2) {
+                    flex.set(i, j, random.nextDouble());
+                }
+            }
+            flex.set(i, i, 1d);
+        }
+        flex.compact();
+        csr = (CompressedSymFloatMatrix) CompressedSymFloatMatrix.compress(flex);
+
+        // unsorted, as we get from the top scores
+        rowcols = new int[] {57, 3, 199, 120, 0, 64, 10, 11, 150, 98, 42};
+    }
+
+    /*
+     * element (row, col) as a key, for the expected pairs
+     */
+    static String key(int row, int col) {
+        return row + "," + col;
+    }
+
+    Map<String, Double> expected() {
+        Map<String, Double> result = new HashMap<String, Double>();
+        for (int i=0; i<rowcols.length; i++) {
+            for (int j=0; j<i; j++) {
+                double v = flex.get(rowcols[i], rowcols[j]);
+                if (v != 0d) {
+                    result.put(key(i, j), v);
+                }
+            }
+        }
+        return result;
+    }
+
+    void check(MatrixCursor cursor) {
+        Map<String, Double> expected = expected();
+        assertFalse(expected.isEmpty());
+
+        int count = 0;
+        while (cursor.next()) {
+            assertTrue(cursor.row() > cursor.col());
+            Double v = expected.get(key(cursor.row(), cursor.col()));
+            assertTrue(v != null);
+            assertEquals(v.doubleValue(), cursor.val(), 0d);
+            count++;
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    @Test
+    public void testFlex() {
+        check(flex.inducedCursor(rowcols));
+    }
+
+    @Test
+    public void testCompressed() {
+        check(csr.inducedCursor(rowcols));
+    }
+
+    @Test
+    public void testPairwise() {
+        check(new InducedSubMatrixCursor.Pairwise(flex, rowcols));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertFalse(csr.inducedCursor(new int[0]).next());
+        assertFalse(flex.inducedCursor(new int[] {5}).next());
+        assertFalse(new InducedSubMatrixCursor.Pairwise(flex, new int[] {5}).next());
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelFlexSymFloatMatrixTest {
+
+    static final int SIZE = 2 * ParallelFlexSymFloatMatrix.MIN_PARALLEL_SIZE;
+    static final int THREADS = 4;
+
+    FlexSymFloatMatrix serial;
+    ParallelFlexSymFloatMatrix parallel;
+    double [] x;
+
+    /*
+     * same random sparse data in both, denser towards the
+     * last rows so the partitioning has some work to do
+     */
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(2112);
+        serial = new FlexSymFloatMatrix(SIZE);
+        parallel = new ParallelFlexSymFloatMatrix(SIZE, THREADS);
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<=i; j++) {
+                if (random.nextDouble() < 0.01 * i / SIZE) {
+                    double w = random.nextDouble();
+                    serial.set(i, j, w);
+                    parallel.set(i, j, w);
+                }
+            }
+        }
+
+        x = new double[SIZE];
+        for (int i=0; i<SIZE; i++) {
+            x[i] = random.nextDouble() - 0.5;
+        }
+    }
+
+    @Test
+    public void testPartition() {
+        int [] bounds = parallel.partition(THREADS);
+        assertEquals(THREADS + 1, bounds.length);
+        assertEquals(0, bounds[0]);
+        assertEquals(SIZE, bounds[THREADS]);
+        for (int i=0; i<THREADS; i++) {
+            assertEquals(true, bounds[i] <= bounds[i+1]);
+        }
+
+        // rows get denser, so later blocks should be shorter
+        assertEquals(true, bounds[THREADS] - bounds[THREADS-1] < bounds[1] - bounds[0]);
+    }
+
+    @Test
+    public void testMult() {
+        double [] expected = new double[SIZE];
+        double [] result = new double[SIZE];
+
+        serial.mult(x, expected);
+        parallel.mult(x, result);
+        for (int i=0; i<SIZE; i++) {
+            assertEquals(expected[i], result[i], 1e-10);
+        }
+    }
+
+    @Test
+    public void testMultAdd() {
+        double [] expected = new double[SIZE];
+        double [] result = new double[SIZE];
+        for (int i=0; i<SIZE; i++) {
+            expected[i] = i;
+            result[i] = i;
+        }
+
+        serial.multAdd(x, expected);
+        parallel.multAdd(x, result);
+        for (int i=0; i<SIZE; i++) {
+            assertEquals(expected[i], result[i], 1e-10);
+        }
+    }
+
+    @Test
+    public void testMultBlock() {
+        final int k = 3;
+        double [] xx = new double[SIZE*k];
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<k; j++) {
+                xx[i*k+j] = (j+1)*x[i];
+            }
+        }
+
+        double [] expected = new double[SIZE*k];
+        double [] result = new double[SIZE*k];
+
+        serial.multBlock(k, xx, expected);
+        parallel.multBlock(k, xx, result);
+        for (int i=0; i<SIZE*k; i++) {
+            assertEquals(expected[i], result[i], 1e-10);
+        }
+    }
+
+    /*
+     * accumulators are reused, so leftovers from a wider
+     * multiply mustn't leak into the next one
+     */
+    @Test
+    public void testRepeatedMult() {
+        final int k = 3;
+        double [] xx = new double[SIZE*k];
+        for (int i=0; i<SIZE*k; i++) {
+            xx[i] = x[i/k];
+        }
+        double [] yy = new double[SIZE*k];
+        parallel.multBlock(k, xx, yy);
+
+        double [] expected = new double[SIZE];
+        double [] result = new double[SIZE];
+        serial.mult(x, expected);
+        for (int repeat=0; repeat<3; repeat++) {
+            parallel.mult(x, result);
+            for (int i=0; i<SIZE; i++) {
+                assertEquals(expected[i], result[i], 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testCompressedMult() {
+        CompressedSymFloatMatrix compressed = (CompressedSymFloatMatrix) CompressedSymFloatMatrix.compress(serial);
+        compressed.setThreads(THREADS);
+
+        double [] expected = new double[SIZE];
+        double [] result = new double[SIZE];
+        serial.mult(x, expected);
+        compressed.mult(x, result);
+        for (int i=0; i<SIZE; i++) {
+            assertEquals(expected[i], result[i], 1e-10);
+        }
+
+        for (int i=0; i<SIZE; i++) {
+            expected[i] = i;
+            result[i] = i;
+        }
+        serial.multAdd(x, expected);
+        compressed.multAdd(x, result);
+        for (int i=0; i<SIZE; i++) {
+            assertEquals(expected[i], result[i], 1e-10);
+        }
+    }
+
+    @Test
+    public void testCompressedMultBlock() {
+        CompressedSymFloatMatrix compressed = (CompressedSymFloatMatrix) CompressedSymFloatMatrix.compress(serial);
+        compressed.setThreads(THREADS);
+
+        final int k = 3;
+        double [] xx = new double[SIZE*k];
+        for (int i=0; i<SIZE; i++) {
+            for (int j=0; j<k; j++) {
+                xx[i*k+j] = (j+1)*x[i];
+            }
+        }
+
+        double [] expected = new double[SIZE*k];
+        double [] result = new double[SIZE*k];
+
+        serial.multBlock(k, xx, expected);
+        compressed.multBlock(k, xx, result);
+        for (int i=0; i<SIZE*k; i++) {
+            assertEquals(expected[i], result[i], 1e-10);
+        }
+    }
+
+    @Test
+    public void testEyePlusLaplacian() {
+        double [] expected = new double[SIZE];
+        double [] result = new double[SIZE];
+
+        new EyePlusLaplacianMatrix(serial).mult(x, expected);
+        new EyePlusLaplacianMatrix(parallel).mult(x, result);
+        for (int i=0; i<SIZE; i++) {
+            assertEquals(expected[i], result[i], 1e-10);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.genemania.engine.metrics.RequestTimings.Count;
+import org.genemania.engine.metrics.RequestTimings.Stage;
+import org.junit.Test;
+
+public class EngineMetricsTest {
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0d, histogram.getPercentile(0.5), 0d);
+
+        for (int i=1; i<=1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500500, histogram.getTotal());
+        assertEquals(500.5, histogram.getMean(), 1e-10);
+
+        // within the factor of two bucket resolution
+        double p50 = histogram.getPercentile(0.5);
+        assertTrue(p50 >= 250 && p50 <= 1000);
+        double p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 512 && p99 <= 1000);
+        assertEquals(1000d, histogram.getPercentile(1d), 0d);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testCurrent() {
+        RequestTimings none = RequestTimings.current();
+        none.record(Stage.SOLVE, 1000);
+        assertFalse(none.isTimed(Stage.SOLVE));
+
+        RequestTimings timings = RequestTimings.begin("test");
+        assertSame(timings, RequestTimings.current());
+
+        // nested request, restores the outer on finish
+        RequestTimings inner = RequestTimings.begin("inner");
+        assertSame(inner, RequestTimings.current());
+        inner.discard();
+        assertSame(timings, RequestTimings.current());
+
+        RequestTimings.current().record(Stage.SOLVE, 2000000);
+        RequestTimings.current().record(Stage.SOLVE, 3000000);
+        RequestTimings.current().count(Count.CG_ITERATIONS, 42);
+
+        timings.finish();
+        timings.discard();
+        assertNotSame(timings, RequestTimings.current());
+
+        assertEquals(5, timings.getMillis(Stage.SOLVE));
+        assertTrue(timings.isTimed(Stage.TOTAL));
+        assertFalse(timings.isTimed(Stage.GRAM));
+        assertEquals(42, timings.getCount(Count.CG_ITERATIONS));
+        assertTrue(timings.toString().contains("solve=5ms"));
+        assertTrue(timings.toString().contains("cgIterations=42"));
+
+        // recording after finish is ignored
+        timings.record(Stage.SOLVE, 1000000);
+        assertEquals(5, timings.getMillis(Stage.SOLVE));
+    }
+
+    @Test
+    public void testAggregate() {
+        EngineMetrics metrics = new EngineMetrics();
+        for (int i=1; i<=10; i++) {
+            RequestTimings timings = new RequestTimings("findRelated", null);
+            timings.record(Stage.PROPAGATE, i * 1000000L);
+            timings.count(Count.RESULT_CACHE_HITS, i % 2);
+            metrics.record(timings);
+        }
+
+        assertEquals(10L, metrics.getSamples().get("findRelated.propagate").longValue());
+        assertEquals(5.5, metrics.getMeanMillis().get("findRelated.propagate"), 1e-10);
+        assertEquals(10d, metrics.getMaxMillis().get("findRelated.propagate"), 1e-10);
+        assertEquals(0.5, metrics.getCountMeans().get("findRelated.resultCacheHits"), 1e-10);
+        assertEquals(5L, metrics.getCountTotals().get("findRelated.resultCacheHits").longValue());
+        assertEquals(2, metrics.getSummary().length);
+
+        metrics.reset();
+        assertTrue(metrics.getSamples().isEmpty());
+    }
+}
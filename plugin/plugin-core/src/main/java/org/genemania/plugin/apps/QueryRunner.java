@@ -63,9 +63,11 @@ import org.genemania.engine.Constants.ScoringMethod;
 import org.genemania.engine.Mania2;
 import org.genemania.engine.actions.CombineNetworks;
 import org.genemania.engine.actions.FindRelated;
+import org.genemania.engine.actions.FindRelatedBatch;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.MemObjectCache;
 import org.genemania.engine.cache.SynchronizedObjectCache;
+import org.genemania.engine.config.Config;
 import org.genemania.engine.core.MatrixUtils;
 import org.genemania.engine.core.data.NodeIds;
 import org.genemania.engine.core.integration.Feature;
@@ -265,8 +267,7 @@ public class QueryRunner extends AbstractPluginDataApp {
 			} else {
 				result = fMania.findRelated(request);
 			}
-			request.setCombiningMethod(result.getCombiningMethodApplied());
-			fNetworkUtils.normalizeNetworkWeights(result);
+			applyResponse(request, result);
 			return result;
 		} catch (ApplicationException e) {
 			Logger logger = Logger.getLogger(getClass());
@@ -275,6 +276,52 @@ public class QueryRunner extends AbstractPluginDataApp {
 		}
 	}
 	
+	/**
+	 * Runs the given requests as one batch, so queries that share a
+	 * combined network have their label propagations solved together.
+	 * Responses are in the same order as the requests.  If the batch
+	 * fails, the requests are retried one at a time so a single bad
+	 * query doesn't lose the results for the others.
+	 */
+	List<RelatedGenesEngineResponseDto> runQueries(List<RelatedGenesEngineRequestDto> requests) throws DataStoreException {
+		List<FindRelated> finders = new ArrayList<FindRelated>();
+		for (RelatedGenesEngineRequestDto request : requests) {
+			request.setProgressReporter(NullProgressReporter.instance());
+			if ("scores".equals(fOutputFormat)) { //$NON-NLS-1$
+				finders.add(new FindAllRelated(fCache, request));
+			} else {
+				finders.add(new FindRelated(fCache, request));
+			}
+		}
+		
+		List<RelatedGenesEngineResponseDto> results;
+		try {
+			results = new FindRelatedBatch(fCache, finders).process();
+		} catch (ApplicationException e) {
+			Logger logger = Logger.getLogger(getClass());
+			logger.error("Unexpected error", e); //$NON-NLS-1$
+			
+			results = new ArrayList<RelatedGenesEngineResponseDto>();
+			for (RelatedGenesEngineRequestDto request : requests) {
+				results.add(requests.size() == 1 ? null : runQuery(request));
+			}
+			return results;
+		}
+		
+		for (int i = 0; i < requests.size(); i++) {
+			applyResponse(requests.get(i), results.get(i));
+		}
+		return results;
+	}
+	
+	private void applyResponse(RelatedGenesEngineRequestDto request, RelatedGenesEngineResponseDto result) throws DataStoreException {
+		if (result == null) {
+			return;
+		}
+		request.setCombiningMethod(result.getCombiningMethodApplied());
+		fNetworkUtils.normalizeNetworkWeights(result);
+	}
+	
 	private EnrichmentEngineRequestDto createEnrichmentRequest(Query query, RelatedGenesEngineResponseDto response) {
 		if (query.getOrganism().getOntology() == null) {
 			return null;
@@ -298,23 +345,36 @@ public class QueryRunner extends AbstractPluginDataApp {
 		return request;
 	}
 
-	private SearchResult runAlgorithm(DataSet data, Query query) throws DataStoreException, ApplicationException {
-		RelatedGenesEngineRequestDto request = createRequest(query);
-		RelatedGenesEngineResponseDto response = runQuery(request);
-		
+	private List<SearchResult> runAlgorithm(DataSet data, List<Query> queries) throws DataStoreException, ApplicationException {
+		List<RelatedGenesEngineRequestDto> requests = new ArrayList<RelatedGenesEngineRequestDto>();
+		for (Query query : queries) {
+			requests.add(createRequest(query));
+		}
+		List<RelatedGenesEngineResponseDto> responses = runQueries(requests);
 		
-		EnrichmentEngineRequestDto enrichmentRequest;
-		if ("scores".equals(fOutputFormat)) { //$NON-NLS-1$
-			enrichmentRequest = null;
-		} else {
-			enrichmentRequest = createEnrichmentRequest(query, response);
+		List<SearchResult> results = new ArrayList<SearchResult>();
+		for (int i = 0; i < queries.size(); i++) {
+			Query query = queries.get(i);
+			RelatedGenesEngineRequestDto request = requests.get(i);
+			RelatedGenesEngineResponseDto response = responses.get(i);
+			if (response == null) {
+				results.add(null);
+				continue;
+			}
+			
+			EnrichmentEngineRequestDto enrichmentRequest;
+			if ("scores".equals(fOutputFormat)) { //$NON-NLS-1$
+				enrichmentRequest = null;
+			} else {
+				enrichmentRequest = createEnrichmentRequest(query, response);
+			}
+			EnrichmentEngineResponseDto enrichmentResponse = computeEnrichment(enrichmentRequest);
+	
+			List<String> queryGenes = query.getGenes();
+			Organism organism = query.getOrganism();
+			results.add(fNetworkUtils.createSearchOptions(organism, request, response, enrichmentResponse, data, queryGenes));
 		}
-		EnrichmentEngineResponseDto enrichmentResponse = computeEnrichment(enrichmentRequest);
-
-		List<String> queryGenes = query.getGenes();
-		Organism organism = query.getOrganism();
-		SearchResult options = fNetworkUtils.createSearchOptions(organism, request, response, enrichmentResponse, data, queryGenes);
-		return options;
+		return results;
 	}
 
 	private EnrichmentEngineResponseDto computeEnrichment(EnrichmentEngineRequestDto request) throws ApplicationException {
@@ -329,7 +389,7 @@ public class QueryRunner extends AbstractPluginDataApp {
 		return fOutputDirectory;
 	}
 	
-	private void runQuery(String filename, File outputDirectory) throws IOException, DataStoreException, ApplicationException {
+	private Query parseQuery(String filename) throws IOException {
 		Query query;
 		Reader reader = new InputStreamReader(new FileInputStream(filename), "UTF-8"); //$NON-NLS-1$
 		try {
@@ -359,11 +419,58 @@ public class QueryRunner extends AbstractPluginDataApp {
 		} finally {
 			reader.close();
 		}
-
-		File sourceFile = new File(filename);
-		String baseName = sourceFile.getName();
+		return query;
+	}
+	
+	/**
+	 * Parses the given query files and splits them into jobs.  With the
+	 * default handler, queries that get the same combined network (see
+	 * FindRelatedBatch.getGroupKey()) share a job, up to the engine's
+	 * propagation block size, but no more than an even share per thread.
+	 * Everything else runs one query per job.
+	 */
+	List<QueryJob> createJobs(List<String> filenames) {
+		int batchSize = 1;
+		if (fQueryHandler instanceof DefaultQueryHandler) {
+			int perThread = (filenames.size() + getThreads() - 1) / getThreads();
+			batchSize = Math.max(1, Math.min(Config.instance().getPropagationBlockSize(), perThread));
+		}
 		
-		fQueryHandler.process(query, outputDirectory, baseName);
+		List<QueryJob> jobs = new ArrayList<QueryJob>();
+		Map<String, QueryJob> openJobs = new HashMap<String, QueryJob>();
+		for (String filename : filenames) {
+			Query query;
+			try {
+				query = parseQuery(filename);
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+				continue;
+			}
+			
+			String key = batchSize > 1 ? getGroupKey(query) : null;
+			QueryJob job = key == null ? null : openJobs.get(key);
+			if (job == null) {
+				job = new QueryJob();
+				jobs.add(job);
+				if (key != null) {
+					openJobs.put(key, job);
+				}
+			}
+			job.add(query, new File(filename).getName());
+			if (key != null && job.size() >= batchSize) {
+				openJobs.remove(key);
+			}
+		}
+		return jobs;
+	}
+	
+	private String getGroupKey(Query query) {
+		try {
+			return FindRelatedBatch.getGroupKey(createRequest(query));
+		} catch (ApplicationException e) {
+			// Let the query fail on its own
+			return null;
+		}
 	}
 	
 	public void handleArguments() throws InterruptedException, ApplicationException, DataStoreException {
@@ -384,7 +491,7 @@ public class QueryRunner extends AbstractPluginDataApp {
 		logger.setLevel(Level.ERROR);
 		
 		List<String> arguments = getArguments();
-		final Iterator<String> jobQueue = arguments.iterator();
+		final Iterator<QueryJob> jobQueue = createJobs(arguments).iterator();
 		List<Thread> threads = new ArrayList<Thread>();
 		long start = System.currentTimeMillis();
 		for (int i = 0; i < getThreads(); i++) {
@@ -393,17 +500,17 @@ public class QueryRunner extends AbstractPluginDataApp {
 			Thread thread = new Thread(new Runnable() {
 				public void run() {
 					while (true) {
-						String filename;
+						QueryJob job;
 						synchronized (fJobMutex) {
 							if (jobQueue.hasNext()) {
-								filename = jobQueue.next();
+								job = jobQueue.next();
 							} else {
 								return;
 							}
 						}
-						System.err.println(String.format("[Thread %d] Processing %s...", threadId, filename)); //$NON-NLS-1$
+						System.err.println(String.format("[Thread %d] Processing %s...", threadId, job)); //$NON-NLS-1$
 						try {
-							runQuery(filename, getOutputDirectory());
+							fQueryHandler.process(job, getOutputDirectory());
 						} catch (IOException e) {
 							e.printStackTrace(System.err);
 						} catch (DataStoreException e) {
@@ -411,7 +518,7 @@ public class QueryRunner extends AbstractPluginDataApp {
 						} catch (ApplicationException e) {
 							e.printStackTrace(System.err);
 						}
-						System.err.println(String.format("[Thread %d] Finished %s", threadId, filename)); //$NON-NLS-1$
+						System.err.println(String.format("[Thread %d] Finished %s", threadId, job)); //$NON-NLS-1$
 					}
 				}
 			});
@@ -507,8 +614,38 @@ public class QueryRunner extends AbstractPluginDataApp {
 		}
 	}
 	
+	/**
+	 * Queries run together by one thread, with the base names of the
+	 * files they came from.
+	 */
+	static class QueryJob {
+		final List<Query> fQueries = new ArrayList<Query>();
+		final List<String> fBaseNames = new ArrayList<String>();
+		
+		void add(Query query, String baseName) {
+			fQueries.add(query);
+			fBaseNames.add(baseName);
+		}
+		
+		int size() {
+			return fQueries.size();
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			for (String baseName : fBaseNames) {
+				if (builder.length() > 0) {
+					builder.append(", "); //$NON-NLS-1$
+				}
+				builder.append(baseName);
+			}
+			return builder.toString();
+		}
+	}
+	
 	interface QueryHandler {
-		void process(Query query, File outputDirectory, String baseName) throws ApplicationException, DataStoreException, IOException;
+		void process(QueryJob job, File outputDirectory) throws ApplicationException, DataStoreException, IOException;
 	}
 	
 	class DefaultQueryHandler implements QueryHandler {
@@ -519,14 +656,23 @@ public class QueryRunner extends AbstractPluginDataApp {
 		}
 		
 		@Override
-		public void process(Query query, File outputDirectory, String baseName) throws ApplicationException, DataStoreException, IOException {
-			SearchResult options = runAlgorithm(fData, query);
-			ViewState viewState = new ViewStateImpl(options);
-			OutputStream out = new FileOutputStream(String.format("%s%s%s-results.%s", outputDirectory.getPath(), File.separator, baseName, fFormatter.getExtension())); //$NON-NLS-1$
-			try {
-				fFormatter.format(out, viewState);
-			} finally {
-				out.close();
+		public void process(QueryJob job, File outputDirectory) throws ApplicationException, DataStoreException, IOException {
+			List<SearchResult> results = runAlgorithm(fData, job.fQueries);
+			for (int i = 0; i < job.size(); i++) {
+				String baseName = job.fBaseNames.get(i);
+				SearchResult options = results.get(i);
+				if (options == null) {
+					System.err.println(String.format("WARNING: No results for %s", baseName)); //$NON-NLS-1$
+					continue;
+				}
+				
+				ViewState viewState = new ViewStateImpl(options);
+				OutputStream out = new FileOutputStream(String.format("%s%s%s-results.%s", outputDirectory.getPath(), File.separator, baseName, fFormatter.getExtension())); //$NON-NLS-1$
+				try {
+					fFormatter.format(out, viewState);
+				} finally {
+					out.close();
+				}
 			}
 		}
 	}
@@ -567,7 +713,13 @@ public class QueryRunner extends AbstractPluginDataApp {
 		}
 		
 		@Override
-		public void process(Query query, File outputDirectory, String baseName) throws ApplicationException, DataStoreException, IOException {
+		public void process(QueryJob job, File outputDirectory) throws ApplicationException, DataStoreException, IOException {
+			for (int i = 0; i < job.size(); i++) {
+				process(job.fQueries.get(i), outputDirectory, job.fBaseNames.get(i));
+			}
+		}
+		
+		void process(Query query, File outputDirectory, String baseName) throws ApplicationException, DataStoreException, IOException {
 			CoreMania mania = new CoreMania(fCache);
 			Organism organism = query.getOrganism();
 			final long organismId = organism.getId();
@@ -39,7 +39,7 @@ import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
-import org.genemania.engine.cache.SoftRefObjectCache;
+import org.genemania.engine.cache.BoundedObjectCache;
 import org.genemania.plugin.AbstractGeneMania;
 import org.genemania.plugin.LogUtils;
 import org.genemania.util.ProgressReporter;
@@ -122,7 +122,7 @@ public class DataSetManager {
 	public void setDataSet(DataSet data, ProgressReporter progress) {
 		// Hack for #1451: Clear the cache.  We ought to change this so the
 		//                 cache isn't static.
-		SoftRefObjectCache.instance().clear();
+		BoundedObjectCache.instance().clear();
 
 		dataSet = data;
 		notifyDataSetListeners(progress);
@@ -5,15 +5,12 @@ import org.genemania.broker.MessageType;
 import org.genemania.dao.NetworkDao;
 import org.genemania.dao.NodeDao;
 import org.genemania.dao.OrganismDao;
-import org.genemania.domain.InteractionNetwork;
-import org.genemania.domain.Ontology;
-import org.genemania.domain.OntologyCategory;
-import org.genemania.domain.Organism;
 import org.genemania.dto.RelatedGenesWebRequestDto;
 import org.genemania.dto.RelatedGenesWebResponseDto;
 import org.genemania.dto.UploadNetworkWebRequestDto;
 import org.genemania.dto.UploadNetworkWebResponseDto;
 import org.genemania.exception.DataStoreException;
+import org.genemania.message.BinaryMessageCodec;
 import org.genemania.message.RelatedGenesRequestMessage;
 import org.genemania.message.RelatedGenesResponseMessage;
 import org.genemania.message.UploadNetworkRequestMessage;
@@ -27,9 +24,7 @@ import org.springframework.jms.JmsException;
 
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map;
+import java.io.IOException;
 
 @Component
 public class JmsEngineConnector implements EngineConnector  {
@@ -45,6 +40,8 @@ public class JmsEngineConnector implements EngineConnector  {
     private OrganismDao organismDao;
     private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
     private long messageExpirationMillis = DEFAULT_MESSAGE_EXPIRATION_MILLIS;
+    private boolean binaryRequests = false;
+    private ResponseHydrator responseHydrator;
 
 
     public JmsEngineConnector() {}
@@ -57,27 +54,54 @@ public class JmsEngineConnector implements EngineConnector  {
         RelatedGenesRequestMessage request = BrokerUtils.dto2msg(dto);
         RelatedGenesWebResponseDto ret;
 
-        JmsRequestResponse sessionCallback = new JmsRequestResponse(request.toXml(),
-                MessageType.RELATED_GENES.getCode(), requestQueueName, responseQueueName,
-                jmsTemplate.getDestinationResolver(), timeoutMillis, messageExpirationMillis);
+        // workers that don't know the binary format ignore the accept property and
+        // reply with xml, but only send a binary request if they've all been upgraded
+        JmsRequestResponse sessionCallback;
+        try {
+            if (binaryRequests) {
+                sessionCallback = new JmsRequestResponse(request.toBytes(),
+                        MessageType.RELATED_GENES.getCode(), requestQueueName, responseQueueName,
+                        jmsTemplate.getDestinationResolver(), timeoutMillis, messageExpirationMillis);
+            }
+            else {
+                sessionCallback = new JmsRequestResponse(request.toXml(),
+                        MessageType.RELATED_GENES.getCode(), requestQueueName, responseQueueName,
+                        jmsTemplate.getDestinationResolver(), timeoutMillis, messageExpirationMillis);
+            }
+        }
+        catch (IOException e) {
+            throw new ApplicationException("error encoding get related genes request", e);
+        }
+        sessionCallback.setAcceptFormat(BinaryMessageCodec.BINARY_FORMAT);
 
-        String responseText;
+        Object responseBody;
         try {
-            responseText = jmsTemplate.execute(sessionCallback, true);
+            responseBody = jmsTemplate.execute(sessionCallback, true);
         }
         catch (JmsException e) {
             throw new ApplicationException("JMS error processing get related genes request", e);
         }
 
-        if (responseText == null) {
+        if (responseBody == null) {
             throw new ApplicationException("engine request timed out");
         }
 
-        RelatedGenesResponseMessage responseMessage = RelatedGenesResponseMessage.fromXml(responseText);
+        RelatedGenesResponseMessage responseMessage;
+        if (responseBody instanceof byte[]) {
+            try {
+                responseMessage = RelatedGenesResponseMessage.fromBytes((byte[]) responseBody);
+            }
+            catch (IOException e) {
+                throw new ApplicationException("error decoding get related genes response", e);
+            }
+        }
+        else {
+            responseMessage = RelatedGenesResponseMessage.fromXml((String) responseBody);
+        }
         if (responseMessage.getErrorCode() == 0) {
             RelatedGenesWebResponseDto hollowResponseDto = BrokerUtils.msg2dto(responseMessage);
             try {
-                ret = load(hollowResponseDto);
+                ret = getResponseHydrator().hydrate(hollowResponseDto);
             }
             catch (DataStoreException e) {
                 throw new ApplicationException("data access error processing get related genes request", e);
@@ -105,7 +129,7 @@ public class JmsEngineConnector implements EngineConnector  {
 
         String responseText;
         try {
-            responseText = jmsTemplate.execute(sessionCallback, true);
+            responseText = (String) jmsTemplate.execute(sessionCallback, true);
         }
         catch (JmsException e) {
             throw new ApplicationException("JMS error processing upload network request", e);
@@ -128,72 +152,6 @@ public class JmsEngineConnector implements EngineConnector  {
         return ret;
     }
 
-    private RelatedGenesWebResponseDto load(
-            RelatedGenesWebResponseDto hollowResponseDto)
-            throws DataStoreException {
-        RelatedGenesWebResponseDto ret = hollowResponseDto;
-        NetworkDao netDao = getNetworkDao();
-
-        for (InteractionNetwork hollowNetwork : hollowResponseDto.getNetworks()) {
-            InteractionNetwork network = netDao.findNetwork(hollowNetwork
-                    .getId());
-
-            if (network != null) { // predefined networks
-                hollowNetwork.setDefaultSelected(network.isDefaultSelected());
-                hollowNetwork.setMetadata(network.getMetadata());
-                hollowNetwork.setName(network.getName());
-                hollowNetwork.setTags(network.getTags());
-            }
-
-        }
-
-        // extract organism id
-        long organismId = hollowResponseDto.getOrganismId();
-        // load ontology categories
-        Organism organism = getOrganismDao().findOrganism(organismId);
-        Ontology ontology = organism.getOntology();
-        Map<Long, Collection<OntologyCategory>> annotations = hollowResponseDto
-                .getAnnotations();
-        Iterator<Long> nodeIterator = annotations.keySet().iterator();
-
-        while (nodeIterator.hasNext()) {
-            long nodeId = nodeIterator.next();
-            Collection<OntologyCategory> categories = annotations.get(nodeId);
-
-            for (OntologyCategory hollowCategory : categories) {
-                OntologyCategory category = getOntologyCategory(hollowCategory
-                        .getId(), ontology);
-
-                if (category != null) {
-                    hollowCategory.setDescription(category.getDescription());
-                    hollowCategory.setName(category.getName());
-                } else {
-                    LOG.warn("Could not load ontology category with id ["
-                            + hollowCategory.getId() + "]");
-                }
-            }
-        }
-        ret.setCombiningMethod(hollowResponseDto.getCombiningMethod());
-        return ret;
-    }
-
-    private OntologyCategory getOntologyCategory(long ontologyCategoryId,
-                                                 Ontology ontology) {
-        OntologyCategory ret = null;
-        Collection<OntologyCategory> categories = ontology.getCategories();
-        for (OntologyCategory cat : categories) {
-            if (cat != null) {
-                if (cat.getId() == ontologyCategoryId) {
-                    ret = cat;
-                    break;
-                }
-            } else {
-                LOG.warn("null ontology category found");
-            }
-        }
-        return ret;
-    }
-
     public NetworkDao getNetworkDao() {
         return this.networkDao;
     }
@@ -257,4 +215,23 @@ public class JmsEngineConnector implements EngineConnector  {
     public void setMessageExpirationMillis(long messageExpirationMillis) {
         this.messageExpirationMillis = messageExpirationMillis;
     }
+
+    public synchronized ResponseHydrator getResponseHydrator() {
+        if (responseHydrator == null) {
+            responseHydrator = new ResponseHydrator(organismDao, networkDao);
+        }
+        return responseHydrator;
+    }
+
+    public synchronized void setResponseHydrator(ResponseHydrator responseHydrator) {
+        this.responseHydrator = responseHydrator;
+    }
+
+    public boolean isBinaryRequests() {
+        return binaryRequests;
+    }
+
+    public void setBinaryRequests(boolean binaryRequests) {
+        this.binaryRequests = binaryRequests;
+    }
 }
@@ -1,6 +1,7 @@
 package org.genemania.connector;
 
 import org.apache.log4j.Logger;
+import org.genemania.message.BinaryMessageCodec;
 import org.springframework.jms.core.SessionCallback;
 import org.springframework.jms.support.JmsUtils;
 import org.springframework.jms.support.destination.DestinationResolver;
@@ -9,27 +10,32 @@ import javax.jms.*;
 import java.util.UUID;
 
 /*
- * generic synchronous request/response with plain string messages, based on
+ * generic synchronous request/response with plain string or binary messages,
+ * based on
  *
  *   http://codedependents.com/2010/03/04/synchronous-request-response-with-activemq-and-spring/
  *
- * returns null if specified timeout is exceeded.
+ * returns the body of the reply, a String for a text reply or byte[] for a binary
+ * one, or null if specified timeout is exceeded.
  */
-public class JmsRequestResponse implements SessionCallback<String> {
+public class JmsRequestResponse implements SessionCallback<Object> {
     private static final Logger LOG = Logger.getLogger(JmsRequestResponse.class);
 
     private final String msg;
+    private final byte[] data;
     private final String msgType;
     private final DestinationResolver destinationResolver;
     private final String requestQueueName;
     private final String responseQueueName;
     private final long timeoutMillis;
     private final long messageExpirationMillis;
+    private String acceptFormat;
 
     public JmsRequestResponse(final String msg, String msgType, String requestQueueName,
                               String responseQueueName, final DestinationResolver destinationResolver,
                               long timeoutMillis, long messageExpirationMillis) {
         this.msg = msg;
+        this.data = null;
         this.msgType = msgType;
         this.requestQueueName = requestQueueName;
         this.responseQueueName = responseQueueName;
@@ -38,7 +44,28 @@ public class JmsRequestResponse implements SessionCallback<String> {
         this.messageExpirationMillis = messageExpirationMillis;
     }
 
-    public String doInJms(final Session session) throws JMSException {
+    public JmsRequestResponse(final byte[] data, String msgType, String requestQueueName,
+                              String responseQueueName, final DestinationResolver destinationResolver,
+                              long timeoutMillis, long messageExpirationMillis) {
+        this.msg = null;
+        this.data = data;
+        this.msgType = msgType;
+        this.requestQueueName = requestQueueName;
+        this.responseQueueName = responseQueueName;
+        this.destinationResolver = destinationResolver;
+        this.timeoutMillis = timeoutMillis;
+        this.messageExpirationMillis = messageExpirationMillis;
+    }
+
+    /*
+     * reply format the requester can read in addition to text, sent
+     * as a message property. see BinaryMessageCodec
+     */
+    public void setAcceptFormat(String acceptFormat) {
+        this.acceptFormat = acceptFormat;
+    }
+
+    public Object doInJms(final Session session) throws JMSException {
         MessageConsumer consumer = null;
         MessageProducer producer = null;
         final String correlationId = UUID.randomUUID().toString();
@@ -54,23 +81,40 @@ public class JmsRequestResponse implements SessionCallback<String> {
             consumer = session.createConsumer(replyQueue, "JMSCorrelationID = '" + correlationId + "'");
 
             // construct & send request
-            final TextMessage textMessage = session.createTextMessage(msg);
-            textMessage.setJMSCorrelationID(correlationId);
-            textMessage.setJMSReplyTo(replyQueue);
-            textMessage.setJMSType(msgType);
-            textMessage.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
+            final Message requestMessage;
+            if (data != null) {
+                BytesMessage bytesMessage = session.createBytesMessage();
+                bytesMessage.writeBytes(data);
+                requestMessage = bytesMessage;
+            }
+            else {
+                requestMessage = session.createTextMessage(msg);
+            }
+            requestMessage.setJMSCorrelationID(correlationId);
+            requestMessage.setJMSReplyTo(replyQueue);
+            requestMessage.setJMSType(msgType);
+            requestMessage.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
+            if (acceptFormat != null) {
+                requestMessage.setStringProperty(BinaryMessageCodec.ACCEPT_PROPERTY, acceptFormat);
+            }
 
             LOG.debug("sending request message for " + correlationId);
             producer = session.createProducer(requestQueue);
             producer.setTimeToLive(messageExpirationMillis);
-            producer.send(requestQueue, textMessage);
+            producer.send(requestQueue, requestMessage);
 
             // block on reply for specified timeout
             LOG.debug("waiting for response message for " + correlationId);
-            TextMessage response = (TextMessage) consumer.receive(timeoutMillis);
+            Message response = consumer.receive(timeoutMillis);
 
-            if (response != null) {
-                return response.getText();
+            if (response instanceof BytesMessage) {
+                BytesMessage bytesMessage = (BytesMessage) response;
+                byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+                bytesMessage.readBytes(body);
+                return body;
+            }
+            else if (response != null) {
+                return ((TextMessage) response).getText();
             }
             else { // we timed out
                 return null;
@@ -0,0 +1,202 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * ResponseHydrator: fills in hollow engine responses from the data store
+ */
+package org.genemania.connector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.genemania.dao.NetworkDao;
+import org.genemania.dao.OrganismDao;
+import org.genemania.domain.InteractionNetwork;
+import org.genemania.domain.InteractionNetworkGroup;
+import org.genemania.domain.Ontology;
+import org.genemania.domain.OntologyCategory;
+import org.genemania.domain.Organism;
+import org.genemania.dto.RelatedGenesWebResponseDto;
+import org.genemania.exception.DataStoreException;
+
+/*
+ * engine responses only carry ids for networks and ontology categories.
+ * rather than scanning the organism's ontology for every annotation and
+ * looking up networks one at a time, keep an id index of each organism's
+ * categories and predefined networks, built the first time the organism
+ * is seen. networks missing from the index are fetched together in one
+ * batch and added to it.
+ *
+ * the indexes live as long as the hydrator, or until clear(). nothing
+ * here notices a new data set: the lucene index is opened once per
+ * process and never reopened, so deploying new data means restarting
+ * the webapp anyway, which starts with empty indexes.
+ */
+public class ResponseHydrator {
+
+	// __[static]______________________________________________________________
+	private static final Logger LOG = Logger.getLogger(ResponseHydrator.class);
+
+	// __[attributes]__________________________________________________________
+	private OrganismDao organismDao;
+	private NetworkDao networkDao;
+
+	private final Map<Long, OrganismIndex> indexes = new ConcurrentHashMap<Long, OrganismIndex>();
+
+	// __[constructors]________________________________________________________
+	public ResponseHydrator() {
+	}
+
+	public ResponseHydrator(OrganismDao organismDao, NetworkDao networkDao) {
+		this.organismDao = organismDao;
+		this.networkDao = networkDao;
+	}
+
+	// __[public helpers]______________________________________________________
+	public RelatedGenesWebResponseDto hydrate(RelatedGenesWebResponseDto hollowResponseDto) throws DataStoreException {
+		OrganismIndex index = getIndex(hollowResponseDto.getOrganismId());
+
+		List<InteractionNetwork> hollowNetworks = hollowResponseDto.getNetworks();
+		if (hollowNetworks != null) {
+			List<Long> missing = new ArrayList<Long>();
+			for (InteractionNetwork hollowNetwork : hollowNetworks) {
+				if (!index.networks.containsKey(hollowNetwork.getId())) {
+					missing.add(hollowNetwork.getId());
+				}
+			}
+			if (!missing.isEmpty()) {
+				for (InteractionNetwork network : networkDao.findNetworks(missing)) {
+					index.networks.put(network.getId(), network);
+				}
+			}
+
+			for (InteractionNetwork hollowNetwork : hollowNetworks) {
+				InteractionNetwork network = index.networks.get(hollowNetwork.getId());
+				if (network != null) { // predefined networks
+					hollowNetwork.setDefaultSelected(network.isDefaultSelected());
+					hollowNetwork.setMetadata(network.getMetadata());
+					hollowNetwork.setName(network.getName());
+					hollowNetwork.setTags(network.getTags());
+				}
+			}
+		}
+
+		Map<Long, Collection<OntologyCategory>> annotations = hollowResponseDto.getAnnotations();
+		if (annotations != null) {
+			for (Collection<OntologyCategory> categories : annotations.values()) {
+				for (OntologyCategory hollowCategory : categories) {
+					OntologyCategory category = index.categories.get(hollowCategory.getId());
+					if (category != null) {
+						hollowCategory.setDescription(category.getDescription());
+						hollowCategory.setName(category.getName());
+					} else {
+						LOG.warn("Could not load ontology category with id [" + hollowCategory.getId() + "]");
+					}
+				}
+			}
+		}
+		return hollowResponseDto;
+	}
+
+	/*
+	 * drop all indexes, they'll be rebuilt as organisms are requested
+	 */
+	public void clear() {
+		indexes.clear();
+	}
+
+	// __[private helpers]_____________________________________________________
+	private OrganismIndex getIndex(long organismId) throws DataStoreException {
+		OrganismIndex index = indexes.get(organismId);
+		if (index == null) {
+			// concurrent first requests may both build, the last one wins
+			index = buildIndex(organismId);
+			indexes.put(organismId, index);
+		}
+		return index;
+	}
+
+	private OrganismIndex buildIndex(long organismId) throws DataStoreException {
+		long start = System.currentTimeMillis();
+		OrganismIndex index = new OrganismIndex();
+		Organism organism = organismDao.findOrganism(organismId);
+		if (organism == null) {
+			return index;
+		}
+
+		Ontology ontology = organism.getOntology();
+		if (ontology != null && ontology.getCategories() != null) {
+			for (OntologyCategory category : ontology.getCategories()) {
+				if (category != null) {
+					index.categories.put(category.getId(), category);
+				} else {
+					LOG.warn("null ontology category found");
+				}
+			}
+		}
+
+		Collection<InteractionNetworkGroup> groups = organism.getInteractionNetworkGroups();
+		if (groups != null) {
+			for (InteractionNetworkGroup group : groups) {
+				if (group.getInteractionNetworks() == null) {
+					continue;
+				}
+				for (InteractionNetwork network : group.getInteractionNetworks()) {
+					index.networks.put(network.getId(), network);
+				}
+			}
+		}
+
+		LOG.info(String.format("indexed %d categories and %d networks for organism %d in %dms",
+				index.categories.size(), index.networks.size(), organismId, System.currentTimeMillis() - start));
+		return index;
+	}
+
+	// __[accessors]___________________________________________________________
+	public OrganismDao getOrganismDao() {
+		return organismDao;
+	}
+
+	public void setOrganismDao(OrganismDao organismDao) {
+		this.organismDao = organismDao;
+	}
+
+	public NetworkDao getNetworkDao() {
+		return networkDao;
+	}
+
+	public void setNetworkDao(NetworkDao networkDao) {
+		this.networkDao = networkDao;
+	}
+
+	// __[inner classes]_______________________________________________________
+	/*
+	 * categories are fixed once built, networks grow as missing ones are
+	 * fetched
+	 */
+	static class OrganismIndex {
+		final Map<Long, OntologyCategory> categories = new HashMap<Long, OntologyCategory>();
+		final Map<Long, InteractionNetwork> networks = new ConcurrentHashMap<Long, InteractionNetwork>();
+	}
+}
@@ -15,9 +15,7 @@ import org.genemania.dao.OrganismDao;
 import org.genemania.domain.Interaction;
 import org.genemania.domain.InteractionNetwork;
 import org.genemania.domain.Node;
-import org.genemania.domain.Ontology;
 import org.genemania.domain.OntologyCategory;
-import org.genemania.domain.Organism;
 import org.genemania.dto.InteractionDto;
 import org.genemania.dto.NetworkDto;
 import org.genemania.dto.OntologyCategoryDto;
@@ -37,6 +35,7 @@ public class SyncWorkerConnector implements EngineConnector {
 	private NetworkDao networkDao;
 	private NodeDao nodeDao;
 	private OrganismDao organismDao;
+	private ResponseHydrator responseHydrator;
 
 	public SyncWorkerConnector() {
 		worker = new SyncWorker();
@@ -101,7 +100,7 @@ public class SyncWorkerConnector implements EngineConnector {
 																// need to take
 																// a copy?
 		try {
-			load(ret);
+			getResponseHydrator().hydrate(ret);
 		} catch (DataStoreException e) {
 			throw new ApplicationException("data access error processing get related genes request", e);
 		}
@@ -109,49 +108,6 @@ public class SyncWorkerConnector implements EngineConnector {
 		return ret;
 	}
 
-	private RelatedGenesWebResponseDto load(RelatedGenesWebResponseDto hollowResponseDto) throws DataStoreException {
-		RelatedGenesWebResponseDto ret = hollowResponseDto;
-		NetworkDao netDao = getNetworkDao();
-
-		for (InteractionNetwork hollowNetwork : hollowResponseDto.getNetworks()) {
-			InteractionNetwork network = netDao.findNetwork(hollowNetwork.getId());
-
-			if (network != null) { // predefined networks
-				hollowNetwork.setDefaultSelected(network.isDefaultSelected());
-				hollowNetwork.setMetadata(network.getMetadata());
-				hollowNetwork.setName(network.getName());
-				hollowNetwork.setTags(network.getTags());
-			}
-
-		}
-
-		// extract organism id
-		long organismId = hollowResponseDto.getOrganismId();
-		// load ontology categories
-		Organism organism = getOrganismDao().findOrganism(organismId);
-		Ontology ontology = organism.getOntology();
-		Map<Long, Collection<OntologyCategory>> annotations = hollowResponseDto.getAnnotations();
-		Iterator<Long> nodeIterator = annotations.keySet().iterator();
-
-		while (nodeIterator.hasNext()) {
-			long nodeId = nodeIterator.next();
-			Collection<OntologyCategory> categories = annotations.get(nodeId);
-
-			for (OntologyCategory hollowCategory : categories) {
-				OntologyCategory category = getOntologyCategory(hollowCategory.getId(), ontology);
-
-				if (category != null) {
-					hollowCategory.setDescription(category.getDescription());
-					hollowCategory.setName(category.getName());
-				} else {
-					LOG.warn("Could not load ontology category with id [" + hollowCategory.getId() + "]");
-				}
-			}
-		}
-		ret.setCombiningMethod(hollowResponseDto.getCombiningMethod());
-		return ret;
-	}
-
 	@Override
 	public UploadNetworkWebResponseDto uploadNetwork(UploadNetworkWebRequestDto req) throws ApplicationException {
 		LOG.info("uploadNetwork request");
@@ -166,22 +122,6 @@ public class SyncWorkerConnector implements EngineConnector {
         return ret;
 	}
 
-	private OntologyCategory getOntologyCategory(long ontologyCategoryId, Ontology ontology) {
-		OntologyCategory ret = null;
-		Collection<OntologyCategory> categories = ontology.getCategories();
-		for (OntologyCategory cat : categories) {
-			if (cat != null) {
-				if (cat.getId() == ontologyCategoryId) {
-					ret = cat;
-					break;
-				}
-			} else {
-				LOG.warn("null ontology category found");
-			}
-		}
-		return ret;
-	}
-
 	public NetworkDao getNetworkDao() {
 		return this.networkDao;
 	}
@@ -206,4 +146,15 @@ public class SyncWorkerConnector implements EngineConnector {
 		this.organismDao = organismDao;
 	}
 
+	public synchronized ResponseHydrator getResponseHydrator() {
+		if (responseHydrator == null) {
+			responseHydrator = new ResponseHydrator(organismDao, networkDao);
+		}
+		return responseHydrator;
+	}
+
+	public synchronized void setResponseHydrator(ResponseHydrator responseHydrator) {
+		this.responseHydrator = responseHydrator;
+	}
+
 }
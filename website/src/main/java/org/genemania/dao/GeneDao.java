@@ -24,7 +24,9 @@
  */
 package org.genemania.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.genemania.domain.Gene;
 import org.genemania.exception.DataStoreException;
@@ -35,5 +37,6 @@ public interface GeneDao {
 	boolean isValid(long organismId, String nextSymbol);
 	Long getNodeId(long organismId, String symbol);
 	Gene findGeneForId(long organismId, long id);
+	Map<Long, Gene> findGenesForIds(long organismId, Collection<Long> ids);
 	
 }
@@ -25,6 +25,7 @@
 package org.genemania.dao;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.genemania.domain.InteractionNetwork;
 import org.genemania.domain.InteractionNetworkGroup;
@@ -33,5 +34,6 @@ import org.genemania.exception.DataStoreException;
 public interface NetworkDao {
 
 	InteractionNetwork findNetwork(long networkId) throws DataStoreException;
+	List<InteractionNetwork> findNetworks(Collection<Long> networkIds) throws DataStoreException;
 	boolean isValidNetwork(long organismId, long networkId) throws DataStoreException;
 }
@@ -24,8 +24,11 @@
  */
 package org.genemania.dao.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.genemania.connector.LuceneConnector;
 import org.genemania.dao.GeneDao;
@@ -33,13 +36,21 @@ import org.genemania.domain.Gene;
 import org.genemania.domain.GeneNamingSource;
 import org.genemania.domain.Node;
 import org.genemania.exception.DataStoreException;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.interceptor.SimpleKey;
 
 
 public class LuceneGeneDao implements GeneDao {
 
+	// __[static]______________________________________________________________
+	private static final String GENE_FOR_ID_CACHE = "geneForIdCache";
+
 	// __[attributes]__________________________________________________________
 	private LuceneConnector connector;
+	private Cache geneForIdCache;
 
 	// __[constructors]________________________________________________________
 	public LuceneGeneDao() {
@@ -62,9 +73,56 @@ public class LuceneGeneDao implements GeneDao {
 		return connector.getNodeId(organismId, symbol);
 	}
 
-	@Cacheable("geneForIdCache")
+	@Cacheable(GENE_FOR_ID_CACHE)
 	public Gene findGeneForId(long organismId, long id) {
 		Node node = connector.findNodeById(id, organismId);
+		return getPreferredGene(node);
+	}
+
+	// one batched lookup rather than a findGeneForId() per node. genes
+	// findGeneForId() has cached are served from its cache, and the rest
+	// are added to it, under the key @Cacheable gives its arguments
+	public Map<Long, Gene> findGenesForIds(long organismId, Collection<Long> ids) {
+		Map<Long, Gene> ret = new HashMap<Long, Gene>();
+		Collection<Long> misses = new ArrayList<Long>();
+		for (Long id : ids) {
+			Gene gene = getCachedGene(organismId, id);
+			if (gene != null) {
+				ret.put(id, gene);
+			} else {
+				misses.add(id);
+			}
+		}
+
+		if (misses.isEmpty()) {
+			return ret;
+		}
+		for (Node node : connector.findNodesById(misses, organismId)) {
+			Gene gene = getPreferredGene(node);
+			ret.put(node.getId(), gene);
+			if (geneForIdCache != null) {
+				geneForIdCache.put(new SimpleKey(organismId, node.getId()), gene);
+			}
+		}
+		return ret;
+	}
+
+	// __[getters/setters]_____________________________________________________
+	// optional, without it findGenesForIds() always goes to the index
+	public void setCacheManager(CacheManager cacheManager) {
+		geneForIdCache = cacheManager.getCache(GENE_FOR_ID_CACHE);
+	}
+
+	// __[private helpers]_____________________________________________________
+	private Gene getCachedGene(long organismId, long id) {
+		if (geneForIdCache == null) {
+			return null;
+		}
+		ValueWrapper cached = geneForIdCache.get(new SimpleKey(organismId, id));
+		return cached == null ? null : (Gene) cached.get();
+	}
+
+	private Gene getPreferredGene(Node node) {
 		Gene ret = null;
 		byte bestRank = Byte.MIN_VALUE;
 
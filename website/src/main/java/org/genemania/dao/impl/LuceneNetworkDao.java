@@ -19,6 +19,9 @@
 
 package org.genemania.dao.impl;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.genemania.connector.LuceneConnector;
 import org.genemania.dao.NetworkDao;
 import org.genemania.domain.InteractionNetwork;
@@ -41,6 +44,10 @@ public class LuceneNetworkDao implements NetworkDao {
 		return connector.findNetworkById(networkId);
 	}
 
+	public List<InteractionNetwork> findNetworks(Collection<Long> networkIds) throws DataStoreException {
+		return connector.findNetworksById(networkIds);
+	}
+
 	// need to use a string as a key, since ehcache doesn't hash two long params
 	// correctly (we get collisions for the same networks for different
 	// organisms)
@@ -185,10 +185,20 @@ public class SearchServiceImpl implements SearchService {
 		// add genes
 		// ==================================================
 
+		Set<Long> resultIds = new HashSet<Long>();
+		for (Set<Long> ids : isQueryToId.values()) {
+			resultIds.addAll(ids);
+		}
+		Map<Long, Gene> idToGene = geneDao.findGenesForIds(
+				responseDto.getOrganismId(), resultIds);
+
 		for (boolean isQuery : isQueryToId.keySet()) {
 			for (Long id : isQueryToId.get(isQuery)) {
-				Gene gene = geneDao.findGeneForId(responseDto.getOrganismId(),
-						id);
+				Gene gene = idToGene.get(id);
+				if (gene == null) {
+					gene = geneDao.findGeneForId(responseDto.getOrganismId(),
+							id);
+				}
 
 				double score;
 				if (responseDto.getNodeScoresMap().isEmpty()) {